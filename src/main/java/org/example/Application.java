@@ -1,12 +1,54 @@
 package org.example;
 
+import org.example.bench.AnnBenchmark;
+import org.example.bench.CapacityLoadTest;
+import org.example.bench.MleapOnnxComparison;
+import org.example.bench.ThreadModelComparison;
+import org.example.bulk.BulkNerProcessor;
+import org.example.onnx.cascade.CascadeEvaluation;
+import org.example.onnx.dictionary.AhoCorasickBuilder;
+import org.example.router.NerRouter;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import java.util.Arrays;
+
 @SpringBootApplication
 public class Application {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        // 命令行工具模式，不启动 web 服务
+        if (args.length > 0) {
+            String[] toolArgs = Arrays.copyOfRange(args, 1, args.length);
+            switch (args[0]) {
+                case "bulk":
+                    BulkNerProcessor.main(toolArgs);
+                    return;
+                case "compare":
+                    MleapOnnxComparison.main(toolArgs);
+                    return;
+                case "thread-compare":
+                    ThreadModelComparison.main(toolArgs);
+                    return;
+                case "dict-build":
+                    AhoCorasickBuilder.main(toolArgs);
+                    return;
+                case "load-test":
+                    CapacityLoadTest.main(toolArgs);
+                    return;
+                case "cascade-eval":
+                    CascadeEvaluation.main(toolArgs);
+                    return;
+                case "ann-bench":
+                    AnnBenchmark.main(toolArgs);
+                    return;
+                case "router":
+                    NerRouter.main(toolArgs);
+                    return;
+                default:
+                    break;
+            }
+        }
         SpringApplication.run(Application.class, args);
     }
 
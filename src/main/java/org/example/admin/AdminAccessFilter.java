@@ -0,0 +1,42 @@
+package org.example.admin;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * /admin/** 只接受从 admin 端口进来的请求，业务端口（server.port，可能对外）上按不存在处理，返回 404
+ */
+@Component
+public class AdminAccessFilter extends OncePerRequestFilter {
+
+    private static final String PREFIX = "/admin";
+
+    private final AdminProperties properties;
+
+    public AdminAccessFilter(AdminProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // 用 Tomcat 解码、去掉 ;参数 和 ../ 之后的路径，和 Spring MVC 匹配的是同一个；原始 requestURI 可以用 %61dmin 之类绕过
+        String path = request.getServletPath() + (request.getPathInfo() == null ? "" : request.getPathInfo());
+        return !(path.equals(PREFIX) || path.startsWith(PREFIX + "/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (properties.getPort() > 0 && request.getLocalPort() == properties.getPort()) {
+            chain.doFilter(request, response);
+        } else {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+}
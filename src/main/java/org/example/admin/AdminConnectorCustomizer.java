@@ -0,0 +1,30 @@
+package org.example.admin;
+
+import org.apache.catalina.connector.Connector;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.stereotype.Component;
+
+/**
+ * 给 Tomcat 加一个 admin.address:admin.port 的 connector，/admin/** 只从这里进（见 {@link AdminAccessFilter}）
+ */
+@Component
+public class AdminConnectorCustomizer implements WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
+
+    private final AdminProperties properties;
+
+    public AdminConnectorCustomizer(AdminProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void customize(TomcatServletWebServerFactory factory) {
+        if (properties.getPort() <= 0) {
+            return;
+        }
+        Connector connector = new Connector(TomcatServletWebServerFactory.DEFAULT_PROTOCOL);
+        connector.setPort(properties.getPort());
+        connector.setProperty("address", properties.getAddress());
+        factory.addAdditionalTomcatConnectors(connector);
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.admin;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * admin.* 配置：/admin/** 运维接口（JFR 录制、算子 profiling）单独的端口和监听地址。
+ * 这些接口只在这个端口上应答，业务端口上一律 404；port 为 0 时全部关闭
+ */
+@Component
+@ConfigurationProperties(prefix = "admin")
+public class AdminProperties {
+
+    private int port = 9990;
+    // 默认只监听本机，远程使用时走 ssh 隧道或改成内网地址
+    private String address = "127.0.0.1";
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+}
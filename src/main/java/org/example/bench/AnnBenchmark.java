@@ -0,0 +1,297 @@
+package org.example.bench;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.RunChineseRobertaOnOnnx;
+import org.example.onnx.ann.HnswIndex;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * {@link HnswIndex} 对比暴力搜索的 recall@k 和 QPS。
+ * <pre>
+ * java -jar onnxruntime-java.jar ann-bench [--n=100000] [--dim=768] [--queries=1000] [--k=10] [--clusters=200]
+ *     [--encodings=float32,int8] [--m=16] [--ef-construction=200] [--ef-search=16,32,64,128,256]
+ *     [--threads=&lt;cpu&gt;] [--dir=target/ann-bench] [--vectors=emb.f32 | --texts=texts.txt] [--seed=42]
+ * </pre>
+ * 默认用带簇结构的随机向量（簇中心 + 高斯噪声，近似句向量的分布）；--vectors 读小端 float32 的原始向量文件（n × dim），
+ * --texts 每行一条文本，用 {@link RunChineseRobertaOnOnnx#embed} 现算。查询向量取自同一分布、不在索引里。
+ * 每种编码单独建一次索引（多线程并发插入），每个 ef-search 分别测单线程和 threads 个线程的 QPS，暴力搜索是真值。
+ */
+@Slf4j
+public class AnnBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        int n = Integer.parseInt(options.getOrDefault("n", "100000"));
+        int dim = Integer.parseInt(options.getOrDefault("dim", "768"));
+        int queryCount = Integer.parseInt(options.getOrDefault("queries", "1000"));
+        int k = Integer.parseInt(options.getOrDefault("k", "10"));
+        int clusters = Integer.parseInt(options.getOrDefault("clusters", "200"));
+        int m = Integer.parseInt(options.getOrDefault("m", "16"));
+        int efConstruction = Integer.parseInt(options.getOrDefault("ef-construction", "200"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        Path dir = Paths.get(options.getOrDefault("dir", "target/ann-bench"));
+        int[] efSearches = Arrays.stream(options.getOrDefault("ef-search", "16,32,64,128,256").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        String[] encodings = options.getOrDefault("encodings", "float32,int8").split(",");
+
+        float[][] data;
+        float[][] queries;
+        if (options.containsKey("vectors")) {
+            float[][] all = readVectors(Paths.get(options.get("vectors")), dim);
+            queryCount = Math.min(queryCount, all.length / 10);
+            data = Arrays.copyOfRange(all, 0, all.length - queryCount);
+            queries = Arrays.copyOfRange(all, all.length - queryCount, all.length);
+        } else if (options.containsKey("texts")) {
+            List<String> texts = new ArrayList<>();
+            for (String line : Files.readAllLines(Paths.get(options.get("texts")), StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    texts.add(line.trim());
+                }
+            }
+            float[][] all = new float[texts.size()][];
+            for (int from = 0; from < texts.size(); from += 32) {
+                float[][] batch = RunChineseRobertaOnOnnx.embed(texts.subList(from, Math.min(from + 32, texts.size())));
+                System.arraycopy(batch, 0, all, from, batch.length);
+            }
+            dim = all[0].length;
+            queryCount = Math.min(queryCount, all.length / 10);
+            data = Arrays.copyOfRange(all, 0, all.length - queryCount);
+            queries = Arrays.copyOfRange(all, all.length - queryCount, all.length);
+        } else {
+            Random random = new Random(seed);
+            float[][] centers = new float[clusters][dim];
+            for (float[] center : centers) {
+                for (int i = 0; i < dim; i++) {
+                    center[i] = (float) random.nextGaussian();
+                }
+            }
+            data = clustered(random, centers, n);
+            queries = clustered(random, centers, queryCount);
+        }
+        System.out.printf(Locale.ROOT, "vectors %d, queries %d, dim %d, k %d, M %d, efConstruction %d, threads %d%n",
+                data.length, queries.length, dim, k, m, efConstruction, threads);
+
+        for (String name : encodings) {
+            HnswIndex.Encoding encoding = HnswIndex.Encoding.valueOf(name.trim().toUpperCase(Locale.ROOT));
+            Path indexDir = dir.resolve(encoding.name().toLowerCase(Locale.ROOT));
+            deleteRecursively(indexDir);
+            HnswIndex.Settings settings = new HnswIndex.Settings();
+            settings.setDimension(dim);
+            settings.setEncoding(encoding);
+            settings.setM(m);
+            settings.setEfConstruction(efConstruction);
+            settings.setMaxElements(data.length);
+            try (HnswIndex index = HnswIndex.open(indexDir, settings)) {
+                long buildNanos = build(index, data, threads);
+                System.out.printf(Locale.ROOT, "%n[%s] build %.1fs, %.0f inserts/s%n", encoding,
+                        buildNanos / 1e9, data.length / (buildNanos / 1e9));
+
+                // 暴力搜索读同一份存储，int8 的真值也按量化后的向量算
+                long[][] truth = new long[queries.length][];
+                long bruteStart = System.nanoTime();
+                for (int q = 0; q < queries.length; q++) {
+                    truth[q] = labels(index.bruteForce(queries[q], k));
+                }
+                double bruteQps = queries.length / ((System.nanoTime() - bruteStart) / 1e9);
+                System.out.printf(Locale.ROOT, "%10s %12s %14s %14s%n", "ef", "recall@" + k, "qps(1 thread)", "qps(" + threads + " threads)");
+                System.out.printf(Locale.ROOT, "%10s %12.4f %14.0f %14s%n", "brute", 1.0, bruteQps, "-");
+                for (int ef : efSearches) {
+                    // 先跑一遍预热，也用来算召回
+                    double recall = 0;
+                    for (int q = 0; q < queries.length; q++) {
+                        recall += recall(labels(index.search(queries[q], k, ef)), truth[q]);
+                    }
+                    long start = System.nanoTime();
+                    for (float[] query : queries) {
+                        index.search(query, k, ef);
+                    }
+                    double qps = queries.length / ((System.nanoTime() - start) / 1e9);
+                    double parallelQps = parallelQps(index, queries, k, ef, threads);
+                    System.out.printf(Locale.ROOT, "%10d %12.4f %14.0f %14.0f%n", ef, recall / queries.length, qps, parallelQps);
+                }
+                // 真实向量之间的召回：对比 float32 原始向量的暴力结果
+                if (encoding == HnswIndex.Encoding.INT8) {
+                    double recall = 0;
+                    for (float[] query : queries) {
+                        recall += recall(labels(index.search(query, k, efSearches[efSearches.length - 1])), exact(data, query, k));
+                    }
+                    System.out.printf(Locale.ROOT, "int8 recall@%d against float32 ground truth (ef %d): %.4f%n",
+                            k, efSearches[efSearches.length - 1], recall / queries.length);
+                }
+            }
+        }
+    }
+
+    private static float[][] clustered(Random random, float[][] centers, int count) {
+        int dim = centers[0].length;
+        float[][] out = new float[count][dim];
+        for (float[] v : out) {
+            float[] center = centers[random.nextInt(centers.length)];
+            for (int i = 0; i < dim; i++) {
+                v[i] = center[i] + (float) random.nextGaussian() * 0.6f;
+            }
+        }
+        return out;
+    }
+
+    private static long build(HnswIndex index, float[][] data, int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicInteger next = new AtomicInteger();
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < data.length) {
+                    index.add(i, data[i]);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        return elapsed;
+    }
+
+    private static double parallelQps(HnswIndex index, float[][] queries, int k, int ef, int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        int rounds = Math.max(1, threads);
+        AtomicInteger next = new AtomicInteger();
+        int total = queries.length * rounds;
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < total) {
+                    index.search(queries[i % queries.length], k, ef);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double qps = total / ((System.nanoTime() - start) / 1e9);
+        pool.shutdown();
+        return qps;
+    }
+
+    private static long[] exact(float[][] data, float[] query, int k) {
+        float[] q = normalized(query);
+        Integer[] order = new Integer[data.length];
+        float[] scores = new float[data.length];
+        for (int i = 0; i < data.length; i++) {
+            float[] v = normalized(data[i]);
+            float dot = 0;
+            for (int j = 0; j < q.length; j++) {
+                dot += q[j] * v[j];
+            }
+            scores[i] = dot;
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        long[] out = new long[Math.min(k, data.length)];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = order[i];
+        }
+        return out;
+    }
+
+    private static float[] normalized(float[] v) {
+        double norm = 0;
+        for (float x : v) {
+            norm += x * x;
+        }
+        float[] out = new float[v.length];
+        for (int i = 0; i < v.length; i++) {
+            out[i] = (float) (v[i] / Math.sqrt(norm));
+        }
+        return out;
+    }
+
+    private static long[] labels(List<HnswIndex.Neighbor> neighbors) {
+        long[] out = new long[neighbors.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = neighbors.get(i).label;
+        }
+        return out;
+    }
+
+    private static double recall(long[] found, long[] truth) {
+        if (truth.length == 0) {
+            return 1;
+        }
+        Set<Long> expected = new HashSet<>();
+        for (long label : truth) {
+            expected.add(label);
+        }
+        int hits = 0;
+        for (long label : found) {
+            hits += expected.contains(label) ? 1 : 0;
+        }
+        return hits / (double) truth.length;
+    }
+
+    private static float[][] readVectors(Path file, int dim) throws IOException {
+        List<float[]> vectors = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 20))) {
+            while (true) {
+                float[] v = new float[dim];
+                try {
+                    for (int i = 0; i < dim; i++) {
+                        v[i] = Float.intBitsToFloat(Integer.reverseBytes(in.readInt()));
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                vectors.add(v);
+            }
+        }
+        return vectors.toArray(new float[0][]);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted((a, b) -> b.compareTo(a))::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package org.example.bench;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.sample.SampleModels;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.ServerSocket;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 本机容量压测：生成与线上 UBERT 签名相同的替身模型和词表（{@link SampleModels#writeUbertStandIn}），
+ * 每个配置起一个独立的服务进程，按各档 QPS 开环压 /ner/predict，输出修正了 coordinated omission 的延迟和配置间的对比报告。
+ * <pre>
+ * java -jar onnxruntime-java.jar load-test [--qps=50,100,200,400] [--seconds=30] [--warmup-seconds=10]
+ *     [--config=baseline] [--config=no-cache:-Dtokenizer.cache.max-tokens=0] [--config=threads-32:--server.tomcat.threads.max=32]
+ *     [--arrival=poisson|uniform] [--input=queries.txt | --length-median=12 --length-sigma=0.7] [--types=人名,地名]
+ *     [--hidden=256] [--layers=4] [--model=real.onnx --vocab=vocab.txt] [--server-jvm-args=-Xmx2g] [--dir=target/load-test]
+ *     [--max-in-flight=512] [--max-backlog=20000] [--slo-millis=200] [--url=http://host:port]
+ * </pre>
+ * <ul>
+ *     <li>配置：name:arg1,arg2...，-D / -X 开头的参数给服务端 JVM，其余作为 Spring 参数（例如 --ner.planner.pack-choices=false）。
+ *     参数之间用逗号分隔。不指定时对比 baseline / threads-32 / no-pack / no-cache 四组（线程数、行打包、分词缓存）。--url 时不起进程，只压已有服务</li>
+ *     <li>开环：每个请求有预定的发送时刻（uniform 为等间隔，poisson 为指数间隔），不因为前面的请求慢而推迟；
+ *     corrected 延迟从预定时刻算起（含客户端排队），service 延迟从真正发出算起，两者差距大说明服务已经跟不上该 QPS</li>
+ *     <li>积压超过 max-backlog 时该档标为 SATURATED 并停止这个配置更高的档位</li>
+ *     <li>查询：--input 时从文件按行随机取，否则按对数正态长度分布（中位数 length-median 字）拼常用字</li>
+ * </ul>
+ * 报告写到 dir/report.txt，每档的百分位分布写到 dir/histograms/&lt;config&gt;-&lt;qps&gt;.txt，服务日志在 dir/logs。
+ */
+@Slf4j
+public class CapacityLoadTest {
+
+    // 常用字，生成合成查询用
+    private static final String COMMON_CHARS = "的一是在不了有和人这中大为上个国我以要他时来用们生到作地于出就分对成会可主发年动同工也能下过子说产种面而方后多定行学法所民得经"
+            + "十三之进着等部度家电力里如水化高自二理起小物现实加量都两体制机当使点从业本去把性好应开它合还因由其些然前外天政四日那社义事平形相全表间样与关各重新线内数正心反"
+            + "你明看原又么利比或但质气第向道命此变条只没结解问意建月公无系军很情者最立代想已通并提直题党程展五果料象员革位入常文总次品式活设及管特件长求老头基资边流路级少图"
+            + "山统接知较将组见计别她手角期根论运农指几九区强放决西被干做必战先回则任取据处理府研质信北京上海杭州深圳广州阿里巴巴华为腾讯张王李刘陈杨赵黄周吴";
+
+    private static final Map<String, String> DEFAULT_CONFIGS = new LinkedHashMap<>();
+
+    static {
+        DEFAULT_CONFIGS.put("baseline", "");
+        DEFAULT_CONFIGS.put("threads-32", "--server.tomcat.threads.max=32,--server.tomcat.threads.min-spare=32");
+        DEFAULT_CONFIGS.put("no-pack", "--ner.planner.pack-choices=false");
+        DEFAULT_CONFIGS.put("no-cache", "-Dtokenizer.cache.max-tokens=0");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        Map<String, String> configs = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            if ("config".equals(name)) {
+                int colon = value.indexOf(':');
+                String label = colon < 0 ? value : value.substring(0, colon);
+                configs.put(label, colon < 0 ? DEFAULT_CONFIGS.getOrDefault(label, "") : value.substring(colon + 1));
+            } else {
+                options.put(name, value);
+            }
+        }
+        if (configs.isEmpty()) {
+            configs.putAll(DEFAULT_CONFIGS);
+        }
+        int[] qpsLevels = Arrays.stream(options.getOrDefault("qps", "50,100,200,400").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        long seconds = Long.parseLong(options.getOrDefault("seconds", "30"));
+        long warmupSeconds = Long.parseLong(options.getOrDefault("warmup-seconds", "10"));
+        boolean poisson = !"uniform".equals(options.getOrDefault("arrival", "poisson"));
+        int maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "512"));
+        int maxBacklog = Integer.parseInt(options.getOrDefault("max-backlog", "20000"));
+        Path dir = Paths.get(options.getOrDefault("dir", "target/load-test"));
+        Files.createDirectories(dir.resolve("histograms"));
+        Files.createDirectories(dir.resolve("logs"));
+        QuerySource queries = QuerySource.of(options);
+        String types = options.getOrDefault("types", "");
+
+        Path model;
+        Path vocab;
+        if (options.containsKey("model")) {
+            model = Paths.get(options.get("model"));
+            vocab = Paths.get(options.getOrDefault("vocab", "vocab.txt"));
+        } else {
+            int hidden = Integer.parseInt(options.getOrDefault("hidden", "256"));
+            int layers = Integer.parseInt(options.getOrDefault("layers", "4"));
+            SampleModels.writeUbertStandIn(dir, hidden, layers, 42L);
+            model = dir.resolve(SampleModels.UBERT_ONNX);
+            vocab = dir.resolve(SampleModels.UBERT_VOCAB);
+            log.info("stand-in model: hidden {}, layers {} -> {}", hidden, layers, model);
+        }
+
+        System.setProperty("http.maxConnections", String.valueOf(maxInFlight));
+        List<Row> rows = new ArrayList<>();
+        System.out.println(Row.header());
+        if (options.containsKey("url")) {
+            configs.clear();
+            configs.put("external", "");
+        }
+        for (Map.Entry<String, String> config : configs.entrySet()) {
+            Server server = options.containsKey("url") ? Server.external(options.get("url"))
+                    : Server.start(config.getKey(), config.getValue(), options.getOrDefault("server-jvm-args", ""), model, vocab, dir);
+            try {
+                for (int qps : qpsLevels) {
+                    String baseUrl = server.baseUrl + "/ner/predict?types=" + URLEncoder.encode(types, "UTF-8") + "&query=";
+                    run(baseUrl, queries, qps, warmupSeconds, poisson, maxInFlight, maxBacklog);
+                    Row row = run(baseUrl, queries, qps, seconds, poisson, maxInFlight, maxBacklog);
+                    row.config = config.getKey();
+                    rows.add(row);
+                    System.out.println(row.format());
+                    Files.write(dir.resolve("histograms").resolve(config.getKey() + "-" + qps + ".txt"),
+                            ("# corrected\n" + row.corrected.distribution() + "\n# service\n" + row.service.distribution())
+                                    .getBytes(StandardCharsets.UTF_8));
+                    if (row.saturated) {
+                        break;
+                    }
+                }
+            } finally {
+                server.stop();
+            }
+        }
+        String report = report(rows, options);
+        Files.write(dir.resolve("report.txt"), report.getBytes(StandardCharsets.UTF_8));
+        System.out.println(report);
+    }
+
+    /**
+     * 开环压一档 QPS：调度线程按预定时刻把请求交给客户端线程池，池满时在队列里等（计入 corrected 延迟）
+     */
+    static Row run(String baseUrl, QuerySource queries, int qps, long seconds, boolean poisson, int maxInFlight, int maxBacklog)
+            throws InterruptedException {
+        Row row = new Row();
+        row.qps = qps;
+        if (seconds <= 0) {
+            return row;
+        }
+        ThreadPoolExecutor clients = new ThreadPoolExecutor(maxInFlight, maxInFlight, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        AtomicLong completed = new AtomicLong();
+        Random random = new Random(qps);
+        double intervalNanos = 1e9 / qps;
+        long start = System.nanoTime() + 10_000_000L;
+        long end = start + seconds * 1_000_000_000L;
+        double next = start;
+        long sent = 0;
+        while (next < end) {
+            long intended = (long) next;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (clients.getQueue().size() > maxBacklog) {
+                row.saturated = true;
+                break;
+            }
+            String url = baseUrl + queries.next(random);
+            clients.execute(() -> {
+                long sendAt = System.nanoTime();
+                int status = ThreadModelComparison.get(url);
+                long done = System.nanoTime();
+                if (status == 200) {
+                    row.corrected.recordNanos(done - intended);
+                    row.service.recordNanos(done - sendAt);
+                } else if (status == 429) {
+                    row.overloaded.incrementAndGet();
+                } else {
+                    row.errors.incrementAndGet();
+                }
+                completed.incrementAndGet();
+            });
+            sent++;
+            next += poisson ? -Math.log(1 - random.nextDouble()) * intervalNanos : intervalNanos;
+        }
+        // 已经发出的请求都要等完，否则慢请求会从统计里消失
+        clients.shutdown();
+        clients.awaitTermination(5, TimeUnit.MINUTES);
+        row.elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        row.sent = sent;
+        row.completed = completed.get();
+        return row;
+    }
+
+    static String report(List<Row> rows, Map<String, String> options) {
+        StringWriter buffer = new StringWriter();
+        PrintWriter out = new PrintWriter(buffer);
+        out.println("# capacity report " + new Date());
+        out.println("# options " + options);
+        out.println("# java " + System.getProperty("java.version") + ", cpus " + Runtime.getRuntime().availableProcessors());
+        out.println(Row.header());
+        for (Row row : rows) {
+            out.println(row.format());
+        }
+        // 每个配置能承受的最高档：没有饱和、没有错误、corrected p99 不超过 --slo-millis
+        double sloMillis = Double.parseDouble(options.getOrDefault("slo-millis", "200"));
+        out.println();
+        out.println(String.format(Locale.ROOT, "# max sustainable qps (corrected p99 <= %.0fms, no errors / 429 / saturation), vs first config", sloMillis));
+        Map<String, Row> best = new LinkedHashMap<>();
+        for (Row row : rows) {
+            best.putIfAbsent(row.config, null);
+            boolean ok = !row.saturated && row.errors.get() == 0 && row.overloaded.get() == 0 && row.corrected.percentile(0.99) / 1000.0 <= sloMillis;
+            if (ok && (best.get(row.config) == null || best.get(row.config).qps < row.qps)) {
+                best.put(row.config, row);
+            }
+        }
+        Row reference = best.values().iterator().hasNext() ? best.values().iterator().next() : null;
+        for (Map.Entry<String, Row> entry : best.entrySet()) {
+            Row row = entry.getValue();
+            if (row == null) {
+                out.println(String.format(Locale.ROOT, "%-16s %8s", entry.getKey(), "none"));
+                continue;
+            }
+            String vs = reference == null || reference == row ? "" : String.format(Locale.ROOT, "  qps %+.0f%%, p99 %+.0f%%",
+                    (row.qps / (double) reference.qps - 1) * 100,
+                    (row.corrected.percentile(0.99) / (double) Math.max(1, reference.corrected.percentile(0.99)) - 1) * 100);
+            out.println(String.format(Locale.ROOT, "%-16s %8d  p99 %.2fms%s", entry.getKey(), row.qps,
+                    row.corrected.percentile(0.99) / 1000.0, vs));
+        }
+        out.flush();
+        return buffer.toString();
+    }
+
+    static final class Row {
+        String config;
+        int qps;
+        long sent;
+        long completed;
+        double elapsedSeconds;
+        boolean saturated;
+        final LatencyHistogram corrected = new LatencyHistogram();
+        final LatencyHistogram service = new LatencyHistogram();
+        final AtomicLong overloaded = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+
+        static String header() {
+            return String.format(Locale.ROOT, "%-16s %6s %9s %9s %9s %9s %9s %9s %10s %7s %7s %s",
+                    "config", "qps", "achieved", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)", "svc-p99", "429", "errors", "");
+        }
+
+        String format() {
+            return String.format(Locale.ROOT, "%-16s %6d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %10.2f %7d %7d %s",
+                    config, qps, elapsedSeconds == 0 ? 0 : corrected.count() / elapsedSeconds,
+                    corrected.percentile(0.50) / 1000.0, corrected.percentile(0.90) / 1000.0, corrected.percentile(0.99) / 1000.0,
+                    corrected.percentile(0.999) / 1000.0, corrected.max() / 1000.0, service.percentile(0.99) / 1000.0,
+                    overloaded.get(), errors.get(), saturated ? "SATURATED" : "");
+        }
+    }
+
+    /**
+     * 压测用的查询：文件里的行，或按对数正态长度分布合成的文本（已 URL 编码）
+     */
+    static final class QuerySource {
+        private final String[] encoded;
+
+        private QuerySource(List<String> texts) throws IOException {
+            encoded = new String[texts.size()];
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = URLEncoder.encode(texts.get(i), "UTF-8");
+            }
+        }
+
+        static QuerySource of(Map<String, String> options) throws IOException {
+            List<String> texts = new ArrayList<>();
+            if (options.containsKey("input")) {
+                for (String line : Files.readAllLines(Paths.get(options.get("input")), StandardCharsets.UTF_8)) {
+                    if (!line.trim().isEmpty()) {
+                        texts.add(line.trim());
+                    }
+                }
+            } else {
+                // 搜索类短查询居多、长尾到几十字：长度 ~ LogNormal(ln(median), sigma)，截断到 [1, 120]
+                double median = Double.parseDouble(options.getOrDefault("length-median", "12"));
+                double sigma = Double.parseDouble(options.getOrDefault("length-sigma", "0.7"));
+                Random random = new Random(7);
+                for (int i = 0; i < 10_000; i++) {
+                    int length = (int) Math.round(Math.exp(Math.log(median) + sigma * random.nextGaussian()));
+                    length = Math.max(1, Math.min(120, length));
+                    StringBuilder text = new StringBuilder(length);
+                    for (int j = 0; j < length; j++) {
+                        text.append(COMMON_CHARS.charAt(random.nextInt(COMMON_CHARS.length())));
+                    }
+                    texts.add(text.toString());
+                }
+            }
+            if (texts.isEmpty()) {
+                throw new IllegalArgumentException("no queries");
+            }
+            return new QuerySource(texts);
+        }
+
+        String next(Random random) {
+            return encoded[random.nextInt(encoded.length)];
+        }
+    }
+
+    /**
+     * 被压的服务进程：与当前进程同一个 classpath（或同一个 jar），随机端口，关掉 RPC，就绪探针 UP 后才开始压
+     */
+    static final class Server {
+        final String baseUrl;
+        private final Process process;
+
+        private Server(String baseUrl, Process process) {
+            this.baseUrl = baseUrl;
+            this.process = process;
+        }
+
+        static Server external(String url) {
+            return new Server(url, null);
+        }
+
+        static Server start(String name, String configArgs, String jvmArgs, Path model, Path vocab, Path dir)
+                throws IOException, InterruptedException {
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            List<String> appArgs = new ArrayList<>();
+            for (String arg : (jvmArgs + "," + configArgs).split(",")) {
+                String a = arg.trim();
+                if (a.startsWith("-D") || a.startsWith("-X")) {
+                    command.add(a);
+                } else if (!a.isEmpty()) {
+                    appArgs.add(a);
+                }
+            }
+            command.add("-Dubert.model=" + model.toAbsolutePath());
+            command.add("-Dubert.vocab=" + vocab.toAbsolutePath());
+            String classpath = System.getProperty("java.class.path");
+            if (!classpath.contains(File.pathSeparator) && classpath.endsWith(".jar")) {
+                command.add("-jar");
+                command.add(classpath);
+            } else {
+                command.add("-cp");
+                command.add(classpath);
+                command.add("org.example.Application");
+            }
+            command.add("--server.port=" + port);
+            command.add("--ner.rpc.enabled=false");
+            command.addAll(appArgs);
+            log.info("starting {}: {}", name, command);
+            Path logFile = dir.resolve("logs").resolve(name + ".log");
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(logFile.toFile()).start();
+            Server server = new Server("http://localhost:" + port, process);
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+            while (ThreadModelComparison.get(server.baseUrl + "/actuator/health/readiness") != 200) {
+                if (!process.isAlive() || System.nanoTime() > deadline) {
+                    server.stop();
+                    throw new IllegalStateException("server " + name + " did not become ready, see " + logFile);
+                }
+                Thread.sleep(500);
+            }
+            return server;
+        }
+
+        void stop() throws InterruptedException {
+            if (process == null) {
+                return;
+            }
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+}
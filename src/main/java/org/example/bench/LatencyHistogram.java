@@ -0,0 +1,113 @@
+package org.example.bench;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定内存、无锁的对数线性直方图（微秒），思路同 HdrHistogram：小于 128us 精确计数，之后每个 2 的幂区间分 64 个桶，相对误差约 1.6%。
+ * 多个压测线程直接并发 record。
+ */
+final class LatencyHistogram {
+
+    private static final int LINEAR = 128;
+    private static final int SUB_BUCKETS = 64;
+    private static final int SUB_BITS = 6;
+    // 最大约 2^40us（12 天），再大的值记在最后一个桶
+    private static final int MAX_EXPONENT = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(LINEAR + MAX_EXPONENT * SUB_BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private volatile long max;
+
+    void recordNanos(long nanos) {
+        record(Math.max(0, nanos / 1000));
+    }
+
+    void record(long micros) {
+        counts.incrementAndGet(index(micros));
+        total.increment();
+        sum.add(micros);
+        if (micros > max) {
+            synchronized (this) {
+                if (micros > max) {
+                    max = micros;
+                }
+            }
+        }
+    }
+
+    static int index(long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+        int sub = (int) (micros >>> exponent) - SUB_BUCKETS;
+        return Math.min(LINEAR + (exponent - 1) * SUB_BUCKETS + sub, LINEAR + MAX_EXPONENT * SUB_BUCKETS - 1);
+    }
+
+    /**
+     * 桶内最大值，与 HdrHistogram 一样百分位偏保守
+     */
+    static long upperBound(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exponent = (index - LINEAR) / SUB_BUCKETS + 1;
+        long sub = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << exponent) - 1;
+    }
+
+    long count() {
+        return total.sum();
+    }
+
+    long max() {
+        return max;
+    }
+
+    double mean() {
+        long n = total.sum();
+        return n == 0 ? 0 : sum.sum() / (double) n;
+    }
+
+    /**
+     * @param p 0~1
+     */
+    long percentile(double p) {
+        long n = total.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 百分位分布，每行 “百分位 值(ms) 累计数”，按 1 - 1/2^k 加密到尾部，方便画延迟曲线
+     */
+    String distribution() {
+        StringBuilder out = new StringBuilder(String.format(Locale.ROOT, "%12s %12s %12s%n", "percentile", "value(ms)", "count"));
+        long n = total.sum();
+        for (int k = 0; k <= 20; k++) {
+            for (int step = 0; step < 2; step++) {
+                double p = 1 - Math.pow(0.5, k + step * 0.5);
+                out.append(String.format(Locale.ROOT, "%12.6f %12.3f %12d%n", p, percentile(p) / 1000.0, (long) Math.ceil(p * n)));
+            }
+            if (n > 0 && Math.pow(2, k) > n) {
+                break;
+            }
+        }
+        out.append(String.format(Locale.ROOT, "%12.6f %12.3f %12d%n", 1.0, max / 1000.0, n));
+        out.append(String.format(Locale.ROOT, "#[mean %.3fms, max %.3fms, count %d]%n", mean() / 1000.0, max / 1000.0, n));
+        return out.toString();
+    }
+}
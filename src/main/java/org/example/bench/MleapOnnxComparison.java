@@ -0,0 +1,349 @@
+package org.example.bench;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.example.mleap.MleapBundle;
+import org.example.sample.SampleModels;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.DoubleBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MLeap 与 ONNX Runtime 对同一个特征模型的结果校验 + 延迟/吞吐/内存对比
+ * <p>
+ * 不指定模型时在 --models-dir 下生成线性回归示例模型对（见 SampleModels），完全在本地运行：
+ * java -jar onnxruntime-java.jar compare [--mleap=bundle.zip --onnx=model.onnx] [--input=rows.jsonl | --rows=10000 --features=8]
+ * [--batch-sizes=1,16,128] [--threads=1,4] [--seconds=10] [--warmup-seconds=2] [--tolerance=1e-6]
+ * [--intra-op-threads=1] [--mleap-input=features] [--mleap-output=prediction]
+ * <p>
+ * --input 每行一个 JSON 数组，或者含 mleap-input 字段的 JSON 对象。结果不一致时直接失败，不跑性能对比。
+ */
+@Slf4j
+public class MleapOnnxComparison {
+
+    private static final int VERIFY_BATCH = 64;
+    private static final long SAMPLE_SEED = 42;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        int features = Integer.parseInt(options.getOrDefault("features", "8"));
+        String inputField = options.getOrDefault("mleap-input", SampleModels.LINEAR_INPUT);
+        String outputField = options.getOrDefault("mleap-output", SampleModels.LINEAR_OUTPUT);
+        Path modelsDir = Paths.get(options.getOrDefault("models-dir", "target/sample-models"));
+        if (!options.containsKey("mleap") || !options.containsKey("onnx")) {
+            SampleModels.writeLinearRegression(modelsDir, features, SAMPLE_SEED);
+        }
+        Path mleapPath = Paths.get(options.getOrDefault("mleap", modelsDir.resolve(SampleModels.linearMleap(features, SAMPLE_SEED)).toString()));
+        Path onnxPath = Paths.get(options.getOrDefault("onnx", modelsDir.resolve(SampleModels.linearOnnx(features, SAMPLE_SEED)).toString()));
+
+        double[][] rows = options.containsKey("input")
+                ? loadRows(Paths.get(options.get("input")), inputField)
+                : generateRows(Integer.parseInt(options.getOrDefault("rows", "10000")), features, 7);
+        int[] batchSizes = ints(options.getOrDefault("batch-sizes", "1,16,128"));
+        int[] threadCounts = ints(options.getOrDefault("threads", "1,4"));
+        long seconds = Long.parseLong(options.getOrDefault("seconds", "10"));
+        long warmupSeconds = Long.parseLong(options.getOrDefault("warmup-seconds", "2"));
+        double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "1e-6"));
+        int intraOpThreads = Integer.parseInt(options.getOrDefault("intra-op-threads", "1"));
+
+        MleapRuntime mleap = new MleapRuntime(MleapBundle.load("compare", mleapPath.toFile()), inputField, outputField);
+        try (OnnxRuntime onnx = new OnnxRuntime(onnxPath, intraOpThreads)) {
+            verify(mleap, onnx, rows, tolerance);
+
+            System.out.println(String.format("%-6s %6s %8s %12s %10s %10s %10s %10s %10s",
+                    "engine", "batch", "threads", "rows/s", "p50(ms)", "p99(ms)", "heap(MB)", "rss(MB)", "direct(MB)"));
+            for (int batchSize : batchSizes) {
+                for (int threads : threadCounts) {
+                    for (FeatureRuntime runtime : Arrays.asList(mleap, onnx)) {
+                        bench(runtime, rows, batchSize, threads, warmupSeconds);
+                        System.out.println(bench(runtime, rows, batchSize, threads, seconds));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 两边逐批比较，超出容差的行数大于 0 即失败
+     */
+    static void verify(FeatureRuntime mleap, FeatureRuntime onnx, double[][] rows, double tolerance) throws Exception {
+        long mismatches = 0;
+        double maxDiff = 0;
+        for (int start = 0; start < rows.length; start += VERIFY_BATCH) {
+            double[][] batch = Arrays.copyOfRange(rows, start, Math.min(rows.length, start + VERIFY_BATCH));
+            double[] expected = mleap.predict(batch);
+            double[] actual = onnx.predict(batch);
+            for (int i = 0; i < batch.length; i++) {
+                double diff = Math.abs(expected[i] - actual[i]);
+                maxDiff = Math.max(maxDiff, diff);
+                if (!(diff <= tolerance)) {
+                    if (mismatches++ < 10) {
+                        log.error("row {} differs: mleap={} onnx={}", start + i, expected[i], actual[i]);
+                    }
+                }
+            }
+        }
+        if (mismatches > 0) {
+            throw new IllegalStateException(mismatches + " of " + rows.length + " rows differ by more than "
+                    + tolerance + " (max diff " + maxDiff + ")");
+        }
+        log.info("verified {} rows, max abs diff {}", rows.length, maxDiff);
+    }
+
+    static String bench(FeatureRuntime runtime, double[][] rows, int batchSize, int threads, long seconds)
+            throws Exception {
+        List<double[][]> batches = new ArrayList<>();
+        for (int start = 0; start + batchSize <= rows.length; start += batchSize) {
+            batches.add(Arrays.copyOfRange(rows, start, start + batchSize));
+        }
+        if (batches.isEmpty()) {
+            batches.add(rows);
+        }
+
+        System.gc();
+        MemorySampler sampler = new MemorySampler();
+        sampler.start();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicLong rowCount = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            futures.add(pool.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                for (int i = offset; System.nanoTime() < deadline; i += threads) {
+                    double[][] batch = batches.get(i % batches.size());
+                    long t0 = System.nanoTime();
+                    runtime.predict(batch);
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - t0;
+                    rowCount.addAndGet(batch.length);
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+        long[] all = new long[0];
+        for (Future<long[]> future : futures) {
+            long[] latencies = future.get();
+            int length = all.length;
+            all = Arrays.copyOf(all, length + latencies.length);
+            System.arraycopy(latencies, 0, all, length, latencies.length);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+        sampler.stop();
+
+        Arrays.sort(all);
+        return String.format("%-6s %6d %8d %12.0f %10.3f %10.3f %10.1f %10.1f %10.1f",
+                runtime.name(), batchSize, threads, rowCount.get() / elapsed,
+                percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6,
+                sampler.heapPeak / 1048576.0, sampler.rssPeak / 1048576.0, sampler.directPeak / 1048576.0);
+    }
+
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    static double[][] generateRows(int count, int features, long seed) {
+        Random random = new Random(seed);
+        double[][] rows = new double[count][features];
+        for (double[] row : rows) {
+            for (int i = 0; i < features; i++) {
+                row[i] = random.nextGaussian();
+            }
+        }
+        return rows;
+    }
+
+    static double[][] loadRows(Path file, String field) throws IOException {
+        List<double[]> rows = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            Object json = JSON.parse(line);
+            JSONArray values = json instanceof JSONObject ? ((JSONObject) json).getJSONArray(field) : (JSONArray) json;
+            double[] row = new double[values.size()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = values.getDoubleValue(i);
+            }
+            rows.add(row);
+        }
+        return rows.toArray(new double[0][]);
+    }
+
+    private static int[] ints(String csv) {
+        return Arrays.stream(csv.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+    }
+
+    interface FeatureRuntime {
+        String name();
+
+        /**
+         * @return 每行一个标量输出
+         */
+        double[] predict(double[][] batch) throws Exception;
+    }
+
+    static class MleapRuntime implements FeatureRuntime {
+        private final MleapBundle bundle;
+        private final String inputField;
+        private final String outputField;
+
+        MleapRuntime(MleapBundle bundle, String inputField, String outputField) {
+            this.bundle = bundle;
+            this.inputField = inputField;
+            this.outputField = outputField;
+        }
+
+        @Override
+        public String name() {
+            return "mleap";
+        }
+
+        @Override
+        public double[] predict(double[][] batch) {
+            List<Map<String, Object>> rows = new ArrayList<>(batch.length);
+            for (double[] features : batch) {
+                rows.add(Collections.<String, Object>singletonMap(inputField, features));
+            }
+            List<Map<String, Object>> results = bundle.transform(rows);
+            double[] out = new double[batch.length];
+            for (int i = 0; i < out.length; i++) {
+                out[i] = ((Number) results.get(i).get(outputField)).doubleValue();
+            }
+            return out;
+        }
+    }
+
+    static class OnnxRuntime implements FeatureRuntime, AutoCloseable {
+        private final OrtEnvironment env = OrtEnvironment.getEnvironment();
+        private final OrtSession session;
+        private final String inputName;
+
+        OnnxRuntime(Path model, int intraOpThreads) throws OrtException {
+            OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+            options.setIntraOpNumThreads(intraOpThreads);
+            this.session = env.createSession(model.toString(), options);
+            this.inputName = session.getInputNames().iterator().next();
+        }
+
+        @Override
+        public String name() {
+            return "onnx";
+        }
+
+        @Override
+        public double[] predict(double[][] batch) throws OrtException {
+            int features = batch[0].length;
+            DoubleBuffer input = DoubleBuffer.allocate(batch.length * features);
+            for (double[] row : batch) {
+                input.put(row);
+            }
+            input.flip();
+            try (OnnxTensor tensor = OnnxTensor.createTensor(env, input, new long[]{batch.length, features});
+                 OrtSession.Result result = session.run(Collections.singletonMap(inputName, tensor))) {
+                DoubleBuffer output = ((OnnxTensor) result.get(0)).getDoubleBuffer();
+                double[] out = new double[batch.length];
+                output.get(out);
+                return out;
+            }
+        }
+
+        @Override
+        public void close() throws OrtException {
+            session.close();
+        }
+    }
+
+    /**
+     * 每 10ms 采样一次堆内存、direct buffer 和进程 RSS（/proc/self/status，仅 Linux），记录峰值
+     */
+    static class MemorySampler implements Runnable {
+        private final Thread thread = new Thread(this, "memory-sampler");
+        private volatile boolean running = true;
+        volatile long heapPeak;
+        volatile long rssPeak;
+        volatile long directPeak;
+
+        void start() {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.join();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                heapPeak = Math.max(heapPeak, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+                long direct = 0;
+                for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+                    direct += pool.getMemoryUsed();
+                }
+                directPeak = Math.max(directPeak, direct);
+                rssPeak = Math.max(rssPeak, rss());
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        static long rss() {
+            try {
+                for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                    if (line.startsWith("VmRSS:")) {
+                        return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // 非 Linux
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package org.example.bench;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 线程模型对比：同一份负载分别打到“每请求一个平台线程”（默认构建）和“虚拟线程”（-Pjava21 + onnx.virtual-threads.enabled）
+ * 两个已启动的服务上，按连接数输出吞吐、延迟和服务端每个连接多占的内存 / 线程。
+ * <pre>
+ * java -jar a.jar --server.port=9999                                         # 平台线程
+ * java -jar b.jar --server.port=9997 --onnx.virtual-threads.enabled=true     # 虚拟线程，JDK 21
+ * java -jar a.jar thread-compare --target=platform@http://localhost:9999 --target=virtual@http://localhost:9997
+ *     [--connections=50,200,800] [--seconds=20] [--warmup-seconds=5] [--think-millis=0] [--input=texts.txt]
+ * </pre>
+ * 每个连接是一个 keep-alive 的客户端线程，顺序发 /ner/predict，请求之间停 think-millis（模拟大量慢速 / 空闲连接）。
+ * 服务端内存和线程数取自 /actuator/metrics（jvm.memory.used 含堆和非堆、jvm.threads.live），
+ * 每个连接的开销 = (压测期间峰值 - 压测前空闲值) / 连接数。429 单独计数，不算进吞吐。
+ */
+@Slf4j
+public class ThreadModelComparison {
+
+    private static final String[] DEFAULT_TEXTS = {
+            "雷鸣山在北京大学读书",
+            "2023年12月6日，张三在上海浦东新区参加了华为公司的发布会",
+            "李白字太白，号青莲居士，唐朝浪漫主义诗人",
+            "阿里巴巴集团总部位于浙江省杭州市余杭区",
+    };
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        Map<String, String> targets = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            if ("target".equals(name)) {
+                int at = value.indexOf('@');
+                targets.put(at < 0 ? value : value.substring(0, at), at < 0 ? value : value.substring(at + 1));
+            } else {
+                options.put(name, value);
+            }
+        }
+        if (targets.isEmpty()) {
+            targets.put("default", "http://localhost:9999");
+        }
+        int[] connectionCounts = Arrays.stream(options.getOrDefault("connections", "50,200,800").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        long seconds = Long.parseLong(options.getOrDefault("seconds", "20"));
+        long warmupSeconds = Long.parseLong(options.getOrDefault("warmup-seconds", "5"));
+        long thinkMillis = Long.parseLong(options.getOrDefault("think-millis", "0"));
+        String[] texts = options.containsKey("input")
+                ? Files.readAllLines(Paths.get(options.get("input")), StandardCharsets.UTF_8).stream()
+                .filter(line -> !line.trim().isEmpty()).toArray(String[]::new)
+                : DEFAULT_TEXTS;
+
+        // HttpURLConnection 默认每个目标只保留 5 个空闲 keep-alive 连接，其余用完即关，会变成测建连
+        int maxConnections = Arrays.stream(connectionCounts).max().orElse(1);
+        System.setProperty("http.maxConnections", String.valueOf(maxConnections));
+
+        System.out.println(String.format("%-10s %6s %10s %10s %10s %10s %8s %8s %12s %12s",
+                "target", "conns", "req/s", "p50(ms)", "p99(ms)", "max(ms)", "429", "errors", "KB/conn", "threads/conn"));
+        for (Map.Entry<String, String> target : targets.entrySet()) {
+            for (int connections : connectionCounts) {
+                run(target.getValue(), texts, connections, warmupSeconds, thinkMillis);
+                Result result = run(target.getValue(), texts, connections, seconds, thinkMillis);
+                System.out.println(result.format(target.getKey(), connections));
+            }
+        }
+    }
+
+    static Result run(String baseUrl, String[] texts, int connections, long seconds, long thinkMillis) throws Exception {
+        ServerSampler sampler = new ServerSampler(baseUrl);
+        sampler.baseline();
+        sampler.start();
+
+        ExecutorService clients = Executors.newFixedThreadPool(connections);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicLong ok = new AtomicLong();
+        AtomicLong overloaded = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong deadline = new AtomicLong();
+        List<Future<long[]>> futures = new ArrayList<>(connections);
+        for (int c = 0; c < connections; c++) {
+            int offset = c;
+            futures.add(clients.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                go.await();
+                long end = deadline.get();
+                for (int i = offset; System.nanoTime() < end; i += connections) {
+                    String url = baseUrl + "/ner/predict?query=" + URLEncoder.encode(texts[i % texts.length], "UTF-8");
+                    long t0 = System.nanoTime();
+                    int status = get(url);
+                    long latency = System.nanoTime() - t0;
+                    if (status == 200) {
+                        ok.incrementAndGet();
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = latency;
+                    } else if (status == 429) {
+                        overloaded.incrementAndGet();
+                    } else {
+                        errors.incrementAndGet();
+                    }
+                    if (thinkMillis > 0) {
+                        Thread.sleep(thinkMillis);
+                    }
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+        // 客户端线程都提交后统一开始计时
+        long start = System.nanoTime();
+        deadline.set(start + seconds * 1_000_000_000L);
+        go.countDown();
+        long[] all = new long[0];
+        for (Future<long[]> future : futures) {
+            long[] latencies = future.get();
+            int length = all.length;
+            all = Arrays.copyOf(all, length + latencies.length);
+            System.arraycopy(latencies, 0, all, length, latencies.length);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        clients.shutdown();
+        clients.awaitTermination(10, TimeUnit.SECONDS);
+        sampler.stop();
+
+        Arrays.sort(all);
+        Result result = new Result();
+        result.throughput = ok.get() / elapsed;
+        result.p50 = MleapOnnxComparison.percentile(all, 0.50) / 1e6;
+        result.p99 = MleapOnnxComparison.percentile(all, 0.99) / 1e6;
+        result.max = all.length == 0 ? 0 : all[all.length - 1] / 1e6;
+        result.overloaded = overloaded.get();
+        result.errors = errors.get();
+        result.bytesPerConnection = Math.max(0, sampler.memoryPeak - sampler.memoryBaseline) / (double) connections;
+        result.threadsPerConnection = Math.max(0, sampler.threadsPeak - sampler.threadsBaseline) / (double) connections;
+        return result;
+    }
+
+    /**
+     * @return HTTP 状态码，连接失败时为 -1。响应体读完，连接才能回到 keep-alive 池
+     */
+    static int get(String url) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(60000);
+            int status = connection.getResponseCode();
+            drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            return status;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return -1;
+        }
+    }
+
+    static byte[] drain(InputStream in) throws IOException {
+        if (in == null) {
+            return new byte[0];
+        }
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = input.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    static class Result {
+        double throughput;
+        double p50;
+        double p99;
+        double max;
+        long overloaded;
+        long errors;
+        double bytesPerConnection;
+        double threadsPerConnection;
+
+        String format(String target, int connections) {
+            return String.format("%-10s %6d %10.1f %10.2f %10.2f %10.2f %8d %8d %12.1f %12.2f",
+                    target, connections, throughput, p50, p99, max, overloaded, errors,
+                    bytesPerConnection / 1024, threadsPerConnection);
+        }
+    }
+
+    /**
+     * 每 200ms 从服务端 actuator 读一次 jvm.memory.used 和 jvm.threads.live，记录峰值
+     */
+    static class ServerSampler implements Runnable {
+        private final String baseUrl;
+        private final Thread thread = new Thread(this, "server-sampler");
+        private volatile boolean running = true;
+        long memoryBaseline;
+        long threadsBaseline;
+        volatile long memoryPeak;
+        volatile long threadsPeak;
+
+        ServerSampler(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        /**
+         * 没法从外部触发服务端 GC，取空闲时 5 次采样的最小值作为基线
+         */
+        void baseline() throws InterruptedException {
+            memoryBaseline = Long.MAX_VALUE;
+            threadsBaseline = Long.MAX_VALUE;
+            for (int i = 0; i < 5; i++) {
+                memoryBaseline = min(memoryBaseline, metric("jvm.memory.used"));
+                threadsBaseline = min(threadsBaseline, metric("jvm.threads.live"));
+                Thread.sleep(200);
+            }
+            memoryPeak = memoryBaseline;
+            threadsPeak = threadsBaseline;
+        }
+
+        private static long min(long current, long sample) {
+            return sample < 0 ? current : Math.min(current, sample);
+        }
+
+        void start() {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            thread.join();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                memoryPeak = Math.max(memoryPeak, metric("jvm.memory.used"));
+                threadsPeak = Math.max(threadsPeak, metric("jvm.threads.live"));
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return 所有 measurement 的和，读取失败时为 -1（Math.max 取峰值时自然被忽略）
+         */
+        long metric(String name) {
+            HttpURLConnection connection = null;
+            try {
+                connection = (HttpURLConnection) new URL(baseUrl + "/actuator/metrics/" + name).openConnection();
+                connection.setConnectTimeout(2000);
+                connection.setReadTimeout(5000);
+                JSONObject json = JSON.parseObject(new String(drain(connection.getInputStream()), StandardCharsets.UTF_8));
+                JSONArray measurements = json.getJSONArray("measurements");
+                double value = 0;
+                for (int i = 0; i < measurements.size(); i++) {
+                    value += measurements.getJSONObject(i).getDoubleValue("value");
+                }
+                return (long) value;
+            } catch (IOException | RuntimeException e) {
+                log.warn("failed to read {} from {}: {}", name, baseUrl, e.toString());
+                if (connection != null) {
+                    connection.disconnect();
+                }
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package org.example.bulk;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.RunUbertaOnOnnx;
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.ner.NerResult;
+import org.example.onnx.runtime.InferenceScheduler;
+import org.example.onnx.runtime.ModelBinding;
+import org.example.onnx.runtime.OverloadedException;
+import org.example.onnx.runtime.TensorScope;
+import org.example.onnx.tokenizer.BertTokenizer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 批量 NER：读文件 → 并行分词 → 批量推理 → 解码 → 按输入顺序写 JSONL
+ * <p>
+ * 各阶段之间用有界队列连接，下游处理不过来时上游阻塞；在途记录总数由 inFlight 限制，
+ * 写出端乱序等待的记录也不会无限堆积。写出端每 checkpointEvery 条落盘一次进度，
+ * 进程崩溃后用同样的参数重跑即可从断点继续。模型过载（与在线请求共用调度器时队列满或排队超时）时同一批退避重试，不写成错误行。
+ * <p>
+ * 用法：java -jar onnxruntime-java.jar bulk --input=companies.jsonl --output=ner.jsonl [--format=jsonl|csv]
+ * [--field=query] [--column=0] [--skip-header=false] [--workers=4] [--decoders=1] [--batch-size=16]
+ * [--queue-size=1024] [--checkpoint=ner.jsonl.ckpt] [--checkpoint-every=1000] [--report-seconds=10]
+ */
+@Slf4j
+public class BulkNerProcessor {
+
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    // 凑不满一个 batch 时最多等待的时间
+    private static final long BATCH_LINGER_MS = 20;
+    // 模型过载时重试的退避，从最小值起每次翻倍
+    private static final long OVERLOAD_BACKOFF_MIN_MS = 50;
+    private static final long OVERLOAD_BACKOFF_MAX_MS = 5000;
+
+    private final Path input;
+    private final Path output;
+    private final Path checkpointFile;
+    private final boolean csv;
+    private final String field;
+    private final int column;
+    private final boolean skipHeader;
+    private final int workers;
+    private final int decoders;
+    private final int batchSize;
+    private final int checkpointEvery;
+    private final int reportSeconds;
+
+    private final BlockingQueue<BulkRecord> readQueue;
+    private final BlockingQueue<BulkRecord> encodedQueue;
+    private final BlockingQueue<Batch> decodeQueue;
+    private final BlockingQueue<BulkRecord> writeQueue;
+    private final Semaphore inFlight;
+
+    private final AtomicLong readCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong overloadRetries = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+    private long lastReportNanos;
+    private long lastReportWritten;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("unknown argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        new BulkNerProcessor(options).run();
+    }
+
+    public BulkNerProcessor(Map<String, String> options) {
+        String in = options.get("input");
+        String out = options.get("output");
+        if (in == null || out == null) {
+            throw new IllegalArgumentException("--input and --output are required");
+        }
+        this.input = Paths.get(in);
+        this.output = Paths.get(out);
+        this.checkpointFile = Paths.get(options.getOrDefault("checkpoint", out + ".ckpt"));
+        this.csv = "csv".equalsIgnoreCase(options.getOrDefault("format", in.endsWith(".csv") ? "csv" : "jsonl"));
+        this.field = options.getOrDefault("field", "query");
+        this.column = Integer.parseInt(options.getOrDefault("column", "0"));
+        this.skipHeader = Boolean.parseBoolean(options.getOrDefault("skip-header", "false"));
+        this.workers = Integer.parseInt(options.getOrDefault("workers", "4"));
+        this.decoders = Integer.parseInt(options.getOrDefault("decoders", "1"));
+        this.batchSize = Integer.parseInt(options.getOrDefault("batch-size", "16"));
+        this.checkpointEvery = Integer.parseInt(options.getOrDefault("checkpoint-every", "1000"));
+        this.reportSeconds = Integer.parseInt(options.getOrDefault("report-seconds", "10"));
+
+        int queueSize = Integer.parseInt(options.getOrDefault("queue-size", "1024"));
+        this.readQueue = new ArrayBlockingQueue<>(queueSize);
+        this.encodedQueue = new ArrayBlockingQueue<>(queueSize);
+        this.decodeQueue = new ArrayBlockingQueue<>(Math.max(1, queueSize / batchSize));
+        this.writeQueue = new ArrayBlockingQueue<>(queueSize);
+        this.inFlight = new Semaphore(queueSize * 4);
+    }
+
+    public void run() throws Exception {
+        Checkpoint checkpoint = Checkpoint.load(checkpointFile);
+        if (checkpoint.records > 0) {
+            log.info("resume from checkpoint {}: {}", checkpointFile, checkpoint);
+        }
+        // 先把模型加载好，不算进吞吐
+        RunUbertaOnOnnx.getTokenizer();
+        RunUbertaOnOnnx.getSession();
+
+        long start = System.nanoTime();
+        lastReportNanos = start;
+        lastReportWritten = 0;
+
+        startStage("bulk-reader", () -> read(checkpoint));
+        AtomicInteger tokenizersLeft = new AtomicInteger(workers);
+        for (int i = 0; i < workers; i++) {
+            startStage("bulk-tokenizer-" + i, () -> tokenize(tokenizersLeft));
+        }
+        startStage("bulk-runner", this::runBatches);
+        AtomicInteger decodersLeft = new AtomicInteger(decoders);
+        for (int i = 0; i < decoders; i++) {
+            startStage("bulk-decoder-" + i, () -> decode(decodersLeft));
+        }
+        startStage("bulk-writer", () -> write(checkpoint));
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "bulk-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(this::report, reportSeconds, reportSeconds, TimeUnit.SECONDS);
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            reporter.shutdownNow();
+            reporter.awaitTermination(1, TimeUnit.SECONDS);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.info("bulk finished: written={} errors={} batches={} overload retries={} elapsed={}s throughput={}/s",
+                writtenCount.get(), errorCount.get(), batchCount.get(), overloadRetries.get(), String.format("%.1f", seconds),
+                String.format("%.1f", writtenCount.get() / Math.max(seconds, 1e-9)));
+        Throwable t = failure.get();
+        if (t != null) {
+            throw new IllegalStateException("bulk processing failed, rerun with the same arguments to resume", t);
+        }
+    }
+
+    private void read(Checkpoint checkpoint) throws Exception {
+        long seq = checkpoint.records;
+        try (LineSource source = new LineSource(input, checkpoint.inputOffset, READ_BUFFER_SIZE)) {
+            if (skipHeader && checkpoint.inputOffset == 0) {
+                source.next();
+            }
+            String line;
+            while ((line = source.next()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                inFlight.acquire();
+                readQueue.put(new BulkRecord(seq++, source.position(), line));
+                readCount.incrementAndGet();
+            }
+        }
+        for (int i = 0; i < workers; i++) {
+            readQueue.put(BulkRecord.END);
+        }
+    }
+
+    private void tokenize(AtomicInteger remaining) throws Exception {
+        BertTokenizer tokenizer = RunUbertaOnOnnx.getTokenizer();
+        while (true) {
+            BulkRecord record = readQueue.take();
+            if (record == BulkRecord.END) {
+                break;
+            }
+            try {
+                record.query = RunUbertaOnOnnx.query(extractText(record.line));
+                record.feature = tokenizer.encodeFeature(record.query);
+            } catch (RuntimeException e) {
+                record.error = String.valueOf(e);
+            }
+            if (record.error == null) {
+                encodedQueue.put(record);
+            } else {
+                writeQueue.put(record);
+            }
+        }
+        if (remaining.decrementAndGet() == 0) {
+            encodedQueue.put(BulkRecord.END);
+        }
+    }
+
+    private void runBatches() throws Exception {
+        List<BulkRecord> batch = new ArrayList<>(batchSize);
+        while (true) {
+            BulkRecord record = batch.isEmpty()
+                    ? encodedQueue.take()
+                    : encodedQueue.poll(BATCH_LINGER_MS, TimeUnit.MILLISECONDS);
+            if (record == BulkRecord.END) {
+                break;
+            }
+            if (record != null) {
+                batch.add(record);
+            }
+            if (record == null || batch.size() >= batchSize) {
+                runBatch(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            runBatch(batch);
+        }
+        for (int i = 0; i < decoders; i++) {
+            decodeQueue.put(Batch.END);
+        }
+    }
+
+    /**
+     * 按调度器批量类的 maxBatchRows 切成几次 session.run，每次单独排队，在线请求可以在片段之间插进来
+     */
+    private void runBatch(List<BulkRecord> records) throws InterruptedException {
+        int maxRows = InferenceScheduler.of(RunUbertaOnOnnx.MODEL_NAME).maxBatchRows(InferenceScheduler.Priority.BULK);
+        for (List<BulkRecord> chunk : InferenceScheduler.split(records, r -> r.query.choices(), maxRows)) {
+            runChunk(chunk);
+        }
+    }
+
+    /**
+     * 模型过载（调度器队列满 / 等待超时）是暂时的，退避后重试同一批，直到跑成；只有推理本身出错才把这批记成错误行
+     */
+    private void runChunk(List<BulkRecord> records) throws InterruptedException {
+        List<BertTokenizer.UbertFeature> features = new ArrayList<>(records.size());
+        for (BulkRecord record : records) {
+            features.add(record.feature);
+            record.feature = null;
+        }
+        Buffer logits;
+        long[] shape;
+        long backoffMillis = OVERLOAD_BACKOFF_MIN_MS;
+        while (true) {
+            try (TensorScope scope = TensorScope.open(RunUbertaOnOnnx.MODEL_NAME, InferenceScheduler.Priority.BULK)) {
+                ModelBinding binding = RunUbertaOnOnnx.getBinding();
+                Map<String, OnnxTensor> inputMap = binding.bind(RunUbertaOnOnnx.getTokenizer().toBatch(features), scope);
+                OrtSession.Result results = scope.run(RunUbertaOnOnnx.getSession(), inputMap);
+                OnnxTensor spanLogits = (OnnxTensor) results.get(0);
+                // 读出来的是堆上的拷贝，scope 关闭后仍可在解码阶段使用
+                logits = binding.outputBuffer(spanLogits);
+                shape = spanLogits.getInfo().getShape();
+                break;
+            } catch (OverloadedException e) {
+                overloadRetries.incrementAndGet();
+                log.debug("batch starting at seq {} rejected ({}), retrying in {}ms", records.get(0).seq, e.getMessage(), backoffMillis);
+                Thread.sleep(backoffMillis);
+                backoffMillis = Math.min(OVERLOAD_BACKOFF_MAX_MS, backoffMillis * 2);
+            } catch (OrtException e) {
+                log.warn("batch of {} records starting at seq {} failed", records.size(), records.get(0).seq, e);
+                for (BulkRecord record : records) {
+                    record.error = String.valueOf(e);
+                    writeQueue.put(record);
+                }
+                return;
+            }
+        }
+        batchCount.incrementAndGet();
+        decodeQueue.put(new Batch(records, logits, shape));
+    }
+
+    private void decode(AtomicInteger remaining) throws Exception {
+        while (true) {
+            Batch batch = decodeQueue.take();
+            if (batch == Batch.END) {
+                break;
+            }
+            List<NerQuery> queries = new ArrayList<>(batch.records.size());
+            for (BulkRecord record : batch.records) {
+                queries.add(record.query);
+            }
+            try {
+                List<NerResult> results = RunUbertaOnOnnx.decode(batch.logits, batch.shape, queries);
+                for (int i = 0; i < results.size(); i++) {
+                    batch.records.get(i).result = results.get(i);
+                }
+            } catch (RuntimeException e) {
+                log.warn("decode of batch starting at seq {} failed", batch.records.get(0).seq, e);
+                for (BulkRecord record : batch.records) {
+                    record.error = String.valueOf(e);
+                }
+            }
+            for (BulkRecord record : batch.records) {
+                writeQueue.put(record);
+            }
+        }
+        if (remaining.decrementAndGet() == 0) {
+            writeQueue.put(BulkRecord.END);
+        }
+    }
+
+    private void write(Checkpoint checkpoint) throws Exception {
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // 丢掉上次 checkpoint 之后写了一半的内容
+            channel.truncate(checkpoint.outputOffset);
+            channel.position(checkpoint.outputOffset);
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE);
+
+            Map<Long, BulkRecord> pending = new HashMap<>();
+            long nextSeq = checkpoint.records;
+            long inputOffset = checkpoint.inputOffset;
+            long outputOffset = checkpoint.outputOffset;
+            int sinceCheckpoint = 0;
+            while (true) {
+                BulkRecord record = writeQueue.take();
+                if (record == BulkRecord.END) {
+                    break;
+                }
+                pending.put(record.seq, record);
+                BulkRecord next;
+                while ((next = pending.remove(nextSeq)) != null) {
+                    byte[] bytes = toJsonLine(next);
+                    out.write(bytes);
+                    outputOffset += bytes.length;
+                    inputOffset = next.inputEnd;
+                    nextSeq++;
+                    inFlight.release();
+                    writtenCount.incrementAndGet();
+                    if (++sinceCheckpoint >= checkpointEvery) {
+                        saveCheckpoint(out, channel, new Checkpoint(nextSeq, inputOffset, outputOffset));
+                        sinceCheckpoint = 0;
+                    }
+                }
+            }
+            if (!pending.isEmpty()) {
+                throw new IllegalStateException(pending.size() + " records stuck behind missing seq " + nextSeq);
+            }
+            saveCheckpoint(out, channel, new Checkpoint(nextSeq, inputOffset, outputOffset));
+        }
+    }
+
+    private void saveCheckpoint(OutputStream out, FileChannel channel, Checkpoint checkpoint) throws IOException {
+        // 输出先落盘，再记录进度
+        out.flush();
+        channel.force(false);
+        checkpoint.save(checkpointFile);
+    }
+
+    private byte[] toJsonLine(BulkRecord record) {
+        JSONObject line = new JSONObject(true);
+        line.put("seq", record.seq);
+        if (record.error != null) {
+            errorCount.incrementAndGet();
+            line.put("error", record.error);
+            line.put("input", record.line);
+        } else {
+            line.putAll(record.result.toJson());
+        }
+        return (JSON.toJSONString(line) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String extractText(String line) {
+        String text = csv ? csvColumn(line, column) : JSON.parseObject(line).getString(field);
+        if (text == null) {
+            throw new IllegalArgumentException("no text in " + (csv ? "column " + column : "field " + field));
+        }
+        return text;
+    }
+
+    /**
+     * 取 CSV 一行中的第 column 列，支持双引号转义，不支持字段内换行
+     */
+    static String csvColumn(String line, int column) {
+        StringBuilder value = new StringBuilder();
+        int current = 0;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                if (current == column) {
+                    return value.toString();
+                }
+                current++;
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        return current == column ? value.toString() : null;
+    }
+
+    private void report() {
+        long now = System.nanoTime();
+        long written = writtenCount.get();
+        double rate = (written - lastReportWritten) * 1e9 / Math.max(now - lastReportNanos, 1);
+        lastReportNanos = now;
+        lastReportWritten = written;
+        log.info("bulk progress: read={} written={} errors={} batches={} overload retries={} rate={}/s queues[read={}, encoded={}, decode={}, write={}] inFlight={}",
+                readCount.get(), written, errorCount.get(), batchCount.get(), overloadRetries.get(), String.format("%.1f", rate),
+                readQueue.size(), encodedQueue.size(), decodeQueue.size(), writeQueue.size(),
+                readCount.get() - written);
+    }
+
+    private void startStage(String name, Stage stage) {
+        Thread thread = new Thread(() -> {
+            try {
+                stage.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                if (failure.compareAndSet(null, e)) {
+                    log.error("stage {} failed, stopping pipeline", name, e);
+                    for (Thread t : threads) {
+                        t.interrupt();
+                    }
+                }
+            }
+        }, name);
+        threads.add(thread);
+        thread.start();
+    }
+
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    /**
+     * 一次 session.run 的结果，records 与 logits 的第一维一一对应
+     */
+    private static class Batch {
+        static final Batch END = new Batch(null, null, null);
+
+        final List<BulkRecord> records;
+        final Buffer logits;
+        final long[] shape;
+
+        Batch(List<BulkRecord> records, Buffer logits, long[] shape) {
+            this.records = records;
+            this.logits = logits;
+            this.shape = shape;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.example.bulk;
+
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.ner.NerResult;
+import org.example.onnx.tokenizer.BertTokenizer;
+
+/**
+ * 在各个阶段之间流转的一条输入记录
+ */
+class BulkRecord {
+
+    /**
+     * 流结束标记，按引用比较
+     */
+    static final BulkRecord END = new BulkRecord(-1, -1, null);
+
+    final long seq;
+    final long inputEnd;
+    final String line;
+
+    NerQuery query;
+    BertTokenizer.UbertFeature feature;
+    NerResult result;
+    String error;
+
+    BulkRecord(long seq, long inputEnd, String line) {
+        this.seq = seq;
+        this.inputEnd = inputEnd;
+        this.line = line;
+    }
+}
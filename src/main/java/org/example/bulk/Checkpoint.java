@@ -0,0 +1,59 @@
+package org.example.bulk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * 批处理进度：已写出的记录数、对应的输入/输出文件字节偏移
+ * <p>
+ * 先写临时文件再原子 rename，进程在任何时刻崩溃都不会留下半个 checkpoint
+ */
+class Checkpoint {
+
+    static final Checkpoint EMPTY = new Checkpoint(0, 0, 0);
+
+    final long records;
+    final long inputOffset;
+    final long outputOffset;
+
+    Checkpoint(long records, long inputOffset, long outputOffset) {
+        this.records = records;
+        this.inputOffset = inputOffset;
+        this.outputOffset = outputOffset;
+    }
+
+    static Checkpoint load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return EMPTY;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        }
+        return new Checkpoint(Long.parseLong(props.getProperty("records", "0")),
+                Long.parseLong(props.getProperty("inputOffset", "0")),
+                Long.parseLong(props.getProperty("outputOffset", "0")));
+    }
+
+    void save(Path file) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("records", String.valueOf(records));
+        props.setProperty("inputOffset", String.valueOf(inputOffset));
+        props.setProperty("outputOffset", String.valueOf(outputOffset));
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            props.store(out, null);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public String toString() {
+        return "records=" + records + ", inputOffset=" + inputOffset + ", outputOffset=" + outputOffset;
+    }
+}
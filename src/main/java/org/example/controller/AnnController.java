@@ -0,0 +1,103 @@
+package org.example.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.ann.EmbeddingIndex;
+import org.example.onnx.ann.HnswIndex;
+import org.example.onnx.runtime.OverloadedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RoBERTa 句向量的本地近邻检索（ann.enabled=true 时可用）
+ * <p>
+ * GET  /ann/search?query=...&amp;k=10[&amp;ef=64]  向量化 + HNSW 查询，返回 [{"id":..., "score":余弦相似度}]
+ * POST /ann/add  [{"id": 1, "text": "..."}]     向量化后插入
+ * GET  /ann/stats
+ */
+@Slf4j
+@RestController
+@RequestMapping("/ann")
+public class AnnController {
+
+    private final EmbeddingIndex embeddingIndex;
+
+    public AnnController(EmbeddingIndex embeddingIndex) {
+        this.embeddingIndex = embeddingIndex;
+    }
+
+    @RequestMapping(value = "/search")
+    public ResponseEntity<Object> search(@RequestParam("query") String query,
+                                         @RequestParam(value = "k", defaultValue = "10") int k,
+                                         @RequestParam(value = "ef", defaultValue = "0") int ef) {
+        if (!embeddingIndex.enabled()) {
+            return new ResponseEntity<>("ann index is disabled", HttpStatus.NOT_FOUND);
+        }
+        try {
+            List<Map<String, Object>> out = new ArrayList<>();
+            for (HnswIndex.Neighbor neighbor : embeddingIndex.search(query, k, ef)) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("id", neighbor.label);
+                item.put("score", neighbor.score);
+                out.add(item);
+            }
+            return new ResponseEntity<>(out, HttpStatus.OK);
+        } catch (OverloadedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header("Retry-After", "1").body(e.getMessage());
+        } catch (Exception e) {
+            log.error("ann search failed", e);
+            return new ResponseEntity<>(String.valueOf(e), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @RequestMapping(value = "/add", method = RequestMethod.POST)
+    public ResponseEntity<Object> add(@RequestBody List<Map<String, Object>> items) {
+        if (!embeddingIndex.enabled()) {
+            return new ResponseEntity<>("ann index is disabled", HttpStatus.NOT_FOUND);
+        }
+        List<Long> ids = new ArrayList<>(items.size());
+        List<String> texts = new ArrayList<>(items.size());
+        for (Map<String, Object> item : items) {
+            if (!(item.get("id") instanceof Number) || !(item.get("text") instanceof String)) {
+                return new ResponseEntity<>("each item needs a numeric id and a text", HttpStatus.BAD_REQUEST);
+            }
+            ids.add(((Number) item.get("id")).longValue());
+            texts.add((String) item.get("text"));
+        }
+        try {
+            embeddingIndex.add(ids, texts);
+            return new ResponseEntity<>(stats(), HttpStatus.OK);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.INSUFFICIENT_STORAGE);
+        } catch (OverloadedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header("Retry-After", "1").body(e.getMessage());
+        } catch (Exception e) {
+            log.error("ann add failed", e);
+            return new ResponseEntity<>(String.valueOf(e), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @RequestMapping(value = "/stats")
+    public Object stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", embeddingIndex.enabled());
+        if (embeddingIndex.enabled()) {
+            HnswIndex index = embeddingIndex.index();
+            stats.put("size", index.size());
+            stats.put("capacity", index.capacity());
+            stats.put("dimension", index.dimension());
+            stats.put("encoding", index.encoding());
+            stats.put("efSearch", index.efSearch());
+        }
+        return stats;
+    }
+}
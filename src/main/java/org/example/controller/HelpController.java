@@ -3,10 +3,15 @@ package org.example.controller;
 import com.alibaba.fastjson.JSONObject;
 import lombok.extern.slf4j.Slf4j;
 import org.example.onnx.RunUbertaOnOnnx;
+import org.example.onnx.runtime.OverloadedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -20,11 +25,26 @@ import java.util.List;
 @RequestMapping("/ner")
 public class HelpController {
 
+    /**
+     * types 可选，逗号分隔，只识别这些实体类型（须在 ner.planner.allowed-types 里）；不传时识别全部默认类型
+     */
     @RequestMapping(value = "/predict")
-    public Object proSeg(@RequestParam(value = "query", defaultValue = "") String query) {
+    public Object proSeg(@RequestParam(value = "query", defaultValue = "") String query,
+                         @RequestParam(value = "types", defaultValue = "") String types) {
         try {
-            List<JSONObject> predict = RunUbertaOnOnnx.predict(query);
+            List<String> entityTypes = new ArrayList<>();
+            for (String type : types.split(",")) {
+                if (!type.trim().isEmpty()) {
+                    entityTypes.add(type.trim());
+                }
+            }
+            List<JSONObject> predict = RunUbertaOnOnnx.predict(Collections.singletonList(query), entityTypes);
             return predict;
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (OverloadedException e) {
+            // 超过自适应并发上限，快速失败，不占用 tomcat 线程排队
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header("Retry-After", "1").body(e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -0,0 +1,78 @@
+package org.example.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.runtime.JfrRecorder;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 按需 JFR 录制（见 {@link JfrRecorder}），只给运维用，只在 admin 端口（admin.port，默认 127.0.0.1:9990）上应答，见 {@link org.example.admin.AdminAccessFilter}
+ * <p>
+ * POST /admin/jfr/start?seconds=60[&amp;settings=profile]  开始录制，到时自动停止
+ * POST /admin/jfr/stop                                 停止并下载 .jfr 文件（已自动停止的直接下载）
+ * GET  /admin/jfr/status
+ */
+@Slf4j
+@RestController
+@RequestMapping("/admin/jfr")
+public class JfrController {
+
+    private final JfrRecorder recorder;
+
+    public JfrController(JfrRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @RequestMapping(value = "/start", method = RequestMethod.POST)
+    public ResponseEntity<Object> start(@RequestParam(value = "seconds", defaultValue = "0") long seconds,
+                                        @RequestParam(value = "settings", defaultValue = "") String settings) {
+        if (!recorder.available()) {
+            return new ResponseEntity<>("jdk flight recorder is not available on this jvm", HttpStatus.NOT_FOUND);
+        }
+        try {
+            return new ResponseEntity<>(recorder.start(seconds, settings), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (Exception e) {
+            log.error("starting jfr recording failed", e);
+            return new ResponseEntity<>(String.valueOf(e), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @RequestMapping(value = "/stop", method = RequestMethod.POST)
+    public ResponseEntity<Object> stop() {
+        if (!recorder.available()) {
+            return new ResponseEntity<>("jdk flight recorder is not available on this jvm", HttpStatus.NOT_FOUND);
+        }
+        try {
+            Path file = recorder.stop();
+            if (file == null || !Files.exists(file)) {
+                return new ResponseEntity<>("no recording", HttpStatus.NOT_FOUND);
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                    .body(new FileSystemResource(file.toFile()));
+        } catch (Exception e) {
+            log.error("stopping jfr recording failed", e);
+            return new ResponseEntity<>(String.valueOf(e), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @RequestMapping(value = "/status")
+    public Object status() {
+        return recorder.status();
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.mleap.MleapBatcher;
+import org.example.mleap.MleapBundle;
+import org.example.mleap.MleapProperties;
+import org.example.mleap.MleapRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * MLeap bundle 在线推理
+ * <p>
+ * POST /mleap/{bundle}/transform       单行，和并发到达的其他单行请求合并成一次 transform
+ * POST /mleap/{bundle}/transform-batch 多行，直接一次 transform
+ */
+@Slf4j
+@RestController
+@RequestMapping("/mleap")
+public class MleapController {
+
+    private final MleapRegistry registry;
+    private final MleapProperties properties;
+
+    public MleapController(MleapRegistry registry, MleapProperties properties) {
+        this.registry = registry;
+        this.properties = properties;
+    }
+
+    @RequestMapping(value = "/bundles")
+    public Object bundles() {
+        List<Map<String, Object>> schemas = new ArrayList<>();
+        for (String name : registry.names()) {
+            schemas.add(registry.get(name).describe());
+        }
+        return schemas;
+    }
+
+    @RequestMapping(value = "/{bundle}/transform", method = RequestMethod.POST)
+    public ResponseEntity<Object> transform(@PathVariable("bundle") String bundle, @RequestBody Map<String, Object> row) {
+        MleapBatcher batcher = registry.batcher(bundle);
+        if (batcher == null) {
+            return new ResponseEntity<>("unknown bundle: " + bundle, HttpStatus.NOT_FOUND);
+        }
+        try {
+            Object result = batcher.submit(row).get(properties.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        } catch (TimeoutException e) {
+            return new ResponseEntity<>("timeout", HttpStatus.GATEWAY_TIMEOUT);
+        } catch (ExecutionException e) {
+            return error(bundle, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ResponseEntity<>("interrupted", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    @RequestMapping(value = "/{bundle}/transform-batch", method = RequestMethod.POST)
+    public ResponseEntity<Object> transformBatch(@PathVariable("bundle") String bundle, @RequestBody List<Map<String, Object>> rows) {
+        MleapBundle mleapBundle = registry.get(bundle);
+        if (mleapBundle == null) {
+            return new ResponseEntity<>("unknown bundle: " + bundle, HttpStatus.NOT_FOUND);
+        }
+        try {
+            return new ResponseEntity<>(mleapBundle.transform(rows), HttpStatus.OK);
+        } catch (RuntimeException e) {
+            return error(bundle, e);
+        }
+    }
+
+    private ResponseEntity<Object> error(String bundle, Throwable e) {
+        if (e instanceof RejectedExecutionException) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.TOO_MANY_REQUESTS);
+        }
+        if (e instanceof IllegalArgumentException) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        log.error("mleap transform failed on {}", bundle, e);
+        return new ResponseEntity<>(String.valueOf(e), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+}
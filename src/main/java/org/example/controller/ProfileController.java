@@ -0,0 +1,144 @@
+package org.example.controller;
+
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.profile.OrtProfiler;
+import org.example.onnx.profile.ProfileProperties;
+import org.example.onnx.profile.ProfileReport;
+import org.example.onnx.profile.ProfilingBusyException;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 算子级 profiling（见 {@link OrtProfiler}），只给运维用，只在 admin 端口（admin.port，默认 127.0.0.1:9990）上应答，见 {@link org.example.admin.AdminAccessFilter}
+ * <p>
+ * POST /admin/profile/{model}?runs=20&amp;batch-size=8[&amp;format=text]  body 可选：["代表性文本", ...]，采集并返回热点表
+ * GET  /admin/profile/reports[?model=ubert]                           已保存的报告摘要，新的在前
+ * GET  /admin/profile/reports/{id}[?format=text&amp;limit=30]            一份报告
+ * GET  /admin/profile/reports/{id}/trace                              原始 Chrome trace
+ * GET  /admin/profile/compare?base={id}&amp;target={id}[&amp;format=text]   按算子类型对比两份报告（一般是新旧模型版本）
+ */
+@Slf4j
+@RestController
+@RequestMapping("/admin/profile")
+public class ProfileController {
+
+    private final OrtProfiler profiler;
+    private final ProfileProperties properties;
+
+    public ProfileController(OrtProfiler profiler, ProfileProperties properties) {
+        this.profiler = profiler;
+        this.properties = properties;
+    }
+
+    @RequestMapping(value = "/{model}", method = RequestMethod.POST)
+    public ResponseEntity<Object> capture(@PathVariable("model") String model,
+                                          @RequestParam(value = "runs", defaultValue = "0") int runs,
+                                          @RequestParam(value = "batch-size", defaultValue = "0") int batchSize,
+                                          @RequestParam(value = "format", defaultValue = "json") String format,
+                                          @RequestParam(value = "limit", defaultValue = "30") int limit,
+                                          @RequestBody(required = false) List<String> texts) {
+        try {
+            ProfileReport report = profiler.capture(model, runs > 0 ? runs : properties.getDefaultRuns(),
+                    batchSize > 0 ? batchSize : properties.getDefaultBatchSize(), texts);
+            return render(report, format, limit);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (ProfilingBusyException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (Exception e) {
+            log.error("profiling {} failed", model, e);
+            return new ResponseEntity<>(String.valueOf(e), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @RequestMapping(value = "/reports")
+    public ResponseEntity<Object> reports(@RequestParam(value = "model", defaultValue = "") String model) {
+        try {
+            List<JSONObject> out = new ArrayList<>();
+            for (ProfileReport report : profiler.reports(model)) {
+                out.add(report.summary());
+            }
+            return new ResponseEntity<>(out, HttpStatus.OK);
+        } catch (Exception e) {
+            log.error("listing profile reports failed", e);
+            return new ResponseEntity<>(String.valueOf(e), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @RequestMapping(value = "/reports/{id}")
+    public ResponseEntity<Object> report(@PathVariable("id") String id,
+                                         @RequestParam(value = "format", defaultValue = "json") String format,
+                                         @RequestParam(value = "limit", defaultValue = "30") int limit) {
+        try {
+            ProfileReport report = profiler.report(id);
+            if (report == null) {
+                return new ResponseEntity<>("no profile report " + id, HttpStatus.NOT_FOUND);
+            }
+            return render(report, format, limit);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            log.error("reading profile report {} failed", id, e);
+            return new ResponseEntity<>(String.valueOf(e), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @RequestMapping(value = "/reports/{id}/trace")
+    public ResponseEntity<Object> trace(@PathVariable("id") String id) {
+        try {
+            Path trace = profiler.trace(id);
+            if (trace == null) {
+                return new ResponseEntity<>("no profile trace " + id, HttpStatus.NOT_FOUND);
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + trace.getFileName() + "\"")
+                    .body(new FileSystemResource(trace.toFile()));
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @RequestMapping(value = "/compare")
+    public ResponseEntity<Object> compare(@RequestParam("base") String base,
+                                          @RequestParam("target") String target,
+                                          @RequestParam(value = "format", defaultValue = "json") String format) {
+        try {
+            ProfileReport before = profiler.report(base);
+            ProfileReport after = profiler.report(target);
+            if (before == null || after == null) {
+                return new ResponseEntity<>("no profile report " + (before == null ? base : target), HttpStatus.NOT_FOUND);
+            }
+            if ("text".equals(format)) {
+                return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(ProfileReport.compareTable(before, after));
+            }
+            return new ResponseEntity<>(ProfileReport.compare(before, after), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            log.error("comparing profile reports {} and {} failed", base, target, e);
+            return new ResponseEntity<>(String.valueOf(e), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private static ResponseEntity<Object> render(ProfileReport report, String format, int limit) {
+        if ("text".equals(format)) {
+            return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(report.table(limit));
+        }
+        return new ResponseEntity<>(report.toJson(), HttpStatus.OK);
+    }
+}
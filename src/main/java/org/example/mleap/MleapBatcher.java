@@ -0,0 +1,122 @@
+package org.example.mleap;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把并发到达的单行请求合并成一次多行 Transformer.transform
+ * <p>
+ * dispatcher 线程拿到第一行后最多再等 linger 时间凑批，凑满 maxBatchSize 立即执行；
+ * 整批失败时逐行重试，避免一行坏数据拖累同批的其他请求
+ */
+@Slf4j
+public class MleapBatcher implements Closeable {
+
+    private final MleapBundle bundle;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<Pending> queue;
+    private final List<Thread> dispatchers = new ArrayList<>();
+
+    public MleapBatcher(MleapBundle bundle, int maxBatchSize, long lingerMicros, int queueSize, int threads) {
+        this.bundle = bundle;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(this::dispatch, "mleap-" + bundle.name() + "-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            dispatchers.add(thread);
+        }
+    }
+
+    public CompletableFuture<Map<String, Object>> submit(Map<String, Object> row) {
+        Pending pending = new Pending(row);
+        if (!queue.offer(pending)) {
+            pending.future.completeExceptionally(new RejectedExecutionException("mleap queue full: " + bundle.name()));
+        }
+        return pending.future;
+    }
+
+    public int queueSize() {
+        return queue.size();
+    }
+
+    private void dispatch() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    long wait = deadline - System.nanoTime();
+                    Pending next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                run(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Pending pending : batch) {
+            pending.future.completeExceptionally(new RejectedExecutionException("mleap batcher closed: " + bundle.name()));
+        }
+    }
+
+    private void run(List<Pending> batch) {
+        List<Map<String, Object>> rows = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            rows.add(pending.row);
+        }
+        try {
+            List<Map<String, Object>> results = bundle.transform(rows);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results.get(i));
+            }
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            log.debug("mleap batch of {} failed on {}, retrying row by row", batch.size(), bundle.name(), e);
+            for (Pending pending : batch) {
+                run(Collections.singletonList(pending));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Thread thread : dispatchers) {
+            thread.interrupt();
+        }
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new RejectedExecutionException("mleap batcher closed: " + bundle.name()));
+        }
+    }
+
+    private static class Pending {
+        final Map<String, Object> row;
+        final CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+
+        Pending(Map<String, Object> row) {
+            this.row = row;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.example.mleap;
+
+import ml.combust.mleap.core.types.DataType;
+import ml.combust.mleap.core.types.StructField;
+import ml.combust.mleap.core.types.StructType;
+import ml.combust.mleap.core.types.TensorType;
+import ml.combust.mleap.runtime.MleapContext;
+import ml.combust.mleap.runtime.frame.DefaultLeapFrame;
+import ml.combust.mleap.runtime.frame.Row;
+import ml.combust.mleap.runtime.frame.Transformer;
+import ml.combust.mleap.runtime.javadsl.BundleBuilder;
+import ml.combust.mleap.runtime.javadsl.ContextBuilder;
+import ml.combust.mleap.runtime.javadsl.LeapFrameBuilder;
+import ml.combust.mleap.tensor.Tensor$;
+import scala.collection.Iterator;
+import scala.collection.JavaConverters;
+import scala.reflect.ClassTag$;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 一个已加载的 MLeap bundle
+ * <p>
+ * transformer 只加载一次；输入 schema、字段类型、LeapFrameBuilder 以及输出列在结果 frame 中的下标都缓存下来，
+ * 每次 transform 只需要组装 Row。transform 本身无状态，可以被多个线程同时调用。
+ * 输入支持标量字段（string/数值/boolean）和一维 double/float tensor（JSON 数组或 double[]/float[]），
+ * 输出的 tensor 字段通过 Row.getTensor 直接转成 Java 数组。
+ */
+public class MleapBundle {
+
+    private static final MleapContext CONTEXT = new ContextBuilder().createMleapContext();
+
+    private final String name;
+    private final Transformer transformer;
+    private final LeapFrameBuilder builder = new LeapFrameBuilder();
+    private final StructType inputSchema;
+    private final String[] inputNames;
+    private final String[] inputTypes;
+    private final boolean[] inputTensor;
+    private final String[] outputNames;
+    private final boolean[] outputTensor;
+    // 输出列在 transform 结果 frame 中的下标，第一次 transform 后确定
+    private volatile int[] outputIndexes;
+
+    public static MleapBundle load(String name, File file) {
+        Transformer transformer = new BundleBuilder().load(file, CONTEXT).root();
+        return new MleapBundle(name, transformer);
+    }
+
+    public MleapBundle(String name, Transformer transformer) {
+        this.name = name;
+        this.transformer = transformer;
+        this.inputSchema = transformer.inputSchema();
+
+        List<StructField> inputs = fields(inputSchema);
+        this.inputNames = new String[inputs.size()];
+        this.inputTypes = new String[inputs.size()];
+        this.inputTensor = new boolean[inputs.size()];
+        Set<String> inputSet = new HashSet<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            inputNames[i] = inputs.get(i).name();
+            inputTypes[i] = basicType(inputs.get(i).dataType());
+            inputTensor[i] = inputs.get(i).dataType() instanceof TensorType;
+            inputSet.add(inputNames[i]);
+        }
+
+        List<StructField> outputs = new ArrayList<>();
+        for (StructField field : fields(transformer.outputSchema())) {
+            if (!inputSet.contains(field.name())) {
+                outputs.add(field);
+            }
+        }
+        this.outputNames = new String[outputs.size()];
+        this.outputTensor = new boolean[outputs.size()];
+        for (int i = 0; i < outputs.size(); i++) {
+            outputNames[i] = outputs.get(i).name();
+            outputTensor[i] = outputs.get(i).dataType() instanceof TensorType;
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public List<Map<String, Object>> transform(List<Map<String, Object>> rows) {
+        List<Row> leapRows = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            leapRows.add(toRow(row));
+        }
+        DefaultLeapFrame result = transformer.transform(builder.createFrame(inputSchema, leapRows)).get();
+        int[] indexes = outputIndexes(result.schema());
+
+        List<Map<String, Object>> out = new ArrayList<>(rows.size());
+        Iterator<Row> iterator = result.dataset().iterator();
+        while (iterator.hasNext()) {
+            Row row = iterator.next();
+            Map<String, Object> values = new LinkedHashMap<>(outputNames.length * 2);
+            for (int i = 0; i < outputNames.length; i++) {
+                values.put(outputNames[i], outputTensor[i] ? row.getTensor(indexes[i]).toArray() : row.get(indexes[i]));
+            }
+            out.add(values);
+        }
+        return out;
+    }
+
+    /**
+     * 输入/输出字段及类型，供调用方查看
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> inputs = new LinkedHashMap<>();
+        for (int i = 0; i < inputNames.length; i++) {
+            inputs.put(inputNames[i], inputTensor[i] ? "tensor<" + inputTypes[i] + ">" : inputTypes[i]);
+        }
+        Map<String, Object> outputs = new LinkedHashMap<>();
+        for (int i = 0; i < outputNames.length; i++) {
+            outputs.put(outputNames[i], outputTensor[i] ? "tensor" : "scalar");
+        }
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("name", name);
+        schema.put("inputs", inputs);
+        schema.put("outputs", outputs);
+        return schema;
+    }
+
+    private Row toRow(Map<String, Object> row) {
+        List<Object> values = new ArrayList<>(inputNames.length);
+        for (int i = 0; i < inputNames.length; i++) {
+            if (!row.containsKey(inputNames[i])) {
+                throw new IllegalArgumentException("missing field " + inputNames[i] + " for bundle " + name);
+            }
+            Object value = row.get(inputNames[i]);
+            values.add(inputTensor[i] ? convertTensor(value, inputTypes[i]) : convert(value, inputTypes[i]));
+        }
+        return builder.createRowFromIterable(values);
+    }
+
+    private int[] outputIndexes(StructType schema) {
+        int[] indexes = outputIndexes;
+        if (indexes == null) {
+            indexes = new int[outputNames.length];
+            for (int i = 0; i < outputNames.length; i++) {
+                indexes[i] = (Integer) schema.indexOf(outputNames[i]).get();
+            }
+            outputIndexes = indexes;
+        }
+        return indexes;
+    }
+
+    static Object convert(Object value, String type) {
+        if (value == null) {
+            return null;
+        }
+        switch (type) {
+            case "string":
+                return String.valueOf(value);
+            case "boolean":
+                return value instanceof Boolean ? value : Boolean.valueOf(value.toString());
+            case "double":
+                return number(value).doubleValue();
+            case "float":
+                return number(value).floatValue();
+            case "long":
+                return number(value).longValue();
+            case "int":
+                return number(value).intValue();
+            case "short":
+                return number(value).shortValue();
+            case "byte":
+                return number(value).byteValue();
+            default:
+                return value;
+        }
+    }
+
+    static Object convertTensor(Object value, String type) {
+        if (value == null) {
+            return null;
+        }
+        if ("float".equals(type)) {
+            float[] values;
+            if (value instanceof float[]) {
+                values = (float[]) value;
+            } else {
+                List<?> list = (List<?>) value;
+                values = new float[list.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = number(list.get(i)).floatValue();
+                }
+            }
+            return Tensor$.MODULE$.denseVector(values, ClassTag$.MODULE$.Float());
+        }
+        if ("double".equals(type)) {
+            double[] values;
+            if (value instanceof double[]) {
+                values = (double[]) value;
+            } else {
+                List<?> list = (List<?>) value;
+                values = new double[list.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = number(list.get(i)).doubleValue();
+                }
+            }
+            return Tensor$.MODULE$.denseVector(values, ClassTag$.MODULE$.Double());
+        }
+        return value;
+    }
+
+    private static Number number(Object value) {
+        return value instanceof Number ? (Number) value : new BigDecimal(value.toString());
+    }
+
+    private static String basicType(DataType dataType) {
+        return String.valueOf(dataType.base()).toLowerCase(Locale.ROOT);
+    }
+
+    private static List<StructField> fields(StructType schema) {
+        return JavaConverters.seqAsJavaListConverter(schema.fields()).asJava();
+    }
+}
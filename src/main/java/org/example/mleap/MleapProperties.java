@@ -0,0 +1,70 @@
+package org.example.mleap;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * mleap.* 配置：要加载的 bundle（名称 → zip 路径）以及单行请求合批的参数
+ */
+@Component
+@ConfigurationProperties(prefix = "mleap")
+public class MleapProperties {
+
+    private Map<String, String> bundles = new LinkedHashMap<>();
+    private int maxBatchSize = 64;
+    private long lingerMicros = 2000;
+    private int queueSize = 4096;
+    private int dispatcherThreads = 2;
+    private long timeoutMillis = 1000;
+
+    public Map<String, String> getBundles() {
+        return bundles;
+    }
+
+    public void setBundles(Map<String, String> bundles) {
+        this.bundles = bundles;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getLingerMicros() {
+        return lingerMicros;
+    }
+
+    public void setLingerMicros(long lingerMicros) {
+        this.lingerMicros = lingerMicros;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public int getDispatcherThreads() {
+        return dispatcherThreads;
+    }
+
+    public void setDispatcherThreads(int dispatcherThreads) {
+        this.dispatcherThreads = dispatcherThreads;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.mleap;
+
+import cn.hutool.core.io.FileUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 启动时按 mleap.bundles 配置把 bundle 各加载一次，每个 bundle 配一个合批器
+ */
+@Slf4j
+@Component
+public class MleapRegistry {
+
+    private final MleapProperties properties;
+    private final Map<String, MleapBundle> bundles = new ConcurrentHashMap<>();
+    private final Map<String, MleapBatcher> batchers = new ConcurrentHashMap<>();
+
+    public MleapRegistry(MleapProperties properties) {
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (Map.Entry<String, String> entry : properties.getBundles().entrySet()) {
+            File file = FileUtil.file(entry.getValue());
+            if (!file.exists()) {
+                log.warn("mleap bundle {} not found at {}, skipped", entry.getKey(), file);
+                continue;
+            }
+            try {
+                register(MleapBundle.load(entry.getKey(), file));
+                log.info("mleap bundle {} loaded from {}", entry.getKey(), file);
+            } catch (RuntimeException e) {
+                log.error("failed to load mleap bundle {} from {}", entry.getKey(), file, e);
+            }
+        }
+    }
+
+    public void register(MleapBundle bundle) {
+        bundles.put(bundle.name(), bundle);
+        MleapBatcher old = batchers.put(bundle.name(), new MleapBatcher(bundle, properties.getMaxBatchSize(),
+                properties.getLingerMicros(), properties.getQueueSize(), properties.getDispatcherThreads()));
+        if (old != null) {
+            old.close();
+        }
+    }
+
+    public MleapBundle get(String name) {
+        return bundles.get(name);
+    }
+
+    public MleapBatcher batcher(String name) {
+        return batchers.get(name);
+    }
+
+    public Set<String> names() {
+        return bundles.keySet();
+    }
+
+    @PreDestroy
+    public void close() {
+        for (MleapBatcher batcher : batchers.values()) {
+            batcher.close();
+        }
+    }
+}
@@ -1,22 +1,12 @@
 package org.example.mleap;
 
 import cn.hutool.core.io.FileUtil;
-import cn.hutool.json.JSONUtil;
-import ml.combust.mleap.core.types.StructField;
-import ml.combust.mleap.core.types.StructType;
-import ml.combust.mleap.runtime.MleapContext;
-import ml.combust.mleap.runtime.frame.DefaultLeapFrame;
-import ml.combust.mleap.runtime.frame.Row;
-import ml.combust.mleap.runtime.frame.Transformer;
-import ml.combust.mleap.runtime.javadsl.BundleBuilder;
-import ml.combust.mleap.runtime.javadsl.ContextBuilder;
-import ml.combust.mleap.runtime.javadsl.LeapFrameBuilder;
-import ml.combust.mleap.tensor.Tensor;
-import scala.collection.Iterator;
-import scala.collection.Seq;
+import com.alibaba.fastjson.JSON;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 开源AI模型序列化总结: https://www.jianshu.com/p/777d07037d00
@@ -40,45 +30,28 @@ import java.util.List;
 
 /**
  * 第一步：执行 mlean-start.py 生成 mleap-scikit-test-pipeline.zip ，源码：https://github.com/combust/mleap 之【Create and Export a Scikit-Learn Pipeline】
- * 第二步：执行当前类，运行结果：
+ * 第二步：执行当前类（参数为 zip 路径），每行输出 {输出字段: 值}，其中 one-hot 字段依次为：
  * [1,0,0]
  * [0,1,0]
  * [0,0,1]
+ * 在线服务见 MleapRegistry / MleapController，bundle 在 application.yml 的 mleap.bundles 中配置
  */
 public class MleapStart {
 
-    private static Transformer kMeansModel;
-    private static MleapContext mleapContext;
-    private static BundleBuilder bundleBuilder;
-
-    static {
-        mleapContext = new ContextBuilder().createMleapContext();
-        bundleBuilder = new BundleBuilder();
-//        Resource res = ResourceLoader.getResource("classpath:aihello.com/aimodels/kmeans-model.zip");
-        kMeansModel = bundleBuilder.load(FileUtil.file("G:\\qzd\\JavaProject\\QZD_GROUP\\bird-query\\mleap-py\\mleap-scikit-test-pipeline.zip"), mleapContext).root();
-    }
-
-
     public static void main(String[] args) {
+        String bundlePath = args.length > 0 ? args[0] : "G:\\qzd\\JavaProject\\QZD_GROUP\\bird-query\\mleap-py\\mleap-scikit-test-pipeline.zip";
+        MleapBundle kMeansModel = MleapBundle.load("mleap-scikit-test-pipeline", FileUtil.file(bundlePath));
+        System.out.println(JSON.toJSONString(kMeansModel.describe()));
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (String value : new String[]{"a", "b", "c"}) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("col_a", value);
+            rows.add(row);
+        }
 
-        LeapFrameBuilder builder = new LeapFrameBuilder();
-        List<StructField> fields = new ArrayList<StructField>();
-        fields.add(builder.createField("col_a", builder.createString()));
-        StructType schema = builder.createSchema(fields);
-
-        List<Row> rows = new ArrayList<Row>();
-        rows.add(builder.createRow("a"));
-        rows.add(builder.createRow("b"));
-        rows.add(builder.createRow("c"));
-
-        DefaultLeapFrame frame = builder.createFrame(schema, rows);
-        DefaultLeapFrame returnFrame = kMeansModel.transform(frame).get();
-        Seq<Row> dataset = returnFrame.dataset();
-        Iterator<Row> iterator = dataset.iterator();
-        while (iterator.hasNext()) {
-            Row next = iterator.next();
-            Tensor<Object> tensor = next.getTensor(2);
-            System.out.println(JSONUtil.toJsonStr(tensor.toArray()));
+        for (Map<String, Object> result : kMeansModel.transform(rows)) {
+            System.out.println(JSON.toJSONString(result));
         }
 
     }
@@ -3,10 +3,14 @@ package org.example.onnx;
 
 import ai.onnxruntime.*;
 import cn.hutool.json.JSONUtil;
+import org.example.onnx.cascade.CascadeClassifier;
+import org.example.onnx.postprocess.Logits;
+import org.example.onnx.runtime.ModelBinding;
+import org.example.onnx.runtime.TensorScope;
 import org.example.onnx.tokenizer.BertTokenizer;
 
+import java.nio.FloatBuffer;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -31,97 +35,68 @@ import java.util.Map;
  */
 public class RunBertOnOnnx {
 
-    static Map<String, String> categoryMap = new HashMap<>();
-
-    static {
-        categoryMap.put("0", "finance");
-        categoryMap.put("1", "realty");
-        categoryMap.put("2", "stocks");
-        categoryMap.put("3", "education");
-        categoryMap.put("4", "science");
-        categoryMap.put("5", "society");
-        categoryMap.put("6", "politics");
-        categoryMap.put("7", "sports");
-        categoryMap.put("8", "game");
-        categoryMap.put("9", "entertainment");
-    }
+    // 下标即模型输出的类别 id
+    public static final String[] CATEGORIES = {"finance", "realty", "stocks", "education", "science",
+            "society", "politics", "sports", "game", "entertainment"};
 
     public static void main(String[] args) throws OrtException {
         //Bert-Chinese-Text-Classification-Pytorch项目的 vocab.txt
         String vocabPath = "G:\\qzd\\JavaProject\\QZD_GROUP\\bird-query\\Bert-Chinese-Text-Classification-Pytorch\\bert_pretrain\\vocab.txt";
         //bert_to_onnx.py执行后的模型文件
         String modelPath = "G:\\qzd\\JavaProject\\QZD_GROUP\\bird-query\\Bert-Chinese-Text-Classification-Pytorch\\THUCNews\\saved_dict\\model.onnx";
+        //蒸馏 / 浅层的小模型，配置了就走级联：小模型 margin 低于 bert.cascade.margin 的行再交给上面的完整模型
+        String smallModelPath = System.getProperty("bert.small.model");
 
         String query ="备考2012高考作文必读美文50篇(一)";
 
         BertTokenizer bertTokenizer = new BertTokenizer(vocabPath);
-        Map<String, OnnxTensor> inputMap = bertTokenizer.tokenizeOnnxTensor(Arrays.asList(query));
 
         OrtEnvironment env = OrtEnvironment.getEnvironment();
 
+        if (smallModelPath != null) {
+            double margin = Double.parseDouble(System.getProperty("bert.cascade.margin", "0.3"));
+            try (OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+                 OrtSession small = env.createSession(smallModelPath, options);
+                 OrtSession full = env.createSession(modelPath, options)) {
+                CascadeClassifier cascade = new CascadeClassifier("bert-thucnews-small", small, "bert-thucnews", full, bertTokenizer, margin, 32);
+                for (CascadeClassifier.Prediction prediction : cascade.classify(Arrays.asList(query))) {
+                    System.out.println("Prediction: " + CATEGORIES[prediction.label] + " margin: " + prediction.margin
+                            + (prediction.escalated ? " (full model)" : " (small model)"));
+                }
+            }
+            return;
+        }
+
         OrtSession.SessionOptions options = new OrtSession.SessionOptions();
-        try (OrtSession session = env.createSession(modelPath, options)) {
+        try (OrtSession session = env.createSession(modelPath, options);
+             TensorScope scope = TensorScope.open("bert-thucnews")) {
+            Map<String, OnnxTensor> inputMap = ModelBinding.compile("bert-thucnews", session).bind(bertTokenizer.encodeTexts(Arrays.asList(query), 32), scope);
             // Load code not shown for brevity.
             // Run the inference
-            try (OrtSession.Result results = session.run(inputMap)) {
+            try {
+                OrtSession.Result results = scope.run(session, inputMap);
                 // Only iterates once
                 for (Map.Entry<String, OnnxValue> r : results) {
                     OnnxValue resultValue = r.getValue();
                     OnnxTensor resultTensor = (OnnxTensor) resultValue;
-                    int prediction = MaxProbability(resultTensor);
-                    String category = categoryMap.get(String.valueOf(prediction));
-                    float[] softmax = softmax(resultTensor);
-                    System.out.println("Prediction: " + category);
-                    System.out.println("softmax: " + JSONUtil.toJsonStr(softmax));
+                    long[] shape = resultTensor.getInfo().getShape();
+                    int cols = (int) shape[shape.length - 1];
+                    FloatBuffer logits = resultTensor.getFloatBuffer();
+                    int rows = Logits.rows(logits, cols);
+                    int[] predictions = new int[rows];
+                    Logits.argmax(logits, cols, predictions);
+                    Logits.softmax(logits, cols, logits);
+                    for (int row = 0; row < rows; row++) {
+                        float[] softmax = new float[cols];
+                        logits.position(row * cols);
+                        logits.get(softmax);
+                        System.out.println("Prediction: " + CATEGORIES[predictions[row]]);
+                        System.out.println("softmax: " + JSONUtil.toJsonStr(softmax));
+                    }
                 }
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
     }
-
-    static int MaxProbability(OnnxTensor probabilities) throws OrtException {
-        float[][] labelOutput = (float[][]) probabilities.getValue();
-
-        float[] label = labelOutput[0];
-        float max = -9999.9F;
-        int maxIndex = -1;
-        for (int i = 0; i < label.length; ++i) {
-            float prob = label[i];
-            if (prob > max) {
-                max = prob;
-                maxIndex = i;
-            }
-        }
-        return maxIndex;
-
-    }
-
-    /**
-     * 计算概率值
-     *
-     * @param probabilities The input array.
-     * @return The softmax of the input.
-     */
-    public static float[] softmax(OnnxTensor probabilities) throws OrtException{
-        float[][] labelOutput = (float[][]) probabilities.getValue();
-
-        float[] input = labelOutput[0];
-        double[] tmp = new double[input.length];
-        double sum = 0.0;
-        for (int i = 0; i < input.length; i++) {
-            double val = Math.exp(input[i]);
-            sum += val;
-            tmp[i] = val;
-        }
-
-        float[] output = new float[input.length];
-        for (int i = 0; i < output.length; i++) {
-//            output[i] = (float) (tmp[i] / sum);
-            float labelProb = Math.round(tmp[i] / sum * 1000) * 1.0F / 1000;
-            output[i] = labelProb;
-        }
-
-        return output;
-    }
 }
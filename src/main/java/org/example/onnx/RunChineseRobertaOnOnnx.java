@@ -2,25 +2,42 @@ package org.example.onnx;
 
 
 import ai.onnxruntime.*;
+import org.example.onnx.runtime.ModelBinding;
+import org.example.onnx.runtime.OrtThreads;
+import org.example.onnx.runtime.TensorScope;
 import org.example.onnx.tokenizer.BertTokenizer;
+import org.example.onnx.tokenizer.TextBatch;
 
+import java.nio.Buffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 /**
  */
 public class RunChineseRobertaOnOnnx {
 
-    public static void main(String[] args) throws OrtException {
-        //Bert-Chinese-Text-Classification-Pytorch项目的 vocab.txt
-        String vocabPath = "G:\\qzd\\JavaProject\\QZD_GROUP\\bird-query\\Bert-Chinese-Text-Classification-Pytorch\\chinese_roberta_pretrain\\vocab.txt";
-        //bert_to_onnx.py执行后的模型文件
-        String modelPath = "G:\\qzd\\JavaProject\\QZD_GROUP\\bird-query\\Bert-Chinese-Text-Classification-Pytorch\\chinese_roberta_pretrain\\saved_dict\\raw_bert_dynamic.onnx";
+    //Bert-Chinese-Text-Classification-Pytorch项目的 vocab.txt
+    static final String VOCAB_PATH = System.getProperty("roberta.vocab", "G:\\qzd\\JavaProject\\QZD_GROUP\\bird-query\\Bert-Chinese-Text-Classification-Pytorch\\chinese_roberta_pretrain\\vocab.txt");
+    //bert_to_onnx.py执行后的模型文件
+    static final String MODEL_PATH = System.getProperty("roberta.model", "G:\\qzd\\JavaProject\\QZD_GROUP\\bird-query\\Bert-Chinese-Text-Classification-Pytorch\\chinese_roberta_pretrain\\saved_dict\\raw_bert_dynamic.onnx");
+
+    // 堆外内存统计用的模型名
+    public static final String MODEL_NAME = "chinese-roberta";
+
+    // 向量化时不补齐到固定长度，动态轴的模型按 batch 内最长的一条跑
+    private static final int EMBED_MIN_LENGTH = 8;
 
+    private static volatile BertTokenizer tokenizer;
+    private static volatile OrtSession session;
+    private static volatile ModelBinding binding;
+
+    public static void main(String[] args) throws OrtException {
         String query ="你好，你叫什么名字";
 
-        BertTokenizer bertTokenizer = new BertTokenizer(vocabPath);
-        Map<String, OnnxTensor> inputMap = bertTokenizer.tokenizeOnnxTensorForRoberta(Arrays.asList(query));
+        BertTokenizer bertTokenizer = new BertTokenizer(VOCAB_PATH);
 
         OrtEnvironment env = OrtEnvironment.getEnvironment();
 
@@ -30,10 +47,13 @@ public class RunChineseRobertaOnOnnx {
 //        cudaOpts.add("gpu_mem_limit", "" + (512 * 1024 * 1024));
 //        options.addCUDA(cudaOpts);
 
-        try (OrtSession session = env.createSession(modelPath, options)) {
+        try (OrtSession session = env.createSession(MODEL_PATH, options);
+             TensorScope scope = TensorScope.open(MODEL_NAME)) {
+            Map<String, OnnxTensor> inputMap = ModelBinding.compile(MODEL_NAME, session).bind(bertTokenizer.encodeTexts(Arrays.asList(query), 300), scope);
             // Load code not shown for brevity.
             // Run the inference
-            try (OrtSession.Result results = session.run(inputMap)) {
+            try {
+                OrtSession.Result results = scope.run(session, inputMap);
                 // Only iterates once
                 for (Map.Entry<String, OnnxValue> r : results) {
                     OnnxValue resultValue = r.getValue();
@@ -49,4 +69,65 @@ public class RunChineseRobertaOnOnnx {
         }
     }
 
+    public static BertTokenizer getTokenizer() {
+        if (tokenizer == null) {
+            synchronized (RunChineseRobertaOnOnnx.class) {
+                if (tokenizer == null) {
+                    tokenizer = new BertTokenizer(VOCAB_PATH);
+                }
+            }
+        }
+        return tokenizer;
+    }
+
+    public static OrtSession getSession() throws OrtException {
+        if (session == null) {
+            synchronized (RunChineseRobertaOnOnnx.class) {
+                if (session == null) {
+                    OrtSession created = OrtEnvironment.getEnvironment().createSession(MODEL_PATH, OrtThreads.apply(new OrtSession.SessionOptions()));
+                    binding = ModelBinding.compile(MODEL_NAME, created);
+                    session = created;
+                }
+            }
+        }
+        return session;
+    }
+
+    /**
+     * 句向量：最后一层隐状态（输出 0，[batch, seqLen, hidden]）在有效 token 上取平均，再做 L2 归一化；
+     * 超过 510 个 token 的文本只取开头（见 {@link BertTokenizer#encodeTexts(List, int)}）
+     */
+    public static float[][] embed(List<String> texts) throws OrtException {
+        OrtSession s = getSession();
+        TextBatch batch = getTokenizer().encodeTexts(texts, EMBED_MIN_LENGTH);
+        try (TensorScope scope = TensorScope.open(MODEL_NAME)) {
+            OrtSession.Result results = scope.run(s, binding.bind(batch, scope));
+            OnnxTensor hidden = (OnnxTensor) results.get(0);
+            long[] shape = hidden.getInfo().getShape();
+            int seqLength = (int) shape[1];
+            int dim = (int) shape[2];
+            Buffer buffer = binding.outputBuffer(hidden);
+            float[][] out = new float[texts.size()][dim];
+            for (int row = 0; row < out.length; row++) {
+                int tokens = Math.max(1, batch.length(row));
+                float[] v = out[row];
+                for (int t = 0; t < tokens; t++) {
+                    int offset = (row * seqLength + t) * dim;
+                    for (int i = 0; i < dim; i++) {
+                        v[i] += buffer instanceof FloatBuffer ? ((FloatBuffer) buffer).get(offset + i) : (float) ((DoubleBuffer) buffer).get(offset + i);
+                    }
+                }
+                double norm = 0;
+                for (float x : v) {
+                    norm += x * x;
+                }
+                float inv = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+                for (int i = 0; i < dim; i++) {
+                    v[i] *= inv;
+                }
+            }
+            return out;
+        }
+    }
+
 }
@@ -4,19 +4,69 @@ package org.example.onnx;
 import ai.onnxruntime.*;
 import cn.hutool.core.collection.ListUtil;
 import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.dictionary.DictionaryRecognizer;
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.ner.EntityTypeFilter;
+import org.example.onnx.ner.NerResult;
+import org.example.onnx.ner.UbertPlanner;
+import org.example.onnx.postprocess.Logits;
+import org.example.onnx.postprocess.SpanHits;
+import org.example.onnx.runtime.AdaptiveLimiter;
+import org.example.onnx.runtime.InferenceScheduler;
+import org.example.onnx.runtime.ModelBinding;
+import org.example.onnx.runtime.OrtThreads;
+import org.example.onnx.runtime.OverloadedException;
+import org.example.onnx.runtime.PipelineEvents;
+import org.example.onnx.runtime.TensorScope;
+import org.example.onnx.store.NerResultCache;
 import org.example.onnx.tokenizer.BertTokenizer;
 
+import java.io.File;
+import java.nio.Buffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  *
  */
+@Slf4j
 public class RunUbertaOnOnnx {
 
+    //Bert-Chinese-Text-Classification-Pytorch项目的 vocab.txt
+    static final String VOCAB_PATH = System.getProperty("ubert.vocab", "/data/modelfiles/eric/ubert_pretrain/vocab.txt");
+    //bert_to_onnx.py执行后的模型文件
+    static final String MODEL_PATH = System.getProperty("ubert.model", "/data/modelfiles/eric/ner_opti_12_14_v4.onnx");
+
+    // 堆外内存统计用的模型名
+    public static final String MODEL_NAME = "ubert";
+
+    public static final List<String> ENTITY_TYPES = Collections.unmodifiableList(
+            ListUtil.of("人名", "地名", "公司", "行业", "公司类别", "品牌"));
+
+    // 模型和词表只加载一次，OrtSession.run 本身是线程安全的
+    private static volatile BertTokenizer tokenizer;
+    private static volatile OrtSession session;
+    // 按 session 的输入输出信息编译的绑定计划，与 session 一起创建
+    private static volatile ModelBinding binding;
+    // 去重 / 类型预判 / batch 排法，由 PlannerProperties 按 ner.planner.* 替换
+    private static volatile UbertPlanner planner = new UbertPlanner(EntityTypeFilter.ALL, true);
+    // 词典快速路径，由 DictionaryProperties 按 ner.dictionary.* 设置，null 表示关闭
+    private static volatile DictionaryRecognizer dictionary;
+    // 调用方可以指定的实体类型和每条请求的类型数上限，由 PlannerProperties 按 ner.planner.allowed-types / max-types-per-query 设置。
+    // 每个类型多一行模型输入，还会在分词器里缓存一份 prompt，不能由调用方随意扩展
+    private static volatile Set<String> allowedTypes = new HashSet<>(ENTITY_TYPES);
+    private static volatile int maxTypesPerQuery = ENTITY_TYPES.size();
+    // 持久化结果缓存，由 ResultStoreProperties 按 ner.store.* 设置，null 表示关闭
+    private static volatile NerResultCache resultCache;
+
     public static void main(String[] args) {
         try {
             String query = "雷鸣山";
@@ -27,129 +77,244 @@ public class RunUbertaOnOnnx {
         }
     }
 
-    public static List<JSONObject> predict(String query) throws Exception {
-        //Bert-Chinese-Text-Classification-Pytorch项目的 vocab.txt
-        String vocabPath = "/data/modelfiles/eric/ubert_pretrain/vocab.txt";
-        //bert_to_onnx.py执行后的模型文件
-        String modelPath = "/data/modelfiles/eric/ner_opti_12_14_v4.onnx";
-
-//        String query = "雷鸣山企知道";
-
-        List<JSONObject> jsonObjects = composeQueries(query);
-
-        BertTokenizer bertTokenizer = new BertTokenizer(vocabPath);
-        Map<String, OnnxTensor> inputMap = bertTokenizer.encode(jsonObjects);
-
-        OrtEnvironment env = OrtEnvironment.getEnvironment();
-
-        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
-        /*GPU start----*/
-//        OrtCUDAProviderOptions cudaOpts = new OrtCUDAProviderOptions(0);
-//        cudaOpts.add("gpu_mem_limit", "" + (512 * 1024 * 1024));
-//        options.addCUDA(cudaOpts);
-//        int gpuDeviceId = 0;
-//        options.addCUDA(gpuDeviceId);
-        /*GPU end----*/
-        try (OrtSession session = env.createSession(modelPath, options)) {
-            // Load code not shown for brevity.
-            // Run the inference
-            try (OrtSession.Result results = session.run(inputMap)) {
-                // Only iterates once
-                for (Map.Entry<String, OnnxValue> r : results) {
-                    OnnxValue resultValue = r.getValue();
-                    OnnxTensor resultTensor = (OnnxTensor) resultValue;
-
-                    double[][][][] labelOutput = (double[][][][]) resultTensor.getValue();
-                    long[][] pos = new long[2][];
-                    int index = 0;
-                    for (int i = 0; i < labelOutput.length; i++) {
-                        double[][][] lable1 = labelOutput[i];
-                        for (int j = 0; j < lable1.length; j++) {
-                            double[][] lable2 = lable1[j];
-                            for (int k = 0; k < lable2.length; k++) {
-                                double[] label3 = lable2[k];
-                                for (int l = 0; l < label3.length; l++) {
-                                    double x = label3[l];
-                                    double nx = sigmoid(x);
-                                    label3[l] = nx;
-                                    if (nx > 0.5D) {
-                                        System.out.println(i + "," + j + "," + k + "," + l);
-                                        long[] p = {i, j, k, l};
-                                        pos[index++] = p;
-                                    }
-                                }
-                            }
-                        }
-                    }
-
-                    bertTokenizer.decode(labelOutput,pos,jsonObjects);
-                    List<JSONObject> entityList = extract_entities(jsonObjects);
-                    return entityList;
-//                    System.out.println(JSON.toJSONString(entityList));
-//                    double[][][] label = labelOutput[0];
-//                    double[][] label1 = label[0];
-//                    System.out.println("..." + label1.length);
+    public static BertTokenizer getTokenizer() {
+        if (tokenizer == null) {
+            synchronized (RunUbertaOnOnnx.class) {
+                if (tokenizer == null) {
+                    tokenizer = new BertTokenizer(VOCAB_PATH);
                 }
+            }
+        }
+        return tokenizer;
+    }
+
+    public static ModelBinding getBinding() throws OrtException {
+        getSession();
+        return binding;
+    }
+
+    public static String modelPath() {
+        return MODEL_PATH;
+    }
 
+    /**
+     * 模型文件名 + 大小 + 修改时间，换了模型文件就变
+     */
+    public static String modelVersion() {
+        File file = new File(MODEL_PATH);
+        return file.getName() + ":" + file.length() + ":" + file.lastModified();
+    }
 
-            } catch (Exception e) {
-                e.printStackTrace();
+    public static OrtSession getSession() throws OrtException {
+        if (session == null) {
+            synchronized (RunUbertaOnOnnx.class) {
+                if (session == null) {
+                    OrtEnvironment env = OrtEnvironment.getEnvironment();
+                    OrtSession.SessionOptions options = OrtThreads.apply(new OrtSession.SessionOptions());
+                    /*GPU start----*/
+//                    OrtCUDAProviderOptions cudaOpts = new OrtCUDAProviderOptions(0);
+//                    cudaOpts.add("gpu_mem_limit", "" + (512 * 1024 * 1024));
+//                    options.addCUDA(cudaOpts);
+//                    int gpuDeviceId = 0;
+//                    options.addCUDA(gpuDeviceId);
+                    /*GPU end----*/
+                    OrtSession created = env.createSession(MODEL_PATH, options);
+                    binding = ModelBinding.compile(MODEL_NAME, created);
+                    session = created;
+                }
             }
         }
-        return null;
+        return session;
     }
 
-    private static List<JSONObject> extract_entities(List<JSONObject> jsonObjects) {
-        List<JSONObject> res_list = new ArrayList<>();
+    public static List<JSONObject> predict(String query) throws Exception {
+        return predict(ListUtil.of(query));
+    }
 
-        for (int i = 0; i < jsonObjects.size(); i++) {
-            JSONObject inp = jsonObjects.get(i);
-            String query = inp.getString("text");
+    /**
+     * HTTP 接口用的 JSON 输出，内部走 {@link #infer(List)}
+     */
+    public static List<JSONObject> predict(List<String> queries) throws Exception {
+        return predict(queries, ENTITY_TYPES);
+    }
 
-            JSONObject res = new JSONObject();
-            res.put("query",query);
+    /**
+     * 只识别调用方指定的实体类型，entityTypes 为空时用 {@link #ENTITY_TYPES}
+     */
+    public static List<JSONObject> predict(List<String> queries, List<String> entityTypes) throws Exception {
+        List<String> types = entityTypes == null || entityTypes.isEmpty() ? ENTITY_TYPES : entityTypes;
+        List<NerQuery> nerQueries = new ArrayList<>(queries.size());
+        for (String query : queries) {
+            nerQueries.add(new NerQuery(query, types));
+        }
+        List<NerResult> results = infer(nerQueries);
+        Object event = PipelineEvents.begin(PipelineEvents.Stage.SERIALIZE);
+        List<JSONObject> res_list = new ArrayList<>(results.size());
+        for (NerResult result : results) {
+            res_list.add(result.toJson());
+        }
+        PipelineEvents.end(event, MODEL_NAME, results.size(), 0);
+        return res_list;
+    }
 
-            JSONArray choices = inp.getJSONArray("choices");
-            for (int j = 0; j < choices.size(); j++) {
-                JSONObject ent = choices.getJSONObject(j);
-                String k = ent.getString("entity_type");
-                JSONArray v_full_list = ent.getJSONArray("entity_list");
+    public static UbertPlanner getPlanner() {
+        return planner;
+    }
 
-                JSONArray v_list = new JSONArray();
-                v_list.addAll(v_full_list);
-                res.put(k,v_list);
-            }
-            res_list.add(res);
+    public static void setPlanner(UbertPlanner newPlanner) {
+        planner = newPlanner;
+    }
+
+    public static DictionaryRecognizer getDictionary() {
+        return dictionary;
+    }
+
+    public static void setDictionary(DictionaryRecognizer newDictionary) {
+        dictionary = newDictionary;
+    }
+
+    public static NerResultCache getResultCache() {
+        return resultCache;
+    }
 
+    public static void setResultCache(NerResultCache newResultCache) {
+        resultCache = newResultCache;
+    }
+
+    public static void setTypePolicy(Set<String> allowed, int maxTypes) {
+        allowedTypes = allowed;
+        maxTypesPerQuery = maxTypes;
+    }
+
+    /**
+     * @throws IllegalArgumentException 类型不在 ner.planner.allowed-types 里，或者一条请求的类型数超过 max-types-per-query
+     */
+    public static void checkEntityTypes(List<String> entityTypes) {
+        if (entityTypes.size() > maxTypesPerQuery) {
+            throw new IllegalArgumentException("at most " + maxTypesPerQuery + " entity types per query, got " + entityTypes.size());
         }
+        for (String type : entityTypes) {
+            if (!allowedTypes.contains(type)) {
+                throw new IllegalArgumentException("unknown entity type " + type + ", allowed: " + allowedTypes);
+            }
+        }
+    }
 
-        return res_list;
+    /**
+     * 开启持久化结果缓存时先查 {@link NerResultCache}，命中的直接作答，其余的走 {@link #inferUncached(List)}
+     *
+     * @throws IllegalArgumentException 有请求的实体类型不合法（见 {@link #checkEntityTypes}），整批不做
+     */
+    public static List<NerResult> infer(List<NerQuery> queries) throws Exception {
+        for (NerQuery query : queries) {
+            checkEntityTypes(query.getEntityTypes());
+        }
+        NerResultCache cache = resultCache;
+        if (cache == null) {
+            return inferUncached(queries);
+        }
+        NerResultCache.Pass pass = cache.pass(queries);
+        if (pass.missQueries().isEmpty()) {
+            return pass.merge(Collections.<NerResult>emptyList());
+        }
+        return pass.merge(inferUncached(pass.missQueries()));
     }
 
+    /**
+     * 开启词典快速路径时先过 {@link DictionaryRecognizer}：被词典完整覆盖的请求直接作答，其余的跑模型后与词典命中合并
+     */
+    static List<NerResult> inferUncached(List<NerQuery> queries) throws Exception {
+        DictionaryRecognizer recognizer = dictionary;
+        if (recognizer == null) {
+            return inferModel(queries);
+        }
+        DictionaryRecognizer.Pass pass = recognizer.pass(queries);
+        if (pass.fallbackQueries().isEmpty()) {
+            return pass.merge(Collections.<NerResult>emptyList());
+        }
+        return pass.merge(inferModel(pass.fallbackQueries()));
+    }
 
-    public static double sigmoid(double x) {
-        x = Math.max(-500, x);
-        x = Math.min(500, x);
-        return 1 / (1 + Math.exp(-x));
+    /**
+     * 先经 {@link UbertPlanner} 去重、去掉不可能命中的类型，再按规划的行跑模型，最后还原成与 queries 一一对应的结果。
+     * 规划的行数超过调度器交互类的 maxBatchRows 时分几次跑。
+     * 整个请求只占限流器一个名额（分几次跑也一样），超过模型当前并发上限时直接抛 {@link OverloadedException}，不做规划和编码；
+     * 计入限流器样本的是其中最慢的一次 session.run
+     */
+    static List<NerResult> inferModel(List<NerQuery> queries) throws Exception {
+        AdaptiveLimiter limiter = AdaptiveLimiter.of(MODEL_NAME);
+        limiter.acquire();
+        long[] runNanos = {-1};
+        try {
+            UbertPlanner.Plan plan = planner.plan(queries);
+            if (plan.modelQueries().isEmpty()) {
+                return plan.fanOut(Collections.<NerResult>emptyList());
+            }
+            int maxRows = InferenceScheduler.of(MODEL_NAME).maxBatchRows(InferenceScheduler.Priority.INTERACTIVE);
+            List<List<NerQuery>> chunks = InferenceScheduler.split(plan.modelQueries(), NerQuery::choices, maxRows);
+            if (chunks.size() == 1) {
+                return plan.fanOut(run(plan.modelQueries(), runNanos));
+            }
+            List<NerResult> results = new ArrayList<>(plan.modelQueries().size());
+            for (List<NerQuery> chunk : chunks) {
+                results.addAll(run(chunk, runNanos));
+            }
+            return plan.fanOut(results);
+        } catch (Exception e) {
+            // 有一段失败就不计入样本
+            runNanos[0] = -1;
+            throw e;
+        } finally {
+            limiter.release(runNanos[0]);
+        }
     }
 
-    private static List<JSONObject> composeQueries(String query) {
-        JSONObject requestBody = new JSONObject();
-        requestBody.put("id", 0);
-        requestBody.put("subtask_type", "实体识别");
-        requestBody.put("task_type", "抽取任务");
-        requestBody.put("text", query);
+    /**
+     * queries 原样编码成一个 batch 跑一次模型，不占限流器名额（由调用方占）
+     *
+     * @param maxRunNanos maxRunNanos[0] 更新为它和这次 session.run 耗时中较大的一个；限流器只统计 session.run 本身，不含调度排队
+     */
+    static List<NerResult> run(List<NerQuery> queries, long[] maxRunNanos) throws Exception {
+        // 输入张量和输出都在 scope 结束时释放
+        try (TensorScope scope = TensorScope.open(MODEL_NAME)) {
+            ModelBinding modelBinding = getBinding();
+            Map<String, OnnxTensor> inputMap = modelBinding.bind(getTokenizer().encode(queries), scope);
 
-        JSONArray choices = new JSONArray();
-        List<String> categorys = ListUtil.of("人名", "地名", "公司", "行业", "公司类别", "品牌");
-        for (String category : categorys) {
-            JSONObject cat = new JSONObject();
-            cat.put("entity_type", category);
-            choices.add(cat);
+            // Run the inference
+            OrtSession.Result results = scope.run(getSession(), inputMap);
+            maxRunNanos[0] = Math.max(maxRunNanos[0], scope.lastRunNanos());
+            OnnxTensor spanLogits = (OnnxTensor) results.get(0);
+            return decode(modelBinding.outputBuffer(spanLogits), spanLogits.getInfo().getShape(), queries);
         }
+    }
+
+    /**
+     * span logits（[batch, choices, seqLen, seqLen]）取 sigmoid > 0.5 的 span 解码成实体，queries 与第一维一一对应
+     */
+    public static List<NerResult> decode(Buffer spanLogits, long[] shape, List<NerQuery> queries) {
+        Object event = PipelineEvents.begin(PipelineEvents.Stage.DECODE);
+        SpanHits hits = new SpanHits();
+        if (spanLogits instanceof FloatBuffer) {
+            Logits.spans((FloatBuffer) spanLogits, shape, 0.5D, hits);
+        } else {
+            Logits.spans((DoubleBuffer) spanLogits, shape, 0.5D, hits);
+        }
+        List<NerResult> results = getTokenizer().decode(hits, queries);
+        if (event != null) {
+            PipelineEvents.end(event, MODEL_NAME, (int) (shape[0] * (shape.length > 3 ? shape[1] : 1)), (int) shape[shape.length - 1]);
+        }
+        return results;
+    }
+
+    public static double sigmoid(double x) {
+        return Logits.sigmoid(x);
+    }
 
-        requestBody.put("choices", choices);
-        return ListUtil.of(requestBody);
+    /**
+     * 用默认的实体类型（{@link #ENTITY_TYPES}）构造请求
+     */
+    public static NerQuery query(String text) {
+        return new NerQuery(text, ENTITY_TYPES);
     }
 
 }
@@ -0,0 +1,103 @@
+package org.example.onnx;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtSession;
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.ner.UbertPlanner;
+import org.example.onnx.profile.ProfileTarget;
+import org.example.onnx.runtime.ModelBinding;
+import org.example.onnx.runtime.TensorScope;
+import org.example.onnx.runtime.WarmupTarget;
+import org.example.onnx.tokenizer.BertTokenizer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * UBERT 的预热：绕过限流器直接 encode → session.run → decode，不影响限流器的延迟样本。
+ * 同时是 profiling 的目标：样例文本按默认实体类型、经线上的 {@link UbertPlanner} 规划后编码
+ */
+@Component
+public class UbertWarmupTarget implements WarmupTarget, ProfileTarget {
+
+    // 长短不一、中英混排，覆盖分词的各个分支
+    private static final String[] SAMPLES = {
+            "雷鸣山",
+            "北京字节跳动科技有限公司的张一鸣",
+            "Apple发布了新款iPhone，售价5999元。",
+            "中国平安保险（集团）股份有限公司总部位于深圳市福田区",
+            "阿里巴巴集团控股有限公司是一家以电子商务为主业的互联网公司，旗下品牌包括淘宝、天猫和支付宝"
+    };
+
+    @Override
+    public String name() {
+        return RunUbertaOnOnnx.MODEL_NAME;
+    }
+
+    @Override
+    public void warmTokenizer(int iterations) {
+        BertTokenizer tokenizer = RunUbertaOnOnnx.getTokenizer();
+        for (int i = 0; i < iterations; i++) {
+            String text = SAMPLES[i % SAMPLES.length];
+            // 几个样例很快就都在分词缓存里了，basic / wordpiece 分词和原文对齐要走不经缓存的入口才会被 JIT 编译
+            tokenizer.encodeTextUncached(text);
+            tokenizer.encodeFeature(RunUbertaOnOnnx.query(text));
+        }
+    }
+
+    @Override
+    public void warmShape(int batchSize, int choices) throws Exception {
+        List<String> entityTypes = new ArrayList<>(choices);
+        for (int c = 0; c < choices; c++) {
+            entityTypes.add(RunUbertaOnOnnx.ENTITY_TYPES.get(c % RunUbertaOnOnnx.ENTITY_TYPES.size()));
+        }
+        List<NerQuery> queries = new ArrayList<>(batchSize * choices);
+        for (int b = 0; b < batchSize; b++) {
+            if (RunUbertaOnOnnx.getPlanner().packChoices()) {
+                // 与线上规划后的形状一致：每个 (text, entity_type) 一行，[batchSize * choices, 1, maxLength]
+                for (String entityType : entityTypes) {
+                    queries.add(new NerQuery(SAMPLES[b % SAMPLES.length], Collections.singletonList(entityType)));
+                }
+            } else {
+                queries.add(new NerQuery(SAMPLES[b % SAMPLES.length], entityTypes));
+            }
+        }
+        try (TensorScope scope = TensorScope.open(RunUbertaOnOnnx.MODEL_NAME)) {
+            ModelBinding binding = RunUbertaOnOnnx.getBinding();
+            Map<String, OnnxTensor> inputMap = binding.bind(RunUbertaOnOnnx.getTokenizer().encode(queries), scope);
+            OrtSession.Result results = scope.run(RunUbertaOnOnnx.getSession(), inputMap);
+            OnnxTensor spanLogits = (OnnxTensor) results.get(0);
+            RunUbertaOnOnnx.decode(binding.outputBuffer(spanLogits), spanLogits.getInfo().getShape(), queries);
+        }
+    }
+
+    @Override
+    public String modelPath() {
+        return RunUbertaOnOnnx.modelPath();
+    }
+
+    @Override
+    public String modelVersion() {
+        return RunUbertaOnOnnx.modelVersion();
+    }
+
+    @Override
+    public List<String> sampleTexts() {
+        return Arrays.asList(SAMPLES);
+    }
+
+    @Override
+    public ModelBinding.Features encode(List<String> texts) {
+        List<NerQuery> queries = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            queries.add(RunUbertaOnOnnx.query(text));
+        }
+        List<NerQuery> modelQueries = RunUbertaOnOnnx.getPlanner().plan(queries).modelQueries();
+        // 类型预判把整批都过滤掉时照原样跑，profiling 总要有输入
+        return RunUbertaOnOnnx.getTokenizer().encode(modelQueries.isEmpty() ? queries : modelQueries);
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.onnx.ann;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ann.* 配置：RoBERTa 句向量的本地 HNSW 索引，index.* 只在第一次创建索引时生效（之后以文件头为准，ef-search 除外）
+ */
+@Component
+@ConfigurationProperties(prefix = "ann")
+public class AnnProperties {
+
+    private boolean enabled = false;
+    private String directory;
+    private long saveIntervalSeconds = 60;
+    private int maxK = 100;
+    // 请求里的 ef 的上限，搜索时按 ef 分配候选堆，不限制的话一个请求就能把堆撑爆
+    private int maxEf = 1000;
+    private HnswIndex.Settings index = new HnswIndex.Settings();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public long getSaveIntervalSeconds() {
+        return saveIntervalSeconds;
+    }
+
+    public void setSaveIntervalSeconds(long saveIntervalSeconds) {
+        this.saveIntervalSeconds = saveIntervalSeconds;
+    }
+
+    public int getMaxK() {
+        return maxK;
+    }
+
+    public void setMaxK(int maxK) {
+        this.maxK = maxK;
+    }
+
+    public int getMaxEf() {
+        return maxEf;
+    }
+
+    public void setMaxEf(int maxEf) {
+        this.maxEf = maxEf;
+    }
+
+    public HnswIndex.Settings getIndex() {
+        return index;
+    }
+
+    public void setIndex(HnswIndex.Settings index) {
+        this.index = index;
+    }
+}
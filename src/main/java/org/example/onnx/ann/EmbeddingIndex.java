@@ -0,0 +1,119 @@
+package org.example.onnx.ann;
+
+import ai.onnxruntime.OrtException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.RunChineseRobertaOnOnnx;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文本 → RoBERTa 句向量 → {@link HnswIndex}：一次本地调用完成向量化和近邻查询，用于近似重复检测和语义检索。
+ * 按 ann.save-interval-seconds 定期 save，关闭时再 save 一次。指标：ann.index.size。
+ */
+@Slf4j
+@Component
+public class EmbeddingIndex {
+
+    private final AnnProperties properties;
+    private volatile HnswIndex index;
+    private ScheduledExecutorService saver;
+
+    public EmbeddingIndex(AnnProperties properties) {
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (properties.getDirectory() == null || properties.getDirectory().isEmpty()) {
+            throw new IllegalStateException("ann.directory is required when ann.enabled=true");
+        }
+        try {
+            index = HnswIndex.open(Paths.get(properties.getDirectory()), properties.getIndex());
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to open hnsw index " + properties.getDirectory(), e);
+        }
+        Gauge.builder("ann.index.size", this, s -> s.index.size()).register(Metrics.globalRegistry);
+        saver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ann-index-saver");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1, properties.getSaveIntervalSeconds());
+        saver.scheduleWithFixedDelay(this::save, interval, interval, TimeUnit.SECONDS);
+        log.info("ann index {}: {} vectors, dim {}, {}, ef search {}", properties.getDirectory(), index.size(),
+                index.dimension(), index.encoding(), index.efSearch());
+    }
+
+    public boolean enabled() {
+        return index != null;
+    }
+
+    public HnswIndex index() {
+        return index;
+    }
+
+    /**
+     * 向量化后插入，ids 与 texts 一一对应
+     */
+    public void add(List<Long> ids, List<String> texts) throws OrtException {
+        float[][] vectors = RunChineseRobertaOnOnnx.embed(texts);
+        for (int i = 0; i < vectors.length; i++) {
+            index.add(ids.get(i), vectors[i]);
+        }
+    }
+
+    /**
+     * @param k  不超过 ann.max-k
+     * @param ef 小于等于 0 时用 ann.index.ef-search，不超过 ann.max-ef，不小于 k
+     */
+    public List<HnswIndex.Neighbor> search(String text, int k, int ef) throws OrtException {
+        float[] vector = RunChineseRobertaOnOnnx.embed(Collections.singletonList(text))[0];
+        int limit = Math.min(k, properties.getMaxK());
+        int effective = Math.min(ef > 0 ? ef : index.efSearch(), properties.getMaxEf());
+        return index.search(vector, limit, Math.max(effective, limit));
+    }
+
+    private void save() {
+        try {
+            index.save();
+        } catch (IOException e) {
+            log.warn("failed to save ann index {}", properties.getDirectory(), e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (index == null) {
+            return;
+        }
+        // 不用 shutdownNow：中断会让正在 save 的 FileChannel 抛 ClosedByInterruptException，等它写完再关
+        saver.shutdown();
+        try {
+            if (!saver.awaitTermination(60, TimeUnit.SECONDS)) {
+                log.warn("ann index {} still saving after 60s, closing anyway", properties.getDirectory());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            index.close();
+        } catch (IOException e) {
+            log.warn("failed to close ann index {}", properties.getDirectory(), e);
+        }
+    }
+}
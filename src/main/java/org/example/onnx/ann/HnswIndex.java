@@ -0,0 +1,837 @@
+package org.example.onnx.ann;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 嵌入式 HNSW 近似最近邻索引，余弦相似度（向量写入和查询时都先做 L2 归一化，距离 = 1 - 点积）。
+ * <p>
+ * 向量和第 0 层的邻接表放在 mmap 的文件里（堆外，按 1GB 一段映射），只有很少的高层节点（约 1/M）的邻接表在堆上，
+ * {@link #save()} 时写到 upper.bin。向量可以存 float32，或者 int8（每个向量一个缩放系数，对称量化，省 3/4 空间，召回略降）。
+ * <p>
+ * 插入和搜索可以并发：每个节点的邻接表由分段锁保护，搜索时拷一份再用；最高层的入口点只在插入更高层的节点时加全局锁。
+ * 节点先写好向量和自己的邻接表，再挂到邻居上，所以搜索只会走到写完的节点。
+ * <p>
+ * 目录下的文件（小端）：
+ * <pre>
+ * vectors.bin  "NERHNSW1" | int dim, encoding, m, efConstruction | long capacity | int count, entry, maxLevel | 补齐到 64 字节
+ *              | 记录[capacity]：long label, int level, float scale（int8 时）, 向量（dim 个 float 或 byte），补齐到 8 字节
+ * links0.bin   第 0 层邻接表[capacity]：int 个数, int[2M] 邻居
+ * upper.bin    高层邻接表（save 时整体重写）：(int node, int level, (int 个数, int[M] 邻居)[level])*
+ * </pre>
+ * 进程崩溃时最后几次插入的高层连接会丢失（第 0 层都在），搜索照常，只是这几个节点不再作为高层的跳板。
+ * <p>
+ * 一个目录同时只能被一个进程打开（index.lock 上的排它文件锁），两个写者各自分配节点号会互相覆盖。
+ */
+@Slf4j
+public final class HnswIndex implements AutoCloseable {
+
+    static final byte[] MAGIC = "NERHNSW1".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER = 64;
+    private static final int H_DIM = 8;
+    private static final int H_ENCODING = 12;
+    private static final int H_M = 16;
+    private static final int H_EF_CONSTRUCTION = 20;
+    private static final int H_CAPACITY = 24;
+    private static final int H_COUNT = 32;
+    private static final int H_ENTRY = 36;
+    private static final int H_MAX_LEVEL = 40;
+    private static final int RECORD_HEADER = 16;
+    private static final int MAX_LEVEL = 16;
+    private static final int LOCK_STRIPES = 1 << 12;
+
+    public enum Encoding {
+        FLOAT32, INT8
+    }
+
+    private final Path dir;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final int dim;
+    private final Encoding encoding;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private volatile int efSearch;
+    private final long capacity;
+    private final double levelMultiplier;
+    private final FileChannel vectorChannel;
+    private final FileChannel linkChannel;
+    private final Segments vectors;
+    private final Segments links;
+    private final MappedByteBuffer header;
+    // 已分配的节点数，不超过 capacity；只在 writing 的锁里增加
+    private final AtomicInteger count;
+    // 已分配但向量还没写完的节点，bruteForce 跳过它们
+    private final Set<Integer> writing = new HashSet<>();
+    // 高层邻接表：node → [level - 1][1 + M]，第一个元素是个数
+    private final Map<Integer, int[][]> upper = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Object entryLock = new Object();
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+    private volatile int entry;
+    private volatile int maxLevel;
+
+    /**
+     * 索引参数，同名字段在 ann.* 里配置
+     */
+    public static class Settings {
+        private int dimension = 768;
+        private Encoding encoding = Encoding.FLOAT32;
+        private int m = 16;
+        private int efConstruction = 200;
+        private int efSearch = 64;
+        private long maxElements = 1_000_000;
+
+        public int getDimension() {
+            return dimension;
+        }
+
+        public void setDimension(int dimension) {
+            this.dimension = dimension;
+        }
+
+        public Encoding getEncoding() {
+            return encoding;
+        }
+
+        public void setEncoding(Encoding encoding) {
+            this.encoding = encoding;
+        }
+
+        public int getM() {
+            return m;
+        }
+
+        public void setM(int m) {
+            this.m = m;
+        }
+
+        public int getEfConstruction() {
+            return efConstruction;
+        }
+
+        public void setEfConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+        }
+
+        public int getEfSearch() {
+            return efSearch;
+        }
+
+        public void setEfSearch(int efSearch) {
+            this.efSearch = efSearch;
+        }
+
+        public long getMaxElements() {
+            return maxElements;
+        }
+
+        public void setMaxElements(long maxElements) {
+            this.maxElements = maxElements;
+        }
+    }
+
+    /**
+     * 一个搜索结果，score 是余弦相似度
+     */
+    public static final class Neighbor {
+        public final long label;
+        public final float score;
+
+        Neighbor(long label, float score) {
+            this.label = label;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d:%.4f", label, score);
+        }
+    }
+
+    /**
+     * 打开 dir 下的索引，不存在时按 settings 创建。已存在的索引以文件头里的维度 / 编码 / M / efConstruction / 容量为准
+     *
+     * @throws IOException 目录已被另一个进程（或本进程的另一个实例）打开
+     */
+    public static HnswIndex open(Path dir, Settings settings) throws IOException {
+        Files.createDirectories(dir);
+        FileChannel lockChannel = FileChannel.open(dir.resolve("index.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("hnsw index " + dir + " is already open in another process");
+        }
+        try {
+            return new HnswIndex(dir, settings, lockChannel, lock);
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    private HnswIndex(Path dir, Settings settings, FileChannel lockChannel, FileLock lock) throws IOException {
+        this.dir = dir;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+        Path vectorFile = dir.resolve("vectors.bin");
+        boolean exists = Files.exists(vectorFile);
+        vectorChannel = FileChannel.open(vectorFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        linkChannel = FileChannel.open(dir.resolve("links0.bin"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = vectorChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (exists) {
+            byte[] magic = new byte[MAGIC.length];
+            header.duplicate().get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("not an hnsw index (bad magic): " + vectorFile);
+            }
+            dim = header.getInt(H_DIM);
+            encoding = Encoding.values()[header.getInt(H_ENCODING)];
+            m = header.getInt(H_M);
+            efConstruction = header.getInt(H_EF_CONSTRUCTION);
+            capacity = header.getLong(H_CAPACITY);
+        } else {
+            dim = settings.getDimension();
+            encoding = settings.getEncoding();
+            m = settings.getM();
+            efConstruction = settings.getEfConstruction();
+            capacity = settings.getMaxElements();
+            header.put(MAGIC);
+            header.putInt(H_DIM, dim);
+            header.putInt(H_ENCODING, encoding.ordinal());
+            header.putInt(H_M, m);
+            header.putInt(H_EF_CONSTRUCTION, efConstruction);
+            header.putLong(H_CAPACITY, capacity);
+            header.putInt(H_COUNT, 0);
+            header.putInt(H_ENTRY, -1);
+            header.putInt(H_MAX_LEVEL, -1);
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("hnsw capacity must fit in an int: " + capacity);
+        }
+        efSearch = settings.getEfSearch();
+        maxM0 = 2 * m;
+        levelMultiplier = 1 / Math.log(Math.max(2, m));
+        int vectorBytes = encoding == Encoding.FLOAT32 ? dim * 4 : dim;
+        vectors = new Segments(vectorChannel, HEADER, align8(RECORD_HEADER + vectorBytes), capacity);
+        links = new Segments(linkChannel, 0, 4 * (1 + maxM0), capacity);
+        count = new AtomicInteger(header.getInt(H_COUNT));
+        entry = header.getInt(H_ENTRY);
+        maxLevel = header.getInt(H_MAX_LEVEL);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        loadUpper();
+        if (exists) {
+            log.info("hnsw index {} opened: {} vectors, dim {}, {}, M {}, max level {}", dir, count.get(), dim, encoding, m, maxLevel);
+        }
+    }
+
+    private static int align8(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    public int size() {
+        return count.get();
+    }
+
+    public int dimension() {
+        return dim;
+    }
+
+    public Encoding encoding() {
+        return encoding;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public int efSearch() {
+        return efSearch;
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * 插入一个向量，label 由调用方定义（同一个 label 可以插入多次）。线程安全
+     *
+     * @return 内部节点号
+     */
+    public int add(long label, float[] vector) {
+        if (vector.length != dim) {
+            throw new IllegalArgumentException("expected dimension " + dim + ", got " + vector.length);
+        }
+        int node;
+        synchronized (writing) {
+            if (count.get() >= capacity) {
+                throw new IllegalStateException("hnsw index is full: " + capacity + " elements");
+            }
+            node = count.getAndIncrement();
+            writing.add(node);
+        }
+        int level = Math.min(MAX_LEVEL, (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier));
+        float[] q = normalize(vector);
+        try {
+            writeVector(node, label, level, q);
+        } finally {
+            // 出锁后向量对 bruteForce 可见
+            synchronized (writing) {
+                writing.remove(node);
+            }
+        }
+        // 按存储后的值插入，int8 时邻居的选择与搜索看到的距离一致
+        q = vector(node);
+        if (level > 0) {
+            int[][] lists = new int[level][1 + m];
+            upper.put(node, lists);
+        }
+        if (level > maxLevel) {
+            // 新的最高层，期间其它插入不能改入口点
+            synchronized (entryLock) {
+                if (level > maxLevel) {
+                    insert(node, level, q);
+                    entry = node;
+                    maxLevel = level;
+                    syncHeader();
+                    return node;
+                }
+            }
+        }
+        insert(node, level, q);
+        syncHeader();
+        return node;
+    }
+
+    private void insert(int node, int level, float[] q) {
+        int current = entry;
+        int top = maxLevel;
+        if (current < 0) {
+            return;
+        }
+        float currentDistance = distance(q, current);
+        for (int l = top; l > level; l--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int neighbor : neighbors(current, l)) {
+                    float d = distance(q, neighbor);
+                    if (d < currentDistance) {
+                        currentDistance = d;
+                        current = neighbor;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        for (int l = Math.min(level, top); l >= 0; l--) {
+            NodeHeap candidates = searchLayer(q, current, efConstruction, l);
+            int[] selected = selectNeighbors(q, candidates, m);
+            setNeighbors(node, l, selected);
+            int maxLinks = l == 0 ? maxM0 : m;
+            for (int neighbor : selected) {
+                link(neighbor, node, l, maxLinks);
+            }
+            // 下一层从这一层最近的点开始
+            int best = current;
+            float bestDistance = Float.MAX_VALUE;
+            for (int i = 0; i < candidates.size(); i++) {
+                if (candidates.distance(i) < bestDistance) {
+                    bestDistance = candidates.distance(i);
+                    best = candidates.node(i);
+                }
+            }
+            current = best;
+        }
+    }
+
+    /**
+     * 把 node 加到 target 的第 level 层邻接表上，满了用启发式重新挑
+     */
+    private void link(int target, int node, int level, int maxLinks) {
+        synchronized (lock(target)) {
+            int[] existing = neighbors(target, level);
+            if (existing.length < maxLinks) {
+                int[] grown = Arrays.copyOf(existing, existing.length + 1);
+                grown[existing.length] = node;
+                writeNeighbors(target, level, grown);
+                return;
+            }
+            float[] t = vector(target);
+            NodeHeap candidates = new NodeHeap(existing.length + 1, true);
+            candidates.push(node, distance(t, node));
+            for (int neighbor : existing) {
+                candidates.push(neighbor, distance(t, neighbor));
+            }
+            writeNeighbors(target, level, selectNeighbors(t, candidates, maxLinks));
+        }
+    }
+
+    /**
+     * HNSW 论文的启发式（算法 4）：按距离从近到远，只保留比已选的邻居都更靠近 q 的候选，让邻居分布在不同方向上
+     */
+    private int[] selectNeighbors(float[] q, NodeHeap candidates, int limit) {
+        int n = candidates.size();
+        int[] order = new int[n];
+        float[] distances = new float[n];
+        NodeHeap ascending = new NodeHeap(n, false);
+        for (int i = 0; i < n; i++) {
+            ascending.push(candidates.node(i), candidates.distance(i));
+        }
+        for (int i = 0; i < n; i++) {
+            distances[i] = ascending.topDistance();
+            order[i] = ascending.pop();
+        }
+        int[] selected = new int[Math.min(limit, n)];
+        float[][] selectedVectors = new float[selected.length][];
+        int size = 0;
+        for (int i = 0; i < n && size < selected.length; i++) {
+            float[] candidate = null;
+            boolean keep = true;
+            for (int j = 0; j < size; j++) {
+                if (candidate == null) {
+                    candidate = vector(order[i]);
+                }
+                if (dot(candidate, selectedVectors[j]) > 1 - distances[i]) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selectedVectors[size] = candidate == null ? vector(order[i]) : candidate;
+                selected[size++] = order[i];
+            }
+        }
+        return size == selected.length ? selected : Arrays.copyOf(selected, size);
+    }
+
+    /**
+     * 在第 level 层从 start 出发的贪心 + 束搜索，返回最多 ef 个最近的节点（最大堆）
+     */
+    private NodeHeap searchLayer(float[] q, int start, int ef, int level) {
+        Visited seen = visited.get();
+        seen.reset((int) Math.min(capacity, count.get() + 1024));
+        NodeHeap candidates = new NodeHeap(ef * 2, false);
+        NodeHeap results = new NodeHeap(ef + 1, true);
+        float d = distance(q, start);
+        seen.mark(start);
+        candidates.push(start, d);
+        results.push(start, d);
+        while (!candidates.isEmpty()) {
+            float closest = candidates.topDistance();
+            if (closest > results.topDistance() && results.size() >= ef) {
+                break;
+            }
+            int current = candidates.pop();
+            for (int neighbor : neighbors(current, level)) {
+                if (!seen.mark(neighbor)) {
+                    continue;
+                }
+                float nd = distance(q, neighbor);
+                if (results.size() < ef || nd < results.topDistance()) {
+                    candidates.push(neighbor, nd);
+                    results.push(neighbor, nd);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * top-k 近邻，ef 取 max(efSearch, k)。线程安全
+     */
+    public List<Neighbor> search(float[] vector, int k) {
+        return search(vector, k, efSearch);
+    }
+
+    public List<Neighbor> search(float[] vector, int k, int ef) {
+        if (vector.length != dim) {
+            throw new IllegalArgumentException("expected dimension " + dim + ", got " + vector.length);
+        }
+        int current = entry;
+        if (current < 0 || k <= 0) {
+            return new ArrayList<>();
+        }
+        float[] q = normalize(vector);
+        float currentDistance = distance(q, current);
+        for (int l = maxLevel; l > 0; l--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int neighbor : neighbors(current, l)) {
+                    float d = distance(q, neighbor);
+                    if (d < currentDistance) {
+                        currentDistance = d;
+                        current = neighbor;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        NodeHeap results = searchLayer(q, current, Math.max(ef, k), 0);
+        while (results.size() > k) {
+            results.pop();
+        }
+        Neighbor[] out = new Neighbor[results.size()];
+        for (int i = out.length - 1; i >= 0; i--) {
+            float distance = results.topDistance();
+            out[i] = new Neighbor(label(results.pop()), 1 - distance);
+        }
+        return Arrays.asList(out);
+    }
+
+    /**
+     * 精确的 top-k（逐个比较全部已写完的向量），用于评估召回；与插入并发时跳过还在写的节点
+     */
+    public List<Neighbor> bruteForce(float[] vector, int k) {
+        float[] q = normalize(vector);
+        NodeHeap results = new NodeHeap(k + 1, true);
+        int n;
+        Set<Integer> skip;
+        synchronized (writing) {
+            n = count.get();
+            skip = writing.isEmpty() ? Collections.<Integer>emptySet() : new HashSet<>(writing);
+        }
+        for (int node = 0; node < n; node++) {
+            if (skip.contains(node)) {
+                continue;
+            }
+            float d = distance(q, node);
+            if (results.size() < k || d < results.topDistance()) {
+                results.push(node, d);
+                if (results.size() > k) {
+                    results.pop();
+                }
+            }
+        }
+        Neighbor[] out = new Neighbor[results.size()];
+        for (int i = out.length - 1; i >= 0; i--) {
+            float distance = results.topDistance();
+            out[i] = new Neighbor(label(results.pop()), 1 - distance);
+        }
+        return Arrays.asList(out);
+    }
+
+    private int[] neighbors(int node, int level) {
+        synchronized (lock(node)) {
+            if (level == 0) {
+                MappedByteBuffer buffer = links.buffer(node);
+                int offset = links.offset(node);
+                int n = buffer.getInt(offset);
+                int[] out = new int[n];
+                for (int i = 0; i < n; i++) {
+                    out[i] = buffer.getInt(offset + 4 + 4 * i);
+                }
+                return out;
+            }
+            int[][] lists = upper.get(node);
+            if (lists == null || lists.length < level) {
+                return new int[0];
+            }
+            int[] list = lists[level - 1];
+            return Arrays.copyOfRange(list, 1, 1 + list[0]);
+        }
+    }
+
+    private void setNeighbors(int node, int level, int[] neighbors) {
+        synchronized (lock(node)) {
+            writeNeighbors(node, level, neighbors);
+        }
+    }
+
+    /**
+     * 调用方持有 node 的锁
+     */
+    private void writeNeighbors(int node, int level, int[] neighbors) {
+        if (level == 0) {
+            MappedByteBuffer buffer = links.buffer(node);
+            int offset = links.offset(node);
+            for (int i = 0; i < neighbors.length; i++) {
+                buffer.putInt(offset + 4 + 4 * i, neighbors[i]);
+            }
+            buffer.putInt(offset, neighbors.length);
+            return;
+        }
+        int[] list = upper.get(node)[level - 1];
+        System.arraycopy(neighbors, 0, list, 1, neighbors.length);
+        list[0] = neighbors.length;
+    }
+
+    private Object lock(int node) {
+        return locks[node & (LOCK_STRIPES - 1)];
+    }
+
+    private void writeVector(int node, long label, int level, float[] q) {
+        MappedByteBuffer buffer = vectors.buffer(node);
+        int offset = vectors.offset(node);
+        buffer.putLong(offset, label);
+        buffer.putInt(offset + 8, level);
+        int base = offset + RECORD_HEADER;
+        if (encoding == Encoding.FLOAT32) {
+            buffer.putFloat(offset + 12, 1);
+            for (int i = 0; i < dim; i++) {
+                buffer.putFloat(base + 4 * i, q[i]);
+            }
+        } else {
+            float maxAbs = 0;
+            for (float v : q) {
+                maxAbs = Math.max(maxAbs, Math.abs(v));
+            }
+            float scale = maxAbs == 0 ? 1 : maxAbs / 127;
+            buffer.putFloat(offset + 12, scale);
+            for (int i = 0; i < dim; i++) {
+                buffer.put(base + i, (byte) Math.round(q[i] / scale));
+            }
+        }
+    }
+
+    public long label(int node) {
+        return vectors.buffer(node).getLong(vectors.offset(node));
+    }
+
+    /**
+     * 存储的向量（int8 时反量化）
+     */
+    float[] vector(int node) {
+        MappedByteBuffer buffer = vectors.buffer(node);
+        int base = vectors.offset(node) + RECORD_HEADER;
+        float[] out = new float[dim];
+        if (encoding == Encoding.FLOAT32) {
+            for (int i = 0; i < dim; i++) {
+                out[i] = buffer.getFloat(base + 4 * i);
+            }
+        } else {
+            float scale = buffer.getFloat(base - 4);
+            for (int i = 0; i < dim; i++) {
+                out[i] = buffer.get(base + i) * scale;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 1 - 点积，直接读映射的存储，不拷贝
+     */
+    private float distance(float[] q, int node) {
+        MappedByteBuffer buffer = vectors.buffer(node);
+        int base = vectors.offset(node) + RECORD_HEADER;
+        float sum = 0;
+        if (encoding == Encoding.FLOAT32) {
+            for (int i = 0; i < dim; i++) {
+                sum += q[i] * buffer.getFloat(base + 4 * i);
+            }
+            return 1 - sum;
+        }
+        for (int i = 0; i < dim; i++) {
+            sum += q[i] * buffer.get(base + i);
+        }
+        return 1 - sum * buffer.getFloat(base - 4);
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float inv = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+        float[] out = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            out[i] = vector[i] * inv;
+        }
+        return out;
+    }
+
+    private void syncHeader() {
+        synchronized (header) {
+            header.putInt(H_COUNT, Math.max(header.getInt(H_COUNT), Math.min(count.get(), (int) capacity)));
+            header.putInt(H_ENTRY, entry);
+            header.putInt(H_MAX_LEVEL, maxLevel);
+        }
+    }
+
+    /**
+     * 把高层邻接表写到 upper.bin（先写临时文件再替换）并把映射的文件刷到磁盘
+     */
+    public void save() throws IOException {
+        Path tmp = dir.resolve("upper.bin.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            for (Map.Entry<Integer, int[][]> e : upper.entrySet()) {
+                int node = e.getKey();
+                synchronized (lock(node)) {
+                    int[][] lists = e.getValue();
+                    out.writeInt(node);
+                    out.writeInt(lists.length);
+                    for (int[] list : lists) {
+                        out.writeInt(list[0]);
+                        for (int i = 0; i < m; i++) {
+                            out.writeInt(list[1 + i]);
+                        }
+                    }
+                }
+            }
+            out.writeInt(-1);
+        }
+        Files.move(tmp, dir.resolve("upper.bin"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncHeader();
+        vectors.force();
+        links.force();
+        header.force();
+    }
+
+    private void loadUpper() throws IOException {
+        Path file = dir.resolve("upper.bin");
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+                int node;
+                while ((node = in.readInt()) >= 0) {
+                    int[][] lists = new int[in.readInt()][1 + m];
+                    for (int[] list : lists) {
+                        for (int i = 0; i < list.length; i++) {
+                            list[i] = in.readInt();
+                        }
+                    }
+                    upper.put(node, lists);
+                }
+            }
+        }
+        // 上次 save 之后插入的高层节点：连接已丢，补上空表
+        int n = count.get();
+        for (int node = 0; node < n; node++) {
+            int level = vectors.buffer(node).getInt(vectors.offset(node) + 8);
+            if (level > 0 && !upper.containsKey(node)) {
+                upper.put(node, new int[level][1 + m]);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            save();
+        } finally {
+            vectorChannel.close();
+            linkChannel.close();
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    /**
+     * 定长记录的文件按段映射，每段不超过 1GB
+     */
+    private static final class Segments {
+        private final FileChannel channel;
+        private final long base;
+        private final int recordSize;
+        private final int shift;
+        private final MappedByteBuffer[] segments;
+
+        Segments(FileChannel channel, long base, int recordSize, long capacity) throws IOException {
+            this.channel = channel;
+            this.base = base;
+            this.recordSize = recordSize;
+            int perSegment = Integer.highestOneBit(Math.max(1, (1 << 30) / recordSize));
+            this.shift = Integer.numberOfTrailingZeros(perSegment);
+            this.segments = new MappedByteBuffer[(int) ((capacity + perSegment - 1) / perSegment)];
+            for (int i = 0; i < segments.length; i++) {
+                long records = Math.min(perSegment, capacity - ((long) i << shift));
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, base + ((long) i << shift) * recordSize, records * recordSize);
+                segments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        MappedByteBuffer buffer(int node) {
+            return segments[node >>> shift];
+        }
+
+        int offset(int node) {
+            return (node & ((1 << shift) - 1)) * recordSize;
+        }
+
+        void force() {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        }
+    }
+
+    /**
+     * 搜索用的访问标记，按代号复用，不用每次清零
+     */
+    private static final class Visited {
+        private int[] marks = new int[0];
+        private int generation;
+
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                generation = 0;
+            }
+            generation++;
+            if (generation == 0) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * @return 之前没访问过
+         */
+        boolean mark(int node) {
+            if (node >= marks.length) {
+                marks = Arrays.copyOf(marks, Math.max(node + 1, marks.length * 2));
+            }
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.onnx.ann;
+
+import java.util.Arrays;
+
+/**
+ * (距离, 节点) 的二叉堆，两个基本类型数组实现，搜索时不装箱。max 为 true 时堆顶是最远的，否则是最近的。
+ * 不是线程安全的，每次搜索各用各的
+ */
+final class NodeHeap {
+
+    private final boolean max;
+    private float[] distances;
+    private int[] nodes;
+    private int size;
+
+    NodeHeap(int capacity, boolean max) {
+        this.max = max;
+        this.distances = new float[Math.max(4, capacity)];
+        this.nodes = new int[Math.max(4, capacity)];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int topNode() {
+        return nodes[0];
+    }
+
+    float topDistance() {
+        return distances[0];
+    }
+
+    void push(int node, float distance) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            distances = Arrays.copyOf(distances, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(distance, distances[parent])) {
+                break;
+            }
+            nodes[i] = nodes[parent];
+            distances[i] = distances[parent];
+            i = parent;
+        }
+        nodes[i] = node;
+        distances[i] = distance;
+    }
+
+    /**
+     * 弹出堆顶，返回其节点
+     */
+    int pop() {
+        int top = nodes[0];
+        int lastNode = nodes[--size];
+        float lastDistance = distances[size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && before(distances[child + 1], distances[child])) {
+                child++;
+            }
+            if (!before(distances[child], lastDistance)) {
+                break;
+            }
+            nodes[i] = nodes[child];
+            distances[i] = distances[child];
+            i = child;
+        }
+        nodes[i] = lastNode;
+        distances[i] = lastDistance;
+        return top;
+    }
+
+    private boolean before(float a, float b) {
+        return max ? a > b : a < b;
+    }
+
+    int node(int i) {
+        return nodes[i];
+    }
+
+    float distance(int i) {
+        return distances[i];
+    }
+}
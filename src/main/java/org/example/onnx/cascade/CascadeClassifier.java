@@ -0,0 +1,158 @@
+package org.example.onnx.cascade;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.example.onnx.postprocess.Logits;
+import org.example.onnx.runtime.ModelBinding;
+import org.example.onnx.runtime.TensorScope;
+import org.example.onnx.tokenizer.BertTokenizer;
+
+import java.nio.Buffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 文本分类的置信度级联：一个 batch 先整批跑小模型（蒸馏 / 浅层），在输出 buffer 上算 softmax margin（第一、第二大概率之差），
+ * margin 低于阈值的行挑出来组成一个子 batch 再跑一次完整模型，用大模型的结果替换，其余行直接用小模型的结果。
+ * 两个模型的类别 id 必须一致，共用同一个词表。
+ * <p>
+ * 指标：onnx.cascade.rows（小模型处理的行数）/ onnx.cascade.escalated（升级到完整模型的行数），tag 为 model（完整模型名）。
+ */
+public final class CascadeClassifier {
+
+    private final String smallModel;
+    private final String fullModel;
+    private final BertTokenizer tokenizer;
+    private final OrtSession smallSession;
+    private final OrtSession fullSession;
+    private final ModelBinding smallBinding;
+    private final ModelBinding fullBinding;
+    private final double marginThreshold;
+    private final int minLength;
+    private final Counter rows;
+    private final Counter escalated;
+
+    /**
+     * @param marginThreshold margin 小于它的行升级到完整模型；0 表示只用小模型，大于 1 表示全部走完整模型
+     * @param minLength       编码时补齐到的最小长度，与导出模型时的 pad_size 一致
+     */
+    public CascadeClassifier(String smallModel, OrtSession smallSession, String fullModel, OrtSession fullSession,
+                             BertTokenizer tokenizer, double marginThreshold, int minLength) throws OrtException {
+        this.smallModel = smallModel;
+        this.fullModel = fullModel;
+        this.tokenizer = tokenizer;
+        this.smallSession = smallSession;
+        this.fullSession = fullSession;
+        this.smallBinding = ModelBinding.compile(smallModel, smallSession);
+        this.fullBinding = ModelBinding.compile(fullModel, fullSession);
+        this.marginThreshold = marginThreshold;
+        this.minLength = minLength;
+        this.rows = Counter.builder("onnx.cascade.rows").tag("model", fullModel).register(Metrics.globalRegistry);
+        this.escalated = Counter.builder("onnx.cascade.escalated").tag("model", fullModel).register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 一条文本的分类结果；escalated 为 true 时 label / margin 来自完整模型
+     */
+    public static final class Prediction {
+        public final int label;
+        public final float margin;
+        public final boolean escalated;
+
+        Prediction(int label, float margin, boolean escalated) {
+            this.label = label;
+            this.margin = margin;
+            this.escalated = escalated;
+        }
+
+        @Override
+        public String toString() {
+            return "Prediction{label=" + label + ", margin=" + margin + ", escalated=" + escalated + "}";
+        }
+    }
+
+    /**
+     * 一个模型对一批文本的输出：每行的类别和 margin
+     */
+    public static final class Scores {
+        public final int[] labels;
+        public final float[] margins;
+
+        Scores(int rows) {
+            this.labels = new int[rows];
+            this.margins = new float[rows];
+        }
+    }
+
+    public List<Prediction> classify(List<String> texts) throws OrtException {
+        if (texts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Scores small = scoreSmall(texts);
+        rows.increment(texts.size());
+        List<Integer> escalate = new ArrayList<>();
+        List<String> escalateTexts = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (small.margins[i] < marginThreshold) {
+                escalate.add(i);
+                escalateTexts.add(texts.get(i));
+            }
+        }
+        Prediction[] predictions = new Prediction[texts.size()];
+        if (!escalate.isEmpty()) {
+            escalated.increment(escalate.size());
+            Scores full = scoreFull(escalateTexts);
+            for (int k = 0; k < escalate.size(); k++) {
+                predictions[escalate.get(k)] = new Prediction(full.labels[k], full.margins[k], true);
+            }
+        }
+        for (int i = 0; i < predictions.length; i++) {
+            if (predictions[i] == null) {
+                predictions[i] = new Prediction(small.labels[i], small.margins[i], false);
+            }
+        }
+        return Arrays.asList(predictions);
+    }
+
+    public Scores scoreSmall(List<String> texts) throws OrtException {
+        return score(smallModel, smallSession, smallBinding, texts);
+    }
+
+    public Scores scoreFull(List<String> texts) throws OrtException {
+        return score(fullModel, fullSession, fullBinding, texts);
+    }
+
+    private Scores score(String model, OrtSession session, ModelBinding binding, List<String> texts) throws OrtException {
+        try (TensorScope scope = TensorScope.open(model)) {
+            OrtSession.Result result = scope.run(session, binding.bind(tokenizer.encodeTexts(texts, minLength), scope));
+            OnnxTensor logits = (OnnxTensor) result.get(0);
+            long[] shape = logits.getInfo().getShape();
+            int cols = (int) shape[shape.length - 1];
+            Scores scores = new Scores(texts.size());
+            Logits.margins(floats(binding.outputBuffer(logits)), cols, scores.labels, scores.margins);
+            return scores;
+        }
+    }
+
+    private static FloatBuffer floats(Buffer buffer) {
+        if (buffer instanceof FloatBuffer) {
+            return (FloatBuffer) buffer;
+        }
+        DoubleBuffer doubles = (DoubleBuffer) buffer;
+        float[] values = new float[doubles.remaining()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float) doubles.get(doubles.position() + i);
+        }
+        return FloatBuffer.wrap(values);
+    }
+
+    public double marginThreshold() {
+        return marginThreshold;
+    }
+}
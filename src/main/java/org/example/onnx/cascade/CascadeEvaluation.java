@@ -0,0 +1,163 @@
+package org.example.onnx.cascade;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtSession;
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.RunBertOnOnnx;
+import org.example.onnx.tokenizer.BertTokenizer;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 级联阈值的离线评估：在带标签的文件上把小模型和完整模型各整批跑一遍，再按每个 margin 阈值模拟级联，
+ * 输出升级比例、级联准确率、与完整模型的一致率和按实测单行耗时估算的成本。
+ * <pre>
+ * java -jar onnxruntime-java.jar cascade-eval --input=THUCNews/data/test.txt --vocab=bert_pretrain/vocab.txt
+ *     --small=saved_dict/small.onnx --full=saved_dict/model.onnx
+ *     [--thresholds=0.05,0.1,0.2,0.3,0.5,0.7,0.9] [--batch-size=64] [--min-length=32] [--limit=0]
+ * </pre>
+ * 输入每行 “文本\t标签”，标签是类别 id 或 {@link RunBertOnOnnx#CATEGORIES} 里的名字（THUCNews 的 test.txt 格式）。
+ * 级联的成本按 “小模型单行耗时 + 升级比例 × 完整模型单行耗时” 估算，实际升级的子 batch 更小，单行耗时会略高。
+ */
+@Slf4j
+public class CascadeEvaluation {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        for (String required : new String[]{"input", "vocab", "small", "full"}) {
+            if (!options.containsKey(required)) {
+                throw new IllegalArgumentException("--" + required + " is required");
+            }
+        }
+        double[] thresholds = Arrays.stream(options.getOrDefault("thresholds", "0.05,0.1,0.2,0.3,0.5,0.7,0.9").split(","))
+                .mapToDouble(s -> Double.parseDouble(s.trim())).toArray();
+        int batchSize = Integer.parseInt(options.getOrDefault("batch-size", "64"));
+        int minLength = Integer.parseInt(options.getOrDefault("min-length", "32"));
+        int limit = Integer.parseInt(options.getOrDefault("limit", "0"));
+
+        List<String> texts = new ArrayList<>();
+        List<Integer> gold = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(options.get("input")), StandardCharsets.UTF_8)) {
+            int tab = line.lastIndexOf('\t');
+            if (tab <= 0) {
+                continue;
+            }
+            texts.add(line.substring(0, tab));
+            gold.add(label(line.substring(tab + 1).trim()));
+            if (limit > 0 && texts.size() >= limit) {
+                break;
+            }
+        }
+        if (texts.isEmpty()) {
+            throw new IllegalArgumentException("no labeled lines in " + options.get("input"));
+        }
+
+        OrtEnvironment env = OrtEnvironment.getEnvironment();
+        try (OrtSession.SessionOptions sessionOptions = new OrtSession.SessionOptions();
+             OrtSession small = env.createSession(options.get("small"), sessionOptions);
+             OrtSession full = env.createSession(options.get("full"), sessionOptions)) {
+            CascadeClassifier cascade = new CascadeClassifier("bert-thucnews-small", small, "bert-thucnews", full,
+                    new BertTokenizer(options.get("vocab")), 0, minLength);
+            Outcomes outcomes = new Outcomes(gold.stream().mapToInt(Integer::intValue).toArray());
+            // 两个模型各先跑一个 batch 预热，不计时
+            List<String> warmup = texts.subList(0, Math.min(batchSize, texts.size()));
+            cascade.scoreSmall(warmup);
+            cascade.scoreFull(warmup);
+            for (int from = 0; from < texts.size(); from += batchSize) {
+                List<String> batch = texts.subList(from, Math.min(from + batchSize, texts.size()));
+                long start = System.nanoTime();
+                CascadeClassifier.Scores smallScores = cascade.scoreSmall(batch);
+                long middle = System.nanoTime();
+                CascadeClassifier.Scores fullScores = cascade.scoreFull(batch);
+                long end = System.nanoTime();
+                outcomes.add(from, smallScores, fullScores, middle - start, end - middle);
+            }
+            System.out.print(outcomes.report(thresholds));
+        }
+    }
+
+    private static int label(String value) {
+        int index = Arrays.asList(RunBertOnOnnx.CATEGORIES).indexOf(value);
+        return index >= 0 ? index : Integer.parseInt(value);
+    }
+
+    /**
+     * 每行两个模型的预测和小模型的 margin，与阈值无关，报告时按阈值重算
+     */
+    static final class Outcomes {
+        final int[] gold;
+        final int[] smallLabels;
+        final float[] smallMargins;
+        final int[] fullLabels;
+        long smallNanos;
+        long fullNanos;
+
+        Outcomes(int[] gold) {
+            this.gold = gold;
+            this.smallLabels = new int[gold.length];
+            this.smallMargins = new float[gold.length];
+            this.fullLabels = new int[gold.length];
+        }
+
+        void add(int from, CascadeClassifier.Scores small, CascadeClassifier.Scores full, long smallTime, long fullTime) {
+            int n = small.labels.length;
+            System.arraycopy(small.labels, 0, smallLabels, from, n);
+            System.arraycopy(small.margins, 0, smallMargins, from, n);
+            System.arraycopy(full.labels, 0, fullLabels, from, n);
+            smallNanos += smallTime;
+            fullNanos += fullTime;
+        }
+
+        String report(double[] thresholds) {
+            int n = gold.length;
+            double smallRow = smallNanos / 1e6 / n;
+            double fullRow = fullNanos / 1e6 / n;
+            int smallCorrect = 0;
+            int fullCorrect = 0;
+            int agree = 0;
+            for (int i = 0; i < n; i++) {
+                smallCorrect += smallLabels[i] == gold[i] ? 1 : 0;
+                fullCorrect += fullLabels[i] == gold[i] ? 1 : 0;
+                agree += smallLabels[i] == fullLabels[i] ? 1 : 0;
+            }
+            StringBuilder out = new StringBuilder();
+            out.append(String.format(Locale.ROOT, "rows %d, small model %.3f ms/row accuracy %.4f, full model %.3f ms/row accuracy %.4f, small/full agreement %.4f%n",
+                    n, smallRow, smallCorrect / (double) n, fullRow, fullCorrect / (double) n, agree / (double) n));
+            out.append(String.format(Locale.ROOT, "%10s %12s %12s %12s %12s %12s%n",
+                    "threshold", "escalated", "accuracy", "vs-full", "agreement", "ms/row"));
+            for (double threshold : thresholds) {
+                int escalated = 0;
+                int correct = 0;
+                int agreement = 0;
+                for (int i = 0; i < n; i++) {
+                    boolean escalate = smallMargins[i] < threshold;
+                    int label = escalate ? fullLabels[i] : smallLabels[i];
+                    escalated += escalate ? 1 : 0;
+                    correct += label == gold[i] ? 1 : 0;
+                    agreement += label == fullLabels[i] ? 1 : 0;
+                }
+                double rate = escalated / (double) n;
+                double accuracy = correct / (double) n;
+                out.append(String.format(Locale.ROOT, "%10.3f %11.2f%% %12.4f %+12.4f %12.4f %12.3f%n",
+                        threshold, rate * 100, accuracy, accuracy - fullCorrect / (double) n, agreement / (double) n,
+                        smallRow + rate * fullRow));
+            }
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package org.example.onnx.dictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 只读的 Aho-Corasick 自动机，数据整个 mmap 在堆外（文件由 {@link AhoCorasickBuilder} 生成），堆上只有根节点的 65536 项跳转表。
+ * 小词典也可以用 AhoCorasickBuilder.build(entries, lowercase) 直接在堆上建。
+ * 线程安全，多个请求线程共享一个实例。
+ * <p>
+ * 文件格式（小端）：
+ * <pre>
+ * "NERAC001" | int states, edges, patterns, types, flags | types: (int 字节数 + UTF-8)*
+ * | 对齐到 8 字节后依次：
+ * int[states + 1] firstEdge   状态 s 的出边是 [firstEdge[s], firstEdge[s + 1])，按字符升序（BFS 编号，根为 0）
+ * int[states]     fail
+ * int[states]     dictLink    沿 fail 链最近的有输出的状态，没有为 -1
+ * int[states]     output      在该状态结束的第一个词条，没有为 -1；同一词条的不同类型连续存放
+ * char[edges]     edgeChar    （补齐到 4 字节）
+ * int[edges]      edgeTarget
+ * int[patterns]   patternLength
+ * int[patterns]   patternType  最高位为 1 表示同一词条的最后一个类型
+ * float[patterns] patternScore
+ * </pre>
+ */
+public final class AhoCorasick {
+
+    static final byte[] MAGIC = "NERAC001".getBytes(StandardCharsets.US_ASCII);
+    static final int FLAG_LOWERCASE_ASCII = 1;
+    static final int LAST_OF_TERM = 1 << 31;
+
+    private final int states;
+    private final int patterns;
+    private final String[] types;
+    private final boolean lowercaseAscii;
+    private final IntBuffer firstEdge;
+    private final IntBuffer fail;
+    private final IntBuffer dictLink;
+    private final IntBuffer output;
+    private final CharBuffer edgeChar;
+    private final IntBuffer edgeTarget;
+    private final IntBuffer patternLength;
+    private final IntBuffer patternType;
+    private final FloatBuffer patternScore;
+    private final int[] rootNext = new int[Character.MAX_VALUE + 1];
+
+    /**
+     * 匹配回调：[start, end) 是原文的字符区间
+     */
+    public interface MatchSink {
+        void match(int start, int end, int pattern);
+    }
+
+    private AhoCorasick(ByteBuffer data) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        data.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("not an automaton file (bad magic)");
+        }
+        states = data.getInt();
+        int edges = data.getInt();
+        patterns = data.getInt();
+        types = new String[data.getInt()];
+        lowercaseAscii = (data.getInt() & FLAG_LOWERCASE_ASCII) != 0;
+        for (int i = 0; i < types.length; i++) {
+            byte[] name = new byte[data.getInt()];
+            data.get(name);
+            types[i] = new String(name, StandardCharsets.UTF_8);
+        }
+        align(data, 8);
+        firstEdge = ints(data, states + 1);
+        fail = ints(data, states);
+        dictLink = ints(data, states);
+        output = ints(data, states);
+        edgeChar = slice(data, edges * 2).asCharBuffer();
+        align(data, 4);
+        edgeTarget = ints(data, edges);
+        patternLength = ints(data, patterns);
+        patternType = ints(data, patterns);
+        patternScore = slice(data, patterns * 4).asFloatBuffer();
+
+        Arrays.fill(rootNext, -1);
+        for (int e = firstEdge.get(0); e < firstEdge.get(1); e++) {
+            rootNext[edgeChar.get(e)] = edgeTarget.get(e);
+        }
+    }
+
+    public static AhoCorasick open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2GB");
+            }
+            // 映射在 channel 关闭后仍然有效
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new AhoCorasick(data.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    static AhoCorasick wrap(ByteBuffer data) throws IOException {
+        return new AhoCorasick(data.order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    private static void align(ByteBuffer data, int alignment) {
+        data.position((data.position() + alignment - 1) / alignment * alignment);
+    }
+
+    private static ByteBuffer slice(ByteBuffer data, int bytes) {
+        ByteBuffer slice = data.slice();
+        slice.limit(bytes);
+        data.position(data.position() + bytes);
+        return slice.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static IntBuffer ints(ByteBuffer data, int count) {
+        return slice(data, count * 4).asIntBuffer();
+    }
+
+    static char fold(char c, boolean lowercaseAscii) {
+        return lowercaseAscii && c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+    }
+
+    /**
+     * 扫一遍文本，按结束位置升序回调所有命中（含重叠的）
+     */
+    public void scan(CharSequence text, MatchSink sink) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(text.charAt(i), lowercaseAscii);
+            int next;
+            while ((next = next(state, c)) < 0 && state != 0) {
+                state = fail.get(state);
+            }
+            state = next < 0 ? 0 : next;
+            int hit = output.get(state) >= 0 ? state : dictLink.get(state);
+            while (hit >= 0) {
+                int p = output.get(hit);
+                int end = i + 1;
+                int start = end - patternLength.get(p);
+                while (true) {
+                    sink.match(start, end, p);
+                    if ((patternType.get(p) & LAST_OF_TERM) != 0) {
+                        break;
+                    }
+                    p++;
+                }
+                hit = dictLink.get(hit);
+            }
+        }
+    }
+
+    /**
+     * 文本里是否出现任一词条，遇到第一个命中就返回
+     */
+    public boolean containsAny(CharSequence text) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(text.charAt(i), lowercaseAscii);
+            int next;
+            while ((next = next(state, c)) < 0 && state != 0) {
+                state = fail.get(state);
+            }
+            state = next < 0 ? 0 : next;
+            if (output.get(state) >= 0 || dictLink.get(state) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int next(int state, char c) {
+        if (state == 0) {
+            return rootNext[c];
+        }
+        int lo = firstEdge.get(state);
+        int hi = firstEdge.get(state + 1) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char m = edgeChar.get(mid);
+            if (m < c) {
+                lo = mid + 1;
+            } else if (m > c) {
+                hi = mid - 1;
+            } else {
+                return edgeTarget.get(mid);
+            }
+        }
+        return -1;
+    }
+
+    public String type(int pattern) {
+        return types[patternType.get(pattern) & ~LAST_OF_TERM];
+    }
+
+    public float score(int pattern) {
+        return patternScore.get(pattern);
+    }
+
+    public int states() {
+        return states;
+    }
+
+    public int patterns() {
+        return patterns;
+    }
+
+    public String[] types() {
+        return types.clone();
+    }
+}
@@ -0,0 +1,367 @@
+package org.example.onnx.dictionary;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 从实体词典生成 {@link AhoCorasick} 的二进制文件，离线执行一次，服务启动时直接 mmap。
+ * <p>
+ * 词典每行 term\ttype[\tscore]，UTF-8，score 缺省为 1.0；同一 (term, type) 出现多次时取最高分，空行和 # 开头的行忽略。
+ * 词条按字符排序后顺序插入 trie（每个节点的子节点天然按字符升序），再按 BFS 重新编号成扁平数组，
+ * 百万级词条的构建只用几个基本类型数组。
+ * <pre>
+ * java -jar onnxruntime-java.jar dict-build --input=entities.tsv --output=entities.ac [--min-length=2] [--lowercase=true]
+ * </pre>
+ */
+@Slf4j
+public class AhoCorasickBuilder {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        if (!options.containsKey("input") || !options.containsKey("output")) {
+            System.err.println("usage: dict-build --input=entities.tsv --output=entities.ac [--min-length=2] [--lowercase=true]");
+            System.exit(2);
+        }
+        int minLength = Integer.parseInt(options.getOrDefault("min-length", "2"));
+        boolean lowercase = Boolean.parseBoolean(options.getOrDefault("lowercase", "true"));
+        long start = System.nanoTime();
+        List<Entry> entries = read(Paths.get(options.get("input")), minLength, lowercase);
+        build(entries, lowercase, Paths.get(options.get("output")));
+        log.info("built automaton of {} entries in {}ms", entries.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public static final class Entry {
+        final String term;
+        final String type;
+        final float score;
+
+        public Entry(String term, String type, float score) {
+            this.term = term;
+            this.type = type;
+            this.score = score;
+        }
+    }
+
+    static List<Entry> read(Path input, int minLength, boolean lowercase) throws IOException {
+        Map<String, Entry> unique = new LinkedHashMap<>();
+        long skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = line.split("\t");
+                String term = fold(columns[0].trim(), lowercase);
+                if (columns.length < 2 || term.length() < minLength) {
+                    skipped++;
+                    continue;
+                }
+                Entry entry = new Entry(term, columns[1].trim(), columns.length > 2 ? Float.parseFloat(columns[2]) : 1.0F);
+                Entry old = unique.get(term + '\t' + entry.type);
+                if (old == null || old.score < entry.score) {
+                    unique.put(term + '\t' + entry.type, entry);
+                }
+            }
+        }
+        log.info("read {} entries from {}, skipped {}", unique.size(), input, skipped);
+        return new ArrayList<>(unique.values());
+    }
+
+    private static String fold(String term, boolean lowercase) {
+        char[] chars = term.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = AhoCorasick.fold(chars[i], lowercase);
+        }
+        return new String(chars);
+    }
+
+    public static void build(List<Entry> entries, boolean lowercase, Path output) throws IOException {
+        // 先写临时文件再改名，正在 mmap 旧文件的进程不受影响
+        Path tmp = output.resolveSibling(output.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            write(entries, lowercase, channel);
+        }
+        Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 直接在堆上构建，给启动时从小词典现建的场景用（不落盘）
+     */
+    public static AhoCorasick build(List<Entry> entries, boolean lowercase) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(entries, lowercase, Channels.newChannel(bytes));
+        return AhoCorasick.wrap(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    private static void write(List<Entry> entries, boolean lowercase, WritableByteChannel channel) throws IOException {
+        Entry[] sorted = entries.toArray(new Entry[0]);
+        Arrays.sort(sorted, (a, b) -> {
+            int c = a.term.compareTo(b.term);
+            return c != 0 ? c : a.type.compareTo(b.type);
+        });
+        Map<String, Integer> typeIds = new LinkedHashMap<>();
+        for (Entry entry : sorted) {
+            typeIds.putIfAbsent(entry.type, typeIds.size());
+        }
+
+        // 1. 按排序插入，子节点按字符升序追加（firstChild / nextSibling 链）
+        Trie trie = new Trie();
+        int[] path = new int[16];
+        String previous = "";
+        for (int p = 0; p < sorted.length; p++) {
+            String term = sorted[p].term;
+            if (path.length <= term.length()) {
+                path = Arrays.copyOf(path, term.length() * 2);
+            }
+            int common = 0;
+            while (common < previous.length() && common < term.length() && previous.charAt(common) == term.charAt(common)) {
+                common++;
+            }
+            int node = path[common];
+            for (int d = common; d < term.length(); d++) {
+                node = trie.addChild(node, term.charAt(d));
+                path[d + 1] = node;
+            }
+            if (trie.firstPattern[node] < 0) {
+                trie.firstPattern[node] = p;
+            }
+            previous = term;
+        }
+
+        // 2. BFS 重新编号，出边写成扁平数组
+        int states = trie.size;
+        int[] order = new int[states];
+        int[] firstEdge = new int[states + 1];
+        char[] edgeChar = new char[Math.max(0, states - 1)];
+        int[] edgeTarget = new int[Math.max(0, states - 1)];
+        int tail = 1;
+        int edges = 0;
+        for (int s = 0; s < states; s++) {
+            firstEdge[s] = edges;
+            for (int child = trie.firstChild[order[s]]; child >= 0; child = trie.nextSibling[child]) {
+                order[tail] = child;
+                edgeChar[edges] = trie.label[child];
+                edgeTarget[edges++] = tail++;
+            }
+        }
+        firstEdge[states] = edges;
+        int[] outputs = new int[states];
+        for (int s = 0; s < states; s++) {
+            outputs[s] = trie.firstPattern[order[s]];
+        }
+        trie = null;
+
+        // 3. fail / dictLink，按 BFS 顺序保证 fail 目标（更浅）已经算好
+        int[] fail = new int[states];
+        int[] dictLink = new int[states];
+        dictLink[0] = -1;
+        for (int s = 0; s < states; s++) {
+            for (int e = firstEdge[s]; e < firstEdge[s + 1]; e++) {
+                int t = edgeTarget[e];
+                int f = 0;
+                if (s != 0) {
+                    f = fail[s];
+                    int next;
+                    while ((next = next(firstEdge, edgeChar, edgeTarget, f, edgeChar[e])) < 0 && f != 0) {
+                        f = fail[f];
+                    }
+                    f = Math.max(next, 0);
+                }
+                fail[t] = f;
+                dictLink[t] = outputs[f] >= 0 ? f : dictLink[f];
+            }
+        }
+
+        // 4. 写出
+        Writer out = new Writer(channel);
+        out.bytes(AhoCorasick.MAGIC);
+        out.putInt(states);
+        out.putInt(edges);
+        out.putInt(sorted.length);
+        out.putInt(typeIds.size());
+        out.putInt(lowercase ? AhoCorasick.FLAG_LOWERCASE_ASCII : 0);
+        for (String type : typeIds.keySet()) {
+            byte[] name = type.getBytes(StandardCharsets.UTF_8);
+            out.putInt(name.length);
+            out.bytes(name);
+        }
+        out.align(8);
+        out.ints(firstEdge, states + 1);
+        out.ints(fail, states);
+        out.ints(dictLink, states);
+        out.ints(outputs, states);
+        for (int e = 0; e < edges; e++) {
+            out.putChar(edgeChar[e]);
+        }
+        out.align(4);
+        out.ints(edgeTarget, edges);
+        for (Entry entry : sorted) {
+            out.putInt(entry.term.length());
+        }
+        for (int p = 0; p < sorted.length; p++) {
+            boolean last = p + 1 == sorted.length || !sorted[p + 1].term.equals(sorted[p].term);
+            out.putInt(typeIds.get(sorted[p].type) | (last ? AhoCorasick.LAST_OF_TERM : 0));
+        }
+        for (Entry entry : sorted) {
+            out.putFloat(entry.score);
+        }
+        out.flush();
+        log.info("automaton: {} states, {} patterns, {} types, {} bytes", states, sorted.length, typeIds.size(), out.written);
+    }
+
+    private static int next(int[] firstEdge, char[] edgeChar, int[] edgeTarget, int state, char c) {
+        int lo = firstEdge[state];
+        int hi = firstEdge[state + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (edgeChar[mid] < c) {
+                lo = mid + 1;
+            } else if (edgeChar[mid] > c) {
+                hi = mid - 1;
+            } else {
+                return edgeTarget[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 构建期的 trie，节点编号按创建顺序，根为 0
+     */
+    private static final class Trie {
+        char[] label = new char[1024];
+        int[] firstChild = new int[1024];
+        int[] lastChild = new int[1024];
+        int[] nextSibling = new int[1024];
+        int[] firstPattern = new int[1024];
+        int size;
+
+        Trie() {
+            newNode('\0');
+        }
+
+        int addChild(int parent, char c) {
+            // 输入已排序：同一父节点下，新字符要么等于最后一个子节点，要么更大
+            int last = lastChild[parent];
+            if (last >= 0 && label[last] == c) {
+                return last;
+            }
+            int node = newNode(c);
+            if (last < 0) {
+                firstChild[parent] = node;
+            } else {
+                nextSibling[last] = node;
+            }
+            lastChild[parent] = node;
+            return node;
+        }
+
+        private int newNode(char c) {
+            if (size == label.length) {
+                int capacity = size * 2;
+                label = Arrays.copyOf(label, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                lastChild = Arrays.copyOf(lastChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                firstPattern = Arrays.copyOf(firstPattern, capacity);
+            }
+            label[size] = c;
+            firstChild[size] = -1;
+            lastChild[size] = -1;
+            nextSibling[size] = -1;
+            firstPattern[size] = -1;
+            return size++;
+        }
+    }
+
+    /**
+     * 小端、带 64KB 缓冲的顺序写
+     */
+    private static final class Writer {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        private long written;
+
+        Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putFloat(float value) throws IOException {
+            ensure(4);
+            buffer.putFloat(value);
+        }
+
+        void putChar(char value) throws IOException {
+            ensure(2);
+            buffer.putChar(value);
+        }
+
+        void ints(int[] values, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                putInt(values[i]);
+            }
+        }
+
+        void bytes(byte[] values) throws IOException {
+            for (byte b : values) {
+                ensure(1);
+                buffer.put(b);
+            }
+        }
+
+        void align(int alignment) throws IOException {
+            while ((written + buffer.position()) % alignment != 0) {
+                ensure(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
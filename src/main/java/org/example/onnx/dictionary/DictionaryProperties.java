@@ -0,0 +1,77 @@
+package org.example.onnx.dictionary;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.RunUbertaOnOnnx;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * ner.dictionary.* 配置：开启时 mmap {@link AhoCorasickBuilder} 生成的自动机文件，给 {@link RunUbertaOnOnnx} 装上词典快速路径
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "ner.dictionary")
+public class DictionaryProperties {
+
+    private boolean enabled = false;
+    private String automaton;
+    private double minScore = 0.9D;
+    private boolean directAnswer = true;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getAutomaton() {
+        return automaton;
+    }
+
+    public void setAutomaton(String automaton) {
+        this.automaton = automaton;
+    }
+
+    public double getMinScore() {
+        return minScore;
+    }
+
+    public void setMinScore(double minScore) {
+        this.minScore = minScore;
+    }
+
+    public boolean isDirectAnswer() {
+        return directAnswer;
+    }
+
+    public void setDirectAnswer(boolean directAnswer) {
+        this.directAnswer = directAnswer;
+    }
+
+    @PostConstruct
+    public void apply() {
+        if (!enabled) {
+            RunUbertaOnOnnx.setDictionary(null);
+            return;
+        }
+        if (automaton == null || automaton.isEmpty()) {
+            throw new IllegalStateException("ner.dictionary.automaton is required when ner.dictionary.enabled=true");
+        }
+        try {
+            AhoCorasick ac = AhoCorasick.open(Paths.get(automaton));
+            RunUbertaOnOnnx.setDictionary(new DictionaryRecognizer(ac, minScore, directAnswer));
+            log.info("dictionary fast path: {} patterns, {} states, types {}, min score {}, direct answer {}",
+                    ac.patterns(), ac.states(), Arrays.toString(ac.types()), minScore, directAnswer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to open dictionary automaton " + automaton, e);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.example.onnx.dictionary;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.example.onnx.ner.NerEntity;
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.ner.NerResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 模型前面的词典快速路径：用 {@link AhoCorasick} 扫一遍请求文本，按“最左最长、不重叠”选出请求类型的词典命中（分数低于 minScore 的词条忽略）。
+ * <ul>
+ *     <li>directAnswer 时，命中覆盖了整段文本（剩下的只有空白和标点）的请求直接用词典结果作答，不进模型，其它类型为空列表</li>
+ *     <li>其余请求照常跑模型，结果与词典命中合并：同名实体取较高分，模型没抽到的词典实体追加在后面</li>
+ * </ul>
+ * 指标：ner.dictionary.queries.direct / queries.fallback / rows.saved（少跑的模型行数）/ entities.matched。
+ */
+public final class DictionaryRecognizer {
+
+    private final AhoCorasick automaton;
+    private final double minScore;
+    private final boolean directAnswer;
+    private final Counter direct = Counter.builder("ner.dictionary.queries.direct").register(Metrics.globalRegistry);
+    private final Counter fallback = Counter.builder("ner.dictionary.queries.fallback").register(Metrics.globalRegistry);
+    private final Counter rowsSaved = Counter.builder("ner.dictionary.rows.saved").register(Metrics.globalRegistry);
+    private final Counter matched = Counter.builder("ner.dictionary.entities.matched").register(Metrics.globalRegistry);
+
+    public DictionaryRecognizer(AhoCorasick automaton, double minScore, boolean directAnswer) {
+        this.automaton = automaton;
+        this.minScore = minScore;
+        this.directAnswer = directAnswer;
+    }
+
+    /**
+     * 一个词典命中，[start, end) 是原文的字符区间
+     */
+    public static final class Match {
+        public final int start;
+        public final int end;
+        public final String type;
+        public final float score;
+
+        Match(int start, int end, String type, float score) {
+            this.start = start;
+            this.end = end;
+            this.type = type;
+            this.score = score;
+        }
+    }
+
+    /**
+     * 只保留 types 里的类型（null 表示全部），按起点升序、同起点长的优先贪心选出不重叠的区间；同一区间的多个类型一并保留
+     */
+    public List<Match> matches(String text, Collection<String> types) {
+        List<Match> all = new ArrayList<>();
+        automaton.scan(text, (start, end, pattern) -> {
+            float score = automaton.score(pattern);
+            String type = automaton.type(pattern);
+            if (score >= minScore && (types == null || types.contains(type))) {
+                all.add(new Match(start, end, type, score));
+            }
+        });
+        all.sort((a, b) -> a.start != b.start ? Integer.compare(a.start, b.start) : Integer.compare(b.end, a.end));
+        List<Match> selected = new ArrayList<>();
+        int lastStart = -1;
+        int lastEnd = 0;
+        for (Match match : all) {
+            if (match.start >= lastEnd) {
+                selected.add(match);
+                lastStart = match.start;
+                lastEnd = match.end;
+            } else if (match.start == lastStart && match.end == lastEnd) {
+                selected.add(match);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 除了命中区间，剩下的字符都是空白或标点
+     */
+    static boolean covers(String text, List<Match> matches) {
+        if (matches.isEmpty()) {
+            return false;
+        }
+        boolean[] covered = new boolean[text.length()];
+        for (Match match : matches) {
+            Arrays.fill(covered, match.start, match.end, true);
+        }
+        for (int i = 0; i < covered.length; i++) {
+            if (!covered[i] && !ignorable(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean ignorable(char c) {
+        if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+            return true;
+        }
+        switch (Character.getType(c)) {
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public Pass pass(List<NerQuery> queries) {
+        Pass pass = new Pass(queries);
+        for (int i = 0; i < queries.size(); i++) {
+            NerQuery query = queries.get(i);
+            Set<String> types = new HashSet<>(query.getEntityTypes());
+            List<Match> found = matches(query.getText(), types);
+            matched.increment(found.size());
+            Map<String, List<NerEntity>> entities = new LinkedHashMap<>();
+            for (String entityType : query.getEntityTypes()) {
+                entities.put(entityType, new ArrayList<>());
+            }
+            for (Match match : found) {
+                entities.get(match.type).add(new NerEntity(query.getText().substring(match.start, match.end), match.score));
+            }
+            pass.dictionary.add(entities);
+            if (directAnswer && covers(query.getText(), found)) {
+                pass.results[i] = new NerResult(query.getText(), entities);
+                direct.increment();
+                rowsSaved.increment(query.choices());
+            } else {
+                pass.fallbackIndex.add(i);
+                pass.fallbackQueries.add(query);
+                fallback.increment();
+            }
+        }
+        return pass;
+    }
+
+    /**
+     * 一批请求过词典之后的状态：已经直接作答的结果和还要跑模型的请求
+     */
+    public static final class Pass {
+        private final List<NerQuery> queries;
+        private final NerResult[] results;
+        private final List<Map<String, List<NerEntity>>> dictionary;
+        private final List<Integer> fallbackIndex = new ArrayList<>();
+        private final List<NerQuery> fallbackQueries = new ArrayList<>();
+
+        private Pass(List<NerQuery> queries) {
+            this.queries = queries;
+            this.results = new NerResult[queries.size()];
+            this.dictionary = new ArrayList<>(queries.size());
+        }
+
+        /**
+         * 需要跑模型的请求，顺序与 {@link #merge(List)} 的参数一一对应
+         */
+        public List<NerQuery> fallbackQueries() {
+            return fallbackQueries;
+        }
+
+        /**
+         * @param modelResults fallbackQueries 的模型结果
+         * @return 与原请求一一对应的结果
+         */
+        public List<NerResult> merge(List<NerResult> modelResults) {
+            for (int k = 0; k < fallbackIndex.size(); k++) {
+                int i = fallbackIndex.get(k);
+                Map<String, List<NerEntity>> merged = new LinkedHashMap<>();
+                for (Map.Entry<String, List<NerEntity>> entry : modelResults.get(k).getEntities().entrySet()) {
+                    merged.put(entry.getKey(), merge(entry.getValue(), dictionary.get(i).get(entry.getKey())));
+                }
+                results[i] = new NerResult(queries.get(i).getText(), merged);
+            }
+            return Arrays.asList(results);
+        }
+
+        private static List<NerEntity> merge(List<NerEntity> model, List<NerEntity> dictionary) {
+            if (dictionary == null || dictionary.isEmpty()) {
+                return model;
+            }
+            Map<String, NerEntity> byName = new LinkedHashMap<>();
+            for (NerEntity entity : model) {
+                byName.put(entity.getName(), entity);
+            }
+            for (NerEntity entity : dictionary) {
+                NerEntity old = byName.get(entity.getName());
+                if (old == null || old.getScore() < entity.getScore()) {
+                    byName.put(entity.getName(), entity);
+                }
+            }
+            return new ArrayList<>(byName.values());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.onnx.ner;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.dictionary.AhoCorasick;
+import org.example.onnx.dictionary.AhoCorasickBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 按实体类型配置的预判：词典（文本里出现任一词条才可能有该类型）和 / 或正则（find 到才可能有）。
+ * 两者都配置时任一命中即保留；没有配置的类型一律保留。
+ * 每个类型的词典在启动时建成一个堆上的 {@link AhoCorasick}，判断时扫一遍文本、遇到第一个命中就返回
+ */
+@Slf4j
+public final class DictionaryTypeFilter implements EntityTypeFilter {
+
+    private final Map<String, AhoCorasick> dictionaries;
+    private final Map<String, Pattern> patterns;
+
+    private DictionaryTypeFilter(Map<String, AhoCorasick> dictionaries, Map<String, Pattern> patterns) {
+        this.dictionaries = dictionaries;
+        this.patterns = patterns;
+    }
+
+    /**
+     * @param dictionaryFiles 实体类型 → 词典文件（每行一个词条，UTF-8，空行和 # 开头的行忽略）
+     * @param regexes         实体类型 → 正则
+     * @throws IllegalArgumentException 词典里一个词条都没有（否则该类型的行会被全部剪掉）
+     */
+    public static DictionaryTypeFilter load(Map<String, String> dictionaryFiles, Map<String, String> regexes) {
+        Map<String, AhoCorasick> dictionaries = new HashMap<>();
+        for (Map.Entry<String, String> entry : dictionaryFiles.entrySet()) {
+            Path path = Paths.get(entry.getValue());
+            Set<String> terms = new LinkedHashSet<>();
+            try {
+                for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                    String term = line.trim();
+                    if (!term.isEmpty() && !term.startsWith("#")) {
+                        terms.add(term);
+                    }
+                }
+                if (terms.isEmpty()) {
+                    throw new IllegalArgumentException("dictionary of " + entry.getKey() + " at " + path + " has no terms");
+                }
+                List<AhoCorasickBuilder.Entry> entries = new ArrayList<>(terms.size());
+                for (String term : terms) {
+                    entries.add(new AhoCorasickBuilder.Entry(term, entry.getKey(), 1.0F));
+                }
+                dictionaries.put(entry.getKey(), AhoCorasickBuilder.build(entries, false));
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to load dictionary of " + entry.getKey() + " from " + path, e);
+            }
+            log.info("entity type filter {}: {} terms from {}", entry.getKey(), terms.size(), path);
+        }
+        Map<String, Pattern> patterns = new HashMap<>();
+        for (Map.Entry<String, String> entry : regexes.entrySet()) {
+            patterns.put(entry.getKey(), Pattern.compile(entry.getValue()));
+        }
+        return new DictionaryTypeFilter(dictionaries, patterns);
+    }
+
+    @Override
+    public boolean mayMatch(String text, String entityType) {
+        AhoCorasick dictionary = dictionaries.get(entityType);
+        Pattern pattern = patterns.get(entityType);
+        if (dictionary == null && pattern == null) {
+            return true;
+        }
+        if (pattern != null && pattern.matcher(text).find()) {
+            return true;
+        }
+        return dictionary != null && dictionary.containsAny(text);
+    }
+}
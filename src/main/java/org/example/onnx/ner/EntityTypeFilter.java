@@ -0,0 +1,12 @@
+package org.example.onnx.ner;
+
+/**
+ * 进模型之前的廉价预判：返回 false 表示这段文本里不可能有该类型的实体，这个 (text, entity_type) 不再占模型的一行。
+ * 只能用于“不命中就一定没有”的类型（有封闭词表或明显字面特征的），判断错了会直接漏召回
+ */
+public interface EntityTypeFilter {
+
+    EntityTypeFilter ALL = (text, entityType) -> true;
+
+    boolean mayMatch(String text, String entityType);
+}
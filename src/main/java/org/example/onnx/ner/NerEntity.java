@@ -0,0 +1,23 @@
+package org.example.onnx.ner;
+
+/**
+ * 抽取出来的一个实体及其得分（span 的 sigmoid 概率）
+ */
+public final class NerEntity {
+
+    private final String name;
+    private final double score;
+
+    public NerEntity(String name, double score) {
+        this.name = name;
+        this.score = score;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,33 @@
+package org.example.onnx.ner;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一条 UBERT 实体识别请求：待抽取的文本 + 要识别的实体类型（每个类型是一个 choice）
+ */
+public final class NerQuery {
+
+    public static final String TASK_TYPE = "抽取任务";
+    public static final String SUBTASK_TYPE = "实体识别";
+
+    private final String text;
+    private final List<String> entityTypes;
+
+    public NerQuery(String text, List<String> entityTypes) {
+        this.text = text == null ? "" : text;
+        this.entityTypes = Collections.unmodifiableList(entityTypes);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public List<String> getEntityTypes() {
+        return entityTypes;
+    }
+
+    public int choices() {
+        return entityTypes.size();
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.onnx.ner;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一条请求的识别结果：实体类型 → 实体列表，顺序与请求里的实体类型一致
+ */
+public final class NerResult {
+
+    private final String query;
+    private final Map<String, List<NerEntity>> entities;
+
+    public NerResult(String query, Map<String, List<NerEntity>> entities) {
+        this.query = query;
+        this.entities = Collections.unmodifiableMap(new LinkedHashMap<>(entities));
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public Map<String, List<NerEntity>> getEntities() {
+        return entities;
+    }
+
+    /**
+     * HTTP 接口的输出格式：{"query": ..., "<entity_type>": [{"entity_name": ..., "score": ...}], ...}
+     */
+    public JSONObject toJson() {
+        JSONObject res = new JSONObject(true);
+        res.put("query", query);
+        for (Map.Entry<String, List<NerEntity>> entry : entities.entrySet()) {
+            JSONArray list = new JSONArray(entry.getValue().size());
+            for (NerEntity entity : entry.getValue()) {
+                JSONObject entityObj = new JSONObject();
+                entityObj.put("entity_name", entity.getName());
+                entityObj.put("score", entity.getScore());
+                list.add(entityObj);
+            }
+            res.put(entry.getKey(), list);
+        }
+        return res;
+    }
+}
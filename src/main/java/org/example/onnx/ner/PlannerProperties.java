@@ -0,0 +1,89 @@
+package org.example.onnx.ner;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.RunUbertaOnOnnx;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ner.planner.* 配置：batch 的排法、实体类型预判（词典 / 正则）和调用方可用的实体类型，启动时替换 {@link RunUbertaOnOnnx} 的 planner
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "ner.planner")
+public class PlannerProperties {
+
+    private boolean packChoices = true;
+    private boolean filterEnabled = false;
+    private Map<String, String> dictionaries = new LinkedHashMap<>();
+    private Map<String, String> patterns = new LinkedHashMap<>();
+    // 为空时只允许默认的 RunUbertaOnOnnx.ENTITY_TYPES
+    private List<String> allowedTypes = new ArrayList<>();
+    private int maxTypesPerQuery = 8;
+
+    public boolean isPackChoices() {
+        return packChoices;
+    }
+
+    public void setPackChoices(boolean packChoices) {
+        this.packChoices = packChoices;
+    }
+
+    public boolean isFilterEnabled() {
+        return filterEnabled;
+    }
+
+    public void setFilterEnabled(boolean filterEnabled) {
+        this.filterEnabled = filterEnabled;
+    }
+
+    public Map<String, String> getDictionaries() {
+        return dictionaries;
+    }
+
+    public void setDictionaries(Map<String, String> dictionaries) {
+        this.dictionaries = dictionaries;
+    }
+
+    public Map<String, String> getPatterns() {
+        return patterns;
+    }
+
+    public void setPatterns(Map<String, String> patterns) {
+        this.patterns = patterns;
+    }
+
+    public List<String> getAllowedTypes() {
+        return allowedTypes;
+    }
+
+    public void setAllowedTypes(List<String> allowedTypes) {
+        this.allowedTypes = allowedTypes;
+    }
+
+    public int getMaxTypesPerQuery() {
+        return maxTypesPerQuery;
+    }
+
+    public void setMaxTypesPerQuery(int maxTypesPerQuery) {
+        this.maxTypesPerQuery = maxTypesPerQuery;
+    }
+
+    @PostConstruct
+    public void apply() {
+        RunUbertaOnOnnx.setTypePolicy(new LinkedHashSet<>(allowedTypes.isEmpty() ? RunUbertaOnOnnx.ENTITY_TYPES : allowedTypes),
+                maxTypesPerQuery);
+        EntityTypeFilter filter = filterEnabled ? DictionaryTypeFilter.load(dictionaries, patterns) : EntityTypeFilter.ALL;
+        RunUbertaOnOnnx.setPlanner(new UbertPlanner(filter, packChoices));
+        log.info("ubert planner: pack choices {}, type filter {} (dictionaries {}, patterns {}), allowed types {}, at most {} per query",
+                packChoices, filterEnabled, dictionaries.keySet(), patterns.keySet(),
+                allowedTypes.isEmpty() ? RunUbertaOnOnnx.ENTITY_TYPES : allowedTypes, maxTypesPerQuery);
+    }
+}
@@ -0,0 +1,154 @@
+package org.example.onnx.ner;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * UBERT 一个 (text, entity_type) 占模型的一行，默认 6 个类型就是 6 行。planner 在进模型前把一批请求压成尽量少的行：
+ * <ol>
+ *     <li>相同文本只算一次，实体类型取各请求的并集</li>
+ *     <li>{@link EntityTypeFilter} 判定不可能命中的类型（以及空文本的所有类型）直接去掉，结果里该类型为空列表</li>
+ *     <li>按行排成模型的 batch：packChoices 时每个 (text, type) 单独一行，形状 [rows, 1, maxLength]，没有补齐行；
+ *     否则每个文本一行，形状 [texts, maxChoices, maxLength]，类型数不一的文本要补全 mask 的空 choice</li>
+ * </ol>
+ * UBERT 的各 choice 在模型里是展平后独立计算的，两种排法结果一致，packChoices 只是省掉补齐行。
+ * 模型输出解码后由 {@link Plan#fanOut(List)} 还原成与原请求一一对应、类型顺序不变的结果。
+ * 指标：ner.planner.rows.requested / rows.planned / queries.deduplicated / types.pruned。
+ */
+public final class UbertPlanner {
+
+    private final EntityTypeFilter filter;
+    private final boolean packChoices;
+    private final Counter requestedRows = Counter.builder("ner.planner.rows.requested").register(Metrics.globalRegistry);
+    private final Counter plannedRows = Counter.builder("ner.planner.rows.planned").register(Metrics.globalRegistry);
+    private final Counter deduplicated = Counter.builder("ner.planner.queries.deduplicated").register(Metrics.globalRegistry);
+    private final Counter pruned = Counter.builder("ner.planner.types.pruned").register(Metrics.globalRegistry);
+
+    public UbertPlanner(EntityTypeFilter filter, boolean packChoices) {
+        this.filter = filter;
+        this.packChoices = packChoices;
+    }
+
+    public boolean packChoices() {
+        return packChoices;
+    }
+
+    public Plan plan(List<NerQuery> queries) {
+        // 文本 → 需要进模型的类型（并集、去掉被预判排除的），保持首次出现的顺序
+        Map<String, Set<String>> typesByText = new LinkedHashMap<>();
+        Map<String, Set<String>> prunedByText = new LinkedHashMap<>();
+        int requested = 0;
+        for (NerQuery query : queries) {
+            requested += query.choices();
+            Set<String> types = typesByText.get(query.getText());
+            if (types == null) {
+                types = new LinkedHashSet<>();
+                typesByText.put(query.getText(), types);
+                prunedByText.put(query.getText(), new LinkedHashSet<>());
+            } else {
+                deduplicated.increment();
+            }
+            Set<String> prunedTypes = prunedByText.get(query.getText());
+            for (String entityType : query.getEntityTypes()) {
+                if (types.contains(entityType) || prunedTypes.contains(entityType)) {
+                    continue;
+                }
+                // 空文本不可能抽出实体，不需要进模型
+                if (!query.getText().isEmpty() && filter.mayMatch(query.getText(), entityType)) {
+                    types.add(entityType);
+                } else {
+                    prunedTypes.add(entityType);
+                    pruned.increment();
+                }
+            }
+        }
+
+        List<NerQuery> modelQueries = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> entry : typesByText.entrySet()) {
+            if (packChoices) {
+                for (String entityType : entry.getValue()) {
+                    modelQueries.add(new NerQuery(entry.getKey(), Collections.singletonList(entityType)));
+                }
+            } else if (!entry.getValue().isEmpty()) {
+                modelQueries.add(new NerQuery(entry.getKey(), new ArrayList<>(entry.getValue())));
+            }
+        }
+        requestedRows.increment(requested);
+        int rows = 0;
+        for (NerQuery query : modelQueries) {
+            rows += query.choices();
+        }
+        plannedRows.increment(rows);
+        return new Plan(queries, modelQueries, requested, rows);
+    }
+
+    public static final class Plan {
+        private final List<NerQuery> queries;
+        private final List<NerQuery> modelQueries;
+        private final int requestedRows;
+        private final int plannedRows;
+
+        Plan(List<NerQuery> queries, List<NerQuery> modelQueries, int requestedRows, int plannedRows) {
+            this.queries = queries;
+            this.modelQueries = modelQueries;
+            this.requestedRows = requestedRows;
+            this.plannedRows = plannedRows;
+        }
+
+        /**
+         * 实际送进模型的请求，为空时不需要跑模型
+         */
+        public List<NerQuery> modelQueries() {
+            return modelQueries;
+        }
+
+        /**
+         * 不做规划时的模型行数
+         */
+        public int requestedRows() {
+            return requestedRows;
+        }
+
+        public int plannedRows() {
+            return plannedRows;
+        }
+
+        /**
+         * @param modelResults 与 {@link #modelQueries()} 一一对应的解码结果
+         * @return 与原请求一一对应的结果，没进模型的类型为空列表
+         */
+        public List<NerResult> fanOut(List<NerResult> modelResults) {
+            Map<String, Map<String, List<NerEntity>>> byText = new LinkedHashMap<>();
+            for (NerResult result : modelResults) {
+                Map<String, List<NerEntity>> entities = byText.get(result.getQuery());
+                if (entities == null) {
+                    entities = new LinkedHashMap<>();
+                    byText.put(result.getQuery(), entities);
+                }
+                for (Map.Entry<String, List<NerEntity>> entry : result.getEntities().entrySet()) {
+                    // 多个原请求共用同一个列表
+                    entities.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+                }
+            }
+            List<NerResult> results = new ArrayList<>(queries.size());
+            for (NerQuery query : queries) {
+                Map<String, List<NerEntity>> found = byText.get(query.getText());
+                Map<String, List<NerEntity>> entities = new LinkedHashMap<>();
+                for (String entityType : query.getEntityTypes()) {
+                    List<NerEntity> list = found == null ? null : found.get(entityType);
+                    entities.put(entityType, list == null ? Collections.<NerEntity>emptyList() : list);
+                }
+                results.add(new NerResult(query.getText(), entities));
+            }
+            return results;
+        }
+    }
+}
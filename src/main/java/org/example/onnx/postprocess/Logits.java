@@ -0,0 +1,187 @@
+package org.example.onnx.postprocess;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * 模型输出的后处理，直接在 OnnxTensor.getFloatBuffer()/getDoubleBuffer() 上按行处理整个 batch，
+ * 不把输出物化成多维数组，也不做逐行分配
+ * <p>
+ * buffer 按 [rows, cols] 行主序解释，从 buffer 的 position 开始，只用绝对下标读写，不改变 position
+ */
+public final class Logits {
+
+    private Logits() {
+    }
+
+    public static int rows(FloatBuffer logits, int cols) {
+        return logits.remaining() / cols;
+    }
+
+    /**
+     * 数值稳定的 softmax：每行先减去最大值再 exp，out 可以与 logits 是同一个 buffer
+     */
+    public static void softmax(FloatBuffer logits, int cols, FloatBuffer out) {
+        int base = logits.position();
+        int outBase = out.position();
+        int rows = rows(logits, cols);
+        for (int row = 0; row < rows; row++) {
+            int offset = base + row * cols;
+            int outOffset = outBase + row * cols;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < cols; i++) {
+                max = Math.max(max, logits.get(offset + i));
+            }
+            double sum = 0.0;
+            for (int i = 0; i < cols; i++) {
+                float e = (float) Math.exp(logits.get(offset + i) - max);
+                out.put(outOffset + i, e);
+                sum += e;
+            }
+            float inv = (float) (1.0 / sum);
+            for (int i = 0; i < cols; i++) {
+                out.put(outOffset + i, out.get(outOffset + i) * inv);
+            }
+        }
+    }
+
+    /**
+     * 每行最大值的下标写入 out[row]
+     */
+    public static void argmax(FloatBuffer logits, int cols, int[] out) {
+        int base = logits.position();
+        int rows = rows(logits, cols);
+        for (int row = 0; row < rows; row++) {
+            out[row] = argmax(logits, base + row * cols, cols);
+        }
+    }
+
+    /**
+     * 每行的预测类别写入 labels[row]，softmax 后第一、第二大概率之差写入 margins[row]（0~1，越大越有把握）。
+     * 只需要最大的两个 logit 和一遍 exp 求和，不把整行 softmax 写出来；cols 为 1 时 margin 为 1
+     */
+    public static void margins(FloatBuffer logits, int cols, int[] labels, float[] margins) {
+        int base = logits.position();
+        int rows = rows(logits, cols);
+        for (int row = 0; row < rows; row++) {
+            int offset = base + row * cols;
+            int best = argmax(logits, offset, cols);
+            float top = logits.get(offset + best);
+            float second = Float.NEGATIVE_INFINITY;
+            double sum = 0.0;
+            for (int i = 0; i < cols; i++) {
+                float v = logits.get(offset + i);
+                sum += Math.exp(v - top);
+                if (i != best && v > second) {
+                    second = v;
+                }
+            }
+            labels[row] = best;
+            margins[row] = (float) ((1.0 - Math.exp(second - top)) / sum);
+        }
+    }
+
+    static int argmax(FloatBuffer logits, int offset, int cols) {
+        int maxIndex = 0;
+        float max = logits.get(offset);
+        for (int i = 1; i < cols; i++) {
+            float v = logits.get(offset + i);
+            if (v > max) {
+                max = v;
+                maxIndex = i;
+            }
+        }
+        return maxIndex;
+    }
+
+    /**
+     * sigmoid(x) > threshold 等价于 x > ln(threshold / (1 - threshold))，只对命中的位置算 sigmoid
+     */
+    public static double logit(double threshold) {
+        return Math.log(threshold / (1 - threshold));
+    }
+
+    public static double sigmoid(double x) {
+        x = Math.max(-500, x);
+        x = Math.min(500, x);
+        return 1 / (1 + Math.exp(-x));
+    }
+
+    /**
+     * UBERT 的 span logits，shape 为 [batch, choices, seqLen, seqLen]，sigmoid 后大于 threshold 的 span 追加到 hits。
+     * 有底层数组时（getDoubleBuffer() 返回的就是堆上的拷贝）按 (batch, choice) 整块交给 {@link Thresholds} 找命中位置
+     */
+    public static void spans(DoubleBuffer logits, long[] shape, double threshold, SpanHits hits) {
+        int batch = (int) shape[0];
+        int choices = (int) shape[1];
+        int starts = (int) shape[2];
+        int ends = (int) shape[3];
+        double cut = logit(threshold);
+        if (logits.hasArray()) {
+            double[] values = logits.array();
+            int base = logits.arrayOffset() + logits.position();
+            int block = starts * ends;
+            int[] found = new int[block];
+            for (int b = 0; b < batch; b++) {
+                for (int c = 0; c < choices; c++) {
+                    int offset = base + (b * choices + c) * block;
+                    int n = Thresholds.above(values, offset, block, cut, found);
+                    for (int i = 0; i < n; i++) {
+                        hits.add(b, c, found[i] / ends, found[i] % ends, sigmoid(values[offset + found[i]]));
+                    }
+                }
+            }
+            return;
+        }
+        int index = logits.position();
+        for (int b = 0; b < batch; b++) {
+            for (int c = 0; c < choices; c++) {
+                for (int s = 0; s < starts; s++) {
+                    for (int e = 0; e < ends; e++) {
+                        double x = logits.get(index++);
+                        if (x > cut) {
+                            hits.add(b, c, s, e, sigmoid(x));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public static void spans(FloatBuffer logits, long[] shape, double threshold, SpanHits hits) {
+        int batch = (int) shape[0];
+        int choices = (int) shape[1];
+        int starts = (int) shape[2];
+        int ends = (int) shape[3];
+        float cut = (float) logit(threshold);
+        if (logits.hasArray()) {
+            float[] values = logits.array();
+            int base = logits.arrayOffset() + logits.position();
+            int block = starts * ends;
+            int[] found = new int[block];
+            for (int b = 0; b < batch; b++) {
+                for (int c = 0; c < choices; c++) {
+                    int offset = base + (b * choices + c) * block;
+                    int n = Thresholds.above(values, offset, block, cut, found);
+                    for (int i = 0; i < n; i++) {
+                        hits.add(b, c, found[i] / ends, found[i] % ends, sigmoid(values[offset + found[i]]));
+                    }
+                }
+            }
+            return;
+        }
+        int index = logits.position();
+        for (int b = 0; b < batch; b++) {
+            for (int c = 0; c < choices; c++) {
+                for (int s = 0; s < starts; s++) {
+                    for (int e = 0; e < ends; e++) {
+                        float x = logits.get(index++);
+                        if (x > cut) {
+                            hits.add(b, c, s, e, sigmoid(x));
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
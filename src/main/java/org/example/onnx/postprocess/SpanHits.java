@@ -0,0 +1,73 @@
+package org.example.onnx.postprocess;
+
+import java.util.Arrays;
+
+/**
+ * sigmoid 阈值过滤后命中的 span：(batch, choice, start, end, prob)，按列存放在基本类型数组里，clear 后复用容量
+ */
+public final class SpanHits {
+
+    private int[] batch;
+    private int[] choice;
+    private int[] start;
+    private int[] end;
+    private double[] prob;
+    private int size;
+
+    public SpanHits() {
+        this(16);
+    }
+
+    public SpanHits(int capacity) {
+        batch = new int[capacity];
+        choice = new int[capacity];
+        start = new int[capacity];
+        end = new int[capacity];
+        prob = new double[capacity];
+    }
+
+    public void add(int b, int c, int s, int e, double p) {
+        if (size == batch.length) {
+            int capacity = size * 2;
+            batch = Arrays.copyOf(batch, capacity);
+            choice = Arrays.copyOf(choice, capacity);
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+            prob = Arrays.copyOf(prob, capacity);
+        }
+        batch[size] = b;
+        choice[size] = c;
+        start[size] = s;
+        end[size] = e;
+        prob[size] = p;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int batch(int i) {
+        return batch[i];
+    }
+
+    public int choice(int i) {
+        return choice[i];
+    }
+
+    public int start(int i) {
+        return start[i];
+    }
+
+    public int end(int i) {
+        return end[i];
+    }
+
+    public double prob(int i) {
+        return prob[i];
+    }
+}
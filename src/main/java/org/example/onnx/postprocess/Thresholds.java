@@ -0,0 +1,84 @@
+package org.example.onnx.postprocess;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 找出一段数组里大于阈值的下标。span logits 里绝大多数位置都低于阈值，这一步是解码的主要开销。
+ * <p>
+ * 默认是标量循环（C2 会展开，已经不慢）。-Pjava21 编译、运行时加 --add-modules jdk.incubator.vector -Donnx.vector.enabled=true
+ * 时换成 src/main/java21 里的 Vector API 实现：按 SIMD 宽度整段比较，整段都没命中就跳过，只有命中的段才逐位取下标。
+ * 是否更快取决于 JDK 版本和 CPU，上线前用同样的 logits 对比一下再打开。
+ */
+@Slf4j
+public final class Thresholds {
+
+    private static final String IMPLEMENTATION = "org.example.onnx.postprocess.jdk21.VectorThresholds";
+    private static final Support SUPPORT = load();
+
+    private Thresholds() {
+    }
+
+    public interface Support {
+        int above(double[] values, int offset, int length, double cut, int[] out);
+
+        int above(float[] values, int offset, int length, float cut, int[] out);
+    }
+
+    private static Support load() {
+        if (!Boolean.parseBoolean(System.getProperty("onnx.vector.enabled", "false"))) {
+            return new Scalar();
+        }
+        try {
+            Support support = (Support) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+            log.info("span thresholding uses the vector api: {}", support);
+            return support;
+        } catch (ClassNotFoundException e) {
+            return new Scalar();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // 没有 --add-modules jdk.incubator.vector，或者 JVM 低于 21
+            log.info("vector api unavailable, span thresholding stays scalar: {}", e.toString());
+            return new Scalar();
+        }
+    }
+
+    public static boolean vectorized() {
+        return !(SUPPORT instanceof Scalar);
+    }
+
+    /**
+     * values[offset, offset + length) 中大于 cut 的位置按升序写入 out（相对 offset 的下标），out 至少要有 length 个位置
+     *
+     * @return 命中个数
+     */
+    public static int above(double[] values, int offset, int length, double cut, int[] out) {
+        return SUPPORT.above(values, offset, length, cut, out);
+    }
+
+    public static int above(float[] values, int offset, int length, float cut, int[] out) {
+        return SUPPORT.above(values, offset, length, cut, out);
+    }
+
+    static final class Scalar implements Support {
+        @Override
+        public int above(double[] values, int offset, int length, double cut, int[] out) {
+            int n = 0;
+            for (int i = 0; i < length; i++) {
+                if (values[offset + i] > cut) {
+                    out[n++] = i;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public int above(float[] values, int offset, int length, float cut, int[] out) {
+            int n = 0;
+            for (int i = 0; i < length; i++) {
+                if (values[offset + i] > cut) {
+                    out[n++] = i;
+                }
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.onnx.postprocess;
+
+import java.nio.FloatBuffer;
+
+/**
+ * 每行取前 k 大，用定长的最小堆（两个基本类型数组）实现，实例可以反复用于多行，但不是线程安全的
+ */
+public final class TopK {
+
+    private final int k;
+    private final int[] indices;
+    private final float[] values;
+    private int size;
+
+    public TopK(int k) {
+        this.k = k;
+        this.indices = new int[k];
+        this.values = new float[k];
+    }
+
+    /**
+     * 选出第 row 行的前 k 个，结果按值从大到小排列，通过 index(i)/value(i) 读取
+     *
+     * @return 实际个数，cols < k 时为 cols
+     */
+    public int select(FloatBuffer logits, int row, int cols) {
+        int offset = logits.position() + row * cols;
+        size = 0;
+        for (int i = 0; i < cols; i++) {
+            float v = logits.get(offset + i);
+            if (size < k) {
+                indices[size] = i;
+                values[size] = v;
+                siftUp(size++);
+            } else if (v > values[0]) {
+                indices[0] = i;
+                values[0] = v;
+                siftDown(0, size);
+            }
+        }
+        // 堆排序：依次把堆顶（当前最小）换到末尾，得到降序
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        return size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int index(int i) {
+        return indices[i];
+    }
+
+    public float value(int i) {
+        return values[i];
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (values[parent] <= values[i]) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int n) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= n) {
+                break;
+            }
+            int smallest = left + 1 < n && values[left + 1] < values[left] ? left + 1 : left;
+            if (values[i] <= values[smallest]) {
+                break;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int ti = indices[a];
+        indices[a] = indices[b];
+        indices[b] = ti;
+        float tv = values[a];
+        values[a] = values[b];
+        values[b] = tv;
+    }
+}
@@ -0,0 +1,246 @@
+package org.example.onnx.profile;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.runtime.InferenceScheduler;
+import org.example.onnx.runtime.ModelBinding;
+import org.example.onnx.runtime.OrtThreads;
+import org.example.onnx.runtime.TensorScope;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * 算子级 profiling：用开了 enableProfiling 的影子 session 重新加载模型，按线上的编码方式跑 warmupRuns + runs 个代表性请求，
+ * 把 ORT 写出的 trace 汇总成 {@link ProfileReport}。
+ * <p>
+ * 影子 session 不替换线上 session；请求按 BULK 优先级走 {@link InferenceScheduler}，不会挤占在线请求。同一时间只允许一次采集。
+ * 报告（id.json）和原始 trace（id.trace.json，可以直接拖进 chrome://tracing 或 Perfetto）保存在 onnx.profile.directory，
+ * 超过 max-reports 时删最旧的，重启后仍可用来对比不同模型版本。
+ */
+@Slf4j
+@Component
+public class OrtProfiler {
+
+    private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z0-9_.-]+");
+    private static final String REPORT_SUFFIX = ".json";
+    private static final String TRACE_SUFFIX = ".trace.json";
+    // 报告文件名：<model>-<ID_FORMAT>.json；ORT 原始 trace（<id>_<时间戳>.json，进程中途退出时可能留下）不匹配
+    private static final Pattern REPORT_NAME = Pattern.compile("[A-Za-z0-9_.-]+-\\d{8}-\\d{6}-\\d{3}\\.json");
+
+    private final ProfileProperties properties;
+    private final Map<String, ProfileTarget> targets = new LinkedHashMap<>();
+    private final AtomicBoolean capturing = new AtomicBoolean();
+
+    public OrtProfiler(ProfileProperties properties, List<ProfileTarget> targets) {
+        this.properties = properties;
+        for (ProfileTarget target : targets) {
+            this.targets.put(target.name(), target);
+        }
+    }
+
+    public Set<String> models() {
+        return Collections.unmodifiableSet(targets.keySet());
+    }
+
+    /**
+     * @param runs      预热之后统计的请求数，不大于 max-runs
+     * @param batchSize 每个请求的文本条数，不大于 max-batch-size
+     * @param texts     代表性文本，为空时用模型自带的样例；按请求轮流取 batchSize 条
+     * @throws IllegalArgumentException 模型不支持 profiling 或参数越界
+     * @throws ProfilingBusyException   已经有一次采集在跑
+     */
+    public ProfileReport capture(String model, int runs, int batchSize, List<String> texts) throws OrtException, IOException {
+        ProfileTarget target = targets.get(model);
+        if (target == null) {
+            throw new IllegalArgumentException("model " + model + " does not support profiling, available: " + targets.keySet());
+        }
+        if (runs < 1 || runs > properties.getMaxRuns()) {
+            throw new IllegalArgumentException("runs must be in [1, " + properties.getMaxRuns() + "]");
+        }
+        if (batchSize < 1 || batchSize > properties.getMaxBatchSize()) {
+            throw new IllegalArgumentException("batch size must be in [1, " + properties.getMaxBatchSize() + "]");
+        }
+        if (!capturing.compareAndSet(false, true)) {
+            throw new ProfilingBusyException();
+        }
+        try {
+            return doCapture(target, runs, batchSize, texts == null || texts.isEmpty() ? target.sampleTexts() : texts);
+        } finally {
+            capturing.set(false);
+        }
+    }
+
+    private ProfileReport doCapture(ProfileTarget target, int runs, int batchSize, List<String> texts) throws OrtException, IOException {
+        Path directory = directory();
+        Files.createDirectories(directory);
+        String id = target.name() + "-" + LocalDateTime.now().format(ID_FORMAT);
+        int warmupRuns = Math.max(0, properties.getWarmupRuns());
+        long start = System.nanoTime();
+        String traceFile = null;
+        boolean saved = false;
+        try {
+            try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+                // 与服务的 session 同样的线程数，热点才可比；ORT 在前缀后面加时间戳，endProfiling 返回实际文件名
+                OrtThreads.apply(options);
+                options.enableProfiling(directory.resolve(id).toString());
+                try (OrtSession shadow = OrtEnvironment.getEnvironment().createSession(target.modelPath(), options)) {
+                    try {
+                        ModelBinding binding = ModelBinding.compile(target.name(), shadow);
+                        for (int run = 0; run < warmupRuns + runs; run++) {
+                            List<String> batch = new ArrayList<>(batchSize);
+                            for (int i = 0; i < batchSize; i++) {
+                                batch.add(texts.get((run * batchSize + i) % texts.size()));
+                            }
+                            try (TensorScope scope = TensorScope.open(target.name(), InferenceScheduler.Priority.BULK)) {
+                                scope.run(shadow, binding.bind(target.encode(batch), scope));
+                            }
+                        }
+                    } finally {
+                        // 中途失败也要结束 profiling，否则关 session 时 ORT 还会把 trace 写出来
+                        traceFile = shadow.endProfiling();
+                    }
+                }
+            }
+            Path trace = directory.resolve(id + TRACE_SUFFIX);
+            Files.move(Paths.get(traceFile), trace, StandardCopyOption.REPLACE_EXISTING);
+            ProfileReport report = ProfileReport.parse(id, target.name(), target.modelVersion(), batchSize, warmupRuns,
+                    new String(Files.readAllBytes(trace), StandardCharsets.UTF_8));
+            Files.write(directory.resolve(id + REPORT_SUFFIX), JSON.toJSONString(report.toJson(), true).getBytes(StandardCharsets.UTF_8));
+            saved = true;
+            log.info("profiled {} ({}): {} runs of batch {} in {}ms, mean run {}ms, report {}", target.name(), target.modelVersion(),
+                    runs, batchSize, (System.nanoTime() - start) / 1_000_000,
+                    String.format("%.3f", report.millisPerRun(report.totalRunMicros())), id);
+            prune(directory);
+            return report;
+        } finally {
+            if (!saved) {
+                discard(directory, id, traceFile);
+            }
+        }
+    }
+
+    /**
+     * 采集失败时删掉这次的 trace（原始文件名或已改名的 id.trace.json）和可能写了一半的报告，不留没有报告的孤儿文件
+     */
+    private static void discard(Path directory, String id, String traceFile) {
+        List<Path> files = new ArrayList<>();
+        if (traceFile != null) {
+            files.add(Paths.get(traceFile));
+        }
+        files.add(directory.resolve(id + TRACE_SUFFIX));
+        files.add(directory.resolve(id + REPORT_SUFFIX));
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("failed to delete profile file {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * 已保存的报告，新的在前；model 为空时返回全部。读不了的文件（手工放进来的、写坏的）跳过
+     */
+    public List<ProfileReport> reports(String model) throws IOException {
+        List<ProfileReport> reports = new ArrayList<>();
+        for (Path file : reportFiles(directory())) {
+            ProfileReport report;
+            try {
+                report = read(file);
+            } catch (IOException | RuntimeException e) {
+                log.warn("skipping unreadable profile report {}: {}", file, e.toString());
+                continue;
+            }
+            if (model == null || model.isEmpty() || model.equals(report.model())) {
+                reports.add(report);
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * @return 不存在时为 null
+     */
+    public ProfileReport report(String id) throws IOException {
+        Path file = file(id, REPORT_SUFFIX);
+        return Files.exists(file) ? read(file) : null;
+    }
+
+    /**
+     * @return 原始 trace 文件，不存在时为 null
+     */
+    public Path trace(String id) {
+        Path file = file(id, TRACE_SUFFIX);
+        return Files.exists(file) ? file : null;
+    }
+
+    private Path file(String id, String suffix) {
+        if (!ID_PATTERN.matcher(id).matches() || id.startsWith(".")) {
+            throw new IllegalArgumentException("bad report id " + id);
+        }
+        return directory().resolve(id + suffix);
+    }
+
+    private static ProfileReport read(Path file) throws IOException {
+        return ProfileReport.fromJson(JSON.parseObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+    }
+
+    private Path directory() {
+        return Paths.get(properties.getDirectory());
+    }
+
+    /**
+     * 报告文件（只认 {@link #REPORT_NAME}）按修改时间倒序
+     */
+    private static List<Path> reportFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + REPORT_SUFFIX)) {
+            for (Path file : stream) {
+                if (REPORT_NAME.matcher(file.getFileName().toString()).matches()) {
+                    files.add(file);
+                }
+            }
+        }
+        Map<Path, Long> modified = new LinkedHashMap<>();
+        for (Path file : files) {
+            modified.put(file, Files.getLastModifiedTime(file).toMillis());
+        }
+        files.sort(Comparator.comparingLong((Path file) -> modified.get(file)).reversed());
+        return files;
+    }
+
+    private void prune(Path directory) throws IOException {
+        List<Path> files = reportFiles(directory);
+        for (Path file : files.subList(Math.min(files.size(), Math.max(1, properties.getMaxReports())), files.size())) {
+            String name = file.getFileName().toString();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory.resolve(name.substring(0, name.length() - REPORT_SUFFIX.length()) + TRACE_SUFFIX));
+            log.info("deleted old profile report {}", name);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.onnx.profile;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * onnx.profile.* 配置：报告和原始 trace 的保存目录、预热轮数、每次采集的默认 / 最大请求数和 batch 大小，以及最多保留几份报告
+ */
+@Component
+@ConfigurationProperties(prefix = "onnx.profile")
+public class ProfileProperties {
+
+    private String directory = System.getProperty("java.io.tmpdir") + "/ort-profiles";
+    private int warmupRuns = 3;
+    private int defaultRuns = 20;
+    private int maxRuns = 200;
+    private int defaultBatchSize = 8;
+    private int maxBatchSize = 64;
+    private int maxReports = 50;
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getWarmupRuns() {
+        return warmupRuns;
+    }
+
+    public void setWarmupRuns(int warmupRuns) {
+        this.warmupRuns = warmupRuns;
+    }
+
+    public int getDefaultRuns() {
+        return defaultRuns;
+    }
+
+    public void setDefaultRuns(int defaultRuns) {
+        this.defaultRuns = defaultRuns;
+    }
+
+    public int getMaxRuns() {
+        return maxRuns;
+    }
+
+    public void setMaxRuns(int maxRuns) {
+        this.maxRuns = maxRuns;
+    }
+
+    public int getDefaultBatchSize() {
+        return defaultBatchSize;
+    }
+
+    public void setDefaultBatchSize(int defaultBatchSize) {
+        this.defaultBatchSize = defaultBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getMaxReports() {
+        return maxReports;
+    }
+
+    public void setMaxReports(int maxReports) {
+        this.maxReports = maxReports;
+    }
+}
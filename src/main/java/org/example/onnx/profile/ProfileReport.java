@@ -0,0 +1,345 @@
+package org.example.onnx.profile;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * ORT profiling 输出（Chrome trace JSON）汇总成的热点表：按节点和按算子类型统计 kernel 总耗时、调用次数和占 session.run 的比例。
+ * <p>
+ * 只统计 cat=Node、名字以 _kernel_time 结尾的事件（fence 事件不算），run 耗时取 cat=Session 的 model_run 事件；
+ * 按开始时间排在前 warmupRuns 个 model_run 里的事件算预热，丢掉。kernel 合计占比和 100% 的差是调度、内存分配等框架开销。
+ */
+public final class ProfileReport {
+
+    private static final String KERNEL_SUFFIX = "_kernel_time";
+
+    /**
+     * 一个节点，或一种算子类型下所有节点的合计
+     */
+    public static final class Row {
+        public final String name;
+        public final String opType;
+        public final String provider;
+        int nodes;
+        long calls;
+        long micros;
+
+        Row(String name, String opType, String provider) {
+            this.name = name;
+            this.opType = opType;
+            this.provider = provider;
+        }
+
+        public int nodes() {
+            return nodes;
+        }
+
+        public long calls() {
+            return calls;
+        }
+
+        public long micros() {
+            return micros;
+        }
+    }
+
+    private final String id;
+    private final String model;
+    private final String modelVersion;
+    private final long createdAt;
+    private final int batchSize;
+    private final int warmupRuns;
+    // 预热之后每次 model_run 的耗时（微秒），升序
+    private final long[] runMicros;
+    private final List<Row> opTypes;
+    private final List<Row> nodes;
+
+    private ProfileReport(String id, String model, String modelVersion, long createdAt, int batchSize, int warmupRuns,
+                          long[] runMicros, List<Row> opTypes, List<Row> nodes) {
+        this.id = id;
+        this.model = model;
+        this.modelVersion = modelVersion;
+        this.createdAt = createdAt;
+        this.batchSize = batchSize;
+        this.warmupRuns = warmupRuns;
+        this.runMicros = runMicros;
+        this.opTypes = opTypes;
+        this.nodes = nodes;
+    }
+
+    /**
+     * trace 是 ORT 写的 JSON 数组，也接受 {"traceEvents": [...]} 的形式
+     */
+    public static ProfileReport parse(String id, String model, String modelVersion, int batchSize, int warmupRuns, String trace) {
+        String text = trace.trim();
+        JSONArray events = text.startsWith("{") ? JSON.parseObject(text).getJSONArray("traceEvents") : JSON.parseArray(text);
+        List<long[]> runs = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            JSONObject event = events.getJSONObject(i);
+            if ("Session".equals(event.getString("cat")) && "model_run".equals(event.getString("name"))) {
+                runs.add(new long[]{event.getLongValue("ts"), event.getLongValue("dur")});
+            }
+        }
+        runs.sort(Comparator.comparingLong(r -> r[0]));
+        int skip = Math.min(warmupRuns, runs.size());
+        long cutoff = skip == 0 ? Long.MIN_VALUE : runs.get(skip - 1)[0] + runs.get(skip - 1)[1];
+        long[] measured = new long[runs.size() - skip];
+        for (int i = skip; i < runs.size(); i++) {
+            measured[i - skip] = runs.get(i)[1];
+        }
+        Arrays.sort(measured);
+
+        Map<String, Row> byNode = new LinkedHashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            JSONObject event = events.getJSONObject(i);
+            String name = event.getString("name");
+            if (!"Node".equals(event.getString("cat")) || name == null || !name.endsWith(KERNEL_SUFFIX)
+                    || event.getLongValue("ts") < cutoff) {
+                continue;
+            }
+            String node = name.substring(0, name.length() - KERNEL_SUFFIX.length());
+            Row row = byNode.get(node);
+            if (row == null) {
+                JSONObject args = event.getJSONObject("args");
+                String opType = args == null ? null : args.getString("op_name");
+                String provider = args == null ? null : args.getString("provider");
+                row = new Row(node, opType == null ? "?" : opType, provider == null ? "?" : provider);
+                row.nodes = 1;
+                byNode.put(node, row);
+            }
+            row.calls++;
+            row.micros += event.getLongValue("dur");
+        }
+        List<Row> nodes = new ArrayList<>(byNode.values());
+        Map<String, Row> byType = new LinkedHashMap<>();
+        for (Row node : nodes) {
+            Row type = byType.computeIfAbsent(node.opType, t -> new Row(t, t, node.provider));
+            type.nodes++;
+            type.calls += node.calls;
+            type.micros += node.micros;
+        }
+        List<Row> opTypes = new ArrayList<>(byType.values());
+        nodes.sort(Comparator.comparingLong(Row::micros).reversed());
+        opTypes.sort(Comparator.comparingLong(Row::micros).reversed());
+        return new ProfileReport(id, model, modelVersion, System.currentTimeMillis(), batchSize, warmupRuns, measured, opTypes, nodes);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String model() {
+        return model;
+    }
+
+    public String modelVersion() {
+        return modelVersion;
+    }
+
+    public long createdAt() {
+        return createdAt;
+    }
+
+    public int runs() {
+        return runMicros.length;
+    }
+
+    public List<Row> opTypes() {
+        return opTypes;
+    }
+
+    public List<Row> nodes() {
+        return nodes;
+    }
+
+    public long totalRunMicros() {
+        long total = 0;
+        for (long run : runMicros) {
+            total += run;
+        }
+        return total;
+    }
+
+    public long kernelMicros() {
+        long total = 0;
+        for (Row type : opTypes) {
+            total += type.micros;
+        }
+        return total;
+    }
+
+    /**
+     * row 的耗时占全部 model_run 耗时的比例
+     */
+    public double share(Row row) {
+        long total = totalRunMicros();
+        return total == 0 ? 0 : row.micros / (double) total;
+    }
+
+    /**
+     * 每次 run 平均的毫秒数，跨报告对比时用这个，和采集了几次无关
+     */
+    public double millisPerRun(long micros) {
+        return runMicros.length == 0 ? 0 : micros / 1000.0 / runMicros.length;
+    }
+
+    private double percentileMillis(double p) {
+        if (runMicros.length == 0) {
+            return 0;
+        }
+        return runMicros[(int) Math.min(runMicros.length - 1, Math.ceil(p * runMicros.length) - 1)] / 1000.0;
+    }
+
+    /**
+     * 列表用的摘要，不含明细
+     */
+    public JSONObject summary() {
+        JSONObject out = new JSONObject(true);
+        out.put("id", id);
+        out.put("model", model);
+        out.put("modelVersion", modelVersion);
+        out.put("createdAt", createdAt);
+        out.put("batchSize", batchSize);
+        out.put("warmupRuns", warmupRuns);
+        out.put("runs", runMicros.length);
+        out.put("meanRunMillis", millisPerRun(totalRunMicros()));
+        out.put("p50RunMillis", percentileMillis(0.5));
+        out.put("maxRunMillis", percentileMillis(1));
+        long total = totalRunMicros();
+        out.put("kernelShare", total == 0 ? 0 : kernelMicros() / (double) total);
+        return out;
+    }
+
+    public JSONObject toJson() {
+        JSONObject out = summary();
+        out.put("runMicros", runMicros);
+        out.put("opTypes", rows(opTypes));
+        out.put("nodes", rows(nodes));
+        return out;
+    }
+
+    private JSONArray rows(List<Row> rows) {
+        JSONArray out = new JSONArray(rows.size());
+        for (Row row : rows) {
+            JSONObject item = new JSONObject(true);
+            item.put("name", row.name);
+            item.put("opType", row.opType);
+            item.put("provider", row.provider);
+            item.put("nodes", row.nodes);
+            item.put("calls", row.calls);
+            item.put("micros", row.micros);
+            item.put("millisPerRun", millisPerRun(row.micros));
+            item.put("share", share(row));
+            out.add(item);
+        }
+        return out;
+    }
+
+    public static ProfileReport fromJson(JSONObject json) {
+        JSONArray runs = json.getJSONArray("runMicros");
+        long[] runMicros = new long[runs.size()];
+        for (int i = 0; i < runMicros.length; i++) {
+            runMicros[i] = runs.getLongValue(i);
+        }
+        return new ProfileReport(json.getString("id"), json.getString("model"), json.getString("modelVersion"),
+                json.getLongValue("createdAt"), json.getIntValue("batchSize"), json.getIntValue("warmupRuns"), runMicros,
+                rowsOf(json.getJSONArray("opTypes")), rowsOf(json.getJSONArray("nodes")));
+    }
+
+    private static List<Row> rowsOf(JSONArray array) {
+        List<Row> rows = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            Row row = new Row(item.getString("name"), item.getString("opType"), item.getString("provider"));
+            row.nodes = item.getIntValue("nodes");
+            row.calls = item.getLongValue("calls");
+            row.micros = item.getLongValue("micros");
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * 纯文本热点表：先按算子类型，再列耗时最多的 limit 个节点
+     */
+    public String table(int limit) {
+        StringBuilder out = new StringBuilder();
+        long total = totalRunMicros();
+        out.append(String.format(Locale.ROOT, "%s  model %s (%s)  batch %d  %d runs after %d warmup%n",
+                id, model, modelVersion, batchSize, runMicros.length, warmupRuns));
+        out.append(String.format(Locale.ROOT, "run mean %.3f ms  p50 %.3f ms  max %.3f ms  kernels %.1f%% of run time%n%n",
+                millisPerRun(total), percentileMillis(0.5), percentileMillis(1), total == 0 ? 0 : kernelMicros() * 100.0 / total));
+        out.append(String.format(Locale.ROOT, "%-24s %6s %10s %10s %8s%n", "op type", "nodes", "calls/run", "ms/run", "share"));
+        for (Row type : opTypes) {
+            out.append(String.format(Locale.ROOT, "%-24s %6d %10.1f %10.3f %7.2f%%%n", type.opType, type.nodes,
+                    runMicros.length == 0 ? 0 : type.calls / (double) runMicros.length, millisPerRun(type.micros), share(type) * 100));
+        }
+        out.append(String.format(Locale.ROOT, "%n%-60s %-20s %-22s %10s %8s%n", "node", "op type", "provider", "ms/run", "share"));
+        for (Row node : nodes.subList(0, Math.min(limit, nodes.size()))) {
+            out.append(String.format(Locale.ROOT, "%-60s %-20s %-22s %10.3f %7.2f%%%n", node.name, node.opType, node.provider,
+                    millisPerRun(node.micros), share(node) * 100));
+        }
+        return out.toString();
+    }
+
+    /**
+     * 两份报告按算子类型对比每次 run 的毫秒数，按变化量绝对值降序；只出现在一边的类型另一边记 0
+     */
+    public static JSONObject compare(ProfileReport base, ProfileReport target) {
+        Map<String, Row> baseTypes = byName(base.opTypes);
+        Map<String, Row> targetTypes = byName(target.opTypes);
+        TreeSet<String> names = new TreeSet<>(baseTypes.keySet());
+        names.addAll(targetTypes.keySet());
+        List<JSONObject> rows = new ArrayList<>(names.size());
+        for (String name : names) {
+            double before = baseTypes.containsKey(name) ? base.millisPerRun(baseTypes.get(name).micros) : 0;
+            double after = targetTypes.containsKey(name) ? target.millisPerRun(targetTypes.get(name).micros) : 0;
+            JSONObject row = new JSONObject(true);
+            row.put("opType", name);
+            row.put("baseMillisPerRun", before);
+            row.put("targetMillisPerRun", after);
+            row.put("deltaMillisPerRun", after - before);
+            rows.add(row);
+        }
+        rows.sort(Comparator.comparingDouble((JSONObject r) -> Math.abs(r.getDoubleValue("deltaMillisPerRun"))).reversed());
+        JSONObject out = new JSONObject(true);
+        out.put("base", base.summary());
+        out.put("target", target.summary());
+        out.put("deltaMeanRunMillis", target.millisPerRun(target.totalRunMicros()) - base.millisPerRun(base.totalRunMicros()));
+        out.put("opTypes", new JSONArray(new ArrayList<Object>(rows)));
+        return out;
+    }
+
+    public static String compareTable(ProfileReport base, ProfileReport target) {
+        JSONObject compared = compare(base, target);
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "base   %s  %s  mean run %.3f ms%n", base.id, base.modelVersion, base.millisPerRun(base.totalRunMicros())));
+        out.append(String.format(Locale.ROOT, "target %s  %s  mean run %.3f ms (%+.3f)%n%n", target.id, target.modelVersion,
+                target.millisPerRun(target.totalRunMicros()), compared.getDoubleValue("deltaMeanRunMillis")));
+        out.append(String.format(Locale.ROOT, "%-24s %12s %12s %12s%n", "op type", "base ms/run", "target ms/run", "delta"));
+        for (Object item : compared.getJSONArray("opTypes")) {
+            JSONObject row = (JSONObject) item;
+            out.append(String.format(Locale.ROOT, "%-24s %12.3f %12.3f %+12.3f%n", row.getString("opType"),
+                    row.getDoubleValue("baseMillisPerRun"), row.getDoubleValue("targetMillisPerRun"), row.getDoubleValue("deltaMillisPerRun")));
+        }
+        return out.toString();
+    }
+
+    private static Map<String, Row> byName(List<Row> rows) {
+        Map<String, Row> out = new LinkedHashMap<>();
+        for (Row row : rows) {
+            out.put(row.name, row);
+        }
+        return out;
+    }
+}
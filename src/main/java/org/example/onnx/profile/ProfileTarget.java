@@ -0,0 +1,33 @@
+package org.example.onnx.profile;
+
+import org.example.onnx.runtime.ModelBinding;
+
+import java.util.List;
+
+/**
+ * 可以做算子级 profiling 的模型。实现类注册成 Spring bean 后由 {@link OrtProfiler} 按 {@link #name()} 查找
+ */
+public interface ProfileTarget {
+
+    String name();
+
+    /**
+     * 模型文件路径，影子 session 从这里重新加载，不动线上 session
+     */
+    String modelPath();
+
+    /**
+     * 写进报告，用来对比不同模型版本
+     */
+    String modelVersion();
+
+    /**
+     * 请求里没给输入时用的代表性文本
+     */
+    List<String> sampleTexts();
+
+    /**
+     * 按线上的方式（规划、分词）把 texts 编码成一个 batch
+     */
+    ModelBinding.Features encode(List<String> texts);
+}
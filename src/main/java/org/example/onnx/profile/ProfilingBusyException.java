@@ -0,0 +1,11 @@
+package org.example.onnx.profile;
+
+/**
+ * 已经有一次 profiling 采集在跑（同一时间只允许一次），调用方等它结束再试
+ */
+public class ProfilingBusyException extends RuntimeException {
+
+    public ProfilingBusyException() {
+        super("another profiling capture is running");
+    }
+}
@@ -0,0 +1,253 @@
+package org.example.onnx.runtime;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 每个模型一个的自适应并发限制（AIMD），放在 session.run 前面。
+ * <p>
+ * 每攒够 window 个 session.run 耗时样本算一次 p90：
+ * <ul>
+ *     <li>p90 超过目标 SLO：并发上限和建议的 micro-batch 大小都乘以 backoff（乘性减）</li>
+ *     <li>p90 在目标以内且窗口内并发打满过上限：并发上限 +1（加性增）</li>
+ *     <li>p90 低于目标的一半：micro-batch 大小 +1，用富余的延迟换吞吐</li>
+ * </ul>
+ * 超过上限的请求由 {@link #tryAcquire()} 立即拒绝，不排队。
+ * 指标：onnx.limiter.limit / inflight / batch.size / p90（毫秒），onnx.limiter.rejected，tag 为 model。
+ */
+@Slf4j
+public final class AdaptiveLimiter {
+
+    private static final ConcurrentMap<String, AdaptiveLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private final String model;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+    private volatile Settings settings;
+    private volatile int limit;
+    private volatile int batchSize;
+    private volatile double p90Millis;
+
+    // 以下字段由 this 保护
+    private long[] window;
+    private int samples;
+    private int peakInFlight;
+
+    private AdaptiveLimiter(String model, Settings settings) {
+        this.model = model;
+        configure(settings);
+        Gauge.builder("onnx.limiter.limit", this, AdaptiveLimiter::limit).tag("model", model).register(Metrics.globalRegistry);
+        Gauge.builder("onnx.limiter.inflight", inFlight, AtomicInteger::get).tag("model", model).register(Metrics.globalRegistry);
+        Gauge.builder("onnx.limiter.batch.size", this, AdaptiveLimiter::batchSize).tag("model", model).register(Metrics.globalRegistry);
+        Gauge.builder("onnx.limiter.p90", this, AdaptiveLimiter::p90Millis).tag("model", model).baseUnit("milliseconds")
+                .register(Metrics.globalRegistry);
+        this.rejected = Counter.builder("onnx.limiter.rejected").tag("model", model).register(Metrics.globalRegistry);
+    }
+
+    public static AdaptiveLimiter of(String model) {
+        return LIMITERS.computeIfAbsent(model, m -> new AdaptiveLimiter(m, new Settings()));
+    }
+
+    /**
+     * 替换参数并从 initial 值重新开始调整
+     */
+    public synchronized void configure(Settings settings) {
+        this.settings = settings;
+        this.limit = clamp(settings.getInitialLimit(), settings.getMinLimit(), settings.getMaxLimit());
+        this.batchSize = clamp(settings.getInitialBatchSize(), settings.getMinBatchSize(), settings.getMaxBatchSize());
+        this.window = new long[Math.max(1, settings.getWindow())];
+        this.samples = 0;
+        this.peakInFlight = 0;
+    }
+
+    /**
+     * 非阻塞获取一个在途名额，失败时计入 rejected。成功后必须调用一次 {@link #release(long)}
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 在途 + 1，超过上限时抛 {@link OverloadedException}
+     */
+    public void acquire() {
+        if (!tryAcquire()) {
+            throw new OverloadedException(model, limit);
+        }
+    }
+
+    /**
+     * 归还名额；latencyNanos 是 session.run 的耗时，失败或没跑到推理时传负数，不计入样本
+     */
+    public void release(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        if (latencyNanos >= 0) {
+            record(latencyNanos, current);
+        }
+    }
+
+    private synchronized void record(long latencyNanos, int inFlightAtEnd) {
+        peakInFlight = Math.max(peakInFlight, inFlightAtEnd);
+        window[samples++] = latencyNanos;
+        if (samples < window.length) {
+            return;
+        }
+        Arrays.sort(window);
+        long p90 = window[(int) Math.ceil(window.length * 0.9) - 1];
+        boolean saturated = peakInFlight >= limit;
+        samples = 0;
+        peakInFlight = 0;
+        adjust(p90 / 1_000_000D, saturated);
+    }
+
+    private void adjust(double p90, boolean saturated) {
+        Settings s = settings;
+        int oldLimit = limit;
+        int oldBatchSize = batchSize;
+        p90Millis = p90;
+        if (p90 > s.getTargetP90Millis()) {
+            limit = clamp((int) (limit * s.getBackoff()), s.getMinLimit(), s.getMaxLimit());
+            batchSize = clamp((int) (batchSize * s.getBackoff()), s.getMinBatchSize(), s.getMaxBatchSize());
+        } else {
+            if (saturated) {
+                limit = clamp(limit + 1, s.getMinLimit(), s.getMaxLimit());
+            }
+            if (p90 < s.getTargetP90Millis() / 2) {
+                batchSize = clamp(batchSize + 1, s.getMinBatchSize(), s.getMaxBatchSize());
+            }
+        }
+        if (limit != oldLimit || batchSize != oldBatchSize) {
+            log.debug("limiter {}: p90={}ms limit {} -> {}, batch {} -> {}", model, p90, oldLimit, limit, oldBatchSize, batchSize);
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public String model() {
+        return model;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 建议的 micro-batch 大小（单次 session.run 的请求条数）
+     */
+    public int batchSize() {
+        return batchSize;
+    }
+
+    public double p90Millis() {
+        return p90Millis;
+    }
+
+    /**
+     * onnx.limiter.models.&lt;model&gt;.* 的参数
+     */
+    public static class Settings {
+        private int initialLimit = 4;
+        private int minLimit = 1;
+        private int maxLimit = 64;
+        private int initialBatchSize = 8;
+        private int minBatchSize = 1;
+        private int maxBatchSize = 32;
+        private double targetP90Millis = 200;
+        private double backoff = 0.9;
+        private int window = 50;
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public int getInitialBatchSize() {
+            return initialBatchSize;
+        }
+
+        public void setInitialBatchSize(int initialBatchSize) {
+            this.initialBatchSize = initialBatchSize;
+        }
+
+        public int getMinBatchSize() {
+            return minBatchSize;
+        }
+
+        public void setMinBatchSize(int minBatchSize) {
+            this.minBatchSize = minBatchSize;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public double getTargetP90Millis() {
+            return targetP90Millis;
+        }
+
+        public void setTargetP90Millis(double targetP90Millis) {
+            this.targetP90Millis = targetP90Millis;
+        }
+
+        public double getBackoff() {
+            return backoff;
+        }
+
+        public void setBackoff(double backoff) {
+            this.backoff = backoff;
+        }
+
+        public int getWindow() {
+            return window;
+        }
+
+        public void setWindow(int window) {
+            this.window = window;
+        }
+    }
+}
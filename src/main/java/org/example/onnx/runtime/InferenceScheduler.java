@@ -0,0 +1,365 @@
+package org.example.onnx.runtime;
+
+import ai.onnxruntime.OrtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * 每个模型一个的 session.run 调度器，按优先级把调用分成 INTERACTIVE（在线请求）和 BULK（批量任务）两类。
+ * <p>
+ * 模型同时最多跑 slots 个 session.run，每类有自己的等待队列、并发上限和单次 batch 行数：
+ * <ul>
+ *     <li>有空位时在“有排队且没到本类并发上限”的类里按 stride 调度选 pass 最小的一类（加权公平），
+ *     交互类默认权重 100 : 1，两类都在排队时几乎总是交互先走，批量又不会被饿死</li>
+ *     <li>批量类的并发上限默认比 slots 少一个，空闲的核给批量用，同时总给交互留一个位置</li>
+ *     <li>不打断正在跑的 session.run；大任务由调用方按 {@link #maxBatchRows(Priority)} 切成多次调用，
+ *     每次重新排队，交互请求在 batch 边界插到前面</li>
+ *     <li>队列满或等待超过 queueTimeoutMillis 抛 {@link QueueRejectedException}（{@link OverloadedException} 的子类，调用方同样按过载处理）</li>
+ * </ul>
+ * 指标：onnx.scheduler.queue.delay（排队耗时）、onnx.scheduler.queued / running、onnx.scheduler.rejected，tag 为 model 和 class。
+ */
+@Slf4j
+public final class InferenceScheduler {
+
+    private static final ConcurrentMap<String, InferenceScheduler> SCHEDULERS = new ConcurrentHashMap<>();
+    // stride = STRIDE_BASE / weight
+    private static final long STRIDE_BASE = 1L << 20;
+
+    public enum Priority {
+        INTERACTIVE, BULK;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final String model;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Lane[] lanes = new Lane[Priority.values().length];
+    private volatile Settings settings;
+
+    // 以下字段由 lock 保护
+    private int busy;
+    // 最近一次分派出去的 pass，刚开始排队的类从这里起步，不能拿空闲期间攒下的额度插队
+    private long virtualTime;
+
+    private InferenceScheduler(String model, Settings settings) {
+        this.model = model;
+        for (Priority priority : Priority.values()) {
+            lanes[priority.ordinal()] = new Lane(priority);
+        }
+        configure(settings);
+    }
+
+    public static InferenceScheduler of(String model) {
+        return SCHEDULERS.computeIfAbsent(model, m -> new InferenceScheduler(m, new Settings()));
+    }
+
+    /**
+     * 替换参数，已经在跑和在排队的调用不受影响，之后的分派按新参数
+     */
+    public void configure(Settings settings) {
+        lock.lock();
+        try {
+            this.settings = settings;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按 priority 排队，轮到后在当前线程（虚拟线程上转到 {@link NativeCallExecutor}）执行 call
+     */
+    public <T> T run(Priority priority, NativeCallExecutor.NativeCall<T> call) throws OrtException {
+        Lane lane = lanes[priority.ordinal()];
+        ClassSettings cls = settings.of(priority);
+        long enqueued = System.nanoTime();
+        Ticket ticket;
+        lock.lock();
+        try {
+            if (cls.getMaxQueue() > 0 && lane.queue.size() >= cls.getMaxQueue()) {
+                lane.rejected.increment();
+                throw QueueRejectedException.queueFull(model, priority, cls.getMaxQueue());
+            }
+            ticket = new Ticket(lock.newCondition());
+            if (lane.queue.isEmpty() && lane.running == 0) {
+                lane.pass = Math.max(lane.pass, virtualTime);
+            }
+            lane.queue.addLast(ticket);
+            dispatch();
+            await(lane, ticket, cls, enqueued);
+        } finally {
+            lock.unlock();
+        }
+        lane.delay.record(System.nanoTime() - enqueued, TimeUnit.NANOSECONDS);
+        try {
+            return NativeCallExecutor.call(call);
+        } finally {
+            lock.lock();
+            try {
+                lane.running--;
+                busy--;
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void await(Lane lane, Ticket ticket, ClassSettings cls, long enqueued) throws OrtException {
+        long deadline = cls.getQueueTimeoutMillis() > 0 ? enqueued + TimeUnit.MILLISECONDS.toNanos(cls.getQueueTimeoutMillis()) : 0;
+        try {
+            while (!ticket.granted) {
+                if (deadline == 0) {
+                    ticket.ready.await();
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    lane.queue.remove(ticket);
+                    lane.rejected.increment();
+                    throw QueueRejectedException.queueTimeout(model, lane.priority, cls.getQueueTimeoutMillis(), settings.getSlots());
+                }
+                ticket.ready.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            if (ticket.granted) {
+                // 名额已经分给了这个调用，还回去
+                lane.running--;
+                busy--;
+                dispatch();
+            } else {
+                lane.queue.remove(ticket);
+            }
+            Thread.currentThread().interrupt();
+            throw new OrtException("interrupted while waiting for inference slot of model " + model);
+        }
+    }
+
+    /**
+     * 调用方持有 lock
+     */
+    private void dispatch() {
+        Settings s = settings;
+        while (busy < s.getSlots()) {
+            Lane next = null;
+            for (Lane lane : lanes) {
+                if (lane.queue.isEmpty() || lane.running >= Math.min(s.of(lane.priority).getMaxConcurrency(), s.getSlots())) {
+                    continue;
+                }
+                // pass 相同时按枚举顺序，交互优先
+                if (next == null || lane.pass < next.pass) {
+                    next = lane;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            Ticket ticket = next.queue.pollFirst();
+            ticket.granted = true;
+            next.running++;
+            busy++;
+            virtualTime = next.pass;
+            next.pass += STRIDE_BASE / Math.max(1, s.of(next.priority).getWeight());
+            ticket.ready.signal();
+        }
+    }
+
+    /**
+     * 按 rows 把 items 切成每段不超过 maxRows 行的连续片段，单个超过 maxRows 的元素自成一段
+     */
+    public static <T> List<List<T>> split(List<T> items, ToIntFunction<T> rows, int maxRows) {
+        if (maxRows <= 0 || items.size() <= 1) {
+            return Collections.singletonList(items);
+        }
+        List<List<T>> chunks = new ArrayList<>();
+        int from = 0;
+        int chunkRows = 0;
+        for (int i = 0; i < items.size(); i++) {
+            int r = rows.applyAsInt(items.get(i));
+            if (i > from && chunkRows + r > maxRows) {
+                chunks.add(items.subList(from, i));
+                from = i;
+                chunkRows = 0;
+            }
+            chunkRows += r;
+        }
+        chunks.add(items.subList(from, items.size()));
+        return chunks;
+    }
+
+    public String model() {
+        return model;
+    }
+
+    /**
+     * 该类单次 session.run 的最大行数，0 表示不切分
+     */
+    public int maxBatchRows(Priority priority) {
+        return settings.of(priority).getMaxBatchRows();
+    }
+
+    public int queued(Priority priority) {
+        lock.lock();
+        try {
+            return lanes[priority.ordinal()].queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int running(Priority priority) {
+        lock.lock();
+        try {
+            return lanes[priority.ordinal()].running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private final class Lane {
+        final Priority priority;
+        final ArrayDeque<Ticket> queue = new ArrayDeque<>();
+        final Timer delay;
+        final Counter rejected;
+        int running;
+        long pass;
+
+        Lane(Priority priority) {
+            this.priority = priority;
+            this.delay = Timer.builder("onnx.scheduler.queue.delay").tags("model", model, "class", priority.tag())
+                    .publishPercentiles(0.5, 0.9, 0.99).register(Metrics.globalRegistry);
+            this.rejected = Counter.builder("onnx.scheduler.rejected").tags("model", model, "class", priority.tag())
+                    .register(Metrics.globalRegistry);
+            Gauge.builder("onnx.scheduler.queued", InferenceScheduler.this, s -> s.queued(priority))
+                    .tags("model", model, "class", priority.tag()).register(Metrics.globalRegistry);
+            Gauge.builder("onnx.scheduler.running", InferenceScheduler.this, s -> s.running(priority))
+                    .tags("model", model, "class", priority.tag()).register(Metrics.globalRegistry);
+        }
+    }
+
+    private static final class Ticket {
+        final Condition ready;
+        boolean granted;
+
+        Ticket(Condition ready) {
+            this.ready = ready;
+        }
+    }
+
+    /**
+     * onnx.scheduler.models.&lt;model&gt;.* 的参数
+     */
+    public static class Settings {
+        private int slots = Runtime.getRuntime().availableProcessors();
+        private ClassSettings interactive = new ClassSettings(100, Integer.MAX_VALUE, 0, 1024, 1000);
+        private ClassSettings bulk = new ClassSettings(1, Math.max(1, Runtime.getRuntime().availableProcessors() - 1), 64, 0, 0);
+
+        ClassSettings of(Priority priority) {
+            return priority == Priority.INTERACTIVE ? interactive : bulk;
+        }
+
+        public int getSlots() {
+            return slots;
+        }
+
+        public void setSlots(int slots) {
+            this.slots = Math.max(1, slots);
+        }
+
+        public ClassSettings getInteractive() {
+            return interactive;
+        }
+
+        public void setInteractive(ClassSettings interactive) {
+            this.interactive = interactive;
+        }
+
+        public ClassSettings getBulk() {
+            return bulk;
+        }
+
+        public void setBulk(ClassSettings bulk) {
+            this.bulk = bulk;
+        }
+    }
+
+    /**
+     * 一个优先级类的参数：权重、并发上限、单次 batch 最大行数（0 不切分）、队列长度（0 不限）、排队超时（0 一直等）
+     */
+    public static class ClassSettings {
+        private int weight;
+        private int maxConcurrency;
+        private int maxBatchRows;
+        private int maxQueue;
+        private long queueTimeoutMillis;
+
+        public ClassSettings() {
+            this(1, Integer.MAX_VALUE, 0, 0, 0);
+        }
+
+        ClassSettings(int weight, int maxConcurrency, int maxBatchRows, int maxQueue, long queueTimeoutMillis) {
+            this.weight = weight;
+            this.maxConcurrency = maxConcurrency;
+            this.maxBatchRows = maxBatchRows;
+            this.maxQueue = maxQueue;
+            this.queueTimeoutMillis = queueTimeoutMillis;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public void setWeight(int weight) {
+            this.weight = weight;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public int getMaxBatchRows() {
+            return maxBatchRows;
+        }
+
+        public void setMaxBatchRows(int maxBatchRows) {
+            this.maxBatchRows = maxBatchRows;
+        }
+
+        public int getMaxQueue() {
+            return maxQueue;
+        }
+
+        public void setMaxQueue(int maxQueue) {
+            this.maxQueue = maxQueue;
+        }
+
+        public long getQueueTimeoutMillis() {
+            return queueTimeoutMillis;
+        }
+
+        public void setQueueTimeoutMillis(long queueTimeoutMillis) {
+            this.queueTimeoutMillis = queueTimeoutMillis;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.onnx.runtime;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * onnx.jfr.* 配置：按需 JFR 录制的输出目录、JFR 配置名、默认和最长录制时间、磁盘上保留数据的上限、保留的录制文件数
+ */
+@Component
+@ConfigurationProperties(prefix = "onnx.jfr")
+public class JfrProperties {
+
+    private String directory = System.getProperty("java.io.tmpdir") + "/jfr";
+    private String settings = "profile";
+    private long defaultSeconds = 60;
+    private long maxSeconds = 600;
+    private long maxBytes = 256L * 1024 * 1024;
+    private int maxRecordings = 20;
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public String getSettings() {
+        return settings;
+    }
+
+    public void setSettings(String settings) {
+        this.settings = settings;
+    }
+
+    public long getDefaultSeconds() {
+        return defaultSeconds;
+    }
+
+    public void setDefaultSeconds(long defaultSeconds) {
+        this.defaultSeconds = defaultSeconds;
+    }
+
+    public long getMaxSeconds() {
+        return maxSeconds;
+    }
+
+    public void setMaxSeconds(long maxSeconds) {
+        this.maxSeconds = maxSeconds;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public int getMaxRecordings() {
+        return maxRecordings;
+    }
+
+    public void setMaxRecordings(int maxRecordings) {
+        this.maxRecordings = maxRecordings;
+    }
+}
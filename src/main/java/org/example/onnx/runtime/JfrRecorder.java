@@ -0,0 +1,116 @@
+package org.example.onnx.runtime;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 按需 JFR 录制：同一时间一段，时长不超过 onnx.jfr.max-seconds（到时自动停止）；max-bytes 只是磁盘上保留数据的上限，
+ * 超过后丢掉最早的数据继续录，不会提前停止。目录里最多留 max-recordings 个 onnx-*.jfr，开始新录制前删掉最旧的。
+ * 录制期间 {@link PipelineEvents} 的各阶段事件打开，和 JVM 自带的 GC / safepoint / 分配事件录在同一个文件里。
+ */
+@Slf4j
+@Component
+public class JfrRecorder {
+
+    private static final DateTimeFormatter FILE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    // 只认自己写的文件名，目录里别的 .jfr 不动
+    private static final Pattern RECORDING_NAME = Pattern.compile("onnx-\\d{8}-\\d{6}\\.jfr");
+
+    private final JfrProperties properties;
+    private volatile Path file;
+    private volatile long startedAt;
+    private volatile long seconds;
+
+    public JfrRecorder(JfrProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean available() {
+        return PipelineEvents.available();
+    }
+
+    /**
+     * @param seconds  不大于 0 时用 default-seconds
+     * @param settings 为空时用配置的 JFR 配置名
+     * @throws IllegalArgumentException 时长越界或 JFR 配置名不存在
+     * @throws IllegalStateException    已经有录制在进行
+     */
+    public synchronized Map<String, Object> start(long seconds, String settings) throws IOException {
+        long duration = seconds > 0 ? seconds : properties.getDefaultSeconds();
+        if (duration > properties.getMaxSeconds()) {
+            throw new IllegalArgumentException("seconds must not exceed " + properties.getMaxSeconds());
+        }
+        String configuration = settings == null || settings.isEmpty() ? properties.getSettings() : settings;
+        Path directory = Paths.get(properties.getDirectory());
+        Files.createDirectories(directory);
+        prune(directory);
+        Path destination = directory.resolve("onnx-" + LocalDateTime.now().format(FILE_FORMAT) + ".jfr");
+        PipelineEvents.support().start(configuration, duration, properties.getMaxBytes(), destination);
+        this.file = destination;
+        this.startedAt = System.currentTimeMillis();
+        this.seconds = duration;
+        log.info("jfr recording started: {} for {}s with settings {}", destination, duration, configuration);
+        return status();
+    }
+
+    /**
+     * 停止录制（已到时自动停止的直接返回），返回录制文件；从没开始过时返回 null
+     */
+    public synchronized Path stop() throws IOException {
+        Path stopped = PipelineEvents.support().stop();
+        if (stopped != null) {
+            log.info("jfr recording stopped: {} ({} bytes)", stopped, Files.exists(stopped) ? Files.size(stopped) : 0);
+        }
+        return stopped;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("available", available());
+        if (available()) {
+            status.put("state", PipelineEvents.support().state());
+            status.put("file", file == null ? null : file.toString());
+            status.put("startedAt", startedAt);
+            status.put("seconds", seconds);
+        }
+        return status;
+    }
+
+    /**
+     * 按修改时间只留最新的 max-recordings - 1 个，加上这次要写的正好 max-recordings 个
+     */
+    private void prune(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "onnx-*.jfr")) {
+            for (Path file : stream) {
+                if (RECORDING_NAME.matcher(file.getFileName().toString()).matches()) {
+                    files.add(file);
+                }
+            }
+        }
+        Map<Path, Long> modified = new LinkedHashMap<>();
+        for (Path file : files) {
+            modified.put(file, Files.getLastModifiedTime(file).toMillis());
+        }
+        files.sort(Comparator.comparingLong((Path file) -> modified.get(file)).reversed());
+        int keep = Math.max(0, properties.getMaxRecordings() - 1);
+        for (Path file : files.subList(Math.min(files.size(), keep), files.size())) {
+            Files.deleteIfExists(file);
+            log.info("deleted old jfr recording {}", file.getFileName());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.onnx.runtime;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * onnx.limiter.* 配置：模型名 → {@link AdaptiveLimiter.Settings}，启动时应用到对应的限流器上
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "onnx.limiter")
+public class LimiterProperties {
+
+    private Map<String, AdaptiveLimiter.Settings> models = new LinkedHashMap<>();
+
+    public Map<String, AdaptiveLimiter.Settings> getModels() {
+        return models;
+    }
+
+    public void setModels(Map<String, AdaptiveLimiter.Settings> models) {
+        this.models = models;
+    }
+
+    @PostConstruct
+    public void apply() {
+        for (Map.Entry<String, AdaptiveLimiter.Settings> entry : models.entrySet()) {
+            AdaptiveLimiter.of(entry.getKey()).configure(entry.getValue());
+            log.info("limiter {} configured: target p90 {}ms, limit {}..{}", entry.getKey(),
+                    entry.getValue().getTargetP90Millis(), entry.getValue().getMinLimit(), entry.getValue().getMaxLimit());
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package org.example.onnx.runtime;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.Buffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 一个 session 的输入绑定计划，加载模型时由 getInputInfo / getOutputInfo 编译一次：
+ * <ul>
+ *     <li>按输入名把每个模型输入对应到分词器的一种输出（{@link Feature}），名字的别名见 {@link #featureOf(String)}</li>
+ *     <li>元素类型取模型声明的类型：token 类输入支持 int64 / int32，span mask 支持 double / float / float16，
+ *     模型导出成 FP32 / FP16 时不用改代码；span mask 由分词器直接按目标类型写出（{@link Features#floatSpanMask()} 等），不经过 double[] 再转换</li>
+ *     <li>每个输入的写入例程在加载时按元素类型选定一次，所有形状共用；张量形状每次由 token 形状（如 [batch, choices, seqLen]）现算，
+ *     span mask 多一维 seqLen。输入 map 是按 session 输入顺序的定长数组，不再按名字查找、不建 HashMap</li>
+ * </ul>
+ * 输出同样按声明的类型读取：{@link #outputBuffer(OnnxTensor)} 返回堆上的 DoubleBuffer 或 FloatBuffer（float16 转成 float）。
+ */
+@Slf4j
+public final class ModelBinding {
+
+    /**
+     * 分词器产出的几种输入
+     */
+    public enum Feature {
+        INPUT_IDS, ATTENTION_MASK, TOKEN_TYPE_IDS, SPAN_LABELS_MASK
+    }
+
+    /**
+     * 分词器一个 batch 的输出，都是行主序的一维数组
+     */
+    public interface Features {
+        /**
+         * token 类输入的形状，例如 [batch, choices, seqLen] 或 [batch, seqLen]；span mask 的形状是它再加一维 seqLen
+         */
+        long[] shape();
+
+        /**
+         * INPUT_IDS / ATTENTION_MASK / TOKEN_TYPE_IDS
+         */
+        long[] tokens(Feature feature);
+
+        /**
+         * 没有 span mask 时为 null，以下两个相同
+         */
+        double[] spanMask();
+
+        float[] floatSpanMask();
+
+        /**
+         * binary16 编码（见 {@link ModelBinding#floatToHalf(float)}）
+         */
+        short[] halfSpanMask();
+    }
+
+    private final String model;
+    private final String[] names;
+    private final Feature[] features;
+    private final OnnxJavaType[] types;
+    private final TensorWriter[] writers;
+    private final OnnxJavaType outputType;
+
+    private ModelBinding(String model, String[] names, Feature[] features, OnnxJavaType[] types, OnnxJavaType outputType) {
+        this.model = model;
+        this.names = names;
+        this.features = features;
+        this.types = types;
+        this.outputType = outputType;
+        this.writers = new TensorWriter[names.length];
+        for (int i = 0; i < names.length; i++) {
+            writers[i] = writerFor(model, names[i], features[i], types[i]);
+        }
+    }
+
+    public static ModelBinding compile(String model, OrtSession session) throws OrtException {
+        Map<String, NodeInfo> inputs = session.getInputInfo();
+        String[] names = new String[inputs.size()];
+        Feature[] features = new Feature[inputs.size()];
+        OnnxJavaType[] types = new OnnxJavaType[inputs.size()];
+        int i = 0;
+        for (NodeInfo input : inputs.values()) {
+            if (!(input.getInfo() instanceof TensorInfo)) {
+                throw new IllegalStateException(model + ": input " + input.getName() + " is not a tensor");
+            }
+            names[i] = input.getName();
+            features[i] = featureOf(input.getName());
+            types[i] = ((TensorInfo) input.getInfo()).type;
+            i++;
+        }
+        OnnxJavaType outputType = OnnxJavaType.UNKNOWN;
+        for (NodeInfo output : session.getOutputInfo().values()) {
+            if (output.getInfo() instanceof TensorInfo) {
+                outputType = ((TensorInfo) output.getInfo()).type;
+            }
+            break;
+        }
+        ModelBinding binding = new ModelBinding(model, names, features, types, outputType);
+        log.info("model {} binding: {}", model, binding);
+        return binding;
+    }
+
+    /**
+     * 输入名 → 分词器输出，大小写不敏感
+     */
+    static Feature featureOf(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "input_ids":
+            case "ids":
+            case "input":
+                return Feature.INPUT_IDS;
+            case "attention_mask":
+            case "mask":
+            case "input_mask":
+                return Feature.ATTENTION_MASK;
+            case "token_type_ids":
+            case "segment_ids":
+            case "token_type":
+                return Feature.TOKEN_TYPE_IDS;
+            case "span_labels_mask":
+                return Feature.SPAN_LABELS_MASK;
+            default:
+                throw new IllegalStateException("no tokenizer output for model input " + name);
+        }
+    }
+
+    public OnnxJavaType outputType() {
+        return outputType;
+    }
+
+    /**
+     * 建好输入张量（记在 scope 上），返回的 map 按 session 输入顺序排列
+     */
+    public Map<String, OnnxTensor> bind(Features batch, TensorScope scope) throws OrtException {
+        Object event = PipelineEvents.begin(PipelineEvents.Stage.TENSOR_BUILD);
+        long[] tokenShape = batch.shape();
+        long[] spanShape = Arrays.copyOf(tokenShape, tokenShape.length + 1);
+        spanShape[tokenShape.length] = tokenShape[tokenShape.length - 1];
+        OnnxTensor[] tensors = new OnnxTensor[names.length];
+        for (int i = 0; i < names.length; i++) {
+            tensors[i] = writers[i].write(batch, features[i] == Feature.SPAN_LABELS_MASK ? spanShape : tokenShape, scope);
+        }
+        scope.inputShape(tokenShape);
+        PipelineEvents.end(event, model, tokenShape);
+        return new BoundInputs(names, tensors);
+    }
+
+    interface TensorWriter {
+        OnnxTensor write(Features batch, long[] shape, TensorScope scope) throws OrtException;
+    }
+
+    static TensorWriter writerFor(String model, String name, Feature feature, OnnxJavaType type) {
+        if (feature == Feature.SPAN_LABELS_MASK) {
+            switch (type) {
+                case DOUBLE:
+                    return (batch, shape, scope) -> scope.createTensor(DoubleBuffer.wrap(checkSpanMask(batch.spanMask())), shape);
+                case FLOAT:
+                    return (batch, shape, scope) -> scope.createTensor(FloatBuffer.wrap(checkSpanMask(batch.floatSpanMask())), shape);
+                case FLOAT16:
+                    return (batch, shape, scope) -> scope.createTensor(ShortBuffer.wrap(checkSpanMask(batch.halfSpanMask())), shape, OnnxJavaType.FLOAT16);
+                default:
+                    break;
+            }
+        } else {
+            switch (type) {
+                case INT64:
+                    return (batch, shape, scope) -> scope.createTensor(LongBuffer.wrap(batch.tokens(feature)), shape);
+                case INT32:
+                    return (batch, shape, scope) -> scope.createTensor(IntBuffer.wrap(toInt(batch.tokens(feature))), shape);
+                default:
+                    break;
+            }
+        }
+        throw new IllegalStateException(model + ": unsupported element type " + type + " for input " + name + " (" + feature + ")");
+    }
+
+    private static <T> T checkSpanMask(T mask) {
+        if (mask == null) {
+            throw new IllegalArgumentException("model expects span_labels_mask but the batch has none");
+        }
+        return mask;
+    }
+
+    static int[] toInt(long[] values) {
+        int[] out = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            out[i] = (int) values[i];
+        }
+        return out;
+    }
+
+    /**
+     * 模型输出 0 按声明类型读成堆上的 DoubleBuffer / FloatBuffer，scope 关闭后仍可使用
+     */
+    public Buffer outputBuffer(OnnxTensor tensor) {
+        switch (tensor.getInfo().type) {
+            case DOUBLE:
+                return tensor.getDoubleBuffer();
+            case FLOAT:
+                return tensor.getFloatBuffer();
+            case FLOAT16: {
+                ShortBuffer half = tensor.getShortBuffer();
+                float[] values = new float[half.remaining()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = halfToFloat(half.get(half.position() + i));
+                }
+                return FloatBuffer.wrap(values);
+            }
+            default:
+                throw new IllegalStateException(model + ": unsupported output type " + tensor.getInfo().type);
+        }
+    }
+
+    /**
+     * IEEE 754 binary32 → binary16，就近舍入到偶数，溢出为无穷
+     */
+    public static short floatToHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+        if (exponent == 0xFF) {
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        int e = exponent - 127 + 15;
+        if (e >= 0x1F) {
+            return (short) (sign | 0x7C00);
+        }
+        if (e <= 0) {
+            if (e < -10) {
+                return (short) sign;
+            }
+            // 非规格化数：补上隐含的 1 后右移
+            mantissa |= 0x800000;
+            int shift = 14 - e;
+            int half = mantissa >> shift;
+            int rest = mantissa & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if (rest > halfway || (rest == halfway && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = (e << 10) | (mantissa >> 13);
+        int rest = mantissa & 0x1FFF;
+        if (rest > 0x1000 || (rest == 0x1000 && (half & 1) != 0)) {
+            // 进位可能溢出到指数，正好得到下一个数或无穷
+            half++;
+        }
+        return (short) (sign | half);
+    }
+
+    public static float halfToFloat(short value) {
+        int sign = (value & 0x8000) << 16;
+        int exponent = (value >>> 10) & 0x1F;
+        int mantissa = value & 0x3FF;
+        if (exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        if (exponent == 0) {
+            if (mantissa == 0) {
+                return Float.intBitsToFloat(sign);
+            }
+            // 非规格化数：规格化到 float
+            exponent = 1;
+            while ((mantissa & 0x400) == 0) {
+                mantissa <<= 1;
+                exponent--;
+            }
+            mantissa &= 0x3FF;
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            out.append(names[i]).append('=').append(features[i]).append('/').append(types[i]).append(", ");
+        }
+        return out.append("output=").append(outputType).toString();
+    }
+
+    /**
+     * 定长、只读的输入 map，按 session 输入顺序迭代
+     */
+    static final class BoundInputs extends AbstractMap<String, OnnxTensor> {
+        private final String[] names;
+        private final OnnxTensor[] tensors;
+
+        BoundInputs(String[] names, OnnxTensor[] tensors) {
+            this.names = names;
+            this.tensors = tensors;
+        }
+
+        @Override
+        public int size() {
+            return names.length;
+        }
+
+        @Override
+        public OnnxTensor get(Object key) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(key)) {
+                    return tensors[i];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Set<Entry<String, OnnxTensor>> entrySet() {
+            return new AbstractSet<Entry<String, OnnxTensor>>() {
+                @Override
+                public int size() {
+                    return names.length;
+                }
+
+                @Override
+                public Iterator<Entry<String, OnnxTensor>> iterator() {
+                    return new Iterator<Entry<String, OnnxTensor>>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < names.length;
+                        }
+
+                        @Override
+                        public Entry<String, OnnxTensor> next() {
+                            if (next >= names.length) {
+                                throw new NoSuchElementException();
+                            }
+                            int i = next++;
+                            return new SimpleImmutableEntry<>(names[i], tensors[i]);
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
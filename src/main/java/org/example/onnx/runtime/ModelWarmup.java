@@ -0,0 +1,70 @@
+package org.example.onnx.runtime;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 启动预热：对每个 {@link WarmupTarget} 先跑分词热点路径，再按配置的每个 batch 大小 × choice 数跑几轮推理。
+ * <p>
+ * 作为 ApplicationRunner 同步执行，Spring Boot 在所有 runner 结束后才把 readiness 置为 ACCEPTING_TRAFFIC，
+ * 所以 /actuator/health/readiness 在预热完成前一直是 OUT_OF_SERVICE，负载均衡不会把流量打进来。
+ */
+@Slf4j
+@Component
+public class ModelWarmup implements ApplicationRunner {
+
+    private final WarmupProperties properties;
+    private final List<WarmupTarget> targets;
+
+    public ModelWarmup(WarmupProperties properties, List<WarmupTarget> targets) {
+        this.properties = properties;
+        this.targets = targets;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!properties.isEnabled()) {
+            log.info("model warmup disabled");
+            return;
+        }
+        for (WarmupTarget target : targets) {
+            try {
+                warm(target);
+            } catch (Exception e) {
+                if (properties.isFailOnError()) {
+                    throw e;
+                }
+                log.error("warmup of {} failed, continuing without it", target.name(), e);
+            }
+        }
+    }
+
+    private void warm(WarmupTarget target) throws Exception {
+        long start = System.nanoTime();
+        target.warmTokenizer(properties.getTokenizerIterations());
+        long tokenizerMillis = (System.nanoTime() - start) / 1_000_000;
+        log.info("warmup {}: {} tokenizer iterations in {}ms", target.name(), properties.getTokenizerIterations(), tokenizerMillis);
+
+        for (int choices : properties.getChoiceCounts()) {
+            for (int batchSize : properties.getBatchSizes()) {
+                long first = 0;
+                long last = 0;
+                for (int round = 0; round < properties.getRounds(); round++) {
+                    long t = System.nanoTime();
+                    target.warmShape(batchSize, choices);
+                    last = System.nanoTime() - t;
+                    if (round == 0) {
+                        first = last;
+                    }
+                }
+                log.info("warmup {}: batch={} choices={} first={}ms last={}ms", target.name(), batchSize, choices,
+                        first / 1_000_000, last / 1_000_000);
+            }
+        }
+        log.info("warmup {} done in {}ms", target.name(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
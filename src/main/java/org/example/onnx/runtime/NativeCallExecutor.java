@@ -0,0 +1,88 @@
+package org.example.onnx.runtime;
+
+import ai.onnxruntime.OrtException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * session.run 等 JNI 调用的执行位置。
+ * <p>
+ * 虚拟线程进入 native 方法后无法卸载，会一直占着 carrier 线程（carrier 默认只有 CPU 核数个），
+ * 几个慢推理就能让所有虚拟线程停摆。所以虚拟线程上的 native 调用转交给一个小的平台线程池执行，
+ * 虚拟线程在 Future 上等待（会卸载，不占 carrier）；平台线程上的调用直接执行，没有额外切换。
+ * 指标：onnx.native.pool.queued / active。
+ */
+public final class NativeCallExecutor {
+
+    private static volatile int threads = Runtime.getRuntime().availableProcessors();
+    private static volatile ThreadPoolExecutor pool;
+
+    private NativeCallExecutor() {
+    }
+
+    public interface NativeCall<T> {
+        T call() throws OrtException;
+    }
+
+    /**
+     * 平台线程池的大小，只在第一次使用前生效
+     */
+    public static void configure(int poolThreads) {
+        threads = Math.max(1, poolThreads);
+    }
+
+    public static <T> T call(NativeCall<T> call) throws OrtException {
+        if (!VirtualThreads.isVirtual(Thread.currentThread())) {
+            return call.call();
+        }
+        Future<T> future = pool().submit(call::call);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // 已经在跑的 session.run 停不下来，只能不再等它
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new OrtException("interrupted while waiting for native call");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof OrtException) {
+                throw (OrtException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static ThreadPoolExecutor pool() {
+        ThreadPoolExecutor p = pool;
+        if (p == null) {
+            synchronized (NativeCallExecutor.class) {
+                p = pool;
+                if (p == null) {
+                    AtomicInteger threadId = new AtomicInteger();
+                    p = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, "onnx-native-" + threadId.getAndIncrement());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    Gauge.builder("onnx.native.pool.queued", p, e -> e.getQueue().size()).register(Metrics.globalRegistry);
+                    Gauge.builder("onnx.native.pool.active", p, ThreadPoolExecutor::getActiveCount).register(Metrics.globalRegistry);
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+}
@@ -0,0 +1,200 @@
+package org.example.onnx.runtime;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OnnxTensor / OrtSession.Result 持有的是堆外内存，堆上看不出来。这里按模型统计存活的张量个数和字节数，
+ * 并用 PhantomReference 发现没有 close 就被 GC 掉的对象（此时堆外内存已经泄漏）。
+ * <p>
+ * 指标：onnx.native.tensors / onnx.native.bytes（存活），onnx.native.allocations / onnx.native.leaks（累计），tag 为 model。
+ * 启动参数 -Donnx.tensor.debug=true 时记录每次分配的调用栈，泄漏时一起打印。
+ */
+@Slf4j
+public final class NativeMemoryTracker {
+
+    private static volatile boolean debug = Boolean.getBoolean("onnx.tensor.debug");
+
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+    // PhantomReference 本身必须强引用住，否则不会入队
+    private static final Set<Allocation> LIVE = ConcurrentHashMap.newKeySet();
+    private static final ConcurrentMap<String, ModelStats> STATS = new ConcurrentHashMap<>();
+
+    static {
+        Thread reaper = new Thread(NativeMemoryTracker::reap, "onnx-tensor-reaper");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    private NativeMemoryTracker() {
+    }
+
+    public static boolean isDebug() {
+        return debug;
+    }
+
+    public static void setDebug(boolean enabled) {
+        debug = enabled;
+    }
+
+    /**
+     * 登记一次分配，owner 是持有堆外内存的对象（OnnxTensor 或 Result），count 是其中的张量个数
+     */
+    public static Allocation register(String model, Object owner, int count, long bytes) {
+        ModelStats stats = stats(model);
+        Allocation allocation = new Allocation(owner, stats, count, bytes,
+                debug ? new Throwable("onnx tensor allocated here") : null);
+        LIVE.add(allocation);
+        stats.liveTensors.addAndGet(count);
+        stats.liveBytes.addAndGet(bytes);
+        stats.allocations.increment(count);
+        return allocation;
+    }
+
+    public static ModelStats stats(String model) {
+        return STATS.computeIfAbsent(model, ModelStats::new);
+    }
+
+    public static Map<String, ModelStats> snapshot() {
+        return Collections.unmodifiableMap(STATS);
+    }
+
+    public static long bytesOf(OnnxTensor tensor) {
+        TensorInfo info = tensor.getInfo();
+        long elements = 1;
+        for (long dim : info.getShape()) {
+            elements *= Math.max(dim, 0);
+        }
+        return elements * info.type.size;
+    }
+
+    public static long bytesOf(OrtSession.Result result) {
+        long bytes = 0;
+        for (Map.Entry<String, OnnxValue> entry : result) {
+            if (entry.getValue() instanceof OnnxTensor) {
+                bytes += bytesOf((OnnxTensor) entry.getValue());
+            }
+        }
+        return bytes;
+    }
+
+    private static void reap() {
+        while (true) {
+            try {
+                Allocation allocation = (Allocation) QUEUE.remove();
+                if (allocation.release()) {
+                    allocation.stats.leaks.increment(allocation.count);
+                    if (allocation.site != null) {
+                        log.warn("{} onnx tensor(s) of model {} ({} bytes) were garbage collected without close",
+                                allocation.count, allocation.stats.model, allocation.bytes, allocation.site);
+                    } else {
+                        log.warn("{} onnx tensor(s) of model {} ({} bytes) were garbage collected without close, "
+                                        + "run with -Donnx.tensor.debug=true to see where they were allocated",
+                                allocation.count, allocation.stats.model, allocation.bytes);
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.warn("onnx tensor reaper failed", e);
+            }
+        }
+    }
+
+    /**
+     * 一次分配的记账，close 时调 release；owner 不可达时由 reaper 线程当作泄漏处理
+     */
+    public static final class Allocation extends PhantomReference<Object> {
+        private final ModelStats stats;
+        private final int count;
+        private final long bytes;
+        private final Throwable site;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Allocation(Object owner, ModelStats stats, int count, long bytes, Throwable site) {
+            super(owner, QUEUE);
+            this.stats = stats;
+            this.count = count;
+            this.bytes = bytes;
+            this.site = site;
+        }
+
+        /**
+         * 只有第一次调用生效，返回是否由本次调用释放
+         */
+        public boolean release() {
+            if (!released.compareAndSet(false, true)) {
+                return false;
+            }
+            LIVE.remove(this);
+            clear();
+            stats.liveTensors.addAndGet(-count);
+            stats.liveBytes.addAndGet(-bytes);
+            return true;
+        }
+    }
+
+    public static final class ModelStats {
+        private final String model;
+        private final AtomicLong liveTensors = new AtomicLong();
+        private final AtomicLong liveBytes = new AtomicLong();
+        private final Counter allocations;
+        private final Counter leaks;
+
+        private ModelStats(String model) {
+            this.model = model;
+            Gauge.builder("onnx.native.tensors", liveTensors, AtomicLong::get)
+                    .tag("model", model)
+                    .description("live onnx tensors holding native memory")
+                    .register(Metrics.globalRegistry);
+            Gauge.builder("onnx.native.bytes", liveBytes, AtomicLong::get)
+                    .tag("model", model)
+                    .baseUnit("bytes")
+                    .description("native bytes held by live onnx tensors")
+                    .register(Metrics.globalRegistry);
+            this.allocations = Counter.builder("onnx.native.allocations")
+                    .tag("model", model)
+                    .register(Metrics.globalRegistry);
+            this.leaks = Counter.builder("onnx.native.leaks")
+                    .tag("model", model)
+                    .description("onnx tensors garbage collected without close")
+                    .register(Metrics.globalRegistry);
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public long getLiveTensors() {
+            return liveTensors.get();
+        }
+
+        public long getLiveBytes() {
+            return liveBytes.get();
+        }
+
+        public double getAllocations() {
+            return allocations.count();
+        }
+
+        public double getLeaks() {
+            return leaks.count();
+        }
+    }
+}
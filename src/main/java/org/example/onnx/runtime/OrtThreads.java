@@ -0,0 +1,23 @@
+package org.example.onnx.runtime;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+/**
+ * 服务用的 session 的线程数：-Donnx.intra-op-threads，0（默认）时用 ORT 的默认值（本机全部物理核）。
+ * 同一台机器跑多个推理进程（router 拉起的 worker）时按每个进程分到的核数设置，否则 N 个进程的算子线程池抢同一批核
+ */
+public final class OrtThreads {
+
+    public static final int INTRA_OP_THREADS = Integer.getInteger("onnx.intra-op-threads", 0);
+
+    private OrtThreads() {
+    }
+
+    public static OrtSession.SessionOptions apply(OrtSession.SessionOptions options) throws OrtException {
+        if (INTRA_OP_THREADS > 0) {
+            options.setIntraOpNumThreads(INTRA_OP_THREADS);
+        }
+        return options;
+    }
+}
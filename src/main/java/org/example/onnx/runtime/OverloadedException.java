@@ -0,0 +1,32 @@
+package org.example.onnx.runtime;
+
+/**
+ * 模型过载，请求被直接拒绝，调用方应稍后重试。本类表示在途推理数已达到 {@link AdaptiveLimiter} 的当前上限；
+ * 在 {@link InferenceScheduler} 排队时被拒绝（队列满或等待超时）抛子类 {@link QueueRejectedException}
+ */
+public class OverloadedException extends RuntimeException {
+
+    private final String model;
+    private final int limit;
+
+    public OverloadedException(String model, int limit) {
+        this(model, limit, "model " + model + " is overloaded, concurrency limit " + limit);
+    }
+
+    protected OverloadedException(String model, int limit, String message) {
+        super(message);
+        this.model = model;
+        this.limit = limit;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * 触发拒绝的上限：AdaptiveLimiter 的并发上限，子类见各自的说明
+     */
+    public int getLimit() {
+        return limit;
+    }
+}
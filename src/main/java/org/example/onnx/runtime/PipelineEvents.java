@@ -0,0 +1,123 @@
+package org.example.onnx.runtime;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 推理流水线各阶段的 JFR 事件（分词、建张量、session.run、解码、序列化），带模型名、batch 行数和序列长度，
+ * 在 JMC 里能和 GC、safepoint、分配事件按线程和时间对上。
+ * <p>
+ * jdk.jfr 在 Java 11+ 和 8u262+ 上才有，实现 org.example.onnx.runtime.jfr.JfrSupport 在 src/main/jfr 里，由 jfr profile 编译（见 pom），
+ * 这里用反射加载；没编进来或 JVM 没有 JFR 时 {@link #available()} 为 false，所有调用都是空操作。
+ * 没有录制在进行（或录制没开这些事件）时 {@link #begin} 只读一次事件的开关就返回 null，不分配对象，{@link #end} 直接返回。
+ * <pre>
+ * Object event = PipelineEvents.begin(PipelineEvents.Stage.DECODE);
+ * ...
+ * PipelineEvents.end(event, model, rows, seqLength);
+ * </pre>
+ */
+@Slf4j
+public final class PipelineEvents {
+
+    private static final String IMPLEMENTATION = "org.example.onnx.runtime.jfr.JfrSupport";
+    private static final Support SUPPORT = load();
+
+    private PipelineEvents() {
+    }
+
+    public enum Stage {
+        TOKENIZE, TENSOR_BUILD, SESSION_RUN, DECODE, SERIALIZE
+    }
+
+    /**
+     * 由 jdk.jfr 实现
+     */
+    public interface Support {
+        /**
+         * 该阶段的事件开着时返回已 begin 的事件，否则返回 null
+         */
+        Object begin(Stage stage);
+
+        void end(Object event, String model, int batchSize, int sequenceLength);
+
+        /**
+         * 开始一段有界的录制：settings 是 JFR 配置名（default / profile），到 maxSeconds 自动停止，文件写到 destination；
+         * maxBytes 只限制保留的数据量，超过后丢掉最早的数据继续录
+         */
+        void start(String settings, long maxSeconds, long maxBytes, Path destination) throws IOException;
+
+        /**
+         * 停止当前录制（已自动停止的直接返回），返回录制文件；没有录制时返回 null
+         */
+        Path stop() throws IOException;
+
+        /**
+         * NEW / RUNNING / STOPPED / CLOSED，没有录制时为 null
+         */
+        String state();
+    }
+
+    private static Support load() {
+        try {
+            return (Support) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // 没有 jdk.jfr 的 JVM 上是 NoClassDefFoundError
+            log.info("jfr events unavailable on java {}: {}", System.getProperty("java.version"), e.toString());
+            return null;
+        }
+    }
+
+    public static boolean available() {
+        return SUPPORT != null;
+    }
+
+    public static Object begin(Stage stage) {
+        return SUPPORT == null ? null : SUPPORT.begin(stage);
+    }
+
+    /**
+     * @param batchSize      进模型的行数（UBERT 是 batch × choices）
+     * @param sequenceLength 补齐后的序列长度，序列化等不涉及序列的阶段为 0
+     */
+    public static void end(Object event, String model, int batchSize, int sequenceLength) {
+        if (event != null) {
+            SUPPORT.end(event, model, batchSize, sequenceLength);
+        }
+    }
+
+    /**
+     * 按 token 形状（[batch, (choices,) seqLen]）记录：行数取除最后一维外各维的乘积；形状未知（null）时都记 0
+     */
+    public static void end(Object event, String model, long[] tokenShape) {
+        if (event == null) {
+            return;
+        }
+        if (tokenShape == null || tokenShape.length == 0) {
+            SUPPORT.end(event, model, 0, 0);
+            return;
+        }
+        long rows = 1;
+        for (int d = 0; d < tokenShape.length - 1; d++) {
+            rows *= tokenShape[d];
+        }
+        SUPPORT.end(event, model, (int) rows, (int) tokenShape[tokenShape.length - 1]);
+    }
+
+    /**
+     * 按一个 batch 的 token 形状记录，事件没开时不取形状
+     */
+    public static void end(Object event, String model, ModelBinding.Features batch) {
+        if (event != null) {
+            end(event, model, batch.shape());
+        }
+    }
+
+    static Support support() {
+        if (SUPPORT == null) {
+            throw new UnsupportedOperationException("jdk flight recorder is not available on java " + System.getProperty("java.version"));
+        }
+        return SUPPORT;
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.onnx.runtime;
+
+/**
+ * 在 {@link InferenceScheduler} 的等待队列里被拒绝：队列已满，或者等待超过 queue-timeout-millis 还没轮到。
+ * {@link #getLimit()} 为队列满时的 max-queue，超时时的 queue-timeout-millis
+ */
+public class QueueRejectedException extends OverloadedException {
+
+    public enum Reason {
+        QUEUE_FULL, QUEUE_TIMEOUT
+    }
+
+    private final InferenceScheduler.Priority priority;
+    private final Reason reason;
+
+    private QueueRejectedException(String model, InferenceScheduler.Priority priority, Reason reason, int limit, String message) {
+        super(model, limit, message);
+        this.priority = priority;
+        this.reason = reason;
+    }
+
+    static QueueRejectedException queueFull(String model, InferenceScheduler.Priority priority, int maxQueue) {
+        return new QueueRejectedException(model, priority, Reason.QUEUE_FULL, maxQueue,
+                "model " + model + " is overloaded, " + priority.tag() + " queue full (" + maxQueue + " waiting)");
+    }
+
+    static QueueRejectedException queueTimeout(String model, InferenceScheduler.Priority priority, long timeoutMillis, int slots) {
+        return new QueueRejectedException(model, priority, Reason.QUEUE_TIMEOUT, (int) Math.min(Integer.MAX_VALUE, timeoutMillis),
+                "model " + model + " is overloaded, waited " + timeoutMillis + " ms in the " + priority.tag()
+                        + " queue without getting one of " + slots + " slots");
+    }
+
+    public InferenceScheduler.Priority getPriority() {
+        return priority;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
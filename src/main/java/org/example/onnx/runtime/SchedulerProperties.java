@@ -0,0 +1,39 @@
+package org.example.onnx.runtime;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * onnx.scheduler.* 配置：模型名 → {@link InferenceScheduler.Settings}，启动时应用到对应的调度器上
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "onnx.scheduler")
+public class SchedulerProperties {
+
+    private Map<String, InferenceScheduler.Settings> models = new LinkedHashMap<>();
+
+    public Map<String, InferenceScheduler.Settings> getModels() {
+        return models;
+    }
+
+    public void setModels(Map<String, InferenceScheduler.Settings> models) {
+        this.models = models;
+    }
+
+    @PostConstruct
+    public void apply() {
+        for (Map.Entry<String, InferenceScheduler.Settings> entry : models.entrySet()) {
+            InferenceScheduler.Settings settings = entry.getValue();
+            InferenceScheduler.of(entry.getKey()).configure(settings);
+            log.info("scheduler {} configured: {} slots, interactive weight {} cap {}, bulk weight {} cap {} batch rows {}",
+                    entry.getKey(), settings.getSlots(), settings.getInteractive().getWeight(), settings.getInteractive().getMaxConcurrency(),
+                    settings.getBulk().getWeight(), settings.getBulk().getMaxConcurrency(), settings.getBulk().getMaxBatchRows());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.example.onnx.runtime;
+
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxTensorLike;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次推理的作用域：在这里创建的输入张量和 run 返回的 Result 都记在 {@link NativeMemoryTracker} 上，
+ * close 时按创建的逆序统一释放。session.run 经模型的 {@link InferenceScheduler} 按 scope 的优先级排队。只在一个线程里使用。
+ * <pre>
+ * try (TensorScope scope = TensorScope.open("ubert")) {
+ *     Map&lt;String, OnnxTensor&gt; inputs = binding.bind(tokenizer.encode(queries), scope);
+ *     OrtSession.Result result = scope.run(session, inputs);
+ *     ...  // 输出只能在 scope 内读取
+ * }
+ * </pre>
+ */
+@Slf4j
+public final class TensorScope implements AutoCloseable {
+
+    private final String model;
+    private final InferenceScheduler.Priority priority;
+    private final OrtEnvironment env = OrtEnvironment.getEnvironment();
+    private final List<AutoCloseable> resources = new ArrayList<>(8);
+    private final List<NativeMemoryTracker.Allocation> allocations = new ArrayList<>(8);
+
+    // 最近一次 session.run 本身的耗时，不含排队
+    private long lastRunNanos = -1;
+    // 最近一次 ModelBinding.bind 的 token 形状，记进 session.run 的 JFR 事件
+    private long[] inputShape;
+
+    private TensorScope(String model, InferenceScheduler.Priority priority) {
+        this.model = model;
+        this.priority = priority;
+    }
+
+    /**
+     * 在线请求用，优先级为 INTERACTIVE
+     */
+    public static TensorScope open(String model) {
+        return new TensorScope(model, InferenceScheduler.Priority.INTERACTIVE);
+    }
+
+    public static TensorScope open(String model, InferenceScheduler.Priority priority) {
+        return new TensorScope(model, priority);
+    }
+
+    public String model() {
+        return model;
+    }
+
+    public InferenceScheduler.Priority priority() {
+        return priority;
+    }
+
+    /**
+     * 上一次 {@link #run} 中 session.run 的耗时（纳秒），不含调度排队；还没跑过时为 -1
+     */
+    public long lastRunNanos() {
+        return lastRunNanos;
+    }
+
+    void inputShape(long[] shape) {
+        this.inputShape = shape;
+    }
+
+    /**
+     * 多维 Java 数组，等价于 OnnxTensor.createTensor(env, data)
+     */
+    public OnnxTensor createTensor(Object data) throws OrtException {
+        return track(OnnxTensor.createTensor(env, data));
+    }
+
+    public OnnxTensor createTensor(LongBuffer data, long[] shape) throws OrtException {
+        return track(OnnxTensor.createTensor(env, data, shape));
+    }
+
+    public OnnxTensor createTensor(FloatBuffer data, long[] shape) throws OrtException {
+        return track(OnnxTensor.createTensor(env, data, shape));
+    }
+
+    public OnnxTensor createTensor(DoubleBuffer data, long[] shape) throws OrtException {
+        return track(OnnxTensor.createTensor(env, data, shape));
+    }
+
+    public OnnxTensor createTensor(IntBuffer data, long[] shape) throws OrtException {
+        return track(OnnxTensor.createTensor(env, data, shape));
+    }
+
+    /**
+     * type 为 FLOAT16 / BFLOAT16 / INT16，数据是对应的 16 位编码
+     */
+    public OnnxTensor createTensor(ShortBuffer data, long[] shape, OnnxJavaType type) throws OrtException {
+        return track(OnnxTensor.createTensor(env, data, shape, type));
+    }
+
+    /**
+     * 接管一个在别处创建的张量，scope 关闭时一起 close
+     */
+    public OnnxTensor track(OnnxTensor tensor) {
+        NativeMemoryTracker.Allocation allocation = NativeMemoryTracker.register(model, tensor, 1, NativeMemoryTracker.bytesOf(tensor));
+        resources.add(tensor);
+        allocations.add(allocation);
+        return tensor;
+    }
+
+    /**
+     * 先在 {@link InferenceScheduler} 排队，轮到后执行；在虚拟线程上调用时 session.run 转到 {@link NativeCallExecutor} 的平台线程执行
+     */
+    public OrtSession.Result run(OrtSession session, Map<String, ? extends OnnxTensorLike> inputs) throws OrtException {
+        long[] runNanos = {-1};
+        OrtSession.Result result = InferenceScheduler.of(model).run(priority, () -> {
+            Object event = PipelineEvents.begin(PipelineEvents.Stage.SESSION_RUN);
+            long start = System.nanoTime();
+            try {
+                return session.run(inputs);
+            } finally {
+                runNanos[0] = System.nanoTime() - start;
+                PipelineEvents.end(event, model, inputShape);
+            }
+        });
+        lastRunNanos = runNanos[0];
+        NativeMemoryTracker.Allocation allocation = NativeMemoryTracker.register(model, result, result.size(), NativeMemoryTracker.bytesOf(result));
+        resources.add(result);
+        allocations.add(allocation);
+        return result;
+    }
+
+    @Override
+    public void close() {
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            try {
+                resources.get(i).close();
+            } catch (Exception e) {
+                log.warn("failed to close onnx value of model {}", model, e);
+            }
+            allocations.get(i).release();
+        }
+        resources.clear();
+        allocations.clear();
+    }
+}
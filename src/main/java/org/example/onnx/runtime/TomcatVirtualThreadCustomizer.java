@@ -0,0 +1,26 @@
+package org.example.onnx.runtime;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.stereotype.Component;
+
+/**
+ * onnx.virtual-threads.enabled 时 Tomcat 每个请求一个虚拟线程，替换 server.tomcat.threads.max 的线程池，
+ * 并发连接数只受 server.tomcat.max-connections 限制。推理本身仍由限流器和 {@link NativeCallExecutor} 兜住
+ */
+@Component
+public class TomcatVirtualThreadCustomizer implements TomcatProtocolHandlerCustomizer<ProtocolHandler> {
+
+    private final VirtualThreadProperties properties;
+
+    public TomcatVirtualThreadCustomizer(VirtualThreadProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void customize(ProtocolHandler protocolHandler) {
+        if (properties.isActive()) {
+            protocolHandler.setExecutor(VirtualThreads.newPerTaskExecutor("http-vt-"));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.onnx.runtime;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * onnx.virtual-threads.* 配置：HTTP / RPC 请求处理是否跑在虚拟线程上（需要 -Pjava21 编译、Java 21 运行），
+ * 以及承接 session.run 的平台线程池大小（见 {@link NativeCallExecutor}）
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "onnx.virtual-threads")
+public class VirtualThreadProperties {
+
+    private boolean enabled = false;
+    private int nativeThreads = Runtime.getRuntime().availableProcessors();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getNativeThreads() {
+        return nativeThreads;
+    }
+
+    public void setNativeThreads(int nativeThreads) {
+        this.nativeThreads = nativeThreads;
+    }
+
+    /**
+     * 开启且当前构建 / JVM 支持虚拟线程
+     */
+    public boolean isActive() {
+        return enabled && VirtualThreads.available();
+    }
+
+    @PostConstruct
+    public void apply() {
+        NativeCallExecutor.configure(nativeThreads);
+        if (enabled && !VirtualThreads.available()) {
+            log.warn("onnx.virtual-threads.enabled is set but virtual threads are unavailable "
+                    + "(build with -Pjava21 and run on java 21+), using platform threads");
+        } else if (enabled) {
+            log.info("request handling on virtual threads, session.run on {} platform threads", nativeThreads);
+        }
+    }
+}
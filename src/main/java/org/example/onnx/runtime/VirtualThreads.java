@@ -0,0 +1,68 @@
+package org.example.onnx.runtime;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 虚拟线程的入口。主代码按 Java 8 编译，虚拟线程的实现在 src/main/java21（-Pjava21 编译进同一个 classes 目录），
+ * 这里用反射加载；没有用 java21 profile 编译、或者运行在 21 以下的 JVM 上时 {@link #available()} 为 false，一切照旧走平台线程。
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    private static final String IMPLEMENTATION = "org.example.onnx.runtime.jdk21.VirtualThreadSupport";
+    private static final Support SUPPORT = load();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 由 java21 源码目录实现
+     */
+    public interface Support {
+        boolean isVirtual(Thread thread);
+
+        /**
+         * 每个任务一个虚拟线程，线程名为 prefix + 序号
+         */
+        ExecutorService newPerTaskExecutor(String prefix);
+
+        Thread start(String name, Runnable task);
+    }
+
+    private static Support load() {
+        try {
+            return (Support) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // 21 的 class 文件跑在旧 JVM 上会是 UnsupportedClassVersionError
+            log.info("virtual threads unavailable on java {}: {}", System.getProperty("java.version"), e.toString());
+            return null;
+        }
+    }
+
+    public static boolean available() {
+        return SUPPORT != null;
+    }
+
+    public static boolean isVirtual(Thread thread) {
+        return SUPPORT != null && SUPPORT.isVirtual(thread);
+    }
+
+    public static ExecutorService newPerTaskExecutor(String prefix) {
+        return support().newPerTaskExecutor(prefix);
+    }
+
+    public static Thread start(String name, Runnable task) {
+        return support().start(name, task);
+    }
+
+    private static Support support() {
+        if (SUPPORT == null) {
+            throw new UnsupportedOperationException("virtual threads need a -Pjava21 build running on java 21+");
+        }
+        return SUPPORT;
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.onnx.runtime;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * onnx.warmup.* 配置：预热的 batch 大小、choice 数（UBERT 的序列长度固定，形状只随这两维变化）、
+ * 每个形状跑几轮，以及分词热点路径的迭代次数
+ */
+@Component
+@ConfigurationProperties(prefix = "onnx.warmup")
+public class WarmupProperties {
+
+    private boolean enabled = true;
+    private List<Integer> batchSizes = new ArrayList<>(Arrays.asList(1, 2, 4, 8, 16, 32));
+    private List<Integer> choiceCounts = new ArrayList<>(Arrays.asList(6));
+    private int rounds = 3;
+    private int tokenizerIterations = 20000;
+    private boolean failOnError = false;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<Integer> getBatchSizes() {
+        return batchSizes;
+    }
+
+    public void setBatchSizes(List<Integer> batchSizes) {
+        this.batchSizes = batchSizes;
+    }
+
+    public List<Integer> getChoiceCounts() {
+        return choiceCounts;
+    }
+
+    public void setChoiceCounts(List<Integer> choiceCounts) {
+        this.choiceCounts = choiceCounts;
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    public void setRounds(int rounds) {
+        this.rounds = rounds;
+    }
+
+    public int getTokenizerIterations() {
+        return tokenizerIterations;
+    }
+
+    public void setTokenizerIterations(int tokenizerIterations) {
+        this.tokenizerIterations = tokenizerIterations;
+    }
+
+    public boolean isFailOnError() {
+        return failOnError;
+    }
+
+    public void setFailOnError(boolean failOnError) {
+        this.failOnError = failOnError;
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.onnx.runtime;
+
+/**
+ * 需要在启动时预热的模型。实现类注册成 Spring bean 后由 {@link ModelWarmup} 统一调度
+ */
+public interface WarmupTarget {
+
+    String name();
+
+    /**
+     * 跑 iterations 次分词 / 编码热点路径，让 JIT 在真实流量之前完成 C2 编译
+     */
+    void warmTokenizer(int iterations);
+
+    /**
+     * 用合成输入按给定形状跑一次完整的推理（编码 → session.run → 解码），让 ORT 按这个形状分配 arena
+     */
+    void warmShape(int batchSize, int choices) throws Exception;
+}
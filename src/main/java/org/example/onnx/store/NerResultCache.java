@@ -0,0 +1,95 @@
+package org.example.onnx.store;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.ner.NerResult;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 模型前面的持久化结果缓存：请求先按 (文本, 实体类型, 模型版本) 查 {@link ResultStore}，命中的直接作答，
+ * 其余的照常推理，结果由写者进程写回存储（只读进程只查不写）。
+ * 指标：ner.store.hits / misses。
+ */
+public final class NerResultCache {
+
+    private final ResultStore store;
+    private final String modelVersion;
+    private final int versionId;
+    private final Counter hits = Counter.builder("ner.store.hits").register(Metrics.globalRegistry);
+    private final Counter misses = Counter.builder("ner.store.misses").register(Metrics.globalRegistry);
+
+    public NerResultCache(ResultStore store, String modelVersion) {
+        this.store = store;
+        this.modelVersion = modelVersion;
+        this.versionId = ResultKey.versionId(modelVersion);
+    }
+
+    public ResultStore store() {
+        return store;
+    }
+
+    public String modelVersion() {
+        return modelVersion;
+    }
+
+    public Pass pass(List<NerQuery> queries) {
+        Pass pass = new Pass(queries);
+        for (int i = 0; i < queries.size(); i++) {
+            NerQuery query = queries.get(i);
+            ResultKey key = ResultKey.of(query.getText(), query.getEntityTypes(), modelVersion);
+            ByteBuffer stored = store.get(key);
+            if (stored != null) {
+                pass.results[i] = ResultCodec.decodeNer(query, stored);
+                hits.increment();
+            } else {
+                pass.missIndex.add(i);
+                pass.missKeys.add(key);
+                pass.missQueries.add(query);
+                misses.increment();
+            }
+        }
+        return pass;
+    }
+
+    /**
+     * 一批请求查过存储之后的状态
+     */
+    public final class Pass {
+        private final NerResult[] results;
+        private final List<Integer> missIndex = new ArrayList<>();
+        private final List<ResultKey> missKeys = new ArrayList<>();
+        private final List<NerQuery> missQueries = new ArrayList<>();
+
+        private Pass(List<NerQuery> queries) {
+            this.results = new NerResult[queries.size()];
+        }
+
+        /**
+         * 没命中、需要推理的请求，顺序与 {@link #merge(List)} 的参数一一对应
+         */
+        public List<NerQuery> missQueries() {
+            return missQueries;
+        }
+
+        /**
+         * 填上推理结果，写者进程顺便写回存储
+         *
+         * @return 与原请求一一对应的结果
+         */
+        public List<NerResult> merge(List<NerResult> inferred) {
+            for (int k = 0; k < missIndex.size(); k++) {
+                NerResult result = inferred.get(k);
+                results[missIndex.get(k)] = result;
+                if (store.writable()) {
+                    store.put(missKeys.get(k), versionId, ResultCodec.encodeNer(result));
+                }
+            }
+            return Arrays.asList(results);
+        }
+    }
+}
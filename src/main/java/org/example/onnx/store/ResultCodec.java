@@ -0,0 +1,121 @@
+package org.example.onnx.store;
+
+import org.example.onnx.ner.NerEntity;
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.ner.NerResult;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 存进 {@link ResultStore} 的二进制编码，长度和个数用 varint，字符串是 UTF-8，分数是 8 字节 double（读回来与模型输出完全一致）：
+ * <pre>
+ * NER：   varint 类型数 | (类型, varint 实体数 | (实体名, double 分数)*)*
+ * 分类：  varint 类别 id | float margin
+ * </pre>
+ */
+public final class ResultCodec {
+
+    private ResultCodec() {
+    }
+
+    public static byte[] encodeNer(NerResult result) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        writeVarint(out, result.getEntities().size());
+        for (Map.Entry<String, List<NerEntity>> entry : result.getEntities().entrySet()) {
+            writeString(out, entry.getKey());
+            writeVarint(out, entry.getValue().size());
+            for (NerEntity entity : entry.getValue()) {
+                writeString(out, entity.getName());
+                long bits = Double.doubleToRawLongBits(entity.getScore());
+                for (int i = 0; i < 8; i++) {
+                    out.write((int) (bits >>> (i * 8)));
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 存储的键用排序后的实体类型，这里按 query 的类型顺序重新排列
+     */
+    public static NerResult decodeNer(NerQuery query, ByteBuffer data) {
+        ByteBuffer in = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int types = readVarint(in);
+        Map<String, List<NerEntity>> stored = new HashMap<>(types * 2);
+        for (int t = 0; t < types; t++) {
+            String type = readString(in);
+            int count = readVarint(in);
+            List<NerEntity> entities = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String name = readString(in);
+                entities.add(new NerEntity(name, in.getDouble()));
+            }
+            stored.put(type, entities);
+        }
+        Map<String, List<NerEntity>> entities = new LinkedHashMap<>();
+        for (String type : query.getEntityTypes()) {
+            List<NerEntity> list = stored.get(type);
+            entities.put(type, list == null ? new ArrayList<>() : list);
+        }
+        return new NerResult(query.getText(), entities);
+    }
+
+    public static byte[] encodeLabel(int label, float margin) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8);
+        writeVarint(out, label);
+        int bits = Float.floatToRawIntBits(margin);
+        for (int i = 0; i < 4; i++) {
+            out.write(bits >>> (i * 8));
+        }
+        return out.toByteArray();
+    }
+
+    public static int decodeLabel(ByteBuffer data) {
+        return readVarint(data.duplicate());
+    }
+
+    public static float decodeMargin(ByteBuffer data) {
+        ByteBuffer in = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        readVarint(in);
+        return in.getFloat();
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarint(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.onnx.store;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link ResultStore} 的键：规范化文本 + 排序后的实体类型 + 模型版本的 128 位哈希（两个独立的 64 位哈希），
+ * 不保存原文，碰撞概率可以忽略。
+ * <p>
+ * 文本只去掉首尾空白：其它规范化（全半角、NFKC 等）会让实体原文和模型结果对不上，不做。
+ */
+public final class ResultKey {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    final long hi;
+    final long lo;
+
+    ResultKey(long hi, long lo) {
+        this.hi = hi;
+        this.lo = lo;
+    }
+
+    public static ResultKey of(String text, List<String> types, String modelVersion) {
+        List<String> sorted = new ArrayList<>(types);
+        Collections.sort(sorted);
+        StringBuilder key = new StringBuilder(text.length() + 64);
+        key.append(modelVersion).append('\u0000').append(String.join("\u0001", sorted)).append('\u0000').append(text.trim());
+        byte[] bytes = key.toString().getBytes(StandardCharsets.UTF_8);
+        long fnv = FNV_OFFSET;
+        long mix = GOLDEN ^ bytes.length;
+        for (byte b : bytes) {
+            fnv = (fnv ^ (b & 0xFF)) * FNV_PRIME;
+            mix = (mix + (b & 0xFF)) * GOLDEN;
+            mix ^= mix >>> 29;
+        }
+        return new ResultKey(fmix(fnv), fmix(mix));
+    }
+
+    /**
+     * MurmurHash3 的 64 位终结混合
+     */
+    static long fmix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 模型版本写进每条记录的 32 位 id，压缩时据此丢掉旧版本的结果
+     */
+    public static int versionId(String modelVersion) {
+        return (int) fmix(of("", Collections.<String>emptyList(), modelVersion).lo);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ResultKey && ((ResultKey) o).hi == hi && ((ResultKey) o).lo == lo;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (lo ^ (lo >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", hi, lo);
+    }
+}
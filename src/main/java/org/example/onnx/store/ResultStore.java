@@ -0,0 +1,731 @@
+package org.example.onnx.store;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+import java.util.zip.CRC32;
+
+/**
+ * 持久化的 key → 结果存储：只追加的数据文件 + 开放寻址的索引文件，都 mmap 在堆外，进程重启后直接可用。
+ * <p>
+ * 同一台机器上的多个 JVM 共享一个目录：拿到 writer.lock 文件锁的进程是唯一的写者，其它进程只读映射同一组文件，
+ * 通过共享的页缓存直接看到写者追加的记录。写者先写记录，再写槽位的哈希，最后写槽位的偏移，读者以偏移非 0 作为槽位可用的标志。
+ * <p>
+ * 压缩（写者的后台线程）把仍然有效的记录（索引指向的最新一条，且模型版本被保留）拷到下一代文件，切换 CURRENT 后把旧索引标成 retired，
+ * 读者发现 retired 就重新打开 CURRENT；目录里还没有 CURRENT（写者还没建好）时读者按空库处理，每秒重试一次。数据不 fsync，进程崩溃不丢，机器掉电可能丢掉尾部，读取时靠记录头的哈希和 CRC 识别坏记录。
+ * <p>
+ * 文件格式（小端）：
+ * <pre>
+ * data-&lt;gen&gt;.bin  "NERRSD01" | long generation | long position | 补齐到 64 字节
+ *                   | 记录*：int payload 长度, int 模型版本 id, long hi, long lo, int crc32, int 0, payload
+ * index-&lt;gen&gt;.bin "NERRSI01" | long generation | long capacity | long size | int retired | 补齐到 64 字节
+ *                   | 槽位[capacity]：long hi, long lo, long 记录偏移 + 1（0 表示空）
+ * CURRENT           当前代号（十进制文本）
+ * </pre>
+ * 指标：ner.store.records / data.bytes / dead.bytes / generation，ner.store.writes / dropped / compactions。
+ */
+@Slf4j
+public final class ResultStore implements AutoCloseable {
+
+    static final byte[] DATA_MAGIC = "NERRSD01".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] INDEX_MAGIC = "NERRSI01".getBytes(StandardCharsets.US_ASCII);
+    static final int HEADER = 64;
+    static final int SLOT = 24;
+    static final int RECORD_HEADER = 32;
+    private static final int D_GENERATION = 8;
+    private static final int D_POSITION = 16;
+    private static final int I_GENERATION = 8;
+    private static final int I_CAPACITY = 16;
+    private static final int I_SIZE = 24;
+    private static final int I_RETIRED = 32;
+    // 超过这个装载率就安排压缩（同时扩容索引），超过 HARD_LOAD 不再写入
+    private static final double MAX_LOAD = 0.7;
+    private static final double HARD_LOAD = 0.9;
+    // 单个索引文件要能整个映射成一个 ByteBuffer
+    private static final long MAX_INDEX_CAPACITY = 1L << 26;
+
+    private final Path dir;
+    private final boolean writable;
+    private final Settings settings;
+    private final IntPredicate retainVersion;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final ScheduledExecutorService compactor;
+    private final Object compactLock = new Object();
+    private final Counter writes;
+    private final Counter dropped;
+    private final Counter compactions;
+    // 读者在 CURRENT 出现之前为 null
+    private volatile Generation current;
+    private volatile boolean compactionRequested;
+    private long nextReopenNanos;
+
+    /**
+     * 存储的参数，默认值适合几千万条 NER 结果
+     */
+    public static class Settings {
+        private long initialIndexCapacity = 1 << 20;
+        private long initialDataBytes = 64L << 20;
+        private long maxDataBytes = 1L << 30;
+        private double compactDeadRatio = 0.3;
+        private long compactIntervalSeconds = 60;
+
+        public long getInitialIndexCapacity() {
+            return initialIndexCapacity;
+        }
+
+        public void setInitialIndexCapacity(long initialIndexCapacity) {
+            this.initialIndexCapacity = initialIndexCapacity;
+        }
+
+        public long getInitialDataBytes() {
+            return initialDataBytes;
+        }
+
+        public void setInitialDataBytes(long initialDataBytes) {
+            this.initialDataBytes = initialDataBytes;
+        }
+
+        public long getMaxDataBytes() {
+            return maxDataBytes;
+        }
+
+        public void setMaxDataBytes(long maxDataBytes) {
+            this.maxDataBytes = maxDataBytes;
+        }
+
+        public double getCompactDeadRatio() {
+            return compactDeadRatio;
+        }
+
+        public void setCompactDeadRatio(double compactDeadRatio) {
+            this.compactDeadRatio = compactDeadRatio;
+        }
+
+        public long getCompactIntervalSeconds() {
+            return compactIntervalSeconds;
+        }
+
+        public void setCompactIntervalSeconds(long compactIntervalSeconds) {
+            this.compactIntervalSeconds = compactIntervalSeconds;
+        }
+    }
+
+    /**
+     * 打开（没有时创建）dir 下的存储。writable 时尝试成为写者，锁被别的进程占着就退化成只读。
+     *
+     * @param retainVersion 压缩时保留哪些模型版本 id 的记录
+     */
+    public static ResultStore open(Path dir, boolean writable, Settings settings, IntPredicate retainVersion) throws IOException {
+        Files.createDirectories(dir);
+        FileChannel lockChannel = null;
+        FileLock lock = null;
+        if (writable) {
+            lockChannel = FileChannel.open(dir.resolve("writer.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = lockChannel.tryLock();
+            if (lock == null) {
+                lockChannel.close();
+                lockChannel = null;
+                log.info("result store {} is owned by another process, opening read-only", dir);
+            }
+        }
+        return new ResultStore(dir, lock != null, settings, retainVersion, lockChannel, lock);
+    }
+
+    private ResultStore(Path dir, boolean writable, Settings settings, IntPredicate retainVersion,
+                        FileChannel lockChannel, FileLock lock) throws IOException {
+        this.dir = dir;
+        this.writable = writable;
+        this.settings = settings;
+        this.retainVersion = retainVersion;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+        this.current = writable ? openOrCreateForWrite() : openCurrent();
+        if (current == null) {
+            log.info("result store {} has no CURRENT yet, reading it as empty until the writer creates it", dir);
+            nextReopenNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        }
+        this.writes = Counter.builder("ner.store.writes").register(Metrics.globalRegistry);
+        this.dropped = Counter.builder("ner.store.dropped").register(Metrics.globalRegistry);
+        this.compactions = Counter.builder("ner.store.compactions").register(Metrics.globalRegistry);
+        Gauge.builder("ner.store.records", this, s -> {
+            Generation g = s.generation();
+            return g == null ? 0 : g.size();
+        }).register(Metrics.globalRegistry);
+        Gauge.builder("ner.store.data.bytes", this, s -> {
+            Generation g = s.generation();
+            return g == null ? 0 : g.position();
+        }).register(Metrics.globalRegistry);
+        Gauge.builder("ner.store.dead.bytes", this, s -> s.current == null ? 0 : s.current.deadBytes).register(Metrics.globalRegistry);
+        Gauge.builder("ner.store.generation", this, s -> s.current == null ? 0 : s.current.id).register(Metrics.globalRegistry);
+        if (writable) {
+            compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ner-store-compactor");
+                t.setDaemon(true);
+                return t;
+            });
+            long interval = Math.max(1, settings.getCompactIntervalSeconds());
+            compactor.scheduleWithFixedDelay(this::maybeCompact, interval, interval, TimeUnit.SECONDS);
+        } else {
+            compactor = null;
+        }
+    }
+
+    public boolean writable() {
+        return writable;
+    }
+
+    /**
+     * @return 结果的只读视图（position 0 到 limit），没有或记录损坏时为 null
+     */
+    public ByteBuffer get(ResultKey key) {
+        Generation g = generation();
+        long base = g == null ? -1 : g.find(key);
+        if (base < 0) {
+            return null;
+        }
+        long offset = g.index.getLong((int) base + 16) - 1;
+        return g.record(offset, key);
+    }
+
+    /**
+     * 追加一条记录并让 key 指向它（覆盖旧记录）。只有写者能调用；数据文件或索引已满时丢弃并安排压缩
+     *
+     * @return 是否写入
+     */
+    public boolean put(ResultKey key, int versionId, byte[] payload) {
+        if (!writable) {
+            throw new IllegalStateException("result store " + dir + " is read-only in this process");
+        }
+        synchronized (this) {
+            Generation g = current;
+            if (g.size() >= g.capacity * MAX_LOAD) {
+                compactionRequested = true;
+                if (g.size() >= g.capacity * HARD_LOAD) {
+                    dropped.increment();
+                    return false;
+                }
+            }
+            try {
+                if (!g.append(key, versionId, payload, settings.getMaxDataBytes())) {
+                    compactionRequested = true;
+                    dropped.increment();
+                    return false;
+                }
+            } catch (IOException e) {
+                log.warn("result store {} failed to grow data file", dir, e);
+                dropped.increment();
+                return false;
+            }
+            if (g.deadBytes > g.position() * settings.getCompactDeadRatio()) {
+                compactionRequested = true;
+            }
+            // 重新写一次 volatile 的 current，同一 JVM 里无锁的读者读到它之后就能看到完整的记录和槽位
+            current = g;
+        }
+        writes.increment();
+        return true;
+    }
+
+    private void maybeCompact() {
+        boolean due;
+        // deadBytes 和 position 只在写锁里改，在锁外读可能是旧值
+        synchronized (this) {
+            Generation g = current;
+            due = compactionRequested || g.deadBytes > g.position() * settings.getCompactDeadRatio();
+        }
+        if (!due) {
+            return;
+        }
+        try {
+            compact();
+        } catch (Exception e) {
+            log.warn("result store {} compaction failed", dir, e);
+        }
+    }
+
+    /**
+     * 把有效记录拷到下一代文件并切换，索引容量按有效记录数重新估算。大部分拷贝不持有写锁，只有最后追平尾部和切换时持有
+     */
+    public void compact() throws IOException {
+        if (!writable) {
+            throw new IllegalStateException("result store " + dir + " is read-only in this process");
+        }
+        synchronized (compactLock) {
+            long start = System.nanoTime();
+            Generation old;
+            long end;
+            long live;
+            long liveBytes;
+            // 写者的位置和计数只在写锁里改；在锁内取快照，[HEADER, end) 里的记录和它们的槽位对本线程都可见，
+            // 锁外拷贝时不会因为槽位还没写好而漏掉记录（之后只会被覆盖成 end 之后的新记录，由第二遍拷贝）
+            synchronized (this) {
+                compactionRequested = false;
+                old = current;
+                end = old.position();
+                live = Math.max(1, old.size() - old.deadRecords);
+                liveBytes = end - old.deadBytes;
+            }
+            long capacity = indexCapacity(Math.max(settings.getInitialIndexCapacity(), (long) (live / 0.5)));
+            long dataBytes = Math.min(settings.getMaxDataBytes(),
+                    Math.max(settings.getInitialDataBytes(), liveBytes + (end >> 2)));
+            // 上次压缩失败或进程中途退出留下的下一代文件，CURRENT 从没指向过，没有读者在用
+            deleteGeneration(old.id + 1);
+            Generation next = Generation.create(dir, old.id + 1, capacity, dataBytes);
+            long copied;
+            boolean published = false;
+            try {
+                copied = copy(old, next, HEADER, end);
+                synchronized (this) {
+                    copied += copy(old, next, end, old.position());
+                    next.flushHeader();
+                    writeCurrent(next.id);
+                    published = true;
+                    old.index.putInt(I_RETIRED, 1);
+                    current = next;
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!published) {
+                    next.close();
+                    deleteGeneration(next.id);
+                }
+                throw e;
+            }
+            old.close();
+            Files.deleteIfExists(dataFile(dir, old.id));
+            Files.deleteIfExists(indexFile(dir, old.id));
+            compactions.increment();
+            log.info("result store {} compacted generation {} -> {}: {} records kept, {} -> {} bytes, index capacity {}, {}ms",
+                    dir, old.id, next.id, copied, old.position(), next.position(), capacity, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    /**
+     * 拷贝 [from, to) 之间仍被 old 索引指向、且版本被保留的记录
+     */
+    private long copy(Generation old, Generation next, long from, long to) throws IOException {
+        long copied = 0;
+        long p = from;
+        while (p < to) {
+            ByteBuffer data = old.data(p + RECORD_HEADER);
+            int length = data.getInt((int) p);
+            int version = data.getInt((int) p + 4);
+            ResultKey key = new ResultKey(data.getLong((int) p + 8), data.getLong((int) p + 16));
+            long base = old.find(key);
+            if (base >= 0 && old.index.getLong((int) base + 16) - 1 == p && retainVersion.test(version)) {
+                ByteBuffer payload = old.data(p + RECORD_HEADER + length).duplicate();
+                payload.position((int) p + RECORD_HEADER).limit((int) p + RECORD_HEADER + length);
+                byte[] bytes = new byte[length];
+                payload.get(bytes);
+                if (!next.append(key, version, bytes, settings.getMaxDataBytes())) {
+                    throw new IOException("compacted result store does not fit in " + settings.getMaxDataBytes() + " bytes");
+                }
+                copied++;
+            }
+            p += RECORD_HEADER + length;
+        }
+        return copied;
+    }
+
+    /**
+     * 读者发现当前代已被压缩掉时重新打开 CURRENT；还没有 CURRENT 时返回 null，每秒最多重试一次
+     */
+    private Generation generation() {
+        Generation g = current;
+        if (writable || (g != null && g.index.getInt(I_RETIRED) == 0)) {
+            return g;
+        }
+        synchronized (this) {
+            if (current == g && (g != null || System.nanoTime() - nextReopenNanos >= 0)) {
+                try {
+                    Generation reopened = openCurrent();
+                    if (reopened != null) {
+                        current = reopened;
+                        if (g != null) {
+                            g.close();
+                        }
+                    } else {
+                        nextReopenNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+                    }
+                } catch (IOException e) {
+                    log.warn("failed to reopen result store {}, keep using generation {}", dir, g == null ? 0 : g.id, e);
+                    nextReopenNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+                }
+            }
+            return current;
+        }
+    }
+
+    private Generation openOrCreateForWrite() throws IOException {
+        Path currentFile = dir.resolve("CURRENT");
+        if (!Files.exists(currentFile)) {
+            // 上次建库到一半退出留下的文件
+            deleteGeneration(1);
+            Generation g = Generation.create(dir, 1, indexCapacity(settings.getInitialIndexCapacity()),
+                    Math.min(settings.getInitialDataBytes(), settings.getMaxDataBytes()));
+            try {
+                g.flushHeader();
+                writeCurrent(1);
+            } catch (IOException | RuntimeException e) {
+                g.close();
+                deleteGeneration(1);
+                throw e;
+            }
+            return g;
+        }
+        long id = readCurrent();
+        Generation g = Generation.open(dir, id, true);
+        // 统计死记录：被覆盖的和不再保留的版本，决定要不要马上压缩
+        long p = HEADER;
+        long end = g.position();
+        while (p < end) {
+            ByteBuffer data = g.data(p + RECORD_HEADER);
+            int length = data.getInt((int) p);
+            ResultKey key = new ResultKey(data.getLong((int) p + 8), data.getLong((int) p + 16));
+            long base = g.find(key);
+            boolean latest = base >= 0 && g.index.getLong((int) base + 16) - 1 == p;
+            if (!latest || !retainVersion.test(data.getInt((int) p + 4))) {
+                g.deadBytes += RECORD_HEADER + length;
+                g.deadRecords += latest ? 1 : 0;
+            }
+            p += RECORD_HEADER + length;
+        }
+        log.info("result store {} opened for write: generation {}, {} records, {} bytes ({} dead)",
+                dir, id, g.size(), end, g.deadBytes);
+        return g;
+    }
+
+    /**
+     * 还没有 CURRENT（写者还没建好库）时返回 null
+     */
+    private Generation openCurrent() throws IOException {
+        // 读 CURRENT 和打开文件之间写者可能刚好完成一次压缩并删掉旧文件，重读几次
+        for (int attempt = 0; ; attempt++) {
+            if (!Files.exists(dir.resolve("CURRENT"))) {
+                return null;
+            }
+            long id = readCurrent();
+            try {
+                return Generation.open(dir, id, false);
+            } catch (NoSuchFileException e) {
+                if (attempt >= 3) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private long readCurrent() throws IOException {
+        return Long.parseLong(new String(Files.readAllBytes(dir.resolve("CURRENT")), StandardCharsets.US_ASCII).trim());
+    }
+
+    /**
+     * 先写临时文件再原子改名，读者不会读到写了一半的 CURRENT
+     */
+    private void writeCurrent(long id) throws IOException {
+        Path tmp = dir.resolve("CURRENT.tmp");
+        Files.write(tmp, Long.toString(id).getBytes(StandardCharsets.US_ASCII));
+        Files.move(tmp, dir.resolve("CURRENT"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void deleteGeneration(long id) throws IOException {
+        Files.deleteIfExists(dataFile(dir, id));
+        Files.deleteIfExists(indexFile(dir, id));
+    }
+
+    /**
+     * 不小于 slots 的 2 的幂，至多 MAX_INDEX_CAPACITY
+     */
+    static long indexCapacity(long slots) {
+        return Math.min(MAX_INDEX_CAPACITY, Long.highestOneBit(Math.max(2, slots) * 2 - 1));
+    }
+
+    static Path dataFile(Path dir, long id) {
+        return dir.resolve("data-" + id + ".bin");
+    }
+
+    static Path indexFile(Path dir, long id) {
+        return dir.resolve("index-" + id + ".bin");
+    }
+
+    @Override
+    public void close() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        synchronized (compactLock) {
+            synchronized (this) {
+                if (current != null) {
+                    if (writable) {
+                        current.flushHeader();
+                    }
+                    current.close();
+                }
+            }
+        }
+        try {
+            if (lock != null) {
+                lock.release();
+            }
+            if (lockChannel != null) {
+                lockChannel.close();
+            }
+        } catch (IOException e) {
+            log.warn("failed to release writer lock of result store {}", dir, e);
+        }
+    }
+
+    /**
+     * 一代数据文件 + 索引文件。写操作由 ResultStore 的锁串行化，读操作无锁
+     */
+    static final class Generation {
+        final long id;
+        final long capacity;
+        final boolean writable;
+        final FileChannel dataChannel;
+        final FileChannel indexChannel;
+        final MappedByteBuffer index;
+        private volatile MappedByteBuffer data;
+        // 以下只在写者里维护
+        private long position;
+        private long size;
+        long deadBytes;
+        long deadRecords;
+
+        private Generation(long id, boolean writable, FileChannel dataChannel, FileChannel indexChannel, MappedByteBuffer index,
+                           MappedByteBuffer data) {
+            this.id = id;
+            this.writable = writable;
+            this.dataChannel = dataChannel;
+            this.indexChannel = indexChannel;
+            this.index = index;
+            this.data = data;
+            this.capacity = index.getLong(I_CAPACITY);
+            this.position = data.getLong(D_POSITION);
+            this.size = index.getLong(I_SIZE);
+        }
+
+        static Generation create(Path dir, long id, long capacity, long dataBytes) throws IOException {
+            FileChannel indexChannel = FileChannel.open(indexFile(dir, id), StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileChannel dataChannel = null;
+            MappedByteBuffer index;
+            MappedByteBuffer data;
+            try {
+                dataChannel = FileChannel.open(dataFile(dir, id), StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                index = map(indexChannel, FileChannel.MapMode.READ_WRITE, HEADER + capacity * SLOT);
+                data = map(dataChannel, FileChannel.MapMode.READ_WRITE, Math.max(HEADER + RECORD_HEADER, dataBytes));
+            } catch (IOException | RuntimeException e) {
+                indexChannel.close();
+                if (dataChannel != null) {
+                    dataChannel.close();
+                }
+                Files.deleteIfExists(indexFile(dir, id));
+                Files.deleteIfExists(dataFile(dir, id));
+                throw e;
+            }
+            index.put(INDEX_MAGIC);
+            index.putLong(I_GENERATION, id);
+            index.putLong(I_CAPACITY, capacity);
+            index.putLong(I_SIZE, 0);
+            index.putInt(I_RETIRED, 0);
+            data.put(DATA_MAGIC);
+            data.putLong(D_GENERATION, id);
+            data.putLong(D_POSITION, HEADER);
+            return new Generation(id, true, dataChannel, indexChannel, index, data);
+        }
+
+        static Generation open(Path dir, long id, boolean writable) throws IOException {
+            StandardOpenOption[] options = writable
+                    ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE}
+                    : new StandardOpenOption[]{StandardOpenOption.READ};
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            FileChannel indexChannel = FileChannel.open(indexFile(dir, id), options);
+            FileChannel dataChannel;
+            try {
+                dataChannel = FileChannel.open(dataFile(dir, id), options);
+            } catch (IOException e) {
+                indexChannel.close();
+                throw e;
+            }
+            MappedByteBuffer index = map(indexChannel, mode, indexChannel.size());
+            MappedByteBuffer data = map(dataChannel, mode, dataChannel.size());
+            checkMagic(index, INDEX_MAGIC, indexFile(dir, id));
+            checkMagic(data, DATA_MAGIC, dataFile(dir, id));
+            return new Generation(id, writable, dataChannel, indexChannel, index, data);
+        }
+
+        private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long bytes) throws IOException {
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IOException("result store file larger than 2GB: " + bytes + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(mode, 0, bytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+
+        private static void checkMagic(ByteBuffer buffer, byte[] magic, Path file) throws IOException {
+            byte[] actual = new byte[magic.length];
+            buffer.duplicate().get(actual);
+            if (!Arrays.equals(actual, magic)) {
+                throw new IOException("not a result store file (bad magic): " + file);
+            }
+        }
+
+        long size() {
+            return writable ? size : index.getLong(I_SIZE);
+        }
+
+        long position() {
+            return writable ? position : data.getLong(D_POSITION);
+        }
+
+        /**
+         * @return key 所在槽位的字节偏移，没有为 -1
+         */
+        long find(ResultKey key) {
+            long mask = capacity - 1;
+            long slot = key.lo & mask;
+            for (long probe = 0; probe < capacity; probe++) {
+                int base = (int) (HEADER + slot * SLOT);
+                if (index.getLong(base + 16) == 0) {
+                    return -1;
+                }
+                if (index.getLong(base) == key.hi && index.getLong(base + 8) == key.lo) {
+                    return base;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * 至少映射到 end 字节的数据；读者在写者扩容后重新映射
+         */
+        ByteBuffer data(long end) throws IOException {
+            MappedByteBuffer d = data;
+            if (end <= d.capacity()) {
+                return d;
+            }
+            synchronized (this) {
+                d = data;
+                if (end > d.capacity()) {
+                    long size = dataChannel.size();
+                    if (end > size) {
+                        throw new IOException("result store record beyond end of data file: " + end + " > " + size);
+                    }
+                    d = map(dataChannel, writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, size);
+                    data = d;
+                }
+                return d;
+            }
+        }
+
+        ByteBuffer record(long offset, ResultKey key) {
+            try {
+                ByteBuffer d = data(offset + RECORD_HEADER);
+                int p = (int) offset;
+                int length = d.getInt(p);
+                if (length < 0 || d.getLong(p + 8) != key.hi || d.getLong(p + 16) != key.lo) {
+                    return null;
+                }
+                d = data(offset + RECORD_HEADER + length);
+                ByteBuffer payload = d.duplicate();
+                payload.position(p + RECORD_HEADER).limit(p + RECORD_HEADER + length);
+                payload = payload.slice();
+                CRC32 crc = new CRC32();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != d.getInt(p + 24)) {
+                    return null;
+                }
+                return payload.asReadOnlyBuffer();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * 写者调用：追加记录，数据文件不够时按倍数扩到 maxDataBytes
+         */
+        boolean append(ResultKey key, int versionId, byte[] payload, long maxDataBytes) throws IOException {
+            long need = position + RECORD_HEADER + payload.length;
+            MappedByteBuffer d = data;
+            if (need > d.capacity()) {
+                if (need > Math.min(maxDataBytes, Integer.MAX_VALUE)) {
+                    return false;
+                }
+                long grown = Math.min(Math.min(maxDataBytes, Integer.MAX_VALUE), Math.max(need, (long) d.capacity() * 2));
+                d = map(dataChannel, FileChannel.MapMode.READ_WRITE, grown);
+                data = d;
+            }
+            int p = (int) position;
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+            d.putInt(p, payload.length);
+            d.putInt(p + 4, versionId);
+            d.putLong(p + 8, key.hi);
+            d.putLong(p + 16, key.lo);
+            d.putInt(p + 24, (int) crc.getValue());
+            d.putInt(p + 28, 0);
+            for (int i = 0; i < payload.length; i++) {
+                d.put(p + RECORD_HEADER + i, payload[i]);
+            }
+            position = need;
+            d.putLong(D_POSITION, position);
+
+            long base = find(key);
+            if (base >= 0) {
+                long old = index.getLong((int) base + 16) - 1;
+                deadBytes += RECORD_HEADER + d.getInt((int) old);
+                index.putLong((int) base + 16, p + 1L);
+                return true;
+            }
+            long mask = capacity - 1;
+            long slot = key.lo & mask;
+            while (index.getLong((int) (HEADER + slot * SLOT) + 16) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            int b = (int) (HEADER + slot * SLOT);
+            index.putLong(b, key.hi);
+            index.putLong(b + 8, key.lo);
+            index.putLong(b + 16, p + 1L);
+            size++;
+            index.putLong(I_SIZE, size);
+            return true;
+        }
+
+        void flushHeader() {
+            data.putLong(D_POSITION, position);
+            index.putLong(I_SIZE, size);
+        }
+
+        void close() {
+            try {
+                dataChannel.close();
+                indexChannel.close();
+            } catch (IOException e) {
+                log.warn("failed to close result store generation {}", id, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.onnx.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.RunUbertaOnOnnx;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+
+/**
+ * ner.store.* 配置：开启时打开 {@link ResultStore}，给 {@link RunUbertaOnOnnx} 装上持久化结果缓存。
+ * 同一目录的多个进程里只有一个能写，其余自动只读；model-version 为空时取模型文件名 + 大小 + 修改时间，
+ * 词典、类型过滤等会改变结果的配置变了也要跟着改 model-version。
+ */
+@Slf4j
+@Component
+@ConfigurationProperties(prefix = "ner.store")
+public class ResultStoreProperties {
+
+    private boolean enabled = false;
+    private String directory;
+    private boolean readOnly = false;
+    private String modelVersion;
+    private ResultStore.Settings settings = new ResultStore.Settings();
+
+    private ResultStore store;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    public void setModelVersion(String modelVersion) {
+        this.modelVersion = modelVersion;
+    }
+
+    public ResultStore.Settings getSettings() {
+        return settings;
+    }
+
+    public void setSettings(ResultStore.Settings settings) {
+        this.settings = settings;
+    }
+
+    @PostConstruct
+    public void apply() {
+        if (!enabled) {
+            RunUbertaOnOnnx.setResultCache(null);
+            return;
+        }
+        if (directory == null || directory.isEmpty()) {
+            throw new IllegalStateException("ner.store.directory is required when ner.store.enabled=true");
+        }
+        String version = modelVersion == null || modelVersion.isEmpty() ? RunUbertaOnOnnx.modelVersion() : modelVersion;
+        int versionId = ResultKey.versionId(version);
+        try {
+            store = ResultStore.open(Paths.get(directory), !readOnly, settings, id -> id == versionId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to open result store " + directory, e);
+        }
+        RunUbertaOnOnnx.setResultCache(new NerResultCache(store, version));
+        log.info("result store {}: model version {}, {}", directory, version, store.writable() ? "writer" : "read-only");
+    }
+
+    @PreDestroy
+    public void close() {
+        RunUbertaOnOnnx.setResultCache(null);
+        if (store != null) {
+            store.close();
+        }
+    }
+}
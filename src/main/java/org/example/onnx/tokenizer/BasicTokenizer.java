@@ -1,28 +1,32 @@
 package org.example.onnx.tokenizer;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 
 /**
- * 基础分词器
+ * 基础分词器，构造后不可变，可以被多个线程共享
  * @author jqpeng
  */
 public class BasicTokenizer implements Tokenizer {
-    private boolean doLowerCase = true;
-    private List<String> neverSplit;
-    private boolean tokenizeChineseChars = true;
+    private final boolean doLowerCase;
+    private final Set<String> neverSplit;
+    private final boolean tokenizeChineseChars;
 
-    public BasicTokenizer(boolean doLowerCase, List<String> neverSplit, boolean tokenizeChineseChars) {
+    public BasicTokenizer(boolean doLowerCase, Collection<String> neverSplit, boolean tokenizeChineseChars) {
         this.doLowerCase = doLowerCase;
-        if (neverSplit == null) {
-            neverSplit = new ArrayList<String>();
-        }
-        this.neverSplit = neverSplit;
+        this.neverSplit = neverSplit == null
+                ? Collections.<String>emptySet()
+                : Collections.unmodifiableSet(new HashSet<>(neverSplit));
         this.tokenizeChineseChars = tokenizeChineseChars;
     }
 
     public BasicTokenizer() {
+        this(true, null, true);
     }
 
     @Override
@@ -43,4 +47,4 @@ public class BasicTokenizer implements Tokenizer {
         return TokenizerUtils.whitespaceTokenize(String.join(" ", splitTokens));
     }
 
-}
\ No newline at end of file
+}
@@ -1,73 +1,112 @@
 package org.example.onnx.tokenizer;
 
-import ai.onnxruntime.OnnxTensor;
-import ai.onnxruntime.OrtEnvironment;
-import ai.onnxruntime.OrtException;
 import cn.hutool.core.collection.ListUtil;
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
-import com.alibaba.fastjson.JSONObject;
 import lombok.extern.log4j.Log4j2;
+import org.example.onnx.ner.NerEntity;
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.ner.NerResult;
+import org.example.onnx.postprocess.SpanHits;
+import org.example.onnx.runtime.PipelineEvents;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 /**
  * Bert Tokenizer
+ * <p>
+ * 构造完成后不可变（词表、子分词器都是只读的），同一个实例可以被所有请求线程共享
  *
  * @author jadepeng
  */
 @Log4j2
 public class BertTokenizer implements Tokenizer {
 
-    private String vocabFile = "vocab.txt";
-    private Map<String, Integer> tokenIdMap;
-    private Map<Integer, String> idTokenMap;
+    private final String vocabFile;
+    // 词表文件名，作为分词阶段 JFR 事件的模型名
+    private final String name;
+    private final Map<String, Integer> tokenIdMap;
+    private final Map<Integer, String> idTokenMap;
     private final boolean doLowerCase = true;
     private final boolean doBasicTokenize = true;
-    private final List<String> neverSplit = new ArrayList<String>();
+    private final Set<String> neverSplit = Collections.emptySet();
     private final String unkToken = "[UNK]";
     private final String sepToken = "[SEP]";
     private final String padToken = "[PAD]";
     private final String clsToken = "[CLS]";
     private final String maskToken = "[MASK]";
     private final boolean tokenizeChineseChars = true;
-    private BasicTokenizer basicTokenizer;
-    private WordpieceTokenizer wordpieceTokenizer;
+    private final BasicTokenizer basicTokenizer;
+    private final WordpieceTokenizer wordpieceTokenizer;
+    // 下标即 token id
+    private final String[] idToToken;
+    private final int unkId;
+    // 原文 → 分词结果，容量按 token 总数算，-Dtokenizer.cache.max-tokens=0 关闭
+    private final TokenCache cache;
+    // entity_type → "[CLS]抽取任务[SEP]实体识别[SEP]" + entity_type + "[SEP]" 的 id，entity_type 只有少数几种；
+    // 满 MAX_CACHED_PROMPTS 个之后新类型每次现算，不再缓存
+    private final ConcurrentMap<String, int[]> promptIds = new ConcurrentHashMap<>();
+    private static final int MAX_CACHED_PROMPTS = 256;
 
     private static final int MAX_LEN = 2048;
+    private static final int UBERT_MAX_LENGTH = 50;
+    // 单句模型的位置编码长度（BERT / RoBERTa 都是 512），含 [CLS] / [SEP]
+    public static final int TEXT_MAX_LENGTH = 512;
 
     public BertTokenizer(String vocabFile) {
-        this.vocabFile = vocabFile;
-        init();
-    }
-
-    public BertTokenizer() {
-        init();
+        this(vocabFile, Long.getLong("tokenizer.cache.max-tokens", 1L << 21));
     }
 
-    private void init() {
+    /**
+     * @param maxCachedTokens 分词缓存的容量（token 总数），0 关闭缓存
+     */
+    public BertTokenizer(String vocabFile, long maxCachedTokens) {
+        this.vocabFile = vocabFile;
+        this.name = new File(vocabFile).getName();
         try {
-            this.tokenIdMap = loadVocab(vocabFile);
+            this.tokenIdMap = Collections.unmodifiableMap(loadVocab(vocabFile));
         } catch (IOException e) {
             log.error("Unable to load vocab due to: ", e);
+            throw new UncheckedIOException("Unable to load vocab " + vocabFile, e);
         }
-        this.idTokenMap = new HashMap<>(this.tokenIdMap.size());
+        Map<Integer, String> idTokens = new HashMap<>(this.tokenIdMap.size());
         for (String key : tokenIdMap.keySet()) {
-            this.idTokenMap.put(tokenIdMap.get(key), key);
+            idTokens.put(tokenIdMap.get(key), key);
         }
-
-        if (doBasicTokenize) {
-            this.basicTokenizer = new BasicTokenizer(doLowerCase, neverSplit, tokenizeChineseChars);
+        this.idTokenMap = Collections.unmodifiableMap(idTokens);
+        int maxId = -1;
+        for (Integer id : tokenIdMap.values()) {
+            maxId = Math.max(maxId, id);
+        }
+        this.idToToken = new String[maxId + 1];
+        for (Map.Entry<Integer, String> entry : idTokenMap.entrySet()) {
+            idToToken[entry.getKey()] = entry.getValue();
         }
+        this.unkId = tokenIdMap.getOrDefault(unkToken, 0);
+
+        this.cache = maxCachedTokens > 0 ? new TokenCache(maxCachedTokens, name) : null;
+
+        this.basicTokenizer = doBasicTokenize ? new BasicTokenizer(doLowerCase, neverSplit, tokenizeChineseChars) : null;
         this.wordpieceTokenizer = new WordpieceTokenizer(tokenIdMap, unkToken);
     }
 
+    public BertTokenizer() {
+        this("vocab.txt");
+    }
+
     private Map<String, Integer> loadVocab(String vocabFileName) throws IOException {
         return TokenizerUtils.generateTokenIdMap(new FileInputStream(vocabFileName));
     }
@@ -87,6 +126,40 @@ public class BertTokenizer implements Tokenizer {
      */
     @Override
     public List<String> tokenize(String text) {
+        return encodeText(text).tokens(idToToken);
+    }
+
+    /**
+     * 分词结果（id + 原文区间），先查缓存；返回值不可变，可以长期持有
+     */
+    public Encoding encodeText(String text) {
+        return cache == null ? encodeUncached(text) : cache.get(text, this::encodeUncached);
+    }
+
+    /**
+     * 不查也不写缓存，每次都真正分词；给预热用，样例文本进了缓存之后 {@link #encodeText} 就不再走分词代码
+     */
+    public Encoding encodeTextUncached(String text) {
+        return encodeUncached(text);
+    }
+
+    /**
+     * {@link StreamingTokenizer} 的一段，不进缓存
+     */
+    Encoding encodeSegment(String segment) {
+        return encodeUncached(segment);
+    }
+
+    private Encoding encodeUncached(String text) {
+        List<String> tokens = tokenizeUncached(text);
+        int[] ids = new int[tokens.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = tokenIdMap.getOrDefault(tokens.get(i), unkId);
+        }
+        return new Encoding(ids, TokenizerUtils.alignOffsets(text, tokens, unkToken));
+    }
+
+    private List<String> tokenizeUncached(String text) {
         List<String> splitTokens = new ArrayList<>();
         if (doBasicTokenize) {
             for (String token : basicTokenizer.tokenize(text)) {
@@ -113,316 +186,242 @@ public class BertTokenizer implements Tokenizer {
         return result;
     }
 
-    static long[] paddingZero(long[] array1, int paddingSize) {
-        long[] result = new long[array1.length + paddingSize];
-        System.arraycopy(array1, 0, result, 0, array1.length);
-        for (int i = array1.length; i < result.length; i++) {
-            result[i] = 0;
-        }
-        return result;
+    /**
+     * 单句模型的输入：每条文本编码成 [CLS] 原文 [SEP]，按 batch 内最长的一条（不小于 minLength）补齐。
+     * 原文超过 {@link #TEXT_MAX_LENGTH} - 2 个 token 的截掉尾部，长文档要完整覆盖时用 {@link StreamingTokenizer} 分窗口。
+     * 输入名和类型由调用方的 {@link org.example.onnx.runtime.ModelBinding} 决定
+     */
+    public TextBatch encodeTexts(List<String> texts, int minLength) {
+        return encodeTexts(texts, minLength, TEXT_MAX_LENGTH);
     }
 
-    public Map<String, OnnxTensor> tokenizeOnnxTensor(List<String> texts)
-            throws OrtException {
-        OrtEnvironment env = OrtEnvironment.getEnvironment();
-        long[][] textTokensIds = new long[texts.size()][];
-        long[][] masks = new long[texts.size()][];
-        int rowIndex = 0;
-        int maxColumn = 32;
+    /**
+     * @param maxLength 每行最多的 token 数，含 [CLS] / [SEP]
+     */
+    public TextBatch encodeTexts(List<String> texts, int minLength, int maxLength) {
+        if (maxLength < 2 || minLength > maxLength) {
+            throw new IllegalArgumentException("need 2 <= max length and min length <= max length, got min " + minLength + " max " + maxLength);
+        }
+        Object event = PipelineEvents.begin(PipelineEvents.Stage.TOKENIZE);
+        List<Encoding> encodings = new ArrayList<>(texts.size());
         for (String text : texts) {
-
-            List<String> tokens = tokenize(text);
-            long[] tokenIds = new long[tokens.size() + 2];
-            int index = 0;
-            tokenIds[index++] = tokenIdMap.get(clsToken);
-            for (String s : tokens) {
-                tokenIds[index++] = tokenIdMap.get(s);
-            }
-            tokenIds[index++] = tokenIdMap.get(sepToken);
-            textTokensIds[rowIndex] = tokenIds;
-            masks[rowIndex++] = buildTokenTypeArray(index);
-            maxColumn = Math.max(maxColumn, index);
+            encodings.add(encodeText(text));
         }
+        TextBatch batch = toTextBatch(encodings, minLength, maxLength - 2);
+        PipelineEvents.end(event, name, batch);
+        return batch;
+    }
 
-        // 长度不足maxColumn，填充0，必须保证长度达maxColumn
-        for (int row = 0; row < texts.size(); row++) {
-            if (textTokensIds[row].length < maxColumn) {
-                // padding 0
-                textTokensIds[row] = paddingZero(textTokensIds[row], maxColumn - textTokensIds[row].length);
-                masks[row] = paddingZero(masks[row], maxColumn - masks[row].length);
-            }
+    /**
+     * {@link StreamingTokenizer} 的窗口直接拼成单句模型的 batch，每个窗口一行，不再分词
+     */
+    public TextBatch encodeChunks(List<TokenChunk> chunks, int minLength) {
+        List<Encoding> encodings = new ArrayList<>(chunks.size());
+        for (TokenChunk chunk : chunks) {
+            encodings.add(chunk.encoding());
         }
-
-        OnnxTensor ids = OnnxTensor.createTensor(env, new long[][]{textTokensIds[0]});
-        OnnxTensor tokenTypeIds = OnnxTensor.createTensor(env, new long[][]{masks[0]});
-        Map<String, OnnxTensor> inputMap = new HashMap<>();
-        inputMap.put("ids", ids);
-        inputMap.put("mask", tokenTypeIds);
-
-
-        return inputMap;
+        return toTextBatch(encodings, minLength, Integer.MAX_VALUE);
     }
 
-    public Map<String, OnnxTensor> tokenizeOnnxTensorForRoberta(List<String> texts)
-            throws OrtException {
-        OrtEnvironment env = OrtEnvironment.getEnvironment();
-        long[][] textTokensIds = new long[texts.size()][];
-        long[][] masks = new long[texts.size()][];
-        long[][] types = new long[texts.size()][];
-        int rowIndex = 0;
-        int maxColumn = 300;
-        for (String text : texts) {
-
-            List<String> tokens = tokenize(text);
-            long[] tokenIds = new long[tokens.size() + 2];
-            int index = 0;
-            tokenIds[index++] = tokenIdMap.get(clsToken);
-            for (String s : tokens) {
-                tokenIds[index++] = tokenIdMap.get(s);
-            }
-            tokenIds[index++] = tokenIdMap.get(sepToken);
-            textTokensIds[rowIndex] = tokenIds;
-            types[rowIndex] = buildTypeArray(maxColumn);
-
-            masks[rowIndex++] = buildTokenTypeArray(index);
-            maxColumn = Math.max(maxColumn, index);
+    /**
+     * @param maxTokens 每行最多取原文的前几个 token，不含 [CLS] / [SEP]
+     */
+    private TextBatch toTextBatch(List<Encoding> encodings, int minLength, int maxTokens) {
+        long clsId = tokenIdMap.get(clsToken);
+        long sepId = tokenIdMap.get(sepToken);
+        int seqLength = minLength;
+        for (Encoding encoding : encodings) {
+            seqLength = Math.max(seqLength, Math.min(encoding.length(), maxTokens) + 2);
         }
-
-        // 长度不足maxColumn，填充0，必须保证长度达maxColumn
-        for (int row = 0; row < texts.size(); row++) {
-            if (textTokensIds[row].length < maxColumn) {
-                // padding 0
-                textTokensIds[row] = paddingZero(textTokensIds[row], maxColumn - textTokensIds[row].length);
-                masks[row] = paddingZero(masks[row], maxColumn - masks[row].length);
+        TextBatch batch = new TextBatch(encodings.size(), seqLength);
+        for (int row = 0; row < encodings.size(); row++) {
+            int offset = row * seqLength;
+            int index = offset;
+            batch.inputIds[index++] = clsId;
+            int[] ids = encodings.get(row).ids;
+            for (int i = 0, n = Math.min(ids.length, maxTokens); i < n; i++) {
+                batch.inputIds[index++] = ids[i];
             }
+            batch.inputIds[index++] = sepId;
+            Arrays.fill(batch.attentionMask, offset, index, 1L);
         }
-
-        OnnxTensor ids = OnnxTensor.createTensor(env, new long[][]{textTokensIds[0]});
-        OnnxTensor attentionMask = OnnxTensor.createTensor(env, new long[][]{masks[0]});
-        OnnxTensor tokenType = OnnxTensor.createTensor(env, new long[][]{types[0]});
-        Map<String, OnnxTensor> inputMap = new HashMap<>();
-        inputMap.put("input_ids", ids);
-        inputMap.put("attention_mask", attentionMask);
-        inputMap.put("token_type_ids", tokenType);
-
-        return inputMap;
+        return batch;
     }
 
-    private double[][] zeros(int maxLength){
-        double[][] result = new double[50][];
-        for (int i = 0; i < maxLength; i++) {
-            double[] rs = buildMashArray(maxLength);
-            result[i] = rs;
-        }
-        return result;
-    }
-
-    public void decode(double[][][][]spanLogits, long[][]pos, List<JSONObject> inpBatchData){
-
-        for (int i = 0; i < inpBatchData.size(); i++) {
-            JSONObject item = inpBatchData.get(i);
-
-            String textb = item.getString("text");
-
-            List<String> tokenize = tokenize(textb);
-            long[][]offsetMapping = new long[tokenize.size()][];
-            for (int j = 0; j < tokenize.size(); j++) {
-                long[] t = {j};
-                offsetMapping[j] = t;
-            }
-
-
-            JSONArray choices = item.getJSONArray("choices");
-
-
-            for (int c = 0; c < choices.size(); c++) {
-
-                String texta = item.getString("task_type") + "[SEP]"
-                        + item.getString("subtask_type") + "[SEP]"
-                        + choices.getJSONObject(c).getString("entity_type");
-                Long[] encode = encode(texta);
-                int text_start_id = encode.length;
-                List<double[]>entity_idx_type_list = new ArrayList<>();
-                for(long[] entitySpan: pos){
-                    if (entitySpan[0] == i && entitySpan[1] == c){
-                        int l2 = (int) entitySpan[2];
-                        int l3 = (int) entitySpan[3];
-                        double prob = spanLogits[0][c][l2][l3];
-
-                        entity_idx_type_list.add(new double[]{(double)entitySpan[2], (double)entitySpan[3], prob});
+    /**
+     * span 命中（已按 batch / choice 标好位置）还原成实体文本，queries 与 batch 第一维一一对应
+     */
+    public List<NerResult> decode(SpanHits hits, List<NerQuery> queries) {
+        List<NerResult> results = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            NerQuery query = queries.get(i);
+            String text = query.getText();
+            Encoding encoding = encodeText(text);
+
+            Map<String, List<NerEntity>> entities = new LinkedHashMap<>();
+            List<String> entityTypes = query.getEntityTypes();
+            for (int c = 0; c < entityTypes.size(); c++) {
+                String entityType = entityTypes.get(c);
+                int textStartId = promptIds(entityType).length;
+
+                List<NerEntity> entityList = new ArrayList<>();
+                Set<String> seen = new HashSet<>();
+                for (int h = 0; h < hits.size(); h++) {
+                    if (hits.batch(h) != i || hits.choice(h) != c) {
+                        continue;
                     }
-                }
-
-                JSONArray entity_list = new JSONArray();
-                List<String>dupMap = new ArrayList<>();
-                for(double[]entity_idx:entity_idx_type_list ){
-                    String entity = extract_entity(textb, entity_idx, text_start_id, offsetMapping);
-
-                    if (!dupMap.contains(entity)){
-                        dupMap.add(entity);
-
-                        JSONObject entityObj = new JSONObject();
-                        entityObj.put("entity_name",entity);
-                        entityObj.put("score",entity_idx[2]);
-                        entity_list.add(entityObj);
+                    String entity = extract_entity(text, hits.start(h), hits.end(h), textStartId, encoding);
+                    if (seen.add(entity)) {
+                        entityList.add(new NerEntity(entity, hits.prob(h)));
                     }
-
                 }
-
-                System.out.println(i+": "+c+": "+JSON.toJSONString(entity_list));
-//                batch_data[i]['choices'][c]['entity_list'] = entity_list
-                JSONObject target = choices.getJSONObject(c);
-                target.put("entity_list",entity_list);
-
+                log.debug("{}: {}: {}", i, entityType, entityList.size());
+                entities.put(entityType, entityList);
             }
+            results.add(new NerResult(text, entities));
         }
-
-        System.out.println("");
+        return results;
     }
 
-    private String extract_entity(String text, double[] entityIdx, int textStartId, long[][] offsetMapping) {
-
-        long[] start_split = (entityIdx[0] - textStartId) < offsetMapping.length && entityIdx[0] - textStartId >= 0
-                ?offsetMapping[(int) entityIdx[0] - textStartId]:new long[]{};
-
-        long[]end_split = offsetMapping.length>(entityIdx[1] - textStartId) && (entityIdx[1] - textStartId)>=0?
-                offsetMapping[(int)entityIdx[1] - textStartId]:new long[]{};
+    /**
+     * span 的 token 下标（含 prompt）换算成原文字符区间取出实体，越界或对不上原文时返回空串
+     */
+    private String extract_entity(String text, int startIdx, int endIdx, int textStartId, Encoding encoding) {
+        int start = startIdx - textStartId;
+        int end = endIdx - textStartId;
 
         String entity = "";
-        if (start_split.length>0 && end_split.length>0){
-            entity = text.substring((int)start_split[0],(int)end_split[end_split.length-1]+1);
+        if (start >= 0 && start < encoding.length() && end >= start && end < encoding.length()
+                && encoding.start(start) >= 0 && encoding.end(end) >= 0) {
+            entity = text.substring(encoding.start(start), encoding.end(end));
         }
         return entity;
     }
 
-    private Long[] encode(String text){
-        String[] split = text.split("\\[SEP\\]");
-        List<Integer>tokenIds = new ArrayList<>();
-        tokenIds.add(tokenIdMap.get(clsToken));
-        for (int i = 0; i < split.length; i++) {
-            List<String> tokens = tokenize(split[i]);
-            for (String s : tokens) {
-                tokenIds.add(tokenIdMap.get(s));
-            }
-            tokenIds.add(tokenIdMap.get(sepToken));
+    /**
+     * [CLS] 抽取任务 [SEP] 实体识别 [SEP] entity_type [SEP]，即 UBERT 输入里原文之前的部分
+     */
+    private int[] promptIds(String entityType) {
+        int[] cached = promptIds.get(entityType);
+        if (cached != null) {
+            return cached;
         }
-//        tokenIds.add(tokenIdMap.get(sepToken));
-        Long[] t = new Long[tokenIds.size()];
-        for (int i = 0; i < tokenIds.size(); i++) {
-            t[i] = Long.valueOf(tokenIds.get(i));
+        if (promptIds.size() >= MAX_CACHED_PROMPTS) {
+            return buildPromptIds(entityType);
         }
-        return t;
+        return promptIds.computeIfAbsent(entityType, this::buildPromptIds);
     }
 
+    private int[] buildPromptIds(String type) {
+        String[] parts = {NerQuery.TASK_TYPE, NerQuery.SUBTASK_TYPE, type};
+        int sepId = tokenIdMap.get(sepToken);
+        List<Integer> ids = new ArrayList<>();
+        ids.add(tokenIdMap.get(clsToken));
+        for (String part : parts) {
+            Encoding encoding = encodeText(part);
+            for (int id : encoding.ids) {
+                ids.add(id);
+            }
+            ids.add(sepId);
+        }
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
 
+    public UbertBatch encode(List<NerQuery> queries) {
+        Object event = PipelineEvents.begin(PipelineEvents.Stage.TOKENIZE);
+        List<UbertFeature> features = new ArrayList<>(queries.size());
+        for (NerQuery query : queries) {
+            features.add(encodeFeature(query));
+        }
+        UbertBatch batch = toBatch(features);
+        PipelineEvents.end(event, name, batch);
+        return batch;
+    }
 
-    public Map<String, OnnxTensor> encode(List<JSONObject> jsonObjects )
-            throws OrtException {
-        OrtEnvironment env = OrtEnvironment.getEnvironment();
-        long[][][] allInputIds = new long[1][][];
-        long[][][] allAttentionMask = new long[1][][];
-        long[][][] allTokenTypeIds = new long[1][][];
-        double[][][][]allSpanLabelMask = new double[1][][][];
-        int rowIndex = 0;
-        int maxLength = 50;
-        for (JSONObject reqBody : jsonObjects) {
-
-            long[][] allInputIds0 = new long[6][];
-            long[][] allAttentionMask0 = new long[6][];
-            long[][] allTokenTypeIds0 = new long[6][];
-            double[][][]allSpanLabelMask0 = new double[6][][];
-
-            String text = reqBody.getString("text");
-            JSONArray choices = reqBody.getJSONArray("choices");
-            for (int i = 0; i < choices.size(); i++) {
-                JSONObject choose = choices.getJSONObject(i);
-                String entityType = choose.getString("entity_type");
-                String texta = "抽取任务-实体识别-"+entityType+"-"+text;
-                List<String> tokens = tokenize(texta);
-                tokens = tokens.stream().map(e-> "-".equals(e)?sepToken:e).collect(Collectors.toList());
-                int index = 0;
-                long[] inputIds = new long[maxLength];
-                inputIds[index++] = tokenIdMap.get(clsToken);
-                for (String s : tokens) {
-                  inputIds[index++] = tokenIdMap.get(s);
-                }
-                inputIds[index] = tokenIdMap.get(sepToken);
-
-                long[] tokenTypeIds = buildTypeArray(maxLength);
-                for(int j=index;j>0;j--){
-                    if (j<index && inputIds[j]==102){
-                        break;
-                    }
-                    tokenTypeIds[j] = 1;
-                }
-
-                long[]attentionMask= buildTypeArray(maxLength);
-                for (int j = 0; j < inputIds.length; j++) {
-                    if (inputIds[j] == 0){
-                        break;
-                    }
-                    attentionMask[j]=1;
+    /**
+     * 单条请求（一个 text + 若干 entity_type）编码成 UBERT 的输入行，每个 choice 一行；
+     * 只记 id 和几个边界，mask 在 {@link UbertBatch} 里按整个 batch 一次算出
+     */
+    public UbertFeature encodeFeature(NerQuery query) {
+        int maxLength = UBERT_MAX_LENGTH;
+        String text = query.getText();
+        List<String> entityTypes = query.getEntityTypes();
+        int choices = entityTypes.size();
+        long sepId = tokenIdMap.get(sepToken);
+
+        long[][] inputIds = new long[choices][];
+        int[] lengths = new int[choices];
+        int[] segmentStarts = new int[choices];
+        int[] promptLengths = new int[choices];
+        // 原文只分词一次，各个 choice 共用
+        Encoding textEncoding = encodeText(text);
+        for (int rowIndex = 0; rowIndex < choices; rowIndex++) {
+            int[] prompt = promptIds(entityTypes.get(rowIndex));
+            int index = 0;
+            long[] ids = new long[maxLength];
+            for (int id : prompt) {
+                if (index >= maxLength - 1) {
+                    break;
                 }
-                Long[] encode = encode("抽取任务[SEP]实体识别[SEP]" + entityType);
-                double[][]spanLabelMask =zeros(maxLength);
-                for (int j = 0; j <spanLabelMask.length; j++) {
-                    if (j<encode.length){
-                        continue;
-                    }
-                    double []row = spanLabelMask[j];
-                    for (int k = encode.length; k <row.length; k++) {
-                        row[k] = 0;
-                    }
+                ids[index++] = id;
+            }
+            for (int id : textEncoding.ids) {
+                // 超长截断，留一个位置给结尾的 [SEP]
+                if (index >= maxLength - 1) {
+                    break;
                 }
+                ids[index++] = id;
+            }
+            ids[index] = sepId;
 
-                allInputIds0[rowIndex] = inputIds;
-                allTokenTypeIds0[rowIndex] = tokenTypeIds;
-                allAttentionMask0[rowIndex] = attentionMask;
-                allSpanLabelMask0[rowIndex] = spanLabelMask;
-                rowIndex++;
+            // token_type_ids 为 1 的一段：结尾 [SEP] 往前到上一个 [SEP] 之后（正常情况下就是原文 + 结尾 [SEP]），不含位置 0
+            int segmentStart = index;
+            while (segmentStart > 1 && ids[segmentStart - 1] != sepId) {
+                segmentStart--;
             }
 
-            allInputIds[0] = allInputIds0;
-            allTokenTypeIds[0] = allTokenTypeIds0;
-            allAttentionMask[0] = allAttentionMask0;
-            allSpanLabelMask[0] = allSpanLabelMask0;
+            inputIds[rowIndex] = ids;
+            lengths[rowIndex] = index + 1;
+            segmentStarts[rowIndex] = segmentStart;
+            promptLengths[rowIndex] = prompt.length;
         }
-
-        OnnxTensor ids = OnnxTensor.createTensor(env, allInputIds);
-        OnnxTensor attentionMask = OnnxTensor.createTensor(env, allAttentionMask);
-        OnnxTensor tokenType = OnnxTensor.createTensor(env, allTokenTypeIds);
-        OnnxTensor spanLabelMask = OnnxTensor.createTensor(env, allSpanLabelMask);
-        Map<String, OnnxTensor> inputMap = new HashMap<>();
-        inputMap.put("input_ids", ids);
-        inputMap.put("attention_mask", attentionMask);
-        inputMap.put("token_type_ids", tokenType);
-        inputMap.put("span_labels_mask", spanLabelMask);
-
-        return inputMap;
+        return new UbertFeature(inputIds, lengths, segmentStarts, promptLengths);
     }
 
-    long[] buildTokenTypeArray(int size) {
-        long[] mask = new long[size];
-        for (int i = 0; i < size; i++) {
-            mask[i] = 1;
-        }
-        return mask;
+    /**
+     * 多条请求拼成一个 batch：[batch, choices, maxLength]，choices 数不一致时用全 mask 的空行补齐；
+     * 由 {@link org.example.onnx.runtime.ModelBinding} 按模型的输入建张量
+     */
+    public UbertBatch toBatch(List<UbertFeature> features) {
+        return UbertBatch.of(features, UBERT_MAX_LENGTH);
     }
 
-    long[] buildTypeArray(int size) {
-        long[] mask = new long[size];
-        for (int i = 0; i < size; i++) {
-            mask[i] = 0;
+    /**
+     * UBERT 单条请求的输入，第一维是 choice（entity_type）。inputIds 每行长度为 maxLength，[length, maxLength) 为 [PAD]
+     */
+    public static class UbertFeature {
+        final long[][] inputIds;
+        // 含结尾 [SEP] 的有效长度，attention_mask 为 1 的范围是 [0, length)
+        final int[] lengths;
+        // token_type_ids 为 1 的范围是 [segmentStart, length)
+        final int[] segmentStarts;
+        // 截断前的 prompt 长度，决定 span_labels_mask
+        final int[] promptLengths;
+
+        UbertFeature(long[][] inputIds, int[] lengths, int[] segmentStarts, int[] promptLengths) {
+            this.inputIds = inputIds;
+            this.lengths = lengths;
+            this.segmentStarts = segmentStarts;
+            this.promptLengths = promptLengths;
         }
-        return mask;
-    }
 
-    double[] buildMashArray(int size) {
-        double[] mask = new double[size];
-        for (int i = 0; i < size; i++) {
-            mask[i] = -10000.0D;
+        public int choices() {
+            return inputIds.length;
         }
-        return mask;
     }
 
     public int vocabSize() {
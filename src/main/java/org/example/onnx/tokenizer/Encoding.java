@@ -0,0 +1,74 @@
+package org.example.onnx.tokenizer;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 一段文本的分词结果：token id 和每个 token 在原文中的 [start, end) 字符区间，不可变，可以放进缓存被多线程共享。
+ * 对不齐原文的 token（极少数大小写 / 去重音后长度变化的字符）区间为 [-1, -1)。
+ */
+public final class Encoding {
+
+    // 约等于对象头 + 两个数组头 + 缓存里的 key / entry 开销
+    private static final int OVERHEAD_BYTES = 96;
+
+    final int[] ids;
+    // offsets[2 * i] 是第 i 个 token 的起始字符，offsets[2 * i + 1] 是结束字符（不含）
+    final int[] offsets;
+
+    Encoding(int[] ids, int[] offsets) {
+        this.ids = ids;
+        this.offsets = offsets;
+    }
+
+    public int length() {
+        return ids.length;
+    }
+
+    public int id(int i) {
+        return ids[i];
+    }
+
+    public int start(int i) {
+        return offsets[2 * i];
+    }
+
+    public int end(int i) {
+        return offsets[2 * i + 1];
+    }
+
+    /**
+     * 估算的堆占用，key 是缓存里对应的原文
+     */
+    long footprintBytes(String key) {
+        return OVERHEAD_BYTES + 2L * key.length() + 4L * ids.length + 4L * offsets.length;
+    }
+
+    /**
+     * 以 token 字符串的形式只读地查看，不拷贝
+     */
+    List<String> tokens(String[] idToToken) {
+        return new TokenView(ids, idToToken);
+    }
+
+    private static final class TokenView extends AbstractList<String> implements RandomAccess {
+        private final int[] ids;
+        private final String[] idToToken;
+
+        TokenView(int[] ids, String[] idToToken) {
+            this.ids = ids;
+            this.idToToken = idToToken;
+        }
+
+        @Override
+        public String get(int index) {
+            return idToToken[ids[index]];
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package org.example.onnx.tokenizer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * 超长文档的增量分词：从 Reader、CharBuffer 或 mmap 的 UTF-8 文件按段读入，切成模型窗口大小的 {@link TokenChunk}，
+ * 内存只和分段大小、窗口大小有关，与文档长度无关；拉取式的 {@link Chunks} 读一段吐一段，下游可以边读边凑 batch。
+ * <p>
+ * 每段只在 {@link TokenizerUtils#isTokenBoundary 分词本来就会断开的位置}（空白、中文字符、标点两侧）切开，
+ * 分段用 {@link BertTokenizer} 同一套规则编码（不进缓存），结果与整篇一次 {@link BertTokenizer#encodeText} 相同。
+ * 一整段都找不到切点（超长的“词”）时把分段放大，最多到 1M 字符；超过的才强行切开，整篇编码时的一个 [UNK] 这里会变成几个。
+ * <p>
+ * 线程安全同 BertTokenizer：一个 StreamingTokenizer 可以共享，每次 open 得到的 {@link Chunks} 只能单线程使用。
+ */
+public final class StreamingTokenizer {
+
+    // mmap 每次映射的字节数，UTF-8 序列跨界时从断开处重新映射
+    private static final int MAP_BYTES = 64 << 20;
+    // 找不到切点时 buffer 最多放大到这么多字符（2MB），再长的“词”强行切开
+    private static final int MAX_SEGMENT_CHARS = 1 << 20;
+
+    private final BertTokenizer tokenizer;
+    private final int windowTokens;
+    private final int overlapTokens;
+    private final int segmentChars;
+
+    /**
+     * @param windowTokens  每个窗口的 token 数，不含 [CLS] / [SEP]（512 的模型是 510）
+     * @param overlapTokens 相邻窗口重叠的 token 数，给跨窗口的实体留上下文，小于 windowTokens
+     * @param segmentChars  每次从输入读多少字符来分词，决定中间结果的内存上限
+     */
+    public StreamingTokenizer(BertTokenizer tokenizer, int windowTokens, int overlapTokens, int segmentChars) {
+        if (windowTokens < 1 || overlapTokens < 0 || overlapTokens >= windowTokens) {
+            throw new IllegalArgumentException("need 0 <= overlap < window, got window " + windowTokens + " overlap " + overlapTokens);
+        }
+        if (segmentChars < 2) {
+            throw new IllegalArgumentException("segment chars must be at least 2");
+        }
+        this.tokenizer = tokenizer;
+        this.windowTokens = windowTokens;
+        this.overlapTokens = overlapTokens;
+        this.segmentChars = segmentChars;
+    }
+
+    public StreamingTokenizer(BertTokenizer tokenizer, int windowTokens, int overlapTokens) {
+        this(tokenizer, windowTokens, overlapTokens, 16 * 1024);
+    }
+
+    /**
+     * 关闭 Chunks 时关闭 reader
+     */
+    public Chunks open(Reader reader) {
+        return new Chunks(reader);
+    }
+
+    /**
+     * 从 chars 的当前位置读到 limit，读完后 position 在 limit
+     */
+    public Chunks open(CharBuffer chars) {
+        return new Chunks(new CharBufferReader(chars));
+    }
+
+    /**
+     * 按 64MB 一段 mmap 只读打开 UTF-8 文件，非法字节序列按 U+FFFD 处理（分词时会被丢掉）
+     */
+    public Chunks open(Path utf8File) throws IOException {
+        return new Chunks(new MappedUtf8Reader(FileChannel.open(utf8File, StandardOpenOption.READ)));
+    }
+
+    /**
+     * 把 reader 读完，每个窗口回调一次，返回窗口数
+     */
+    public long forEach(Reader reader, Consumer<TokenChunk> consumer) throws IOException {
+        long n = 0;
+        try (Chunks chunks = open(reader)) {
+            while (chunks.hasNext()) {
+                consumer.accept(chunks.next());
+                n++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return n;
+    }
+
+    /**
+     * 一篇文档的窗口序列，读输入出错时 hasNext / next 抛 {@link UncheckedIOException}
+     */
+    public final class Chunks implements Iterator<TokenChunk>, Closeable {
+
+        private final Reader reader;
+        private char[] buffer = new char[segmentChars];
+        // buffer 里还没分词的字符数（上一段切点之后的尾巴 + 新读入的）
+        private int buffered;
+        // buffer[0] 在文档中的位置
+        private long bufferOffset;
+        private boolean eof;
+
+        // 已分词还没凑满一个窗口的 token，区间是文档中的绝对位置
+        private int[] ids = new int[windowTokens * 2];
+        private long[] offsets = new long[windowTokens * 4];
+        private int pending;
+        // pending 的前 carried 个 token 是上个窗口的重叠部分，已经发出过
+        private int carried;
+        private long nextIndex;
+        private TokenChunk next;
+
+        Chunks(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = advance();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public TokenChunk next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            TokenChunk chunk = next;
+            next = null;
+            return chunk;
+        }
+
+        /**
+         * 目前读到的字符数
+         */
+        public long charsRead() {
+            return bufferOffset + buffered;
+        }
+
+        private TokenChunk advance() throws IOException {
+            while (pending < windowTokens) {
+                if (eof && buffered == 0) {
+                    // 文档结束：还有没发出过的 token 就发最后一个（不满的）窗口
+                    return pending > carried ? emit(pending) : null;
+                }
+                tokenizeSegment();
+            }
+            return emit(windowTokens);
+        }
+
+        /**
+         * 读满 buffer（或读到结尾），在最后一个切点处切开，前半段分词追加到 pending，后半段留到下一次
+         */
+        private void tokenizeSegment() throws IOException {
+            int cut;
+            while (true) {
+                while (!eof && buffered < buffer.length) {
+                    int n = reader.read(buffer, buffered, buffer.length - buffered);
+                    if (n < 0) {
+                        eof = true;
+                    } else {
+                        buffered += n;
+                    }
+                }
+                cut = eof ? buffered : lastBoundary();
+                if (cut > 0 || eof || buffer.length >= MAX_SEGMENT_CHARS) {
+                    break;
+                }
+                // 整段没有切点（超长的“词”），放大 buffer 再读
+                buffer = Arrays.copyOf(buffer, Math.min(MAX_SEGMENT_CHARS, buffer.length * 2));
+            }
+            if (cut == 0 && !eof) {
+                // 放到最大还没有切点，强行切开（不拆代理对）
+                cut = Character.isHighSurrogate(buffer[buffered - 1]) ? buffered - 1 : buffered;
+            }
+            Encoding encoding = tokenizer.encodeSegment(new String(buffer, 0, cut));
+            ensureCapacity(pending + encoding.length());
+            for (int i = 0; i < encoding.length(); i++) {
+                ids[pending] = encoding.id(i);
+                offsets[2 * pending] = encoding.start(i) < 0 ? -1 : bufferOffset + encoding.start(i);
+                offsets[2 * pending + 1] = encoding.end(i) < 0 ? -1 : bufferOffset + encoding.end(i);
+                pending++;
+            }
+            System.arraycopy(buffer, cut, buffer, 0, buffered - cut);
+            buffered -= cut;
+            bufferOffset += cut;
+        }
+
+        /**
+         * buffer 满时最后一个能切开的位置，没有时为 0
+         */
+        private int lastBoundary() {
+            for (int i = buffered - 1; i > 0; i--) {
+                if (TokenizerUtils.isTokenBoundary(buffer[i - 1], buffer[i])) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * 发出 pending 的前 n 个 token，留下末尾 overlapTokens 个作为下一个窗口的开头
+         */
+        private TokenChunk emit(int n) {
+            long base = -1;
+            for (int i = 0; i < n && base < 0; i++) {
+                base = offsets[2 * i];
+            }
+            base = Math.max(base, 0);
+            int[] chunkIds = Arrays.copyOf(ids, n);
+            int[] chunkOffsets = new int[2 * n];
+            for (int i = 0; i < 2 * n; i++) {
+                chunkOffsets[i] = offsets[i] < 0 ? -1 : Math.toIntExact(offsets[i] - base);
+            }
+            TokenChunk chunk = new TokenChunk(nextIndex++, base, carried, new Encoding(chunkIds, chunkOffsets));
+            int keep = Math.min(overlapTokens, n);
+            int from = n - keep;
+            System.arraycopy(ids, from, ids, 0, pending - from);
+            System.arraycopy(offsets, 2 * from, offsets, 0, 2 * (pending - from));
+            pending -= from;
+            carried = keep;
+            return chunk;
+        }
+
+        private void ensureCapacity(int tokens) {
+            if (tokens > ids.length) {
+                int capacity = Math.max(tokens, ids.length * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                offsets = Arrays.copyOf(offsets, capacity * 2);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static final class CharBufferReader extends Reader {
+        private final CharBuffer chars;
+
+        CharBufferReader(CharBuffer chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (!chars.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, chars.remaining());
+            chars.get(cbuf, off, n);
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 分段 mmap 的 UTF-8 解码：先解码到一个小的 char 缓冲再拷给调用方（代理对不会被拆在两次 read 之间），
+     * 一段解码到只剩不完整的多字节序列时，从这个序列的开头映射下一段
+     */
+    private static final class MappedUtf8Reader extends Reader {
+        private final FileChannel channel;
+        private final long size;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer decoded = CharBuffer.allocate(8192);
+        private MappedByteBuffer segment;
+        // 已解码的字节数，也是下一段映射的起点
+        private long position;
+        private boolean flushed;
+
+        MappedUtf8Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            decoded.flip();
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (!decoded.hasRemaining() && !fill()) {
+                return -1;
+            }
+            int n = Math.min(len, decoded.remaining());
+            decoded.get(cbuf, off, n);
+            return n;
+        }
+
+        private boolean fill() throws IOException {
+            decoded.clear();
+            while (decoded.position() == 0) {
+                if (segment == null) {
+                    if (position >= size) {
+                        if (flushed) {
+                            break;
+                        }
+                        decoder.decode(ByteBuffer.allocate(0), decoded, true);
+                        decoder.flush(decoded);
+                        flushed = true;
+                        continue;
+                    }
+                    segment = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_BYTES, size - position));
+                }
+                int before = segment.position();
+                boolean last = position + segment.remaining() >= size;
+                CoderResult result = decoder.decode(segment, decoded, last);
+                position += segment.position() - before;
+                if (!result.isOverflow()) {
+                    // 解码完，或者段尾只剩半个字符
+                    segment = null;
+                }
+            }
+            decoded.flip();
+            return decoded.hasRemaining();
+        }
+
+        @Override
+        public void close() throws IOException {
+            segment = null;
+            channel.close();
+        }
+    }
+}
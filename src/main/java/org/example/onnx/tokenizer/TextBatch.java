@@ -0,0 +1,78 @@
+package org.example.onnx.tokenizer;
+
+import org.example.onnx.runtime.ModelBinding;
+
+/**
+ * 单句分类 / 表示模型的一个 batch：[CLS] 原文 [SEP]，形状 [batch, seqLen]，三个输入放在行主序的一维数组里。
+ * seqLen 取 batch 内最长的一条和 minLength 的较大值，不足的补 [PAD]（0），token_type_ids 全为 0
+ */
+public final class TextBatch implements ModelBinding.Features {
+
+    final int batch;
+    final int seqLength;
+    final long[] inputIds;
+    final long[] attentionMask;
+    final long[] tokenTypeIds;
+
+    TextBatch(int batch, int seqLength) {
+        this.batch = batch;
+        this.seqLength = seqLength;
+        this.inputIds = new long[batch * seqLength];
+        this.attentionMask = new long[batch * seqLength];
+        this.tokenTypeIds = new long[batch * seqLength];
+    }
+
+    public int size() {
+        return batch;
+    }
+
+    public int seqLength() {
+        return seqLength;
+    }
+
+    /**
+     * 第 row 行的有效 token 数（含 [CLS] / [SEP]），之后都是补齐
+     */
+    public int length(int row) {
+        int offset = row * seqLength;
+        int n = 0;
+        while (n < seqLength && attentionMask[offset + n] != 0) {
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public long[] shape() {
+        return new long[]{batch, seqLength};
+    }
+
+    @Override
+    public long[] tokens(ModelBinding.Feature feature) {
+        switch (feature) {
+            case INPUT_IDS:
+                return inputIds;
+            case ATTENTION_MASK:
+                return attentionMask;
+            case TOKEN_TYPE_IDS:
+                return tokenTypeIds;
+            default:
+                throw new IllegalArgumentException(String.valueOf(feature));
+        }
+    }
+
+    @Override
+    public double[] spanMask() {
+        return null;
+    }
+
+    @Override
+    public float[] floatSpanMask() {
+        return null;
+    }
+
+    @Override
+    public short[] halfSpanMask() {
+        return null;
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.onnx.tokenizer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 原文 → {@link Encoding} 的有界缓存，容量按缓存中的 token 总数计算而不是条数。
+ * <p>
+ * 分成若干段，每段是一个按访问顺序排列的 LinkedHashMap（LRU），用段锁保护；未命中时在锁外分词，
+ * 并发未命中同一文本时可能重复计算一次，结果相同，后写入的覆盖先写入的。
+ * 指标：tokenizer.cache.hits / misses / evictions，tokenizer.cache.tokens / entries / bytes / hit.ratio，tag 为 vocab。
+ */
+final class TokenCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long maxTokensPerSegment;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLong tokens = new AtomicLong();
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    TokenCache(long maxTokens, String name) {
+        this.maxTokensPerSegment = Math.max(1, maxTokens / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+        FunctionCounter.builder("tokenizer.cache.hits", hits, LongAdder::doubleValue).tag("vocab", name).register(Metrics.globalRegistry);
+        FunctionCounter.builder("tokenizer.cache.misses", misses, LongAdder::doubleValue).tag("vocab", name).register(Metrics.globalRegistry);
+        FunctionCounter.builder("tokenizer.cache.evictions", evictions, LongAdder::doubleValue).tag("vocab", name).register(Metrics.globalRegistry);
+        Gauge.builder("tokenizer.cache.tokens", tokens, AtomicLong::get).tag("vocab", name).register(Metrics.globalRegistry);
+        Gauge.builder("tokenizer.cache.entries", entries, AtomicLong::get).tag("vocab", name).register(Metrics.globalRegistry);
+        Gauge.builder("tokenizer.cache.bytes", bytes, AtomicLong::get).tag("vocab", name).baseUnit("bytes")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("tokenizer.cache.hit.ratio", this, TokenCache::hitRatio).tag("vocab", name).register(Metrics.globalRegistry);
+    }
+
+    Encoding get(String text, Function<String, Encoding> loader) {
+        Segment segment = segments[(text.hashCode() & 0x7FFFFFFF) % SEGMENTS];
+        Encoding encoding;
+        synchronized (segment) {
+            encoding = segment.get(text);
+        }
+        if (encoding != null) {
+            hits.increment();
+            return encoding;
+        }
+        misses.increment();
+        encoding = loader.apply(text);
+        long weight = weight(encoding);
+        // 单条就超过一段容量的长文本不缓存
+        if (weight <= maxTokensPerSegment) {
+            synchronized (segment) {
+                Encoding old = segment.put(text, encoding);
+                if (old != null) {
+                    account(text, old, -1);
+                }
+                account(text, encoding, 1);
+                evict(segment);
+            }
+        }
+        return encoding;
+    }
+
+    double hitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    long tokens() {
+        return tokens.get();
+    }
+
+    long entries() {
+        return entries.get();
+    }
+
+    long bytes() {
+        return bytes.get();
+    }
+
+    private void evict(Segment segment) {
+        Iterator<Map.Entry<String, Encoding>> it = segment.entrySet().iterator();
+        while (segment.tokens > maxTokensPerSegment && it.hasNext()) {
+            Map.Entry<String, Encoding> eldest = it.next();
+            it.remove();
+            account(eldest.getKey(), eldest.getValue(), -1);
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 调用方持有段锁
+     */
+    private void account(String text, Encoding encoding, int sign) {
+        Segment segment = segments[(text.hashCode() & 0x7FFFFFFF) % SEGMENTS];
+        long weight = weight(encoding);
+        segment.tokens += sign * weight;
+        tokens.addAndGet(sign * weight);
+        entries.addAndGet(sign);
+        bytes.addAndGet(sign * encoding.footprintBytes(text));
+    }
+
+    // 空文本也占一个单位，避免无限多的空条目
+    private static long weight(Encoding encoding) {
+        return encoding.length() + 1L;
+    }
+
+    private static final class Segment extends LinkedHashMap<String, Encoding> {
+        long tokens;
+
+        Segment() {
+            super(64, 0.75f, true);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.onnx.tokenizer;
+
+/**
+ * {@link StreamingTokenizer} 产出的一个窗口：最多 windowTokens 个 token 的 id 和原文区间。
+ * 区间相对 {@link #charOffset()}（不是整篇文档的开头），这样超大文档里 {@link Encoding} 的 int 区间也够用；
+ * 前 {@link #overlap()} 个 token 与上一个窗口的末尾重复，下游合并结果时跳过。不可变，可以交给其它线程。
+ */
+public final class TokenChunk {
+
+    private final long index;
+    private final long charOffset;
+    private final int overlap;
+    private final Encoding encoding;
+
+    TokenChunk(long index, long charOffset, int overlap, Encoding encoding) {
+        this.index = index;
+        this.charOffset = charOffset;
+        this.overlap = overlap;
+        this.encoding = encoding;
+    }
+
+    /**
+     * 在文档里的序号，从 0 开始
+     */
+    public long index() {
+        return index;
+    }
+
+    /**
+     * 区间的基准：文档开头到这个窗口第一个 token 所在分段开头的字符数
+     */
+    public long charOffset() {
+        return charOffset;
+    }
+
+    public int overlap() {
+        return overlap;
+    }
+
+    public Encoding encoding() {
+        return encoding;
+    }
+
+    public int length() {
+        return encoding.length();
+    }
+
+    /**
+     * 第 i 个 token 在整篇文档中的起始字符，对不齐原文的 token 为 -1
+     */
+    public long start(int i) {
+        int start = encoding.start(i);
+        return start < 0 ? -1 : charOffset + start;
+    }
+
+    public long end(int i) {
+        int end = encoding.end(i);
+        return end < 0 ? -1 : charOffset + end;
+    }
+}
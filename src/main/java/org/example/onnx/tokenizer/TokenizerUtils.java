@@ -10,12 +10,31 @@ import java.util.*;
 
 public class TokenizerUtils {
 
+    // 每个线程一份的临时 StringBuilder，下面的方法都是用完即 toString，不会嵌套使用同一个
+    private static final int MAX_RETAINED_CHARS = 1 << 16;
+    private static final ThreadLocal<StringBuilder> TEXT_BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static final ThreadLocal<StringBuilder> WORD_BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(64));
+    // alignOffsets 展开后的字符序列和每个字符在原文中的位置，两者下标一一对应
+    private static final ThreadLocal<StringBuilder> FOLD_BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static final ThreadLocal<int[]> ORIGIN_BUFFER = ThreadLocal.withInitial(() -> new int[256]);
+
+    static StringBuilder scratch(ThreadLocal<StringBuilder> local) {
+        StringBuilder buffer = local.get();
+        // 处理过超长文本后不再保留大缓冲区
+        if (buffer.capacity() > MAX_RETAINED_CHARS) {
+            buffer = new StringBuilder(256);
+            local.set(buffer);
+        }
+        buffer.setLength(0);
+        return buffer;
+    }
+
     public static String cleanText(String text) {
         // Performs invalid character removal and whitespace cleanup on text."""
 
-        StringBuilder output = new StringBuilder();
+        StringBuilder output = scratch(TEXT_BUFFER);
         for (int i = 0; i < text.length(); i++) {
-            Character c = text.charAt(i);
+            char c = text.charAt(i);
             int cp = (int) c;
             if (cp == 0 || cp == 0xFFFD || isControl(c)) {
                 continue;
@@ -31,9 +50,9 @@ public class TokenizerUtils {
 
     public static String tokenizeChineseChars(String text) {
         // Adds whitespace around any CJK character.
-        StringBuilder output = new StringBuilder();
+        StringBuilder output = scratch(TEXT_BUFFER);
         for (int i = 0; i < text.length(); i++) {
-            Character c = text.charAt(i);
+            char c = text.charAt(i);
             int cp = (int) c;
             if (isChineseChar(cp)) {
                 output.append(" ");
@@ -57,9 +76,9 @@ public class TokenizerUtils {
 
     public static String runStripAccents(String token) {
         token = Normalizer.normalize(token, Form.NFD);
-        StringBuilder output = new StringBuilder();
+        StringBuilder output = scratch(TEXT_BUFFER);
         for (int i = 0; i < token.length(); i++) {
-            Character c = token.charAt(i);
+            char c = token.charAt(i);
             if (Character.NON_SPACING_MARK != Character.getType(c)) {
                 output.append(c);
             }
@@ -67,7 +86,7 @@ public class TokenizerUtils {
         return output.toString();
     }
 
-    public static List<String> runSplitOnPunc(String token, List<String> neverSplit) {
+    public static List<String> runSplitOnPunc(String token, Set<String> neverSplit) {
         // Splits punctuation on a piece of text.
         List<String> output = new ArrayList<String>();
         if (neverSplit != null && neverSplit.contains(token)) {
@@ -76,15 +95,15 @@ public class TokenizerUtils {
         }
 
         boolean startNewWord = true;
-        StringBuilder str = new StringBuilder();
+        StringBuilder str = scratch(WORD_BUFFER);
         for (int i = 0; i < token.length(); i++) {
-            Character c = token.charAt(i);
+            char c = token.charAt(i);
             if (isPunctuation(c)) {
                 if (str.length() > 0) {
                     output.add(str.toString());
                     str.setLength(0);
                 }
-                output.add(c.toString());
+                output.add(String.valueOf(c));
                 startNewWord = true;
             } else {
                 if (startNewWord && str.length() > 0) {
@@ -101,6 +120,121 @@ public class TokenizerUtils {
         return output;
     }
 
+    /**
+     * 把分词结果对回原文，返回每个 token 的 [start, end) 字符区间（offsets[2i], offsets[2i+1]）。
+     * <p>
+     * 先按分词时同样的规则把原文展开成「小写 + NFD 去重音、去掉控制字符」的字符序列并记下每个字符来自原文哪个位置，
+     * 再把 token（去掉 ## 前缀）依次在这个序列上匹配；unkToken 吞掉一个完整的词。对不上的 token 记为 [-1, -1)。
+     */
+    static int[] alignOffsets(String text, List<String> tokens, String unkToken) {
+        StringBuilder folded = scratch(FOLD_BUFFER);
+        int[] origin = ORIGIN_BUFFER.get();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == 0 || c == 0xFFFD || isControl(c) || Character.NON_SPACING_MARK == Character.getType(c)) {
+                continue;
+            }
+            if (isWhitespace(c)) {
+                origin = append(folded, origin, ' ', i);
+                continue;
+            }
+            char lower = Character.toLowerCase(c);
+            if (lower < 0x80) {
+                origin = append(folded, origin, lower, i);
+                continue;
+            }
+            String nfd = Normalizer.normalize(String.valueOf(lower), Form.NFD);
+            for (int j = 0; j < nfd.length(); j++) {
+                if (Character.NON_SPACING_MARK != Character.getType(nfd.charAt(j))) {
+                    origin = append(folded, origin, nfd.charAt(j), i);
+                }
+            }
+        }
+        // 扩容后的位置表留给下一次用，超长文本的不保留
+        ORIGIN_BUFFER.set(origin.length > MAX_RETAINED_CHARS ? new int[256] : origin);
+
+        int[] offsets = new int[tokens.size() * 2];
+        int pos = 0;
+        for (int t = 0; t < tokens.size(); t++) {
+            String token = tokens.get(t);
+            boolean continuation = token.length() > 2 && token.startsWith("##");
+            if (!continuation) {
+                while (pos < folded.length() && folded.charAt(pos) == ' ') {
+                    pos++;
+                }
+            }
+            int start = pos;
+            int end;
+            if (token.equals(unkToken)) {
+                end = pos;
+                if (end < folded.length() && (isPunctuation(folded.charAt(end)) || isChineseChar(folded.charAt(end)))) {
+                    end++;
+                } else {
+                    while (end < folded.length() && folded.charAt(end) != ' '
+                            && !isPunctuation(folded.charAt(end)) && !isChineseChar(folded.charAt(end))) {
+                        end++;
+                    }
+                }
+            } else {
+                String piece = continuation ? token.substring(2) : token;
+                end = regionEquals(folded, start, piece) ? start + piece.length() : -1;
+                if (end < 0) {
+                    offsets[2 * t] = -1;
+                    offsets[2 * t + 1] = -1;
+                    pos = Math.min(folded.length(), pos + piece.length());
+                    continue;
+                }
+            }
+            if (end == start) {
+                offsets[2 * t] = -1;
+                offsets[2 * t + 1] = -1;
+                continue;
+            }
+            int charEnd = origin[end - 1] + 1;
+            // 原文里跟在最后一个字符后面的组合附加符（重音）也算进这个 token
+            while (charEnd < text.length() && Character.NON_SPACING_MARK == Character.getType(text.charAt(charEnd))) {
+                charEnd++;
+            }
+            offsets[2 * t] = origin[start];
+            offsets[2 * t + 1] = charEnd;
+            pos = end;
+        }
+        return offsets;
+    }
+
+    /**
+     * before 和 after 两个相邻字符之间切开后分别分词，结果是否和不切一样：两边有一个是空白、中文字符或标点（分词时本来就会断开），
+     * 且 after 不是组合附加符（会并进前一个 token 的区间）、也不是代理对的后半
+     */
+    static boolean isTokenBoundary(char before, char after) {
+        if (Character.NON_SPACING_MARK == Character.getType(after) || Character.isLowSurrogate(after)) {
+            return false;
+        }
+        return isWhitespace(before) || isWhitespace(after) || isChineseChar(before) || isChineseChar(after)
+                || isPunctuation(before) || isPunctuation(after);
+    }
+
+    private static boolean regionEquals(StringBuilder folded, int start, String piece) {
+        if (folded.length() - start < piece.length()) {
+            return false;
+        }
+        for (int i = 0; i < piece.length(); i++) {
+            if (folded.charAt(start + i) != piece.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] append(StringBuilder folded, int[] origin, char c, int index) {
+        if (folded.length() == origin.length) {
+            origin = Arrays.copyOf(origin, origin.length * 2);
+        }
+        origin[folded.length()] = index;
+        folded.append(c);
+        return origin;
+    }
+
     public static Map<String, Integer> generateTokenIdMap(InputStream file) throws IOException {
         HashMap<String, Integer> tokenIdMap = new HashMap<String, Integer>();
         if (file == null) {
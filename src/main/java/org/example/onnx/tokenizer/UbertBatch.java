@@ -0,0 +1,163 @@
+package org.example.onnx.tokenizer;
+
+import org.example.onnx.runtime.ModelBinding;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntFunction;
+
+/**
+ * 一个 batch 的 UBERT 输入，四个输入都放在行主序的一维数组里（[batch, choices, maxLength] 和 [batch, choices, maxLength, maxLength]），
+ * 整批一次算好所有 mask：
+ * <ul>
+ *     <li>input_ids：每个 choice 一次 System.arraycopy</li>
+ *     <li>attention_mask / token_type_ids：数组本身是 0，只对 [0, length) 和 [segmentStart, length) 做 Arrays.fill(1)</li>
+ *     <li>span_labels_mask：只取决于 prompt 长度，这里只记每行的 prompt 长度，建张量时按模型声明的元素类型（double / float / float16）
+ *     直接写目标类型的数组，不经过 double[] 再转换；每种类型按 (maxLength, promptLength) 缓存整块模板，每个 choice 一次 System.arraycopy，
+ *     choice 不足的补齐行用全部 mask 的模板</li>
+ * </ul>
+ * 张量由 {@link ModelBinding} 按模型声明的类型和输入名创建
+ */
+public final class UbertBatch implements ModelBinding.Features {
+
+    static final double MASKED = -10000.0D;
+
+    // (maxLength << 32 | promptLength) → maxLength * maxLength 的 span mask 模板，只读；每种元素类型一份
+    private static final ConcurrentMap<Long, double[]> SPAN_TEMPLATES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Long, float[]> FLOAT_SPAN_TEMPLATES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Long, short[]> HALF_SPAN_TEMPLATES = new ConcurrentHashMap<>();
+
+    final int batch;
+    final int choices;
+    final int maxLength;
+    final long[] inputIds;
+    final long[] attentionMask;
+    final long[] tokenTypeIds;
+    // 每行（batch * choices）span mask 模板的 prompt 长度，补齐行为 maxLength（整块 MASKED）
+    final int[] promptLengths;
+
+    private UbertBatch(int batch, int choices, int maxLength) {
+        this.batch = batch;
+        this.choices = choices;
+        this.maxLength = maxLength;
+        int rows = batch * choices;
+        this.inputIds = new long[rows * maxLength];
+        this.attentionMask = new long[rows * maxLength];
+        this.tokenTypeIds = new long[rows * maxLength];
+        this.promptLengths = new int[rows];
+    }
+
+    /**
+     * choices 取 batch 内的最大值，每个 feature 的行长度必须都是 maxLength
+     */
+    public static UbertBatch of(List<BertTokenizer.UbertFeature> features, int maxLength) {
+        int choices = 0;
+        for (BertTokenizer.UbertFeature feature : features) {
+            choices = Math.max(choices, feature.choices());
+        }
+        UbertBatch batch = new UbertBatch(features.size(), choices, maxLength);
+        for (int b = 0; b < features.size(); b++) {
+            BertTokenizer.UbertFeature feature = features.get(b);
+            for (int c = 0; c < choices; c++) {
+                int row = b * choices + c;
+                int offset = row * maxLength;
+                if (c >= feature.choices()) {
+                    batch.promptLengths[row] = maxLength;
+                    continue;
+                }
+                System.arraycopy(feature.inputIds[c], 0, batch.inputIds, offset, maxLength);
+                Arrays.fill(batch.attentionMask, offset, offset + feature.lengths[c], 1L);
+                Arrays.fill(batch.tokenTypeIds, offset + feature.segmentStarts[c], offset + feature.lengths[c], 1L);
+                batch.promptLengths[row] = Math.min(feature.promptLengths[c], maxLength);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * 行 j、列 k 都不小于 promptLength 的位置为 0（文本内的 span），其余为 {@link #MASKED}；promptLength ≥ maxLength 时整块都是 MASKED
+     */
+    static double[] spanTemplate(int maxLength, int promptLength) {
+        int p = Math.min(promptLength, maxLength);
+        return SPAN_TEMPLATES.computeIfAbsent(((long) maxLength << 32) | p, key -> {
+            double[] template = new double[maxLength * maxLength];
+            Arrays.fill(template, MASKED);
+            for (int j = p; j < maxLength; j++) {
+                Arrays.fill(template, j * maxLength + p, (j + 1) * maxLength, 0D);
+            }
+            return template;
+        });
+    }
+
+    static float[] floatSpanTemplate(int maxLength, int promptLength) {
+        int p = Math.min(promptLength, maxLength);
+        return FLOAT_SPAN_TEMPLATES.computeIfAbsent(((long) maxLength << 32) | p, key -> {
+            float[] template = new float[maxLength * maxLength];
+            Arrays.fill(template, (float) MASKED);
+            for (int j = p; j < maxLength; j++) {
+                Arrays.fill(template, j * maxLength + p, (j + 1) * maxLength, 0F);
+            }
+            return template;
+        });
+    }
+
+    static short[] halfSpanTemplate(int maxLength, int promptLength) {
+        int p = Math.min(promptLength, maxLength);
+        return HALF_SPAN_TEMPLATES.computeIfAbsent(((long) maxLength << 32) | p, key -> {
+            short[] template = new short[maxLength * maxLength];
+            // binary16 的 0 是全 0 位，-10000 可以精确表示
+            Arrays.fill(template, ModelBinding.floatToHalf((float) MASKED));
+            for (int j = p; j < maxLength; j++) {
+                Arrays.fill(template, j * maxLength + p, (j + 1) * maxLength, (short) 0);
+            }
+            return template;
+        });
+    }
+
+    /**
+     * 按行拷模板拼成整批的 span mask，mask 是 double[] / float[] / short[] 之一
+     */
+    private <T> T spanMask(T mask, IntFunction<T> template) {
+        int square = maxLength * maxLength;
+        for (int row = 0; row < promptLengths.length; row++) {
+            System.arraycopy(template.apply(promptLengths[row]), 0, mask, row * square, square);
+        }
+        return mask;
+    }
+
+    @Override
+    public long[] shape() {
+        return new long[]{batch, choices, maxLength};
+    }
+
+    @Override
+    public long[] tokens(ModelBinding.Feature feature) {
+        switch (feature) {
+            case INPUT_IDS:
+                return inputIds;
+            case ATTENTION_MASK:
+                return attentionMask;
+            case TOKEN_TYPE_IDS:
+                return tokenTypeIds;
+            default:
+                throw new IllegalArgumentException(String.valueOf(feature));
+        }
+    }
+
+    @Override
+    public double[] spanMask() {
+        return spanMask(new double[promptLengths.length * maxLength * maxLength], p -> spanTemplate(maxLength, p));
+    }
+
+    @Override
+    public float[] floatSpanMask() {
+        return spanMask(new float[promptLengths.length * maxLength * maxLength], p -> floatSpanTemplate(maxLength, p));
+    }
+
+    @Override
+    public short[] halfSpanMask() {
+        return spanMask(new short[promptLengths.length * maxLength * maxLength], p -> halfSpanTemplate(maxLength, p));
+    }
+}
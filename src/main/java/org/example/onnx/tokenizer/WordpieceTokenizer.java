@@ -5,13 +5,13 @@ import java.util.List;
 import java.util.Map;
 
 /**
- * WordpieceTokenizer
+ * WordpieceTokenizer，构造后不可变，vocab 只读，可以被多个线程共享
  * @author jadepeng
  */
 public class WordpieceTokenizer implements Tokenizer  {
-    private Map<String, Integer> vocab;
-    private String unkToken;
-    private int maxInputCharsPerWord;
+    private final Map<String, Integer> vocab;
+    private final String unkToken;
+    private final int maxInputCharsPerWord;
 
     public WordpieceTokenizer(Map<String, Integer> vocab, String unkToken, int maxInputCharsPerWord) {
         this.vocab = vocab;
@@ -0,0 +1,103 @@
+package org.example.router;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一致性哈希环：每个节点在环上放 replicas 个虚拟点，键落到顺时针方向的第一个点所属的节点。
+ * 节点增减时只有相邻弧段上的键换节点（约 1/N），其余键还落在原来的 worker 上，缓存不失效。
+ * <p>
+ * 不可变，成员变化时整个重建（几百个点，微秒级），路由时无锁读。
+ */
+public final class HashRing {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // 按有符号 long 排序的虚拟点和各自的节点
+    private final long[] points;
+    private final String[] owners;
+
+    public HashRing(Collection<String> nodes, int replicas) {
+        if (replicas < 1) {
+            throw new IllegalArgumentException("replicas must be positive, got " + replicas);
+        }
+        long[] hashes = new long[nodes.size() * replicas];
+        String[] names = new String[hashes.length];
+        int n = 0;
+        for (String node : nodes) {
+            for (int i = 0; i < replicas; i++) {
+                hashes[n] = hash(node + "#" + i);
+                names[n++] = node;
+            }
+        }
+        // 按哈希排序，names 跟着走
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        points = new long[n];
+        owners = new String[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = names[order[i]];
+        }
+    }
+
+    public boolean isEmpty() {
+        return points.length == 0;
+    }
+
+    /**
+     * 查询文本所属的节点，环为空时返回 null。
+     * 只按去掉首尾空白的文本路由（与 ResultKey 的规范化一致），不带实体类型：同一文本不同类型组合落在同一个 worker，分词缓存也能命中
+     */
+    public String route(String text) {
+        return route(hash(text.trim()));
+    }
+
+    public String route(long hash) {
+        if (points.length == 0) {
+            return null;
+        }
+        int i = Arrays.binarySearch(points, hash);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    /**
+     * 每个节点分到的哈希空间比例，近似于它分到的流量（虚拟点越多越均匀）
+     */
+    public Map<String, Double> shares() {
+        Map<String, Double> shares = new LinkedHashMap<>();
+        for (int i = 0; i < points.length; i++) {
+            // (上一个点, 这个点] 归这个点的节点，第一个点的弧段跨过环的起点；无符号差值用模运算得到
+            long arc = points[i] - points[i == 0 ? points.length - 1 : i - 1];
+            double fraction = points.length == 1 ? 1.0 : (arc >>> 11) * 0x1.0p-53;
+            shares.merge(owners[i], fraction, Double::sum);
+        }
+        return shares;
+    }
+
+    /**
+     * UTF-8 字节的 FNV-1a，再做 MurmurHash3 的终结混合让短文本也散得开
+     */
+    public static long hash(String text) {
+        long h = FNV_OFFSET;
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xFF)) * FNV_PRIME;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,515 @@
+package org.example.router;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.ner.NerResult;
+import org.example.rpc.NerRpcClient;
+import org.example.rpc.NerRpcException;
+import org.example.rpc.NerWire;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多进程部署的前端：一个 JVM 一个 ORT 环境在大机器上扩不开（GC 停顿影响全部流量，各 session 的线程池互相抢核），
+ * 改成本机 N 个推理进程各自持有 session，前面由这个路由按查询文本的一致性哈希转发，
+ * 同一文本总是落在同一个 worker 上，它的结果缓存和分词缓存一直是热的。worker 的管理和摘除见 {@link WorkerPool}。
+ * <pre>
+ * java -jar onnxruntime-java.jar router [--workers=4] [--base-port=19000] [--worker-args=-Xmx3g,--ner.store.directory=/data/ner-store-{id}]
+ *     [--cpus-per-worker=8] [--intra-op-threads=8] [--bind-address=0.0.0.0] [--port=9999] [--rpc-bind-address=127.0.0.1] [--rpc-port=9998]
+ *     [--replicas=160] [--health-millis=1000] [--probe-timeout-millis=3000] [--failures=3] [--ready-seconds=300]
+ *     [--http-threads=200] [--write-timeout-millis=10000] [--dir=target/router]
+ * java -jar onnxruntime-java.jar router --attach=127.0.0.1:19001:19000,127.0.0.1:19003:19002 [--port=9999] [--rpc-port=9998]
+ * </pre>
+ * <ul>
+ *     <li>launch：拉起 workers 个本机进程，第 i 个的 HTTP 端口为 base-port + 2i、RPC 端口为 base-port + 2i + 1；
+ *     worker-args 逗号分隔，-D / -X 开头的给 worker JVM，其余作为 Spring 参数，{id} 换成 worker id。日志在 dir/&lt;id&gt;.log。
+ *     worker 只监听 127.0.0.1；每个 worker 的 ORT 算子线程数（-Donnx.intra-op-threads）默认为 cpus-per-worker，不绑核时为本机核数 / workers</li>
+ *     <li>attach：挂到已有的 worker 上，地址为 host:rpcPort[:httpPort]，不拉起也不重启；
+ *     路由被 kill -9 时拉起的 worker 不会退出，重启路由时可以用 attach 接管</li>
+ *     <li>前端：RPC（rpc-bind-address:rpc-port，与 {@link NerWire} 同一协议，现有 {@link NerRpcClient} 直接连路由即可；没有认证，默认只监听本机）
+ *     和 HTTP（bind-address:port）：
+ *     GET /ner/predict?query=&amp;types=（与单进程服务相同的 JSON），GET /router/workers（各 worker 状态、环上份额、转发量），
+ *     GET /actuator/health/readiness（有 UP 的 worker 时为 200，load-test --url 可以直接压路由）</li>
+ *     <li>worker 连接断开时，发给它的批次摘掉它后按新的环重发；worker 返回的错误连同 {@link NerWire.ErrorCode} 原样返回给调用方，
+ *     HTTP 上过载为 429、参数错误为 400</li>
+ * </ul>
+ */
+@Slf4j
+public final class NerRouter implements Closeable {
+
+    private static final int MAX_FRAME_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_IN_FLIGHT_PER_CONNECTION = 64;
+
+    private final WorkerPool pool;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private ServerSocket rpcSocket;
+    private ScheduledExecutorService writeWatchdog;
+    private HttpServer httpServer;
+    private ExecutorService httpWorkers;
+    private volatile boolean running;
+
+    public NerRouter(WorkerPool pool) {
+        this.pool = pool;
+    }
+
+    // ---------------- 转发 ----------------
+
+    /**
+     * 按文本把批次拆给各 worker，结果按原顺序拼回；worker 断开时在剩下的 worker 上重发，最多换 worker 数那么多次
+     */
+    public CompletableFuture<List<NerResult>> submit(List<NerQuery> queries) {
+        NerResult[] results = new NerResult[queries.size()];
+        List<Integer> all = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            all.add(i);
+        }
+        return dispatch(queries, all, results, 0).thenApply(v -> Arrays.asList(results));
+    }
+
+    public List<NerResult> call(List<NerQuery> queries) throws Exception {
+        try {
+            return submit(queries).get();
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private CompletableFuture<Void> dispatch(List<NerQuery> queries, List<Integer> indices, NerResult[] results, int attempt) {
+        Map<Worker, List<Integer>> groups = new LinkedHashMap<>();
+        try {
+            for (int i : indices) {
+                groups.computeIfAbsent(pool.route(queries.get(i).getText()), w -> new ArrayList<>()).add(i);
+            }
+        } catch (IllegalStateException e) {
+            return failed(e);
+        }
+        List<CompletableFuture<Void>> parts = new ArrayList<>(groups.size());
+        for (Map.Entry<Worker, List<Integer>> group : groups.entrySet()) {
+            parts.add(send(group.getKey(), queries, group.getValue(), results, attempt));
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private CompletableFuture<Void> send(Worker worker, List<NerQuery> queries, List<Integer> indices, NerResult[] results,
+                                         int attempt) {
+        NerRpcClient client;
+        try {
+            client = worker.client();
+        } catch (IOException e) {
+            return retry(worker, e, queries, indices, results, attempt);
+        }
+        List<NerQuery> batch = new ArrayList<>(indices.size());
+        for (int i : indices) {
+            batch.add(queries.get(i));
+        }
+        worker.routed.add(batch.size());
+        return client.submit(batch).handle((list, error) -> {
+            if (error == null) {
+                if (list.size() != indices.size()) {
+                    return NerRouter.<Void>failed(new IOException(worker + " returned " + list.size() + " results for " + indices.size() + " queries"));
+                }
+                for (int k = 0; k < indices.size(); k++) {
+                    results[indices.get(k)] = list.get(k);
+                }
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            if (client.isOpen()) {
+                // 连接还在，是 worker 返回的错误，重发也一样
+                return NerRouter.<Void>failed(error);
+            }
+            return retry(worker, error, queries, indices, results, attempt);
+        }).thenCompose(f -> f);
+    }
+
+    private CompletableFuture<Void> retry(Worker worker, Throwable error, List<NerQuery> queries, List<Integer> indices,
+                                          NerResult[] results, int attempt) {
+        pool.markDown(worker, "connection lost: " + unwrap(error).getMessage());
+        if (attempt + 1 >= pool.workers().size()) {
+            return failed(error);
+        }
+        log.info("resending {} queries from {} after connection loss", indices.size(), worker);
+        return dispatch(queries, indices, results, attempt + 1);
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    /**
+     * worker 返回的错误类别，原样转给调用方；路由自己的错误（没有可用 worker 等）为 INTERNAL
+     */
+    private static NerWire.ErrorCode errorCode(Throwable error) {
+        error = unwrap(error);
+        return error instanceof NerRpcException ? ((NerRpcException) error).code() : NerWire.ErrorCode.INTERNAL;
+    }
+
+    private static String errorMessage(Throwable error) {
+        error = unwrap(error);
+        return error instanceof NerRpcException ? ((NerRpcException) error).serverMessage() : String.valueOf(error.getMessage());
+    }
+
+    // ---------------- RPC 前端 ----------------
+
+    /**
+     * @param bindAddress      协议没有认证，默认只给本机（127.0.0.1）
+     * @param writeTimeoutMillis 一次响应写不出去（客户端不读、TCP 缓冲满）超过这么久就断开这个客户端
+     */
+    public void startRpc(String bindAddress, int port, long writeTimeoutMillis) throws IOException {
+        rpcSocket = new ServerSocket();
+        rpcSocket.setReuseAddress(true);
+        rpcSocket.bind(new InetSocketAddress(bindAddress, port));
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "router-rpc-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        writeWatchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "router-rpc-write-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(100, writeTimeoutMillis / 4);
+        writeWatchdog.scheduleWithFixedDelay(() -> {
+            long now = System.nanoTime();
+            for (Connection connection : connections) {
+                long started = connection.writeStartedNanos;
+                if (started != 0 && now - started > TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis)) {
+                    log.warn("router rpc client {} has not read its responses for {} ms, closing", connection.socket.getRemoteSocketAddress(),
+                            writeTimeoutMillis);
+                    connection.close();
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+        log.info("router rpc listening on {}:{}", bindAddress, rpcSocket.getLocalPort());
+    }
+
+    private void acceptLoop() {
+        AtomicInteger connectionId = new AtomicInteger();
+        while (running) {
+            try {
+                Socket socket = rpcSocket.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket, "router-rpc-conn-" + connectionId.getAndIncrement());
+                connections.add(connection);
+                Thread reader = new Thread(connection, connection.name);
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("router rpc accept failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个前端连接：读帧、转发，响应按完成顺序写回；在途批次到上限时停止读，由 TCP 把压力传回客户端。
+     * 响应由这个连接自己的写线程写：worker 连接的读线程只完成 future，不会因为某个客户端不读响应而卡住，
+     * 否则同一个 worker 的其它响应和健康检查 ping 都会被拖住，worker 被误摘
+     */
+    private final class Connection implements Runnable {
+        private final Socket socket;
+        private final String name;
+        private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT_PER_CONNECTION);
+        private final ExecutorService writer;
+        // 只在写线程里用
+        private final NerWire.Sink sink = new NerWire.Sink();
+        private OutputStream out;
+        // 正在写的响应开始写的时刻，没在写时为 0，由 watchdog 检查
+        private volatile long writeStartedNanos;
+
+        Connection(Socket socket, String name) {
+            this.socket = socket;
+            this.name = name;
+            this.writer = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name + "-writer");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        @Override
+        public void run() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+                out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+                byte[] frame;
+                while ((frame = NerWire.readFrame(in, MAX_FRAME_BYTES)) != null) {
+                    NerWire.Request request = NerWire.decodeRequest(frame);
+                    inFlight.acquire();
+                    submit(request.queries).whenCompleteAsync((results, error) -> {
+                        try {
+                            write(error == null ? new NerWire.Response(request.id, results)
+                                    : new NerWire.Response(request.id, errorCode(error), errorMessage(error)));
+                        } finally {
+                            inFlight.release();
+                        }
+                    }, writer);
+                }
+                // 客户端关闭写端后，等在途批次写完再关连接
+                inFlight.acquire(MAX_IN_FLIGHT_PER_CONNECTION);
+            } catch (SocketException e) {
+                log.debug("router rpc connection {} closed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            } catch (IOException e) {
+                log.warn("router rpc connection {} failed", socket.getRemoteSocketAddress(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+                writer.shutdown();
+            }
+        }
+
+        private void write(NerWire.Response response) {
+            if (socket.isClosed()) {
+                return;
+            }
+            try {
+                NerWire.encodeResponse(response, sink);
+                writeStartedNanos = System.nanoTime();
+                NerWire.writeFrame(out, sink);
+                out.flush();
+            } catch (IOException e) {
+                log.debug("router rpc write of batch {} failed", response.id, e);
+                close();
+            } finally {
+                writeStartedNanos = 0;
+            }
+        }
+
+        void close() {
+            connections.remove(this);
+            closeQuietly(socket);
+        }
+    }
+
+    // ---------------- HTTP 前端 ----------------
+
+    public void startHttp(String bindAddress, int port, int threads) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(bindAddress, port), 1024);
+        AtomicInteger threadId = new AtomicInteger();
+        httpWorkers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "router-http-" + threadId.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        httpServer.setExecutor(httpWorkers);
+        httpServer.createContext("/ner/predict", this::predict);
+        httpServer.createContext("/router/workers", exchange -> respond(exchange, 200, pool.status()));
+        httpServer.createContext("/actuator/health/readiness", exchange -> {
+            boolean up = pool.upCount() > 0;
+            JSONObject status = new JSONObject();
+            status.put("status", up ? "UP" : "OUT_OF_SERVICE");
+            respond(exchange, up ? 200 : 503, status);
+        });
+        httpServer.start();
+        log.info("router http listening on {}:{}", bindAddress, httpServer.getAddress().getPort());
+    }
+
+    /**
+     * 与 HelpController 的 /ner/predict 相同：query 一条文本，types 可选，逗号分隔；types 为空时由 worker 用默认类型
+     */
+    private void predict(HttpExchange exchange) throws IOException {
+        Map<String, String> params = queryParams(exchange.getRequestURI().getRawQuery());
+        List<String> entityTypes = new ArrayList<>();
+        for (String type : params.getOrDefault("types", "").split(",")) {
+            if (!type.trim().isEmpty()) {
+                entityTypes.add(type.trim());
+            }
+        }
+        try {
+            List<NerResult> results = call(Collections.singletonList(new NerQuery(params.getOrDefault("query", ""), entityTypes)));
+            List<JSONObject> out = new ArrayList<>(results.size());
+            for (NerResult result : results) {
+                out.add(result.toJson());
+            }
+            respond(exchange, 200, out);
+        } catch (IllegalStateException e) {
+            respond(exchange, 503, e.getMessage());
+        } catch (Exception e) {
+            switch (errorCode(e)) {
+                case OVERLOADED:
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    respond(exchange, 429, errorMessage(e));
+                    break;
+                case INVALID_ARGUMENT:
+                    respond(exchange, 400, errorMessage(e));
+                    break;
+                default:
+                    log.warn("routing {} failed", params.get("query"), e);
+                    respond(exchange, 502, String.valueOf(e));
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        boolean text = body instanceof String;
+        byte[] bytes = (text ? (String) body : JSON.toJSONString(body)).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", text ? "text/plain; charset=utf-8" : "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> queryParams(String rawQuery) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8");
+            params.put(name, eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+        }
+        return params;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof ExecutionException || error instanceof CompletionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            log.debug("close router rpc connection", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (httpServer != null) {
+            httpServer.stop(1);
+            httpWorkers.shutdownNow();
+        }
+        if (rpcSocket != null) {
+            try {
+                rpcSocket.close();
+            } catch (IOException e) {
+                log.debug("close router rpc server socket", e);
+            }
+            writeWatchdog.shutdownNow();
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+        pool.close();
+    }
+
+    // ---------------- 命令行 ----------------
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        List<Worker> workers = new ArrayList<>();
+        WorkerPool.Launcher launcher = null;
+        if (options.containsKey("attach")) {
+            for (String address : options.get("attach").split(",")) {
+                String[] parts = address.trim().split(":");
+                if (parts.length < 2 || parts.length > 3) {
+                    throw new IllegalArgumentException("expected host:rpcPort[:httpPort], got " + address);
+                }
+                workers.add(new Worker(parts[0] + ":" + parts[1], parts[0], Integer.parseInt(parts[1]),
+                        parts.length == 3 ? Integer.parseInt(parts[2]) : 0));
+            }
+        } else {
+            int count = Integer.parseInt(options.getOrDefault("workers", "4"));
+            int basePort = Integer.parseInt(options.getOrDefault("base-port", "19000"));
+            for (int i = 0; i < count; i++) {
+                workers.add(new Worker("worker-" + i, "127.0.0.1", basePort + 2 * i + 1, basePort + 2 * i));
+            }
+            List<String> jvmArgs = new ArrayList<>();
+            List<String> appArgs = new ArrayList<>();
+            for (String arg : options.getOrDefault("worker-args", "").split(",")) {
+                String a = arg.trim();
+                if (a.startsWith("-D") || a.startsWith("-X")) {
+                    jvmArgs.add(a);
+                } else if (!a.isEmpty()) {
+                    appArgs.add(a);
+                }
+            }
+            // 每个 worker 的 ORT 算子线程数：绑核时等于分到的核数，否则平分本机的核
+            int cpusPerWorker = Integer.parseInt(options.getOrDefault("cpus-per-worker", "0"));
+            int intraOpThreads = Integer.parseInt(options.getOrDefault("intra-op-threads",
+                    String.valueOf(cpusPerWorker > 0 ? cpusPerWorker : Math.max(1, Runtime.getRuntime().availableProcessors() / count))));
+            launcher = new WorkerPool.Launcher(jvmArgs, appArgs, cpusPerWorker, intraOpThreads,
+                    Paths.get(options.getOrDefault("dir", "target/router")));
+        }
+        WorkerPool pool = new WorkerPool(workers, launcher,
+                Integer.parseInt(options.getOrDefault("replicas", "160")),
+                Long.parseLong(options.getOrDefault("health-millis", "1000")),
+                Long.parseLong(options.getOrDefault("probe-timeout-millis", "3000")),
+                Integer.parseInt(options.getOrDefault("failures", "3")));
+        NerRouter router = new NerRouter(pool);
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            log.info("stopping router and its workers");
+            router.close();
+            stopped.countDown();
+        }, "router-shutdown"));
+
+        pool.start();
+        int up = pool.awaitReady(1000L * Long.parseLong(options.getOrDefault("ready-seconds", "300")));
+        if (up == 0) {
+            log.error("no worker became ready: {}", pool.status());
+            System.exit(1);
+        }
+        if (up < workers.size()) {
+            log.warn("only {} of {} workers ready, serving anyway: {}", up, workers.size(), pool.status());
+        }
+        router.startRpc(options.getOrDefault("rpc-bind-address", "127.0.0.1"), Integer.parseInt(options.getOrDefault("rpc-port", "9998")),
+                Long.parseLong(options.getOrDefault("write-timeout-millis", "10000")));
+        router.startHttp(options.getOrDefault("bind-address", "0.0.0.0"), Integer.parseInt(options.getOrDefault("port", "9999")),
+                Integer.parseInt(options.getOrDefault("http-threads", "200")));
+        log.info("router ready: {}", pool.status());
+        stopped.await();
+    }
+}
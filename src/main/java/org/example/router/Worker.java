@@ -0,0 +1,98 @@
+package org.example.router;
+
+import com.alibaba.fastjson.JSONObject;
+import org.example.rpc.NerRpcClient;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 路由后面的一个推理进程：RPC 地址、可选的 HTTP 端口（用来查 readiness）、自己拉起时的 Process 和到它的长连接。
+ * 状态只由 {@link WorkerPool} 改，处于 UP 的才在哈希环上。
+ */
+public final class Worker {
+
+    public enum State {
+        // 刚拉起 / 刚加入，还没通过健康检查
+        STARTING,
+        UP,
+        // 进程退出、连接断开或连续健康检查失败，已从环上摘掉
+        DOWN
+    }
+
+    final String id;
+    final String host;
+    final int rpcPort;
+    // 没有时为 0，只用 RPC 探活
+    final int httpPort;
+    final LongAdder routed = new LongAdder();
+
+    volatile State state = State.STARTING;
+    volatile Process process;
+    volatile String lastError;
+    volatile int restarts;
+    // 以下只在该 worker 的健康检查任务里读写
+    int failures;
+    long restartAtNanos;
+    long backoffMillis;
+
+    private NerRpcClient client;
+
+    Worker(String id, String host, int rpcPort, int httpPort) {
+        this.id = id;
+        this.host = host;
+        this.rpcPort = rpcPort;
+        this.httpPort = httpPort;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * 到这个 worker 的长连接，断开后下次调用时重连
+     */
+    synchronized NerRpcClient client() throws IOException {
+        if (client == null || !client.isOpen()) {
+            disconnect();
+            client = new NerRpcClient(host, rpcPort);
+        }
+        return client;
+    }
+
+    synchronized void disconnect() {
+        if (client != null) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                // 已经断了
+            }
+            client = null;
+        }
+    }
+
+    JSONObject status(Double share) {
+        JSONObject status = new JSONObject(true);
+        status.put("id", id);
+        status.put("rpc", host + ":" + rpcPort);
+        if (httpPort > 0) {
+            status.put("http", host + ":" + httpPort);
+        }
+        status.put("state", state);
+        status.put("share", share == null ? 0.0 : share);
+        status.put("routed", routed.sum());
+        status.put("restarts", restarts);
+        status.put("launched", process != null);
+        status.put("last_error", lastError);
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return id + "(" + host + ":" + rpcPort + ")";
+    }
+}
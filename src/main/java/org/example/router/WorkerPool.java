@@ -0,0 +1,443 @@
+package org.example.router;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.ner.NerQuery;
+import org.example.rpc.NerRpcClient;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一组推理 worker 和它们的哈希环：自己拉起本机进程（{@link Launcher}），或者挂到已有的进程上（launcher 为 null）。
+ * <p>
+ * 每个 worker 一个定时健康检查：HTTP readiness（有 HTTP 端口时）+ RPC 空批次 ping（worker 在读线程里直接回，不进推理队列）。
+ * 通过检查的进入环；连续 failures 次失败、RPC 连接断开或进程退出的摘出环，键按一致性哈希落到相邻 worker 上。
+ * 自己拉起的进程退出后按 1s、2s … 30s 退避重启，重新通过检查后放回环上，原来的键回到它这里。
+ * <p>
+ * 超时不算失败：连接还在、只是回得慢的 worker 多半是过载（读线程在等在途批次的名额），这时摘掉它只会把它的键压到相邻 worker 上，
+ * 一个接一个地过载下去。所以超时只记为 BUSY，留在环上；过载由 worker 自己的限流快速拒绝、调用方退避。
+ * 没退出但一直不健康（readiness 非 200、连不上）的进程只摘掉不杀，恢复后自动放回。
+ */
+@Slf4j
+public final class WorkerPool implements Closeable {
+
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    // 估算重建前后换了 worker 的键的比例时，在环上均匀取的点数
+    private static final int MOVED_SAMPLES = 4096;
+    private static final int HTTP_TIMEOUT = -2;
+
+    private final List<Worker> workers;
+    private final Map<String, Worker> byId = new LinkedHashMap<>();
+    private final Launcher launcher;
+    private final int replicas;
+    private final long healthMillis;
+    private final long probeTimeoutMillis;
+    private final int failureThreshold;
+    private ScheduledExecutorService health;
+    private volatile HashRing ring;
+
+    /**
+     * @param launcher           为 null 时只挂到已有进程上，不拉起、不重启
+     * @param replicas           每个 worker 在环上的虚拟点数
+     * @param failureThreshold   UP 的 worker 连续这么多次检查失败才摘掉，避免一次 GC 停顿就搬走缓存
+     */
+    public WorkerPool(List<Worker> workers, Launcher launcher, int replicas, long healthMillis, long probeTimeoutMillis,
+                      int failureThreshold) {
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("need at least one worker");
+        }
+        this.workers = new ArrayList<>(workers);
+        for (Worker worker : workers) {
+            if (byId.put(worker.id, worker) != null) {
+                throw new IllegalArgumentException("duplicate worker " + worker.id);
+            }
+        }
+        this.launcher = launcher;
+        this.replicas = replicas;
+        this.healthMillis = healthMillis;
+        this.probeTimeoutMillis = probeTimeoutMillis;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.ring = new HashRing(Collections.<String>emptyList(), replicas);
+    }
+
+    /**
+     * 拉起进程（launcher 模式）并开始健康检查，不等 worker 就绪
+     */
+    public void start() {
+        if (launcher != null) {
+            for (int slot = 0; slot < workers.size(); slot++) {
+                Worker worker = workers.get(slot);
+                try {
+                    worker.process = launcher.start(worker, slot);
+                } catch (IOException e) {
+                    // 健康检查会按退避重试
+                    worker.lastError = String.valueOf(e);
+                    log.error("starting {} failed", worker, e);
+                }
+            }
+        }
+        AtomicInteger threadId = new AtomicInteger();
+        health = Executors.newScheduledThreadPool(Math.min(workers.size(), 8), r -> {
+            Thread t = new Thread(r, "router-health-" + threadId.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        for (Worker worker : workers) {
+            health.scheduleWithFixedDelay(() -> check(worker), 0, healthMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 等所有 worker 都 UP 或超时，返回 UP 的个数
+     */
+    public int awaitReady(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (upCount() < workers.size() && System.nanoTime() < deadline) {
+            Thread.sleep(200);
+        }
+        return upCount();
+    }
+
+    public int upCount() {
+        int up = 0;
+        for (Worker worker : workers) {
+            if (worker.state == Worker.State.UP) {
+                up++;
+            }
+        }
+        return up;
+    }
+
+    /**
+     * 查询文本当前归属的 worker
+     *
+     * @throws IllegalStateException 没有 UP 的 worker
+     */
+    public Worker route(String text) {
+        String id = ring.route(text);
+        if (id == null) {
+            throw new IllegalStateException("no live inference worker");
+        }
+        return byId.get(id);
+    }
+
+    public List<Worker> workers() {
+        return Collections.unmodifiableList(workers);
+    }
+
+    // ---------------- 健康检查和摘除 ----------------
+
+    private void check(Worker worker) {
+        try {
+            if (launcher != null) {
+                Process process = worker.process;
+                if (process == null || !process.isAlive()) {
+                    if (process != null && worker.state != Worker.State.DOWN) {
+                        markDown(worker, "process exited with code " + process.exitValue());
+                    }
+                    restartWhenDue(worker);
+                    return;
+                }
+            }
+            Health health = probe(worker);
+            if (health == Health.OK) {
+                worker.failures = 0;
+                worker.backoffMillis = 0;
+                if (worker.state != Worker.State.UP) {
+                    markUp(worker);
+                }
+            } else if (health == Health.BUSY) {
+                log.debug("{} is slow to answer health checks: {}", worker, worker.lastError);
+            } else {
+                worker.failures++;
+                if (worker.state == Worker.State.UP && worker.failures >= failureThreshold) {
+                    markDown(worker, worker.lastError);
+                } else {
+                    log.debug("{} health check failed ({} in a row): {}", worker, worker.failures, worker.lastError);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // 不能让异常结束这个 worker 的定时任务
+            log.warn("health check of {} failed", worker, e);
+        }
+    }
+
+    private enum Health {
+        OK,
+        // 超时但没有断开，不计入失败次数
+        BUSY,
+        FAILED
+    }
+
+    /**
+     * 不是 OK 时原因记在 worker.lastError
+     */
+    private Health probe(Worker worker) throws InterruptedException {
+        if (worker.httpPort > 0) {
+            int status = httpStatus("http://" + worker.host + ":" + worker.httpPort + "/actuator/health/readiness", probeTimeoutMillis);
+            if (status == HTTP_TIMEOUT) {
+                worker.lastError = "readiness timed out after " + probeTimeoutMillis + " ms";
+                return Health.BUSY;
+            }
+            if (status != 200) {
+                worker.lastError = status < 0 ? "readiness endpoint unreachable" : "readiness status " + status;
+                return Health.FAILED;
+            }
+        }
+        NerRpcClient client;
+        try {
+            client = worker.client();
+        } catch (IOException e) {
+            worker.lastError = "rpc connect failed: " + e.getMessage();
+            return Health.FAILED;
+        }
+        try {
+            client.submit(Collections.<NerQuery>emptyList()).get(probeTimeoutMillis, TimeUnit.MILLISECONDS);
+            return Health.OK;
+        } catch (ExecutionException e) {
+            worker.lastError = "rpc ping failed: " + e.getCause().getMessage();
+            return Health.FAILED;
+        } catch (TimeoutException e) {
+            worker.lastError = "rpc ping timed out after " + probeTimeoutMillis + " ms";
+            return client.isOpen() ? Health.BUSY : Health.FAILED;
+        }
+    }
+
+    private void restartWhenDue(Worker worker) {
+        long now = System.nanoTime();
+        if (worker.restartAtNanos == 0) {
+            worker.backoffMillis = worker.backoffMillis == 0 ? 1000 : Math.min(MAX_BACKOFF_MILLIS, worker.backoffMillis * 2);
+            worker.restartAtNanos = now + TimeUnit.MILLISECONDS.toNanos(worker.backoffMillis);
+            return;
+        }
+        if (now - worker.restartAtNanos < 0) {
+            return;
+        }
+        worker.restartAtNanos = 0;
+        worker.state = Worker.State.STARTING;
+        worker.restarts++;
+        try {
+            worker.process = launcher.start(worker, workers.indexOf(worker));
+        } catch (IOException e) {
+            worker.state = Worker.State.DOWN;
+            worker.lastError = String.valueOf(e);
+            log.error("restarting {} failed", worker, e);
+        }
+    }
+
+    private synchronized void markUp(Worker worker) {
+        worker.state = Worker.State.UP;
+        worker.lastError = null;
+        rebuild(worker + " up");
+    }
+
+    /**
+     * 把 worker 摘出环，转发时发现连接断开也会调用；已经 DOWN 的忽略
+     */
+    synchronized void markDown(Worker worker, String reason) {
+        if (worker.state == Worker.State.DOWN) {
+            return;
+        }
+        worker.state = Worker.State.DOWN;
+        worker.lastError = reason;
+        worker.disconnect();
+        rebuild(worker + " down: " + reason);
+    }
+
+    private void rebuild(String reason) {
+        List<String> up = new ArrayList<>();
+        for (Worker worker : workers) {
+            if (worker.state == Worker.State.UP) {
+                up.add(worker.id);
+            }
+        }
+        HashRing before = ring;
+        ring = new HashRing(up, replicas);
+        log.info("hash ring rebuilt after {}: {} of {} workers up, {} of keys moved", reason, up.size(), workers.size(),
+                String.format("%.1f%%", 100.0 * moved(before, ring)));
+    }
+
+    /**
+     * 在环上均匀取点，看换了 worker 的比例
+     */
+    private static double moved(HashRing before, HashRing after) {
+        int moved = 0;
+        for (int i = 0; i < MOVED_SAMPLES; i++) {
+            long hash = Long.MIN_VALUE + i * (1L << 52);
+            if (!Objects.equals(before.route(hash), after.route(hash))) {
+                moved++;
+            }
+        }
+        return (double) moved / MOVED_SAMPLES;
+    }
+
+    public JSONObject status() {
+        Map<String, Double> shares = ring.shares();
+        JSONArray list = new JSONArray();
+        for (Worker worker : workers) {
+            list.add(worker.status(shares.get(worker.id)));
+        }
+        JSONObject status = new JSONObject(true);
+        status.put("mode", launcher == null ? "attach" : "launch");
+        status.put("up", upCount());
+        status.put("replicas", replicas);
+        status.put("workers", list);
+        return status;
+    }
+
+    /**
+     * 停止健康检查，断开连接，关掉自己拉起的进程（先 SIGTERM 等 30 秒）
+     */
+    @Override
+    public void close() {
+        if (health != null) {
+            health.shutdownNow();
+        }
+        for (Worker worker : workers) {
+            worker.disconnect();
+            if (worker.process != null) {
+                worker.process.destroy();
+            }
+        }
+        for (Worker worker : workers) {
+            Process process = worker.process;
+            if (process == null) {
+                continue;
+            }
+            try {
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly().waitFor();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 连接或读取超时时为 {@link #HTTP_TIMEOUT}，其它 IO 错误（连接被拒等）为 -1
+     */
+    static int httpStatus(String url, long timeoutMillis) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout((int) timeoutMillis);
+            connection.setReadTimeout((int) timeoutMillis);
+            int status = connection.getResponseCode();
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (in != null) {
+                    byte[] buf = new byte[1024];
+                    while (in.read(buf) > 0) {
+                        // 读完让连接可以复用
+                    }
+                }
+            }
+            return status;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return e instanceof SocketTimeoutException ? HTTP_TIMEOUT : -1;
+        }
+    }
+
+    /**
+     * 在本机拉起 worker：同一个 classpath / jar 的 Application，HTTP 和 RPC 端口由 worker 指定，日志追加到 logDir/&lt;id&gt;.log。
+     * 参数里的 {id} 换成 worker id，方便给每个 worker 单独的结果库目录、GC 日志等。
+     */
+    public static final class Launcher {
+        private final List<String> jvmArgs;
+        private final List<String> appArgs;
+        private final int cpusPerWorker;
+        private final int intraOpThreads;
+        private final Path logDir;
+
+        /**
+         * @param cpusPerWorker  大于 0 时用 taskset 把第 i 个 worker 绑到第 i 组 CPU 上；本机没有 taskset 时忽略
+         * @param intraOpThreads 每个 worker 的 ORT 算子线程数（-Donnx.intra-op-threads），只绑核不限线程数时 ORT 仍按全部核开线程，
+         *                       多出来的线程挤在分到的几个核上；jvm 参数里已经给了 -Donnx.intra-op-threads 时以那个为准
+         */
+        public Launcher(List<String> jvmArgs, List<String> appArgs, int cpusPerWorker, int intraOpThreads, Path logDir) throws IOException {
+            this.jvmArgs = jvmArgs;
+            this.appArgs = appArgs;
+            this.cpusPerWorker = cpusPerWorker;
+            this.intraOpThreads = intraOpThreads;
+            this.logDir = logDir;
+            Files.createDirectories(logDir);
+        }
+
+        Process start(Worker worker, int slot) throws IOException {
+            List<String> command = new ArrayList<>();
+            if (cpusPerWorker > 0) {
+                if (Files.isExecutable(Paths.get("/usr/bin/taskset"))) {
+                    int cpus = Runtime.getRuntime().availableProcessors();
+                    int from = (slot * cpusPerWorker) % cpus;
+                    int to = Math.min(cpus, from + cpusPerWorker) - 1;
+                    command.add("/usr/bin/taskset");
+                    command.add("-c");
+                    command.add(from + "-" + to);
+                } else {
+                    log.warn("taskset not found, {} is not pinned to cpus", worker);
+                }
+            }
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            boolean threadsGiven = false;
+            for (String arg : jvmArgs) {
+                command.add(arg.replace("{id}", worker.id));
+                threadsGiven |= arg.startsWith("-Donnx.intra-op-threads=");
+            }
+            if (!threadsGiven && intraOpThreads > 0) {
+                command.add("-Donnx.intra-op-threads=" + intraOpThreads);
+            }
+            String classpath = System.getProperty("java.class.path");
+            if (!classpath.contains(File.pathSeparator) && classpath.endsWith(".jar")) {
+                command.add("-jar");
+                command.add(classpath);
+            } else {
+                command.add("-cp");
+                command.add(classpath);
+                command.add("org.example.Application");
+            }
+            // worker 只给路由用
+            command.add("--server.address=127.0.0.1");
+            command.add("--server.port=" + worker.httpPort);
+            command.add("--ner.rpc.enabled=true");
+            command.add("--ner.rpc.bind-address=127.0.0.1");
+            command.add("--ner.rpc.port=" + worker.rpcPort);
+            // 同一台机器上多个 worker，admin 端口会冲突
+            command.add("--admin.port=0");
+            for (String arg : appArgs) {
+                command.add(arg.replace("{id}", worker.id));
+            }
+            Path logFile = logDir.resolve(worker.id + ".log");
+            log.info("starting {}: {}", worker, command);
+            return new ProcessBuilder(command).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(logFile.toFile())).start();
+        }
+    }
+}
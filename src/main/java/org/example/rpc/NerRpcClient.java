@@ -0,0 +1,145 @@
+package org.example.rpc;
+
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.ner.NerResult;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link NerRpcServer} 的 Java 客户端。一个实例对应一条长连接，可被多个线程共享：
+ * submit 不等待响应，多个批次在同一连接上流水线发送，由读线程按 id 完成对应的 future。
+ * <p>
+ * 命令行：NerRpcClient host:port text...
+ */
+@Slf4j
+public class NerRpcClient implements Closeable {
+
+    private static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    private final Socket socket;
+    private final OutputStream out;
+    private final NerWire.Sink sink = new NerWire.Sink();
+    private final Map<Long, CompletableFuture<List<NerResult>>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private volatile IOException failure;
+
+    public NerRpcClient(String host, int port) throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port));
+        out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+        Thread reader = new Thread(() -> readLoop(in), "ner-rpc-client-" + host + ":" + port);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * 发送一个批次，entity_types 为空的请求用服务端默认的实体类型
+     */
+    public CompletableFuture<List<NerResult>> submit(List<NerQuery> queries) {
+        long id = nextId.incrementAndGet();
+        CompletableFuture<List<NerResult>> future = new CompletableFuture<>();
+        pending.put(id, future);
+        try {
+            synchronized (this) {
+                if (failure != null) {
+                    throw failure;
+                }
+                NerWire.encodeRequest(new NerWire.Request(id, queries), sink);
+                NerWire.writeFrame(out, sink);
+                out.flush();
+            }
+        } catch (IOException e) {
+            pending.remove(id);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public List<NerResult> call(List<NerQuery> queries) throws Exception {
+        return submit(queries).get();
+    }
+
+    public List<NerResult> call(String... texts) throws Exception {
+        List<NerQuery> queries = new ArrayList<>(texts.length);
+        for (String text : texts) {
+            queries.add(new NerQuery(text, Collections.<String>emptyList()));
+        }
+        return call(queries);
+    }
+
+    /**
+     * 连接还可用：没有读写失败、没有被关闭。服务端返回的错误是 {@link NerRpcException}，连接断开是其它 IOException
+     */
+    public boolean isOpen() {
+        return failure == null && !socket.isClosed();
+    }
+
+    private void readLoop(DataInputStream in) {
+        try {
+            byte[] frame;
+            while ((frame = NerWire.readFrame(in, MAX_FRAME_BYTES)) != null) {
+                NerWire.Response response = NerWire.decodeResponse(frame);
+                CompletableFuture<List<NerResult>> future = pending.remove(response.id);
+                if (future == null) {
+                    log.warn("ner rpc response for unknown batch {}", response.id);
+                } else if (response.error != null) {
+                    future.completeExceptionally(new NerRpcException(response.id, response.errorCode, response.error));
+                } else {
+                    future.complete(response.results);
+                }
+            }
+            fail(new IOException("connection closed by server"));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        failure = e;
+        for (Long id : pending.keySet()) {
+            CompletableFuture<List<NerResult>> future = pending.remove(id);
+            if (future != null) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: NerRpcClient host:port text...");
+            System.exit(2);
+        }
+        String[] address = args[0].split(":");
+        String[] texts = new String[args.length - 1];
+        System.arraycopy(args, 1, texts, 0, texts.length);
+        try (NerRpcClient client = new NerRpcClient(address[0], Integer.parseInt(address[1]))) {
+            for (NerResult result : client.call(texts)) {
+                System.out.println(JSON.toJSONString(result.toJson()));
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.rpc;
+
+import java.io.IOException;
+
+/**
+ * 服务端对一个批次返回的错误（连接本身还是好的），{@link #code()} 区分过载、调用方参数错误和其它错误
+ */
+public class NerRpcException extends IOException {
+
+    private final NerWire.ErrorCode code;
+    private final String serverMessage;
+
+    public NerRpcException(long id, NerWire.ErrorCode code, String serverMessage) {
+        super("batch " + id + " failed on server: " + serverMessage);
+        this.code = code;
+        this.serverMessage = serverMessage;
+    }
+
+    public NerWire.ErrorCode code() {
+        return code;
+    }
+
+    /**
+     * 服务端给的原始错误信息，不带批次号前缀
+     */
+    public String serverMessage() {
+        return serverMessage;
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.rpc;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * ner.rpc.* 配置：二进制 RPC 监听地址和端口、推理线程数、单帧大小和每个连接的在途批次上限
+ */
+@Component
+@ConfigurationProperties(prefix = "ner.rpc")
+public class NerRpcProperties {
+
+    private boolean enabled = false;
+    // 协议没有认证，默认只监听本机；需要跨机器调用时显式配成内网地址（0.0.0.0 为所有网卡）
+    private String bindAddress = "127.0.0.1";
+    private int port = 9998;
+    private int workerThreads = 4;
+    private int maxBatchSize = 32;
+    private int maxFrameBytes = 4 * 1024 * 1024;
+    private int maxInFlightPerConnection = 16;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getBindAddress() {
+        return bindAddress;
+    }
+
+    public void setBindAddress(String bindAddress) {
+        this.bindAddress = bindAddress;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+
+    public void setMaxFrameBytes(int maxFrameBytes) {
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    public int getMaxInFlightPerConnection() {
+        return maxInFlightPerConnection;
+    }
+
+    public void setMaxInFlightPerConnection(int maxInFlightPerConnection) {
+        this.maxInFlightPerConnection = maxInFlightPerConnection;
+    }
+}
@@ -0,0 +1,244 @@
+package org.example.rpc;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.onnx.RunUbertaOnOnnx;
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.ner.NerResult;
+import org.example.onnx.runtime.AdaptiveLimiter;
+import org.example.onnx.runtime.OverloadedException;
+import org.example.onnx.runtime.PipelineEvents;
+import org.example.onnx.runtime.VirtualThreadProperties;
+import org.example.onnx.runtime.VirtualThreads;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * NER 的二进制 RPC 服务（帧格式见 {@link NerWire}），给内部高 QPS 调用方用，省掉 JSON 解析 / 序列化。
+ * <p>
+ * 每个连接一个读线程，读到的批次交给推理线程池；同一连接可以连续发多个批次（流式），
+ * 响应按完成顺序写回、用 id 对应。每个连接的在途批次数有上限，超过后读线程停止读取，由 TCP 把压力传回客户端。
+ * 开启 onnx.virtual-threads 时读线程和推理任务都用虚拟线程，worker-threads 不再生效。
+ * <p>
+ * 和 readiness 一样在 ApplicationReadyEvent 时才开始监听，也就是 {@link org.example.onnx.runtime.ModelWarmup} 预热完成之后，
+ * 预热期间连不上端口，调用方不会把请求打到还没热好的模型上。
+ */
+@Slf4j
+@Component
+public class NerRpcServer {
+
+    private final NerRpcProperties properties;
+    private final VirtualThreadProperties virtualThreads;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    public NerRpcServer(NerRpcProperties properties, VirtualThreadProperties virtualThreads) {
+        this.properties = properties;
+        this.virtualThreads = virtualThreads;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (virtualThreads.isActive()) {
+            workers = VirtualThreads.newPerTaskExecutor("ner-rpc-vt-");
+        } else {
+            AtomicInteger workerId = new AtomicInteger();
+            workers = Executors.newFixedThreadPool(properties.getWorkerThreads(), r -> {
+                Thread t = new Thread(r, "ner-rpc-worker-" + workerId.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(properties.getBindAddress(), properties.getPort()));
+        running = true;
+
+        Thread acceptor = new Thread(this::acceptLoop, "ner-rpc-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("ner rpc listening on {}:{}", properties.getBindAddress(), serverSocket.getLocalPort());
+    }
+
+    public int port() {
+        return serverSocket == null ? -1 : serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        AtomicInteger connectionId = new AtomicInteger();
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                String name = "ner-rpc-conn-" + connectionId.getAndIncrement();
+                if (virtualThreads.isActive()) {
+                    VirtualThreads.start(name, connection);
+                } else {
+                    Thread reader = new Thread(connection, name);
+                    reader.setDaemon(true);
+                    reader.start();
+                }
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("ner rpc accept failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 按限流器建议的 micro-batch 大小（不超过 max-batch-size）拆开推理，避免单次 session.run 的输入过大。
+     * 整个批次要么全部成功要么整体失败：任一 micro-batch 出错（包括过载）时已算完的部分也丢弃，响应只带 error，调用方整批重试
+     */
+    private List<NerResult> infer(List<NerQuery> queries) throws Exception {
+        int maxBatchSize = Math.min(properties.getMaxBatchSize(), AdaptiveLimiter.of(RunUbertaOnOnnx.MODEL_NAME).batchSize());
+        List<NerResult> results = new ArrayList<>(queries.size());
+        for (int from = 0; from < queries.size(); from += maxBatchSize) {
+            results.addAll(RunUbertaOnOnnx.infer(queries.subList(from, Math.min(queries.size(), from + maxBatchSize))));
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.debug("close ner rpc server socket", e);
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        workers.shutdown();
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private class Connection implements Runnable {
+        private final Socket socket;
+        private final Semaphore inFlight = new Semaphore(properties.getMaxInFlightPerConnection());
+        // 写响应时持有 writeLock，sink 也只在锁内使用；不用 synchronized，Java 21 的虚拟线程在 monitor 里阻塞写 socket 会钉住 carrier
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private final NerWire.Sink sink = new NerWire.Sink();
+        private OutputStream out;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+                out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+                while (true) {
+                    byte[] frame = NerWire.readFrame(in, properties.getMaxFrameBytes());
+                    if (frame == null) {
+                        break;
+                    }
+                    NerWire.Request request = NerWire.decodeRequest(frame);
+                    if (request.queries.isEmpty()) {
+                        // 空批次是健康检查 ping（见 router 的 WorkerPool），在读线程里直接回，不进推理队列、不占在途名额
+                        write(new NerWire.Response(request.id, new ArrayList<NerResult>()));
+                        continue;
+                    }
+                    inFlight.acquire();
+                    workers.execute(() -> {
+                        try {
+                            handle(request);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+                // 客户端关闭写端后，等在途批次写完再关连接
+                inFlight.acquire(properties.getMaxInFlightPerConnection());
+            } catch (SocketException e) {
+                log.debug("ner rpc connection {} closed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            } catch (IOException e) {
+                log.warn("ner rpc connection {} failed", socket.getRemoteSocketAddress(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private void handle(NerWire.Request request) {
+            NerWire.Response response;
+            try {
+                List<NerQuery> queries = new ArrayList<>(request.queries.size());
+                for (NerQuery query : request.queries) {
+                    queries.add(query.choices() == 0 ? RunUbertaOnOnnx.query(query.getText()) : query);
+                }
+                response = new NerWire.Response(request.id, infer(queries));
+            } catch (OverloadedException e) {
+                // 与 HTTP 的 429 对应，客户端据此退避重试
+                response = new NerWire.Response(request.id, NerWire.ErrorCode.OVERLOADED, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                // 调用方的错（不认识的实体类型等），与 HTTP 的 400 对应
+                response = new NerWire.Response(request.id, NerWire.ErrorCode.INVALID_ARGUMENT, e.getMessage());
+            } catch (Exception e) {
+                log.warn("ner rpc batch {} failed", request.id, e);
+                response = new NerWire.Response(request.id, NerWire.ErrorCode.INTERNAL, String.valueOf(e));
+            }
+            write(response);
+        }
+
+        private void write(NerWire.Response response) {
+            writeLock.lock();
+            try {
+                Object event = PipelineEvents.begin(PipelineEvents.Stage.SERIALIZE);
+                NerWire.encodeResponse(response, sink);
+                PipelineEvents.end(event, RunUbertaOnOnnx.MODEL_NAME, response.results == null ? 0 : response.results.size(), 0);
+                NerWire.writeFrame(out, sink);
+                out.flush();
+            } catch (IOException e) {
+                log.debug("ner rpc write of batch {} failed", response.id, e);
+                close();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void close() {
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("close ner rpc connection", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package org.example.rpc;
+
+import org.example.onnx.ner.NerEntity;
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.ner.NerResult;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * NER RPC 的帧格式：4 字节大端长度 + 一个 protobuf 消息，一个连接上可以连续发多帧，响应按 id 对应。
+ * <pre>
+ * message NerRequest  { uint64 id = 1; repeated Query queries = 2; }
+ * message Query       { string text = 1; repeated string entity_types = 2; }  // entity_types 为空时用服务端默认类型
+ * message NerResponse { uint64 id = 1; repeated Result results = 2; string error = 3; ErrorCode error_code = 4; }
+ * enum ErrorCode      { INTERNAL = 0; OVERLOADED = 1; INVALID_ARGUMENT = 2; }
+ * message Result      { string query = 1; repeated Group groups = 2; }
+ * message Group       { string entity_type = 1; repeated Entity entities = 2; }
+ * message Entity      { string name = 1; double score = 2; }
+ * </pre>
+ * 编解码是手写的 wire format，不依赖 protobuf 运行时，其他语言按上面的 .proto 生成代码即可互通
+ */
+public final class NerWire {
+
+    private NerWire() {
+    }
+
+    public static final class Request {
+        public final long id;
+        public final List<NerQuery> queries;
+
+        public Request(long id, List<NerQuery> queries) {
+            this.id = id;
+            this.queries = queries;
+        }
+    }
+
+    /**
+     * 错误的类别，调用方按它决定退避重试还是直接失败，不要匹配 error 的文本
+     */
+    public enum ErrorCode {
+        // 其它服务端错误；不带 error_code 的老版本服务端也按这个处理
+        INTERNAL(0),
+        // 限流或排队满 / 超时（HTTP 的 429），稍后重试
+        OVERLOADED(1),
+        // 调用方的错，例如不认识的实体类型（HTTP 的 400），重试也一样
+        INVALID_ARGUMENT(2);
+
+        private final int number;
+
+        ErrorCode(int number) {
+            this.number = number;
+        }
+
+        public int number() {
+            return number;
+        }
+
+        static ErrorCode of(long number) {
+            for (ErrorCode code : values()) {
+                if (code.number == number) {
+                    return code;
+                }
+            }
+            return INTERNAL;
+        }
+    }
+
+    public static final class Response {
+        public final long id;
+        public final List<NerResult> results;
+        public final String error;
+        // 没有错误时为 null
+        public final ErrorCode errorCode;
+
+        public Response(long id, List<NerResult> results) {
+            this(id, results, null, null);
+        }
+
+        public Response(long id, ErrorCode errorCode, String error) {
+            this(id, null, errorCode, error);
+        }
+
+        private Response(long id, List<NerResult> results, ErrorCode errorCode, String error) {
+            this.id = id;
+            this.results = results;
+            this.errorCode = errorCode;
+            this.error = error;
+        }
+    }
+
+    // ---------------- 帧读写 ----------------
+
+    /**
+     * 读一帧的消息体，连接正常关闭（帧边界上 EOF）时返回 null
+     */
+    public static byte[] readFrame(DataInputStream in, int maxFrameBytes) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 0 || length > maxFrameBytes) {
+            throw new IOException("frame of " + length + " bytes exceeds limit " + maxFrameBytes);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+
+    public static void writeFrame(OutputStream out, Sink message) throws IOException {
+        int length = message.length;
+        out.write(length >>> 24);
+        out.write(length >>> 16);
+        out.write(length >>> 8);
+        out.write(length);
+        out.write(message.buf, 0, length);
+    }
+
+    // ---------------- 请求 ----------------
+
+    public static void encodeRequest(Request request, Sink out) {
+        out.reset();
+        out.varint(1, request.id);
+        Sink query = out.child();
+        for (NerQuery q : request.queries) {
+            query.reset();
+            query.string(1, q.getText());
+            for (String entityType : q.getEntityTypes()) {
+                query.string(2, entityType);
+            }
+            out.message(2, query);
+        }
+    }
+
+    public static Request decodeRequest(byte[] frame) throws IOException {
+        Source in = new Source(frame, 0, frame.length);
+        long id = 0;
+        List<NerQuery> queries = new ArrayList<>();
+        while (in.hasRemaining()) {
+            int tag = in.tag();
+            switch (tag >>> 3) {
+                case 1:
+                    id = in.varint();
+                    break;
+                case 2:
+                    queries.add(decodeQuery(in.message()));
+                    break;
+                default:
+                    in.skip(tag);
+            }
+        }
+        return new Request(id, queries);
+    }
+
+    private static NerQuery decodeQuery(Source in) throws IOException {
+        String text = "";
+        List<String> entityTypes = new ArrayList<>();
+        while (in.hasRemaining()) {
+            int tag = in.tag();
+            switch (tag >>> 3) {
+                case 1:
+                    text = in.string();
+                    break;
+                case 2:
+                    entityTypes.add(in.string());
+                    break;
+                default:
+                    in.skip(tag);
+            }
+        }
+        return new NerQuery(text, entityTypes);
+    }
+
+    // ---------------- 响应 ----------------
+
+    public static void encodeResponse(Response response, Sink out) {
+        out.reset();
+        out.varint(1, response.id);
+        if (response.results != null) {
+            Sink result = out.child();
+            Sink group = result.child();
+            Sink entity = group.child();
+            for (NerResult r : response.results) {
+                result.reset();
+                result.string(1, r.getQuery());
+                for (Map.Entry<String, List<NerEntity>> entry : r.getEntities().entrySet()) {
+                    group.reset();
+                    group.string(1, entry.getKey());
+                    for (NerEntity e : entry.getValue()) {
+                        entity.reset();
+                        entity.string(1, e.getName());
+                        entity.fixed64(2, Double.doubleToRawLongBits(e.getScore()));
+                        group.message(2, entity);
+                    }
+                    result.message(2, group);
+                }
+                out.message(2, result);
+            }
+        }
+        if (response.error != null) {
+            out.string(3, response.error);
+            if (response.errorCode != null && response.errorCode != ErrorCode.INTERNAL) {
+                out.varint(4, response.errorCode.number());
+            }
+        }
+    }
+
+    public static Response decodeResponse(byte[] frame) throws IOException {
+        Source in = new Source(frame, 0, frame.length);
+        long id = 0;
+        List<NerResult> results = new ArrayList<>();
+        String error = null;
+        ErrorCode errorCode = ErrorCode.INTERNAL;
+        while (in.hasRemaining()) {
+            int tag = in.tag();
+            switch (tag >>> 3) {
+                case 1:
+                    id = in.varint();
+                    break;
+                case 2:
+                    results.add(decodeResult(in.message()));
+                    break;
+                case 3:
+                    error = in.string();
+                    break;
+                case 4:
+                    errorCode = ErrorCode.of(in.varint());
+                    break;
+                default:
+                    in.skip(tag);
+            }
+        }
+        return error == null ? new Response(id, results) : new Response(id, errorCode, error);
+    }
+
+    private static NerResult decodeResult(Source in) throws IOException {
+        String query = "";
+        Map<String, List<NerEntity>> entities = new LinkedHashMap<>();
+        while (in.hasRemaining()) {
+            int tag = in.tag();
+            switch (tag >>> 3) {
+                case 1:
+                    query = in.string();
+                    break;
+                case 2:
+                    decodeGroup(in.message(), entities);
+                    break;
+                default:
+                    in.skip(tag);
+            }
+        }
+        return new NerResult(query, entities);
+    }
+
+    private static void decodeGroup(Source in, Map<String, List<NerEntity>> entities) throws IOException {
+        String entityType = "";
+        List<NerEntity> list = new ArrayList<>();
+        while (in.hasRemaining()) {
+            int tag = in.tag();
+            switch (tag >>> 3) {
+                case 1:
+                    entityType = in.string();
+                    break;
+                case 2:
+                    list.add(decodeEntity(in.message()));
+                    break;
+                default:
+                    in.skip(tag);
+            }
+        }
+        entities.put(entityType, Collections.unmodifiableList(list));
+    }
+
+    private static NerEntity decodeEntity(Source in) throws IOException {
+        String name = "";
+        double score = 0;
+        while (in.hasRemaining()) {
+            int tag = in.tag();
+            switch (tag >>> 3) {
+                case 1:
+                    name = in.string();
+                    break;
+                case 2:
+                    score = Double.longBitsToDouble(in.fixed64());
+                    break;
+                default:
+                    in.skip(tag);
+            }
+        }
+        return new NerEntity(name, score);
+    }
+
+    // ---------------- wire format ----------------
+
+    /**
+     * 可复用的输出缓冲。嵌套消息先写进 child，再整体带长度前缀拷进父消息；每个连接 / 线程持有一套，避免每帧分配
+     */
+    public static final class Sink {
+        private byte[] buf = new byte[256];
+        private int length;
+        private Sink child;
+
+        public int length() {
+            return length;
+        }
+
+        void reset() {
+            length = 0;
+        }
+
+        Sink child() {
+            if (child == null) {
+                child = new Sink();
+            }
+            return child;
+        }
+
+        void varint(int field, long value) {
+            tag(field, 0);
+            rawVarint(value);
+        }
+
+        void fixed64(int field, long value) {
+            tag(field, 1);
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                buf[length++] = (byte) (value >>> (8 * i));
+            }
+        }
+
+        void string(int field, String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            tag(field, 2);
+            rawVarint(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, length, bytes.length);
+            length += bytes.length;
+        }
+
+        void message(int field, Sink message) {
+            tag(field, 2);
+            rawVarint(message.length);
+            ensure(message.length);
+            System.arraycopy(message.buf, 0, buf, length, message.length);
+            length += message.length;
+        }
+
+        private void tag(int field, int wireType) {
+            rawVarint(((long) field << 3) | wireType);
+        }
+
+        private void rawVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[length++] = (byte) value;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, length + extra));
+            }
+        }
+    }
+
+    /**
+     * 只读视图，嵌套消息共享同一个 byte[]，不拷贝
+     */
+    static final class Source {
+        private final byte[] buf;
+        private int pos;
+        private final int limit;
+
+        Source(byte[] buf, int pos, int limit) {
+            this.buf = buf;
+            this.pos = pos;
+            this.limit = limit;
+        }
+
+        boolean hasRemaining() {
+            return pos < limit;
+        }
+
+        int tag() throws IOException {
+            return (int) varint();
+        }
+
+        long varint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= limit) {
+                    throw new IOException("truncated varint");
+                }
+                byte b = buf[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("malformed varint");
+        }
+
+        long fixed64() throws IOException {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value |= (long) (buf[pos++] & 0xFF) << (8 * i);
+            }
+            return value;
+        }
+
+        String string() throws IOException {
+            int length = length();
+            String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        Source message() throws IOException {
+            int length = length();
+            Source message = new Source(buf, pos, pos + length);
+            pos += length;
+            return message;
+        }
+
+        void skip(int tag) throws IOException {
+            switch (tag & 0x7) {
+                case 0:
+                    varint();
+                    break;
+                case 1:
+                    require(8);
+                    pos += 8;
+                    break;
+                case 2:
+                    pos += length();
+                    break;
+                case 5:
+                    require(4);
+                    pos += 4;
+                    break;
+                default:
+                    throw new IOException("unsupported wire type " + (tag & 0x7));
+            }
+        }
+
+        private int length() throws IOException {
+            long length = varint();
+            if (length < 0 || length > limit - pos) {
+                throw new IOException("length " + length + " exceeds message bounds");
+            }
+            return (int) length;
+        }
+
+        private void require(int n) throws IOException {
+            if (limit - pos < n) {
+                throw new IOException("truncated message");
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.sample;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 生成 JSON 格式的 MLeap bundle（zip），目前只用于单节点的 linear_regression 示例模型：
+ * bundle.json + root/node.json + root/model.json
+ */
+public class MleapBundleWriter {
+
+    private static final String MLEAP_VERSION = "0.20.0";
+
+    public static void writeLinearRegression(Path file, String inputField, String outputField,
+                                             double[] coefficients, double intercept) throws IOException {
+        JSONObject bundle = new JSONObject(true);
+        bundle.put("uid", UUID.nameUUIDFromBytes(file.toString().getBytes(StandardCharsets.UTF_8)).toString());
+        bundle.put("name", "linear_regression_sample");
+        bundle.put("format", "json");
+        bundle.put("version", MLEAP_VERSION);
+        bundle.put("timestamp", "2024-01-01T00:00:00.000");
+
+        JSONObject node = new JSONObject(true);
+        node.put("name", "linear_regression_sample");
+        JSONObject shape = new JSONObject(true);
+        shape.put("inputs", ports(inputField, "features"));
+        shape.put("outputs", ports(outputField, "prediction"));
+        node.put("shape", shape);
+
+        JSONObject dimension = new JSONObject(true);
+        dimension.put("size", coefficients.length);
+        dimension.put("name", "");
+        JSONObject tensorShape = new JSONObject(true);
+        tensorShape.put("dimensions", new JSONArray().fluentAdd(dimension));
+        JSONObject coefficientValue = new JSONObject(true);
+        JSONArray values = new JSONArray(coefficients.length);
+        for (double c : coefficients) {
+            values.add(c);
+        }
+        coefficientValue.put("double", values);
+        coefficientValue.put("shape", tensorShape);
+        coefficientValue.put("type", "tensor");
+        JSONObject interceptValue = new JSONObject(true);
+        interceptValue.put("double", intercept);
+        JSONObject attributes = new JSONObject(true);
+        attributes.put("coefficients", coefficientValue);
+        attributes.put("intercept", interceptValue);
+        JSONObject model = new JSONObject(true);
+        model.put("op", "linear_regression");
+        model.put("attributes", attributes);
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file))) {
+            entry(zip, "bundle.json", bundle);
+            zip.putNextEntry(new ZipEntry("root/"));
+            zip.closeEntry();
+            entry(zip, "root/node.json", node);
+            entry(zip, "root/model.json", model);
+        }
+    }
+
+    private static JSONArray ports(String name, String port) {
+        JSONObject socket = new JSONObject(true);
+        socket.put("name", name);
+        socket.put("port", port);
+        return new JSONArray().fluentAdd(socket);
+    }
+
+    private static void entry(ZipOutputStream zip, String name, JSONObject json) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        OutputStream out = zip;
+        out.write(JSON.toJSONString(json, true).getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}
@@ -0,0 +1,248 @@
+package org.example.sample;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 不依赖 onnx/protobuf 库，直接按 onnx.proto 的字段号手写 ModelProto，用来在本地生成小的示例/替身模型
+ * <p>
+ * 只覆盖用到的部分：输入输出（tensor 类型，维度可以是数字或符号）、initializer（raw_data）、
+ * 节点和 int/ints/float 属性
+ */
+public class OnnxModelWriter {
+
+    // TensorProto.DataType
+    public static final int FLOAT = 1;
+    public static final int INT32 = 6;
+    public static final int INT64 = 7;
+    public static final int BOOL = 9;
+    public static final int FLOAT16 = 10;
+    public static final int DOUBLE = 11;
+
+    private static final int IR_VERSION = 8;
+
+    private final String graphName;
+    private final int opsetVersion;
+    private final List<byte[]> inputs = new ArrayList<>();
+    private final List<byte[]> outputs = new ArrayList<>();
+    private final List<byte[]> initializers = new ArrayList<>();
+    private final List<byte[]> nodes = new ArrayList<>();
+
+    public OnnxModelWriter(String graphName, int opsetVersion) {
+        this.graphName = graphName;
+        this.opsetVersion = opsetVersion;
+    }
+
+    /**
+     * @param dims String 表示动态维度（dim_param），数字表示固定维度（dim_value）
+     */
+    public OnnxModelWriter input(String name, int elemType, Object... dims) {
+        inputs.add(valueInfo(name, elemType, dims));
+        return this;
+    }
+
+    public OnnxModelWriter output(String name, int elemType, Object... dims) {
+        outputs.add(valueInfo(name, elemType, dims));
+        return this;
+    }
+
+    public OnnxModelWriter initializer(String name, long[] dims, double... values) {
+        ByteBuffer raw = ByteBuffer.allocate(values.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        for (double v : values) {
+            raw.putDouble(v);
+        }
+        return initializer(name, DOUBLE, dims, raw.array());
+    }
+
+    public OnnxModelWriter initializer(String name, long[] dims, float... values) {
+        ByteBuffer raw = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (float v : values) {
+            raw.putFloat(v);
+        }
+        return initializer(name, FLOAT, dims, raw.array());
+    }
+
+    public OnnxModelWriter initializer(String name, long[] dims, long... values) {
+        ByteBuffer raw = ByteBuffer.allocate(values.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        for (long v : values) {
+            raw.putLong(v);
+        }
+        return initializer(name, INT64, dims, raw.array());
+    }
+
+    public OnnxModelWriter initializer(String name, int dataType, long[] dims, byte[] rawData) {
+        Proto tensor = new Proto();
+        for (long dim : dims) {
+            tensor.varint(1, dim);
+        }
+        tensor.varint(2, dataType);
+        tensor.string(8, name);
+        tensor.bytes(9, rawData);
+        initializers.add(tensor.toByteArray());
+        return this;
+    }
+
+    public OnnxModelWriter node(String opType, String[] nodeInputs, String[] nodeOutputs, Attribute... attributes) {
+        Proto node = new Proto();
+        for (String in : nodeInputs) {
+            node.string(1, in);
+        }
+        for (String out : nodeOutputs) {
+            node.string(2, out);
+        }
+        node.string(3, opType + "_" + nodes.size());
+        node.string(4, opType);
+        for (Attribute attribute : attributes) {
+            node.message(5, attribute.proto.toByteArray());
+        }
+        nodes.add(node.toByteArray());
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        Proto graph = new Proto();
+        for (byte[] node : nodes) {
+            graph.message(1, node);
+        }
+        graph.string(2, graphName);
+        for (byte[] initializer : initializers) {
+            graph.message(5, initializer);
+        }
+        for (byte[] input : inputs) {
+            graph.message(11, input);
+        }
+        for (byte[] output : outputs) {
+            graph.message(12, output);
+        }
+
+        Proto opset = new Proto();
+        opset.string(1, "");
+        opset.varint(2, opsetVersion);
+
+        Proto model = new Proto();
+        model.varint(1, IR_VERSION);
+        model.string(2, "onnxruntime-java");
+        model.message(7, graph.toByteArray());
+        model.message(8, opset.toByteArray());
+        return model.toByteArray();
+    }
+
+    public void write(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.write(file, toByteArray());
+    }
+
+    private static byte[] valueInfo(String name, int elemType, Object... dims) {
+        Proto shape = new Proto();
+        for (Object dim : dims) {
+            Proto dimension = new Proto();
+            if (dim instanceof Number) {
+                dimension.varint(1, ((Number) dim).longValue());
+            } else {
+                dimension.string(2, String.valueOf(dim));
+            }
+            shape.message(1, dimension.toByteArray());
+        }
+        Proto tensorType = new Proto();
+        tensorType.varint(1, elemType);
+        tensorType.message(2, shape.toByteArray());
+        Proto type = new Proto();
+        type.message(1, tensorType.toByteArray());
+
+        Proto valueInfo = new Proto();
+        valueInfo.string(1, name);
+        valueInfo.message(2, type.toByteArray());
+        return valueInfo.toByteArray();
+    }
+
+    /**
+     * AttributeProto，type 取值见 onnx.proto 的 AttributeType
+     */
+    public static class Attribute {
+        final Proto proto = new Proto();
+
+        public static Attribute ofInt(String name, long value) {
+            Attribute attribute = new Attribute();
+            attribute.proto.string(1, name);
+            attribute.proto.varint(3, value);
+            attribute.proto.varint(20, 2);
+            return attribute;
+        }
+
+        public static Attribute ofFloat(String name, float value) {
+            Attribute attribute = new Attribute();
+            attribute.proto.string(1, name);
+            attribute.proto.fixed32(2, Float.floatToIntBits(value));
+            attribute.proto.varint(20, 1);
+            return attribute;
+        }
+
+        public static Attribute ofInts(String name, long... values) {
+            Attribute attribute = new Attribute();
+            attribute.proto.string(1, name);
+            for (long value : values) {
+                attribute.proto.varint(8, value);
+            }
+            attribute.proto.varint(20, 7);
+            return attribute;
+        }
+    }
+
+    /**
+     * protobuf wire format 的最小实现：varint / fixed32 / length-delimited
+     */
+    static class Proto {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        void varint(int field, long value) {
+            tag(field, 0);
+            rawVarint(value);
+        }
+
+        void fixed32(int field, int value) {
+            tag(field, 5);
+            for (int i = 0; i < 4; i++) {
+                out.write((value >>> (8 * i)) & 0xFF);
+            }
+        }
+
+        void string(int field, String value) {
+            bytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void message(int field, byte[] value) {
+            bytes(field, value);
+        }
+
+        void bytes(int field, byte[] value) {
+            tag(field, 2);
+            rawVarint(value.length);
+            out.write(value, 0, value.length);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void tag(int field, int wireType) {
+            rawVarint(((long) field << 3) | wireType);
+        }
+
+        private void rawVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.example.sample;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 本地生成的小示例模型，保证没有外部模型文件时工具也能跑起来
+ * <p>
+ * <ul>
+ *     <li>线性回归 y = w·x + b：同一组参数分别写成 MLeap bundle 和 ONNX（MatMul + Add，double），两者输出应一致</li>
+ *     <li>UBERT 替身：输入输出与线上 UBERT 相同，计算量可调，用于本地压测</li>
+ * </ul>
+ */
+public class SampleModels {
+
+    public static final String LINEAR_INPUT = "features";
+    public static final String LINEAR_OUTPUT = "prediction";
+    public static final String UBERT_ONNX = "ubert-standin.onnx";
+    public static final String UBERT_VOCAB = "vocab.txt";
+    // 与 BertTokenizer 的 UBERT_MAX_LENGTH 一致
+    public static final int UBERT_SEQ_LENGTH = 50;
+
+    /**
+     * 线性回归的 MLeap bundle 文件名，带特征数和随机种子，参数不同的模型对不会互相复用
+     */
+    public static String linearMleap(int features, long seed) {
+        return linearName(features, seed) + ".mleap.zip";
+    }
+
+    public static String linearOnnx(int features, long seed) {
+        return linearName(features, seed) + ".onnx";
+    }
+
+    private static String linearName(int features, long seed) {
+        return "linear-regression-f" + features + "-s" + seed;
+    }
+
+    /**
+     * 在 dir 下生成（同样特征数和种子的已存在则跳过）线性回归的 MLeap/ONNX 模型对，文件名见 {@link #linearMleap} / {@link #linearOnnx}
+     */
+    public static void writeLinearRegression(Path dir, int features, long seed) throws IOException {
+        Path mleap = dir.resolve(linearMleap(features, seed));
+        Path onnx = dir.resolve(linearOnnx(features, seed));
+        if (Files.exists(mleap) && Files.exists(onnx)) {
+            return;
+        }
+        Random random = new Random(seed);
+        double[] coefficients = new double[features];
+        for (int i = 0; i < features; i++) {
+            coefficients[i] = random.nextGaussian();
+        }
+        double intercept = random.nextGaussian();
+
+        MleapBundleWriter.writeLinearRegression(mleap, LINEAR_INPUT, LINEAR_OUTPUT, coefficients, intercept);
+        new OnnxModelWriter("linear_regression", 13)
+                .input(LINEAR_INPUT, OnnxModelWriter.DOUBLE, "batch", features)
+                .output(LINEAR_OUTPUT, OnnxModelWriter.DOUBLE, "batch", 1)
+                .initializer("coefficients", new long[]{features, 1}, coefficients)
+                .initializer("intercept", new long[]{1}, intercept)
+                .node("MatMul", new String[]{LINEAR_INPUT, "coefficients"}, new String[]{"xw"})
+                .node("Add", new String[]{"xw", "intercept"}, new String[]{LINEAR_OUTPUT})
+                .write(onnx);
+    }
+
+    /**
+     * 在 dir 下生成（已存在则覆盖）UBERT 替身模型和词表。
+     * <p>
+     * 输入 input_ids / attention_mask / token_type_ids（int64，[batch, choices, 50]）和 span_labels_mask（double，[batch, choices, 50, 50]），
+     * 输出 span_logits（double，[batch, choices, 50, 50]），与线上模型签名一致。每个 token 的 id 和 type 经 mask 后映射成 hidden 维，
+     * 过 layers 层 MatMul + Tanh，再投影成 50×50 的 span logits，减去偏置（绝大多数 span 低于阈值，和真实模型一样只有零星命中）后
+     * 加上 span_labels_mask。每行的计算量约 2 × 50 × hidden² × layers FLOPs，调 hidden / layers 让单次 session.run 的耗时接近线上模型。
+     * <p>
+     * 词表与 bert-base-chinese 的布局相同：[PAD]=0，[UNK]=100，[CLS]=101，[SEP]=102，[MASK]=103，之后是 CJK 基本区汉字、数字和小写字母
+     */
+    public static void writeUbertStandIn(Path dir, int hidden, int layers, long seed) throws IOException {
+        Files.createDirectories(dir);
+        List<String> vocab = new ArrayList<>();
+        vocab.add("[PAD]");
+        for (int i = 1; i < 100; i++) {
+            vocab.add("[unused" + i + "]");
+        }
+        vocab.add("[UNK]");
+        vocab.add("[CLS]");
+        vocab.add("[SEP]");
+        vocab.add("[MASK]");
+        for (char c = '0'; c <= '9'; c++) {
+            vocab.add(String.valueOf(c));
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            vocab.add(String.valueOf(c));
+        }
+        for (char c = '\u4e00'; c <= '\u9fa5'; c++) {
+            vocab.add(String.valueOf(c));
+        }
+        Files.write(dir.resolve(UBERT_VOCAB), vocab, StandardCharsets.UTF_8);
+
+        Random random = new Random(seed);
+        int seq = UBERT_SEQ_LENGTH;
+        OnnxModelWriter writer = new OnnxModelWriter("ubert_standin", 11)
+                .input("input_ids", OnnxModelWriter.INT64, "batch", "choices", seq)
+                .input("attention_mask", OnnxModelWriter.INT64, "batch", "choices", seq)
+                .input("token_type_ids", OnnxModelWriter.INT64, "batch", "choices", seq)
+                .input("span_labels_mask", OnnxModelWriter.DOUBLE, "batch", "choices", seq, seq)
+                .output("span_logits", OnnxModelWriter.DOUBLE, "batch", "choices", seq, seq)
+                .initializer("id_scale", new long[]{1}, 1.0F / vocab.size())
+                .initializer("w_in", new long[]{1, hidden}, gaussian(random, hidden, 1.0F))
+                .initializer("span_bias", new long[]{1}, -4.0F)
+                .node("Cast", new String[]{"input_ids"}, new String[]{"ids"}, OnnxModelWriter.Attribute.ofInt("to", OnnxModelWriter.FLOAT))
+                .node("Cast", new String[]{"attention_mask"}, new String[]{"mask"}, OnnxModelWriter.Attribute.ofInt("to", OnnxModelWriter.FLOAT))
+                .node("Cast", new String[]{"token_type_ids"}, new String[]{"types"}, OnnxModelWriter.Attribute.ofInt("to", OnnxModelWriter.FLOAT))
+                .node("Mul", new String[]{"ids", "id_scale"}, new String[]{"ids_scaled"})
+                .node("Add", new String[]{"ids_scaled", "types"}, new String[]{"token"})
+                .node("Mul", new String[]{"token", "mask"}, new String[]{"token_masked"})
+                .node("Unsqueeze", new String[]{"token_masked"}, new String[]{"token_column"}, OnnxModelWriter.Attribute.ofInts("axes", 3))
+                .node("MatMul", new String[]{"token_column", "w_in"}, new String[]{"hidden_0"});
+        float scale = (float) (1.0 / Math.sqrt(hidden));
+        for (int layer = 0; layer < layers; layer++) {
+            writer.initializer("w_" + layer, new long[]{hidden, hidden}, gaussian(random, hidden * hidden, scale))
+                    .node("MatMul", new String[]{"hidden_" + layer, "w_" + layer}, new String[]{"linear_" + layer})
+                    .node("Tanh", new String[]{"linear_" + layer}, new String[]{"hidden_" + (layer + 1)});
+        }
+        writer.initializer("w_out", new long[]{hidden, seq}, gaussian(random, hidden * seq, scale))
+                .node("MatMul", new String[]{"hidden_" + layers, "w_out"}, new String[]{"span_scores"})
+                .node("Add", new String[]{"span_scores", "span_bias"}, new String[]{"span_biased"})
+                .node("Cast", new String[]{"span_biased"}, new String[]{"span_double"}, OnnxModelWriter.Attribute.ofInt("to", OnnxModelWriter.DOUBLE))
+                .node("Add", new String[]{"span_double", "span_labels_mask"}, new String[]{"span_logits"})
+                .write(dir.resolve(UBERT_ONNX));
+    }
+
+    private static float[] gaussian(Random random, int size, float scale) {
+        float[] values = new float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = (float) random.nextGaussian() * scale;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.onnx.postprocess.jdk21;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.example.onnx.postprocess.Thresholds;
+
+/**
+ * {@link Thresholds} 的 Vector API 实现，只在 -Pjava21 时编译，运行时需要 --add-modules jdk.incubator.vector
+ */
+public final class VectorThresholds implements Thresholds.Support {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public int above(double[] values, int offset, int length, double cut, int[] out) {
+        int n = 0;
+        int i = 0;
+        int bound = DOUBLES.loopBound(length);
+        for (; i < bound; i += DOUBLES.length()) {
+            VectorMask<Double> hit = DoubleVector.fromArray(DOUBLES, values, offset + i).compare(VectorOperators.GT, cut);
+            if (!hit.anyTrue()) {
+                continue;
+            }
+            long bits = hit.toLong();
+            while (bits != 0) {
+                out[n++] = i + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        for (; i < length; i++) {
+            if (values[offset + i] > cut) {
+                out[n++] = i;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public int above(float[] values, int offset, int length, float cut, int[] out) {
+        int n = 0;
+        int i = 0;
+        int bound = FLOATS.loopBound(length);
+        for (; i < bound; i += FLOATS.length()) {
+            VectorMask<Float> hit = FloatVector.fromArray(FLOATS, values, offset + i).compare(VectorOperators.GT, cut);
+            if (!hit.anyTrue()) {
+                continue;
+            }
+            long bits = hit.toLong();
+            while (bits != 0) {
+                out[n++] = i + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        for (; i < length; i++) {
+            if (values[offset + i] > cut) {
+                out[n++] = i;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return "VectorThresholds(" + DOUBLES.length() + " doubles, " + FLOATS.length() + " floats per vector)";
+    }
+}
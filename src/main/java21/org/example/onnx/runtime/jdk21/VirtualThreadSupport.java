@@ -0,0 +1,27 @@
+package org.example.onnx.runtime.jdk21;
+
+import org.example.onnx.runtime.VirtualThreads;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 21 的虚拟线程实现，只在 -Pjava21 时编译，由 {@link VirtualThreads} 反射加载
+ */
+public final class VirtualThreadSupport implements VirtualThreads.Support {
+
+    @Override
+    public boolean isVirtual(Thread thread) {
+        return thread.isVirtual();
+    }
+
+    @Override
+    public ExecutorService newPerTaskExecutor(String prefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory());
+    }
+
+    @Override
+    public Thread start(String name, Runnable task) {
+        return Thread.ofVirtual().name(name).start(task);
+    }
+}
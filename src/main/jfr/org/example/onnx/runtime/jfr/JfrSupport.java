@@ -0,0 +1,175 @@
+package org.example.onnx.runtime.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import org.example.onnx.runtime.PipelineEvents;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * {@link PipelineEvents} 的 jdk.jfr 实现，只由 PipelineEvents 反射加载；这个包以外不要直接引用 jdk.jfr。
+ * 事件不带调用栈（每次推理都有几个事件，带栈开销太大），需要栈的时候看同一时间段的采样事件。
+ */
+public final class JfrSupport implements PipelineEvents.Support {
+
+    private static final String PREFIX = "org.example.onnx.";
+
+    @Category({"ONNX", "Pipeline"})
+    @StackTrace(false)
+    abstract static class StageEvent extends Event {
+        @Label("Model")
+        String model;
+
+        @Label("Batch Size")
+        @Description("Rows fed to the model (batch x choices for UBERT)")
+        int batchSize;
+
+        @Label("Sequence Length")
+        @Description("Padded sequence length, 0 where not applicable")
+        int sequenceLength;
+    }
+
+    @Name(PREFIX + "Tokenize")
+    @Label("Tokenize")
+    static final class TokenizeEvent extends StageEvent {
+    }
+
+    @Name(PREFIX + "TensorBuild")
+    @Label("Tensor Build")
+    static final class TensorBuildEvent extends StageEvent {
+    }
+
+    @Name(PREFIX + "SessionRun")
+    @Label("Session Run")
+    @Description("OrtSession.run itself, excluding scheduler queueing")
+    static final class SessionRunEvent extends StageEvent {
+    }
+
+    @Name(PREFIX + "Decode")
+    @Label("Decode")
+    static final class DecodeEvent extends StageEvent {
+    }
+
+    @Name(PREFIX + "Serialize")
+    @Label("Serialize")
+    static final class SerializeEvent extends StageEvent {
+    }
+
+    // 只用来读开关：isEnabled() 由 JIT 编成一次字段读取
+    private final StageEvent[] probes = {
+            new TokenizeEvent(), new TensorBuildEvent(), new SessionRunEvent(), new DecodeEvent(), new SerializeEvent()
+    };
+
+    private Recording recording;
+    private Path destination;
+
+    public JfrSupport() {
+        // 提前注册，录制开始前事件就出现在 JMC 的事件列表里
+        for (StageEvent probe : probes) {
+            FlightRecorder.register(probe.getClass());
+        }
+    }
+
+    @Override
+    public Object begin(PipelineEvents.Stage stage) {
+        if (!probes[stage.ordinal()].isEnabled()) {
+            return null;
+        }
+        StageEvent event;
+        switch (stage) {
+            case TOKENIZE:
+                event = new TokenizeEvent();
+                break;
+            case TENSOR_BUILD:
+                event = new TensorBuildEvent();
+                break;
+            case SESSION_RUN:
+                event = new SessionRunEvent();
+                break;
+            case DECODE:
+                event = new DecodeEvent();
+                break;
+            default:
+                event = new SerializeEvent();
+                break;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void end(Object started, String model, int batchSize, int sequenceLength) {
+        StageEvent event = (StageEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.model = model;
+            event.batchSize = batchSize;
+            event.sequenceLength = sequenceLength;
+            event.commit();
+        }
+    }
+
+    @Override
+    public synchronized void start(String settings, long maxSeconds, long maxBytes, Path destination) throws IOException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("a recording is already running");
+        }
+        closeRecording();
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(settings);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("bad jfr settings " + settings + ": " + e.getMessage());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("unknown jfr settings " + settings + ", use default or profile");
+        }
+        Recording created = new Recording(configuration);
+        created.setName("onnx-pipeline");
+        for (StageEvent probe : probes) {
+            created.enable(probe.getClass()).withoutStackTrace().withThreshold(Duration.ZERO);
+        }
+        created.setToDisk(true);
+        created.setMaxSize(maxBytes);
+        created.setDuration(Duration.ofSeconds(maxSeconds));
+        created.setDestination(destination);
+        created.start();
+        this.recording = created;
+        this.destination = destination;
+    }
+
+    @Override
+    public synchronized Path stop() throws IOException {
+        if (recording == null) {
+            return null;
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            // 设了 destination，stop 时写出文件
+            recording.stop();
+        }
+        return destination;
+    }
+
+    @Override
+    public synchronized String state() {
+        return recording == null ? null : recording.getState().name();
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+            destination = null;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.onnx.ner;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DictionaryTypeFilterTest {
+
+    private final List<Path> files = new ArrayList<>();
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void matchesAnyTermOfItsOwnType() throws IOException {
+        Map<String, String> dictionaries = new HashMap<>();
+        dictionaries.put("地名", dictionary("# 城市", "北京", "", "上海市", "Beijing"));
+        dictionaries.put("机构", dictionary("清华大学"));
+        DictionaryTypeFilter filter = DictionaryTypeFilter.load(dictionaries, Collections.<String, String>emptyMap());
+
+        assertTrue(filter.mayMatch("我在北京工作", "地名"));
+        assertTrue(filter.mayMatch("上海市", "地名"));
+        assertTrue(filter.mayMatch("from Beijing", "地名"));
+        assertFalse(filter.mayMatch("from beijing", "地名"));
+        assertFalse(filter.mayMatch("上海", "地名"));
+        assertFalse(filter.mayMatch("北", "地名"));
+        assertFalse(filter.mayMatch("# 城市", "地名"));
+        assertFalse(filter.mayMatch("我在北京工作", "机构"));
+        assertTrue(filter.mayMatch("毕业于清华大学", "机构"));
+        // 没有配置的类型一律保留
+        assertTrue(filter.mayMatch("随便什么", "人名"));
+    }
+
+    @Test
+    void eitherDictionaryOrPatternKeepsTheRow() throws IOException {
+        DictionaryTypeFilter filter = DictionaryTypeFilter.load(Collections.singletonMap("时间", dictionary("今天", "明天")),
+                Collections.singletonMap("时间", "\\d+月\\d+日"));
+        assertTrue(filter.mayMatch("明天开会", "时间"));
+        assertTrue(filter.mayMatch("3月5日开会", "时间"));
+        assertFalse(filter.mayMatch("下周开会", "时间"));
+    }
+
+    @Test
+    void rejectsEmptyDictionary() throws IOException {
+        Map<String, String> dictionaries = Collections.singletonMap("地名", dictionary("# 还没有词条", ""));
+        assertThrows(IllegalArgumentException.class,
+                () -> DictionaryTypeFilter.load(dictionaries, Collections.<String, String>emptyMap()));
+    }
+
+    @Test
+    void agreesWithSubstringSearch() throws IOException {
+        Random random = new Random(42);
+        String alphabet = "abc北京上海";
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            terms.add(randomText(random, alphabet, 1 + random.nextInt(4)));
+        }
+        DictionaryTypeFilter filter = DictionaryTypeFilter.load(
+                Collections.singletonMap("词", dictionary(terms.toArray(new String[0]))), Collections.<String, String>emptyMap());
+        for (int i = 0; i < 2000; i++) {
+            String text = randomText(random, alphabet, random.nextInt(12));
+            boolean expected = false;
+            for (String term : terms) {
+                expected |= text.contains(term);
+            }
+            assertEquals(expected, filter.mayMatch(text, "词"), text);
+        }
+    }
+
+    private String dictionary(String... lines) throws IOException {
+        Path file = Files.createTempFile("dictionary", ".txt");
+        files.add(file);
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file.toString();
+    }
+
+    private static String randomText(Random random, String alphabet, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+}
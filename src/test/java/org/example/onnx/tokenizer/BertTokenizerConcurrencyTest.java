@@ -0,0 +1,105 @@
+package org.example.onnx.tokenizer;
+
+import org.example.onnx.ner.NerQuery;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 一个 BertTokenizer 实例被多个线程共享时，每个线程的 tokenize / 原文区间 / encodeFeature 结果都要和单线程基线完全一致。
+ * 基线用另一个不带缓存的实例算，被测实例的缓存里没有基线留下的结果：关掉缓存时每次都真正分词，开着缓存时并发未命中、写入和淘汰都会发生
+ */
+class BertTokenizerConcurrencyTest {
+
+    private static final List<String> ENTITY_TYPES = Arrays.asList("人名", "地名", "公司");
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 5;
+
+    @Test
+    void uncachedTokenizerMatchesBaseline() throws Exception {
+        assertMatchesBaseline(0);
+    }
+
+    @Test
+    void cachedTokenizerMatchesBaseline() throws Exception {
+        // 容量远小于语料，线程之间不停地淘汰和重算
+        assertMatchesBaseline(512);
+    }
+
+    private void assertMatchesBaseline(long maxCachedTokens) throws Exception {
+        List<String> corpus = new ArrayList<>(TestVocab.CORPUS);
+        corpus.addAll(TestVocab.randomTexts(200, 80, 7));
+        Path vocab = TestVocab.write(Files.createTempDirectory("vocab"), TestVocab.CORPUS);
+        BertTokenizer baseline = new BertTokenizer(vocab.toString(), 0);
+        BertTokenizer tokenizer = new BertTokenizer(vocab.toString(), maxCachedTokens);
+
+        List<List<String>> expectedTokens = new ArrayList<>(corpus.size());
+        List<int[]> expectedOffsets = new ArrayList<>(corpus.size());
+        List<BertTokenizer.UbertFeature> expectedFeatures = new ArrayList<>(corpus.size());
+        for (String text : corpus) {
+            expectedTokens.add(new ArrayList<>(baseline.tokenize(text)));
+            expectedOffsets.add(baseline.encodeText(text).offsets);
+            expectedFeatures.add(baseline.encodeFeature(new NerQuery(text, ENTITY_TYPES)));
+        }
+
+        AtomicLong mismatches = new AtomicLong();
+        StringBuilder firstMismatch = new StringBuilder();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(THREADS);
+            for (int t = 0; t < THREADS; t++) {
+                final int offset = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int n = 0; n < ITERATIONS; n++) {
+                        // 每个线程从不同位置开始，让不同文本交错执行
+                        for (int k = 0; k < corpus.size(); k++) {
+                            int i = (k + offset * 31 + n) % corpus.size();
+                            String text = corpus.get(i);
+                            List<String> tokens = tokenizer.tokenize(text);
+                            int[] offsets = tokenizer.encodeText(text).offsets;
+                            BertTokenizer.UbertFeature feature = tokenizer.encodeFeature(new NerQuery(text, ENTITY_TYPES));
+                            if (!tokens.equals(expectedTokens.get(i)) || !Arrays.equals(offsets, expectedOffsets.get(i))
+                                    || !sameFeature(feature, expectedFeatures.get(i))) {
+                                if (mismatches.incrementAndGet() == 1) {
+                                    synchronized (firstMismatch) {
+                                        firstMismatch.append(text).append(" -> ").append(tokens).append(", expected ").append(expectedTokens.get(i));
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        synchronized (firstMismatch) {
+            assertEquals(0, mismatches.get(), "first mismatch: " + firstMismatch);
+        }
+    }
+
+    static boolean sameFeature(BertTokenizer.UbertFeature a, BertTokenizer.UbertFeature b) {
+        return Arrays.deepEquals(a.inputIds, b.inputIds)
+                && Arrays.equals(a.lengths, b.lengths)
+                && Arrays.equals(a.segmentStarts, b.segmentStarts)
+                && Arrays.equals(a.promptLengths, b.promptLengths);
+    }
+}
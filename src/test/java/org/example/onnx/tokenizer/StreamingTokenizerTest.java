@@ -0,0 +1,187 @@
+package org.example.onnx.tokenizer;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 流式分词的窗口拼起来（去掉每个窗口开头的重叠部分）要和整篇一次 {@link BertTokenizer#encodeText} 的 id、原文区间完全一致，
+ * 重叠部分要和上一个窗口的末尾一致。分段取得很小，让切点落在代理对、组合附加符、长单词和中文之间
+ */
+class StreamingTokenizerTest {
+
+    // {windowTokens, overlapTokens}
+    private static final int[][] WINDOWS = {{1, 0}, {8, 0}, {8, 3}, {8, 7}, {510, 128}};
+    private static final int[] SEGMENT_CHARS = {2, 3, 7, 64, 16 * 1024};
+
+    private static BertTokenizer tokenizer;
+    private static String document;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        List<String> parts = new ArrayList<>(TestVocab.CORPUS);
+        // 代理对连写、组合附加符连写、比分段长得多的单词（分段要放大才能找到切点）
+        parts.add("😀😀😀𠀋𠀋和😀");
+        parts.add("café́ ééé naïve");
+        StringBuilder longWord = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longWord.append((char) ('a' + i % 26));
+        }
+        parts.add(longWord.toString());
+        // 词表只由固定文本生成，随机文本里的孤立代理项写不进 UTF-8 的词表
+        Path vocab = TestVocab.write(Files.createTempDirectory("vocab"), parts);
+        parts.addAll(TestVocab.randomTexts(300, 60, 11));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < parts.size(); i++) {
+            // 有的直接连上，让文本之间也出现不能切开的位置
+            text.append(parts.get(i)).append(i % 3 == 0 ? "" : i % 3 == 1 ? " " : "\n");
+        }
+        document = text.toString();
+        tokenizer = new BertTokenizer(vocab.toString(), 0);
+    }
+
+    @Test
+    void readerMatchesWholeDocument() throws IOException {
+        for (int[] window : WINDOWS) {
+            for (int segmentChars : SEGMENT_CHARS) {
+                StreamingTokenizer streaming = new StreamingTokenizer(tokenizer, window[0], window[1], segmentChars);
+                assertMatches(document, streaming.open(new StringReader(document)), window, segmentChars);
+            }
+        }
+    }
+
+    @Test
+    void charBufferMatchesWholeDocument() throws IOException {
+        for (int[] window : WINDOWS) {
+            for (int segmentChars : SEGMENT_CHARS) {
+                StreamingTokenizer streaming = new StreamingTokenizer(tokenizer, window[0], window[1], segmentChars);
+                // 从中间开始读，只读到 limit
+                String text = "跳过" + document + "不读";
+                CharBuffer chars = CharBuffer.wrap(text);
+                chars.position(2).limit(text.length() - 2);
+                assertMatches(document, streaming.open(chars), window, segmentChars);
+                assertEquals(text.length() - 2, chars.position());
+            }
+        }
+    }
+
+    @Test
+    void mappedFileMatchesWholeDocument() throws IOException {
+        // 重复到远超 mmap 解码缓冲（8192 字符），多字节序列落在缓冲边界上
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 40_000) {
+            text.append(document);
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        Path file = Files.createTempFile("streaming", ".txt");
+        try {
+            Files.write(file, bytes);
+            // 孤立的代理项写成 UTF-8 时变成 '?'，按文件里实际的内容比
+            String decoded = new String(bytes, StandardCharsets.UTF_8);
+            for (int[] window : WINDOWS) {
+                for (int segmentChars : new int[]{7, 16 * 1024}) {
+                    StreamingTokenizer streaming = new StreamingTokenizer(tokenizer, window[0], window[1], segmentChars);
+                    assertMatches(decoded, streaming.open(file), window, segmentChars);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void emptyAndBlankDocumentsHaveNoChunks() throws IOException {
+        StreamingTokenizer streaming = new StreamingTokenizer(tokenizer, 8, 3, 2);
+        for (String text : Arrays.asList("", " ", "  \t\n　 ")) {
+            try (StreamingTokenizer.Chunks chunks = streaming.open(new StringReader(text))) {
+                assertFalse(chunks.hasNext());
+                assertEquals(text.length(), chunks.charsRead());
+            }
+        }
+    }
+
+    @Test
+    void forEachCountsWindows() throws IOException {
+        StreamingTokenizer streaming = new StreamingTokenizer(tokenizer, 8, 3, 64);
+        int tokens = tokenizer.encodeText(document).length();
+        List<TokenChunk> chunks = new ArrayList<>();
+        long n = streaming.forEach(new StringReader(document), chunks::add);
+        assertEquals(chunks.size(), n);
+        // 第一个窗口 8 个新 token，之后每个窗口 5 个
+        assertEquals(1 + (tokens - 8 + 4) / 5, n);
+    }
+
+    @Test
+    void rejectsBadWindows() {
+        assertThrows(IllegalArgumentException.class, () -> new StreamingTokenizer(tokenizer, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new StreamingTokenizer(tokenizer, 8, 8));
+        assertThrows(IllegalArgumentException.class, () -> new StreamingTokenizer(tokenizer, 8, -1));
+        assertThrows(IllegalArgumentException.class, () -> new StreamingTokenizer(tokenizer, 8, 3, 1));
+    }
+
+    private static void assertMatches(String text, StreamingTokenizer.Chunks chunks, int[] window, int segmentChars) throws IOException {
+        String name = "window " + window[0] + " overlap " + window[1] + " segment " + segmentChars;
+        Encoding expected = tokenizer.encodeText(text);
+        List<Integer> ids = new ArrayList<>(expected.length());
+        List<Long> offsets = new ArrayList<>(2 * expected.length());
+        try (StreamingTokenizer.Chunks it = chunks) {
+            TokenChunk previous = null;
+            long index = 0;
+            while (it.hasNext()) {
+                TokenChunk chunk = it.next();
+                assertEquals(index++, chunk.index(), name);
+                assertTrue(chunk.length() <= window[0], name);
+                assertTrue(chunk.length() > chunk.overlap(), name);
+                if (previous == null) {
+                    assertEquals(0, chunk.overlap(), name);
+                } else {
+                    // 上一个窗口必须是满的，重叠部分是它的末尾
+                    assertEquals(window[0], previous.length(), name);
+                    assertEquals(window[1], chunk.overlap(), name);
+                    for (int i = 0; i < chunk.overlap(); i++) {
+                        int p = previous.length() - chunk.overlap() + i;
+                        assertEquals(previous.encoding().id(p), chunk.encoding().id(i), name);
+                        assertEquals(previous.start(p), chunk.start(i), name);
+                        assertEquals(previous.end(p), chunk.end(i), name);
+                    }
+                }
+                for (int i = chunk.overlap(); i < chunk.length(); i++) {
+                    ids.add(chunk.encoding().id(i));
+                    offsets.add(chunk.start(i));
+                    offsets.add(chunk.end(i));
+                }
+                previous = chunk;
+            }
+            assertEquals(text.length(), it.charsRead(), name);
+        }
+        int[] actualIds = new int[ids.size()];
+        for (int i = 0; i < actualIds.length; i++) {
+            actualIds[i] = ids.get(i);
+        }
+        long[] expectedOffsets = new long[expected.offsets.length];
+        for (int i = 0; i < expectedOffsets.length; i++) {
+            expectedOffsets[i] = expected.offsets[i];
+        }
+        long[] actualOffsets = new long[offsets.size()];
+        for (int i = 0; i < actualOffsets.length; i++) {
+            actualOffsets[i] = offsets.get(i);
+        }
+        assertArrayEquals(expected.ids, actualIds, name);
+        assertArrayEquals(expectedOffsets, actualOffsets, name);
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.onnx.tokenizer;
+
+import org.example.onnx.ner.NerQuery;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 测试用的小词表和语料：词表由语料里出现的字符生成（小写、去重音后的单字和 ## 续接片段），再加几个多字母的词，
+ * 让 wordpiece 的最长匹配、[UNK] 和 ## 前缀都能走到
+ */
+final class TestVocab {
+
+    static final List<String> CORPUS = Arrays.asList(
+            "雷鸣山",
+            "北京字节跳动科技有限公司的张一鸣",
+            "Apple发布了新款iPhone，售价¥5999。",
+            "Héllo, WORLD! naïve café [UNK] ### 2023-01-01",
+            "中国平安保险（集团）股份有限公司总部位于深圳",
+            "  \t 多个   空白 以及　全角空格  ",
+            "unaffable supercalifragilisticexpialidocious 超长的英文单词",
+            "emoji 😀 和代理对 𠀋 混排",
+            "");
+
+    private static final String[] WORDS = {"un", "##aff", "##able", "apple", "hello", "world", "cafe", "naive", "##phone", "super"};
+    // 随机文本用的字符：含组合附加符（U+0301）、全角空格、控制字符、代理对的两半和不在词表里的生僻字（U+4DB5）
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCXYZ0123456789 ,.!?，。（）的人名地公司北京上海深圳张王李"
+            + "é́　\t\u0007䶵😀";
+
+    private TestVocab() {
+    }
+
+    /**
+     * 把能覆盖 texts（以及 UBERT prompt）的词表写到 dir/vocab.txt
+     */
+    static Path write(Path dir, List<String> texts) throws IOException {
+        Set<String> vocab = new LinkedHashSet<>(Arrays.asList("[PAD]", "[UNK]", "[CLS]", "[SEP]", "[MASK]"));
+        List<String> all = new ArrayList<>(texts);
+        all.add(NerQuery.TASK_TYPE);
+        all.add(NerQuery.SUBTASK_TYPE);
+        all.add("人名地名公司行业类别品牌");
+        for (String text : all) {
+            String folded = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+            for (int i = 0; i < folded.length(); ) {
+                int cp = folded.codePointAt(i);
+                i += Character.charCount(cp);
+                if (Character.isWhitespace(cp) || Character.getType(cp) == Character.NON_SPACING_MARK || cp == 0x4DB5) {
+                    continue;
+                }
+                String piece = new String(Character.toChars(cp));
+                vocab.add(piece);
+                if (cp < 0x80 && Character.isLetterOrDigit(cp)) {
+                    vocab.add("##" + piece);
+                }
+            }
+        }
+        vocab.addAll(Arrays.asList(WORDS));
+        Path file = dir.resolve("vocab.txt");
+        Files.write(file, vocab, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    /**
+     * count 条长度在 [0, maxLength) 的随机文本，种子固定
+     */
+    static List<String> randomTexts(int count, int maxLength, long seed) {
+        Random random = new Random(seed);
+        List<String> texts = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(maxLength);
+            for (int i = 0; i < length; i++) {
+                text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            texts.add(text.toString());
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.onnx.tokenizer;
+
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.runtime.ModelBinding;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * float / float16 的 span mask 直接由各自的模板拼成，要和 double 版逐个元素转换的结果一致
+ */
+class UbertBatchTest {
+
+    @Test
+    void spanMaskIsTheSameInEveryElementType() throws Exception {
+        BertTokenizer tokenizer = new BertTokenizer(TestVocab.write(Files.createTempDirectory("vocab"), TestVocab.CORPUS).toString(), 0);
+        // 类型数不同，第二条要补一个全 mask 的 choice
+        UbertBatch batch = tokenizer.encode(Arrays.asList(
+                new NerQuery("北京字节跳动科技有限公司的张一鸣", Arrays.asList("人名", "公司")),
+                new NerQuery("雷鸣山", Collections.singletonList("人名"))));
+        double[] mask = batch.spanMask();
+        float[] floats = batch.floatSpanMask();
+        short[] halves = batch.halfSpanMask();
+        assertEquals(batch.batch * batch.choices * batch.maxLength * batch.maxLength, mask.length);
+        assertEquals(mask.length, floats.length);
+        assertEquals(mask.length, halves.length);
+        for (int i = 0; i < mask.length; i++) {
+            assertEquals((float) mask[i], floats[i]);
+            assertEquals(ModelBinding.floatToHalf((float) mask[i]), halves[i]);
+        }
+
+        int square = batch.maxLength * batch.maxLength;
+        // 第二条的补齐行整块 MASKED，真实行里有 0（文本内的 span）
+        for (int i = 3 * square; i < 4 * square; i++) {
+            assertEquals(UbertBatch.MASKED, mask[i]);
+        }
+        assertEquals(0D, mask[2 * square + square - 1]);
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.router;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRingTest {
+
+    private static final int REPLICAS = 160;
+    private static final int KEYS = 20000;
+
+    @Test
+    void emptyRingRoutesNowhere() {
+        HashRing ring = new HashRing(Collections.<String>emptyList(), REPLICAS);
+        assertTrue(ring.isEmpty());
+        assertNull(ring.route("北京"));
+        assertNull(ring.route(0L));
+        assertTrue(ring.shares().isEmpty());
+    }
+
+    @Test
+    void rejectsNonPositiveReplicas() {
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(Collections.singletonList("w0"), 0));
+    }
+
+    @Test
+    void singleNodeOwnsEverything() {
+        HashRing ring = new HashRing(Collections.singletonList("w0"), REPLICAS);
+        assertEquals(1.0, ring.shares().get("w0"), 1e-9);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("w0", ring.route("key-" + i));
+        }
+    }
+
+    @Test
+    void sharesCoverTheRingEvenly() {
+        HashRing ring = new HashRing(Arrays.asList("w0", "w1", "w2", "w3"), REPLICAS);
+        Map<String, Double> shares = ring.shares();
+        assertEquals(4, shares.size());
+        double total = 0;
+        for (double share : shares.values()) {
+            total += share;
+            // 160 个虚拟点时每个节点的份额偏差在几个百分点以内
+            assertTrue(share > 0.15 && share < 0.35, "share " + share);
+        }
+        assertEquals(1.0, total, 1e-6);
+
+        int[] counts = new int[4];
+        for (int i = 0; i < KEYS; i++) {
+            counts[ring.route("key-" + i).charAt(1) - '0']++;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            double fraction = (double) counts[i] / KEYS;
+            assertEquals(shares.get("w" + i), fraction, 0.03, "w" + i);
+        }
+    }
+
+    @Test
+    void routeIgnoresSurroundingWhitespace() {
+        HashRing ring = new HashRing(Arrays.asList("w0", "w1", "w2", "w3"), REPLICAS);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(ring.route("key-" + i), ring.route("  key-" + i + "\n"));
+        }
+    }
+
+    @Test
+    void addingNodeOnlyMovesKeysToIt() {
+        HashRing before = new HashRing(Arrays.asList("w0", "w1", "w2", "w3"), REPLICAS);
+        HashRing after = new HashRing(Arrays.asList("w0", "w1", "w2", "w3", "w4"), REPLICAS);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key-" + i;
+            String from = before.route(key);
+            String to = after.route(key);
+            if (!from.equals(to)) {
+                assertEquals("w4", to, key);
+                moved++;
+            }
+        }
+        // 约 1/5 的键换到新节点
+        double fraction = (double) moved / KEYS;
+        assertTrue(fraction > 0.12 && fraction < 0.28, "moved " + fraction);
+    }
+
+    @Test
+    void removingNodeOnlyMovesItsKeys() {
+        List<String> nodes = Arrays.asList("w0", "w1", "w2", "w3");
+        HashRing before = new HashRing(nodes, REPLICAS);
+        HashRing after = new HashRing(Arrays.asList("w0", "w1", "w3"), REPLICAS);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key-" + i;
+            String from = before.route(key);
+            String to = after.route(key);
+            if ("w2".equals(from)) {
+                assertTrue(!"w2".equals(to));
+                moved++;
+            } else {
+                assertEquals(from, to, key);
+            }
+        }
+        double fraction = (double) moved / KEYS;
+        assertTrue(fraction > 0.15 && fraction < 0.35, "moved " + fraction);
+    }
+
+    @Test
+    void routingDoesNotDependOnNodeOrder() {
+        HashRing a = new HashRing(Arrays.asList("w0", "w1", "w2"), REPLICAS);
+        HashRing b = new HashRing(Arrays.asList("w2", "w0", "w1"), REPLICAS);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(a.route("key-" + i), b.route("key-" + i));
+        }
+    }
+}
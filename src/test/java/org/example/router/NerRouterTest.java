@@ -0,0 +1,252 @@
+package org.example.router;
+
+import org.example.onnx.ner.NerEntity;
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.ner.NerResult;
+import org.example.rpc.NerRpcException;
+import org.example.rpc.NerWire;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 路由对着几个桩 worker（只说 NerWire 协议的 socket 服务，结果里带上自己的 id）跑，不加载模型
+ */
+class NerRouterTest {
+
+    private static final int REPLICAS = 160;
+
+    private final List<StubWorker> stubs = new ArrayList<>();
+    private WorkerPool pool;
+    private NerRouter router;
+
+    @AfterEach
+    void tearDown() {
+        if (router != null) {
+            router.close();
+        }
+        if (pool != null) {
+            pool.close();
+        }
+        for (StubWorker stub : stubs) {
+            stub.close();
+        }
+    }
+
+    @Test
+    void splitsByRingAndMergesInOrder() throws Exception {
+        start(3);
+        List<NerQuery> queries = queries(300);
+        List<NerResult> results = router.call(queries);
+
+        assertEquals(queries.size(), results.size());
+        HashRing ring = new HashRing(ids(), REPLICAS);
+        Set<String> used = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < queries.size(); i++) {
+            NerResult result = results.get(i);
+            assertEquals(queries.get(i).getText(), result.getQuery());
+            String worker = servedBy(result);
+            assertEquals(ring.route(queries.get(i).getText()), worker, queries.get(i).getText());
+            used.add(worker);
+        }
+        assertEquals(3, used.size());
+        // 每个 worker 只收到一个子批次
+        for (StubWorker stub : stubs) {
+            assertEquals(1, stub.batches.size(), stub.id);
+        }
+    }
+
+    @Test
+    void resendsAfterConnectionLoss() throws Exception {
+        start(3);
+        StubWorker dying = stubs.get(1);
+        dying.dropNextBatch = true;
+        List<NerQuery> queries = queries(300);
+        List<NerResult> results = router.call(queries);
+
+        for (int i = 0; i < queries.size(); i++) {
+            assertEquals(queries.get(i).getText(), results.get(i).getQuery());
+            assertTrue(!dying.id.equals(servedBy(results.get(i))));
+        }
+        assertEquals(Worker.State.DOWN, pool.workers().get(1).state());
+        // 重发按摘掉 w1 后的环分配
+        HashRing ring = new HashRing(Arrays.asList("w0", "w2"), REPLICAS);
+        for (int i = 0; i < queries.size(); i++) {
+            assertEquals(ring.route(queries.get(i).getText()), servedBy(results.get(i)));
+        }
+    }
+
+    @Test
+    void failsWhenEveryWorkerIsLost() throws Exception {
+        start(2);
+        for (StubWorker stub : stubs) {
+            stub.dropNextBatch = true;
+        }
+        assertThrows(IOException.class, () -> router.call(queries(50)));
+    }
+
+    @Test
+    void passesWorkerErrorCodeThrough() throws Exception {
+        start(2);
+        for (StubWorker stub : stubs) {
+            stub.errorCode = NerWire.ErrorCode.OVERLOADED;
+        }
+        NerRpcException e = assertThrows(NerRpcException.class, () -> router.call(queries(10)));
+        assertEquals(NerWire.ErrorCode.OVERLOADED, e.code());
+        // 连接还在，worker 的错误不触发重发
+        assertEquals(2, pool.upCount());
+        for (StubWorker stub : stubs) {
+            assertTrue(stub.batches.size() <= 1, stub.id);
+        }
+    }
+
+    private void start(int workers) throws Exception {
+        List<Worker> list = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            StubWorker stub = new StubWorker("w" + i);
+            stubs.add(stub);
+            list.add(new Worker(stub.id, "127.0.0.1", stub.port(), 0));
+        }
+        pool = new WorkerPool(list, null, REPLICAS, 50, 1000, 1);
+        pool.start();
+        assertEquals(workers, pool.awaitReady(10_000));
+        router = new NerRouter(pool);
+    }
+
+    private List<String> ids() {
+        List<String> ids = new ArrayList<>();
+        for (StubWorker stub : stubs) {
+            ids.add(stub.id);
+        }
+        return ids;
+    }
+
+    private static List<NerQuery> queries(int count) {
+        List<NerQuery> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            queries.add(new NerQuery("文本-" + i, Collections.singletonList("地名")));
+        }
+        return queries;
+    }
+
+    private static String servedBy(NerResult result) {
+        return result.getEntities().get("worker").get(0).getName();
+    }
+
+    /**
+     * 最小的 NerWire 服务端：空批次当 ping 回空结果，其余每条查询回一个 worker 实体，值为自己的 id
+     */
+    private static final class StubWorker implements Runnable {
+        final String id;
+        final List<Integer> batches = new CopyOnWriteArrayList<>();
+        private final ServerSocket server;
+        private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+        // 下一个非空批次到达时关掉连接和监听，模拟进程退出
+        volatile boolean dropNextBatch;
+        volatile NerWire.ErrorCode errorCode;
+
+        StubWorker(String id) throws IOException {
+            this.id = id;
+            this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this, "stub-" + id);
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    sockets.add(socket);
+                    Thread reader = new Thread(() -> serve(socket), "stub-" + id + "-conn");
+                    reader.setDaemon(true);
+                    reader.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket socket) {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                NerWire.Sink sink = new NerWire.Sink();
+                byte[] frame;
+                while ((frame = NerWire.readFrame(in, 1 << 20)) != null) {
+                    NerWire.Request request = NerWire.decodeRequest(frame);
+                    NerWire.Response response;
+                    if (request.queries.isEmpty()) {
+                        response = new NerWire.Response(request.id, new ArrayList<NerResult>());
+                    } else if (dropNextBatch) {
+                        close();
+                        return;
+                    } else {
+                        batches.add(request.queries.size());
+                        response = errorCode != null
+                                ? new NerWire.Response(request.id, errorCode, id + " rejected the batch")
+                                : new NerWire.Response(request.id, results(request.queries));
+                    }
+                    NerWire.encodeResponse(response, sink);
+                    NerWire.writeFrame(out, sink);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // 连接被关掉
+            } finally {
+                closeQuietly(socket);
+            }
+        }
+
+        private List<NerResult> results(List<NerQuery> queries) {
+            List<NerResult> results = new ArrayList<>(queries.size());
+            for (NerQuery query : queries) {
+                Map<String, List<NerEntity>> entities = Collections.singletonMap("worker",
+                        Collections.singletonList(new NerEntity(id, 1.0)));
+                results.add(new NerResult(query.getText(), entities));
+            }
+            return results;
+        }
+
+        void close() {
+            closeQuietly(server);
+            for (Socket socket : sockets) {
+                closeQuietly(socket);
+            }
+        }
+
+        private static void closeQuietly(Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // 测试清理
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.rpc;
+
+import org.example.onnx.ner.NerEntity;
+import org.example.onnx.ner.NerQuery;
+import org.example.onnx.ner.NerResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class NerWireTest {
+
+    @Test
+    void requestRoundTrip() throws IOException {
+        NerWire.Sink sink = new NerWire.Sink();
+        NerWire.encodeRequest(new NerWire.Request(42, Arrays.asList(
+                new NerQuery("北京字节跳动", Arrays.asList("公司", "地名")),
+                new NerQuery("", Collections.<String>emptyList()))), sink);
+        NerWire.Request request = NerWire.decodeRequest(bytes(sink));
+        assertEquals(42, request.id);
+        assertEquals(2, request.queries.size());
+        assertEquals("北京字节跳动", request.queries.get(0).getText());
+        assertEquals(Arrays.asList("公司", "地名"), request.queries.get(0).getEntityTypes());
+        assertEquals(0, request.queries.get(1).choices());
+    }
+
+    @Test
+    void resultsRoundTrip() throws IOException {
+        Map<String, List<NerEntity>> entities = new LinkedHashMap<>();
+        entities.put("公司", Collections.singletonList(new NerEntity("字节跳动", 0.93)));
+        entities.put("地名", Collections.<NerEntity>emptyList());
+        NerWire.Sink sink = new NerWire.Sink();
+        NerWire.encodeResponse(new NerWire.Response(7, Collections.singletonList(new NerResult("北京字节跳动", entities))), sink);
+        NerWire.Response response = NerWire.decodeResponse(bytes(sink));
+        assertEquals(7, response.id);
+        assertNull(response.error);
+        assertNull(response.errorCode);
+        NerResult result = response.results.get(0);
+        assertEquals("北京字节跳动", result.getQuery());
+        assertEquals("字节跳动", result.getEntities().get("公司").get(0).getName());
+        assertEquals(0.93, result.getEntities().get("公司").get(0).getScore(), 0.0);
+        assertEquals(0, result.getEntities().get("地名").size());
+    }
+
+    @Test
+    void errorCodeRoundTrip() throws IOException {
+        for (NerWire.ErrorCode code : NerWire.ErrorCode.values()) {
+            NerWire.Sink sink = new NerWire.Sink();
+            NerWire.encodeResponse(new NerWire.Response(3, code, "model ubert rejected the batch"), sink);
+            NerWire.Response response = NerWire.decodeResponse(bytes(sink));
+            assertEquals(code, response.errorCode);
+            assertEquals("model ubert rejected the batch", response.error);
+            assertNull(response.results);
+        }
+    }
+
+    @Test
+    void errorWithoutCodeIsInternal() throws IOException {
+        // 不带 error_code 的老版本服务端：id = 1, error = 3
+        NerWire.Sink sink = new NerWire.Sink();
+        sink.varint(1, 5);
+        sink.string(3, "boom");
+        NerWire.Response response = NerWire.decodeResponse(bytes(sink));
+        assertEquals(NerWire.ErrorCode.INTERNAL, response.errorCode);
+        assertEquals("boom", response.error);
+    }
+
+    @Test
+    void unknownErrorCodeIsInternal() throws IOException {
+        NerWire.Sink sink = new NerWire.Sink();
+        sink.varint(1, 5);
+        sink.string(3, "boom");
+        sink.varint(4, 99);
+        assertEquals(NerWire.ErrorCode.INTERNAL, NerWire.decodeResponse(bytes(sink)).errorCode);
+    }
+
+    private static byte[] bytes(NerWire.Sink sink) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            NerWire.writeFrame(out, sink);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        byte[] frame = out.toByteArray();
+        return Arrays.copyOfRange(frame, 4, frame.length);
+    }
+}